@@ -8,10 +8,14 @@ import org.codesystem.utility.DownloadUtility;
 import org.codesystem.utility.PackageUtility;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 public class AgentApplication {
@@ -19,8 +23,14 @@ public class AgentApplication {
     private final PropertiesLoader propertiesLoader;
     private final HardwareInfo hardwareInfo;
     private final CryptoUtility cryptoUtility;
+    private final AtomicBoolean updateCheckRequested = new AtomicBoolean(false);
     private String agentChecksum;
     private OperatingSystem operatingSystem;
+    private SystemInformationTracker systemInformationTracker;
+    private SessionHandler sessionHandler;
+    private DeploymentResultOutbox deploymentResultOutbox;
+    private ChunkCache chunkCache;
+    private ScheduledExecutorService scheduledExecutorService;
 
     public AgentApplication(PropertiesLoader propertiesLoader, HardwareInfo hardwareInfo, CryptoUtility cryptoUtility) {
         this.propertiesLoader = propertiesLoader;
@@ -30,14 +40,33 @@ public class AgentApplication {
 
     public void agentLogic() {
         initialSetup();
-        ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
-        scheduledExecutorService.scheduleWithFixedDelay(() -> {
-            try {
-                mainLogic();
-            } catch (Throwable t) {
-                throw new SevereAgentErrorException("Unexpected Exception occurred: " + t.getMessage());
-            }
-        }, 0, Integer.parseInt(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_UPDATE_INTERVAL)), TimeUnit.SECONDS);
+        scheduledExecutorService = Executors.newScheduledThreadPool(1);
+        scheduledExecutorService.scheduleWithFixedDelay(this::runMainLogic, 0, Integer.parseInt(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_UPDATE_INTERVAL)), TimeUnit.SECONDS);
+
+        Thread notificationThread = new Thread(new NotificationListener(cryptoUtility, propertiesLoader, this::requestUpdateCheck), "Notification-Listener");
+        notificationThread.setDaemon(true);
+        notificationThread.start();
+    }
+
+    /**
+     * Runs an update check on the scheduler thread, so it never overlaps with the regular polling.
+     */
+    private void requestUpdateCheck() {
+        // notifications received while an update check is queued are covered by that update check
+        if (updateCheckRequested.compareAndSet(false, true)) {
+            scheduledExecutorService.execute(() -> {
+                updateCheckRequested.set(false);
+                runMainLogic();
+            });
+        }
+    }
+
+    private void runMainLogic() {
+        try {
+            mainLogic();
+        } catch (Throwable t) {
+            throw new SevereAgentErrorException("Unexpected Exception occurred: " + t.getMessage());
+        }
     }
 
     private void initialSetup() {
@@ -62,17 +91,55 @@ public class AgentApplication {
         logger.info("Agent Startup");
 
         agentChecksum = cryptoUtility.calculateChecksumOfFile("Agent.jar");
+        systemInformationTracker = new SystemInformationTracker(detailedSystemInformation, HardwareInfo::new, agentChecksum, Variables.SYSTEM_INFORMATION_REFRESH_INTERVAL);
+        sessionHandler = new SessionHandler(cryptoUtility, propertiesLoader);
+        deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, Variables.PATH_DEPLOYMENT_RESULT_OUTBOX);
+        chunkCache = new ChunkCache(cryptoUtility, propertiesLoader, Variables.PATH_CHUNK_CACHE, createPeerDistribution());
 
         UpdateHandler updateHandler = new UpdateHandler(new DownloadUtility(), cryptoUtility, propertiesLoader);
-        PackageUtility packageUtility = new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, new DownloadUtility());
-        ServerCommunicationRegistration serverCommunicationRegistration = new ServerCommunicationRegistration(cryptoUtility, propertiesLoader, new ServerCommunication(cryptoUtility, propertiesLoader, agentChecksum, updateHandler, packageUtility), operatingSystem);
+        PackageUtility packageUtility = new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, new DownloadUtility(), deploymentResultOutbox, chunkCache);
+        ServerCommunicationRegistration serverCommunicationRegistration = new ServerCommunicationRegistration(cryptoUtility, propertiesLoader, new ServerCommunication(cryptoUtility, propertiesLoader, agentChecksum, updateHandler, packageUtility, systemInformationTracker, sessionHandler), operatingSystem);
         serverCommunicationRegistration.validateRegistration();
     }
 
+    /**
+     * Returns null if the peer mode is disabled or the chunks cannot be shared, the packages are then only downloaded from the server.
+     */
+    private PeerDistribution createPeerDistribution() {
+        if (!"true".equals(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_PEER_MODE))) {
+            return null;
+        }
+        List<InetSocketAddress> configuredPeers = new ArrayList<>();
+        String peers = propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_PEERS);
+        if (peers != null) {
+            for (String peer : peers.split(",")) {
+                if (peer.isBlank()) {
+                    continue;
+                }
+                String address = peer.trim();
+                int separator = address.lastIndexOf(':');
+                try {
+                    configuredPeers.add(InetSocketAddress.createUnresolved(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1))));
+                } catch (Exception e) {
+                    throw new SevereAgentErrorException("Invalid peer in " + Variables.PROPERTIES_AGENT_PEERS + ": " + address);
+                }
+            }
+        }
+        PeerDistribution peerDistribution = new PeerDistribution(cryptoUtility, Variables.PATH_CHUNK_CACHE, Integer.parseInt(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_PEER_PORT)), configuredPeers);
+        try {
+            peerDistribution.start();
+        } catch (IOException e) {
+            logger.warning("Cannot share package chunks with peers: " + e.getMessage());
+            return null;
+        }
+        return peerDistribution;
+    }
+
     private void mainLogic() {
         logger.info("Checking for deployment");
-        ServerCommunication serverCommunication = new ServerCommunication(cryptoUtility, propertiesLoader, agentChecksum, new UpdateHandler(new DownloadUtility(), cryptoUtility, propertiesLoader), new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, new DownloadUtility()));
+        ServerCommunication serverCommunication = new ServerCommunication(cryptoUtility, propertiesLoader, agentChecksum, new UpdateHandler(new DownloadUtility(), cryptoUtility, propertiesLoader), new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, new DownloadUtility(), deploymentResultOutbox, chunkCache), systemInformationTracker, sessionHandler);
         serverCommunication.waitForServerAvailability();
+        deploymentResultOutbox.flush();
         while (serverCommunication.sendUpdateRequest()) {
             logger.info("Checking for deployment");
         }
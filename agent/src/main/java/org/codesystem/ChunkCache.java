@@ -0,0 +1,183 @@
+package org.codesystem;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.codesystem.exceptions.DownloadException;
+import org.codesystem.exceptions.PackageErrorException;
+import org.codesystem.payload.ChunkRequest;
+import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.payload.PackageChunk;
+import org.codesystem.utility.CryptoUtility;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the encrypted package chunks on disk, so a new revision of a package only requires the chunks that changed.
+ * The chunks are named after the checksum of their content and are verified before they are stored.
+ */
+public class ChunkCache {
+    private static final int BATCH_SIZE = 64;
+    private final CryptoUtility cryptoUtility;
+    private final PropertiesLoader propertiesLoader;
+    private final Path cacheFolder;
+    private final PeerDistribution peerDistribution;
+
+    public ChunkCache(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, Path cacheFolder) {
+        this(cryptoUtility, propertiesLoader, cacheFolder, null);
+    }
+
+    /**
+     * The chunks are requested from the peers first, if the peer distribution is enabled.
+     */
+    public ChunkCache(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, Path cacheFolder, PeerDistribution peerDistribution) {
+        this.cryptoUtility = cryptoUtility;
+        this.propertiesLoader = propertiesLoader;
+        this.cacheFolder = cacheFolder;
+        this.peerDistribution = peerDistribution;
+    }
+
+    public List<PackageChunk> getMissingChunks(List<PackageChunk> chunks) {
+        Set<String> missingChunkIds = new HashSet<>();
+        List<PackageChunk> missingChunks = new ArrayList<>();
+        for (PackageChunk packageChunk : chunks) {
+            if (!Files.exists(cacheFolder.resolve(packageChunk.getId())) && missingChunkIds.add(packageChunk.getId())) {
+                missingChunks.add(packageChunk);
+            }
+        }
+        return missingChunks;
+    }
+
+    /**
+     * Downloads the chunks that are not cached yet. Already downloaded chunks are kept if the download fails.
+     *
+     * @return Returns the number of bytes downloaded from the server.
+     */
+    public long fetch(String deploymentUUID, List<PackageChunk> chunks) throws IOException {
+        Files.createDirectories(cacheFolder);
+        List<PackageChunk> missingChunks = fetchFromPeers(getMissingChunks(chunks));
+        long downloadedBytes = 0;
+        for (int i = 0; i < missingChunks.size(); i += BATCH_SIZE) {
+            List<PackageChunk> batch = missingChunks.subList(i, Math.min(i + BATCH_SIZE, missingChunks.size()));
+            downloadedBytes += download(deploymentUUID, batch);
+        }
+        return downloadedBytes;
+    }
+
+    /**
+     * Decrypts the chunks in the order of the manifest into the target file.
+     */
+    public void assemble(List<PackageChunk> chunks, SecretKey chunkEncryptionToken, Path targetFile) throws IOException {
+        FileTime lastUsed = FileTime.from(Instant.now());
+        try (OutputStream outputStream = Files.newOutputStream(targetFile)) {
+            for (PackageChunk packageChunk : chunks) {
+                Path chunkFile = cacheFolder.resolve(packageChunk.getId());
+                byte[] chunk = cryptoUtility.decryptChunk(Files.readAllBytes(chunkFile), chunkEncryptionToken);
+                if (chunk == null) {
+                    Files.deleteIfExists(chunkFile);
+                    throw new PackageErrorException("Cannot decrypt chunk: " + packageChunk.getId());
+                }
+                outputStream.write(chunk);
+                Files.setLastModifiedTime(chunkFile, lastUsed);
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used chunks until the cache is smaller than the maximum size.
+     */
+    public void evict(long maximumSize) throws IOException {
+        if (!Files.exists(cacheFolder)) {
+            return;
+        }
+        List<Path> chunkFiles;
+        try (Stream<Path> stream = Files.list(cacheFolder)) {
+            chunkFiles = stream.sorted(Comparator.comparing(this::getLastModifiedTime).reversed()).toList();
+        }
+        long cacheSize = 0;
+        for (Path chunkFile : chunkFiles) {
+            cacheSize += Files.size(chunkFile);
+            if (cacheSize > maximumSize) {
+                Files.deleteIfExists(chunkFile);
+            }
+        }
+    }
+
+    private long download(String deploymentUUID, List<PackageChunk> batch) throws IOException {
+        RequestBody body = RequestBody.create(new EncryptedMessage(new ChunkRequest(batch).toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+        Request request = new Request.Builder().url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_CHUNKS + deploymentUUID).post(body).build();
+
+        OkHttpClient client = new OkHttpClient();
+        long downloadedBytes = 0;
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200 || response.body() == null) {
+                throw new PackageErrorException("Error downloading chunks, HTTP response-code: " + response.code());
+            }
+            BufferedSource source = response.body().source();
+            // the server sends the chunks one after another in the requested order
+            for (PackageChunk packageChunk : batch) {
+                byte[] chunk = source.readByteArray(packageChunk.getSize());
+                if (!cryptoUtility.calculateChecksum(chunk).equals(packageChunk.getId())) {
+                    throw new PackageErrorException("Checksum mismatch for chunk: " + packageChunk.getId());
+                }
+                store(packageChunk, chunk);
+                downloadedBytes += chunk.length;
+            }
+        } catch (IOException e) {
+            throw new DownloadException("Unable to download chunks: " + e.getMessage());
+        }
+        return downloadedBytes;
+    }
+
+    /**
+     * Returns the chunks no peer could provide.
+     */
+    private List<PackageChunk> fetchFromPeers(List<PackageChunk> missingChunks) throws IOException {
+        if (peerDistribution == null || missingChunks.isEmpty() || peerDistribution.getPeers().isEmpty()) {
+            return missingChunks;
+        }
+        List<PackageChunk> remainingChunks = new ArrayList<>();
+        long receivedBytes = 0;
+        PeerDistribution.PeerFetch peerFetch = peerDistribution.startFetch();
+        for (PackageChunk packageChunk : missingChunks) {
+            byte[] chunk = peerFetch.fetchChunk(packageChunk);
+            if (chunk == null) {
+                remainingChunks.add(packageChunk);
+                continue;
+            }
+            store(packageChunk, chunk);
+            receivedBytes += chunk.length;
+        }
+        AgentApplication.logger.info("Received " + receivedBytes + " bytes from peers, " + remainingChunks.size() + " chunks are requested from the server");
+        return remainingChunks;
+    }
+
+    private void store(PackageChunk packageChunk, byte[] chunk) throws IOException {
+        Path temporaryFile = cacheFolder.resolve(packageChunk.getId() + ".tmp");
+        Files.write(temporaryFile, chunk);
+        Files.move(temporaryFile, cacheFolder.resolve(packageChunk.getId()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
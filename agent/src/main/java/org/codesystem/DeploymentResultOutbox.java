@@ -0,0 +1,117 @@
+package org.codesystem;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.codesystem.exceptions.PackageErrorException;
+import org.codesystem.payload.DeploymentResult;
+import org.codesystem.payload.DeploymentResultBatch;
+import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the deployment results on disk until the server accepted them, so a result is not lost while the server is not reachable
+ * and the deployment does not have to be executed again.
+ */
+public class DeploymentResultOutbox {
+    private static final int BATCH_SIZE = 100;
+    private final CryptoUtility cryptoUtility;
+    private final PropertiesLoader propertiesLoader;
+    private final Path outboxFile;
+    private final List<DeploymentResult> deploymentResults = new ArrayList<>();
+
+    public DeploymentResultOutbox(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, Path outboxFile) {
+        this.cryptoUtility = cryptoUtility;
+        this.propertiesLoader = propertiesLoader;
+        this.outboxFile = outboxFile;
+        load();
+    }
+
+    public synchronized void add(DeploymentResult deploymentResult) {
+        deploymentResults.add(deploymentResult);
+        persist();
+    }
+
+    public synchronized boolean contains(String deploymentUUID) {
+        return deploymentResults.stream().anyMatch(deploymentResult -> deploymentUUID != null && deploymentUUID.equals(deploymentResult.getDeploymentUUID()));
+    }
+
+    public synchronized int size() {
+        return deploymentResults.size();
+    }
+
+    /**
+     * Sends the stored results in batches.
+     *
+     * @return Returns true if all results got sent.
+     */
+    public synchronized boolean flush() {
+        while (!deploymentResults.isEmpty()) {
+            List<DeploymentResult> batch = new ArrayList<>(deploymentResults.subList(0, Math.min(BATCH_SIZE, deploymentResults.size())));
+            if (!send(batch)) {
+                return false;
+            }
+            deploymentResults.subList(0, batch.size()).clear();
+            persist();
+        }
+        return true;
+    }
+
+    private boolean send(List<DeploymentResult> batch) {
+        RequestBody body = RequestBody.create(new EncryptedMessage(new DeploymentResultBatch(batch).toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+        Request request = new Request.Builder().url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_DEPLOYMENT_RESULTS).post(body).build();
+
+        OkHttpClient client = new OkHttpClient();
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                AgentApplication.logger.info("Cannot send Deployment Results, HTTP response-code: " + response.code());
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            AgentApplication.logger.info("Cannot send Deployment Results: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(outboxFile)) {
+            return;
+        }
+        try {
+            JSONArray jsonArray = new JSONArray(Files.readString(outboxFile, StandardCharsets.UTF_8));
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(i);
+                if (!jsonObject.isNull("deploymentUUID")) {
+                    deploymentResults.add(new DeploymentResult(jsonObject.getString("deploymentUUID"), jsonObject.optString("resultCode", null)));
+                }
+            }
+        } catch (Exception e) {
+            // the affected deployments are retried by the server after the install retry interval
+            AgentApplication.logger.warning("Cannot read stored Deployment Results: " + e.getMessage());
+        }
+    }
+
+    private void persist() {
+        JSONArray jsonArray = new JSONArray();
+        deploymentResults.forEach(deploymentResult -> jsonArray.put(deploymentResult.toResultJsonObject()));
+        Path temporaryFile = outboxFile.resolveSibling(outboxFile.getFileName() + ".tmp");
+        try {
+            Files.writeString(temporaryFile, jsonArray.toString(), StandardCharsets.UTF_8);
+            Files.move(temporaryFile, outboxFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new PackageErrorException("Cannot store Deployment Results: " + e.getMessage());
+        }
+    }
+}
@@ -6,11 +6,16 @@ import org.codesystem.utility.AutoUpdateUtility;
 import org.codesystem.utility.CryptoUtility;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.Security;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals(Variables.ARGUMENT_RELAY)) {
+            startRelay(args);
+            return;
+        }
         String filename;
         try {
             filename = String.valueOf(new File(Main.class.getProtectionDomain().getCodeSource().getLocation().toURI()));
@@ -32,4 +37,16 @@ public class Main {
                 cryptoUtility
         ).agentLogic();
     }
+
+    /**
+     * The relay runs without registration, it only passes on the requests of the Agents.
+     */
+    private static void startRelay(String[] args) {
+        Relay relay = Relay.fromArguments(args);
+        try {
+            relay.start();
+        } catch (IOException e) {
+            throw new SevereAgentErrorException("Cannot start relay: " + e.getMessage());
+        }
+    }
 }
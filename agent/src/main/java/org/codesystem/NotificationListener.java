@@ -0,0 +1,87 @@
+package org.codesystem;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.codesystem.payload.EmptyRequest;
+import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.utility.CryptoUtility;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a notification stream to the server open and triggers an update check as soon as the server announces a deployment or a configuration change.
+ * The events carry no data, so a forged event can only cause an additional update check. The regular polling stays active as fallback.
+ */
+public class NotificationListener implements Runnable {
+    private static final String EVENT_PREFIX = "event:";
+    private final CryptoUtility cryptoUtility;
+    private final PropertiesLoader propertiesLoader;
+    private final Runnable updateCheckTrigger;
+    private final OkHttpClient client;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private boolean connectedBefore = false;
+
+    public NotificationListener(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, Runnable updateCheckTrigger) {
+        this.cryptoUtility = cryptoUtility;
+        this.propertiesLoader = propertiesLoader;
+        this.updateCheckTrigger = updateCheckTrigger;
+        this.client = new OkHttpClient.Builder().readTimeout(Variables.NOTIFICATION_READ_TIMEOUT).build();
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            listen();
+            try {
+                // the delay is spread, so not all Agents reconnect at the same time after a server restart
+                long reconnectDelay = Variables.NOTIFICATION_RECONNECT_DELAY.toMillis();
+                TimeUnit.MILLISECONDS.sleep(reconnectDelay + secureRandom.nextLong(reconnectDelay));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Reads the notification stream until the connection is closed.
+     */
+    public void listen() {
+        RequestBody body = RequestBody.create(new EncryptedMessage(new EmptyRequest().toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+        Request request = new Request.Builder()
+                .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_NOTIFICATIONS)
+                .post(body)
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                AgentApplication.logger.info("Cannot open notification stream, HTTP response-code: " + response.code());
+                return;
+            }
+            // notifications sent while the stream was closed are lost, so check for updates after every reconnect
+            if (connectedBefore) {
+                updateCheckTrigger.run();
+            }
+            connectedBefore = true;
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (line.startsWith(EVENT_PREFIX)) {
+                    processEvent(line.substring(EVENT_PREFIX.length()).trim());
+                }
+            }
+        } catch (Exception e) {
+            AgentApplication.logger.info("Notification stream closed: " + e.getMessage());
+        }
+    }
+
+    private void processEvent(String event) {
+        if (Variables.NOTIFICATION_EVENT_DEPLOYMENT.equals(event) || Variables.NOTIFICATION_EVENT_CONFIGURATION.equals(event)) {
+            AgentApplication.logger.info("Received notification: " + event);
+            updateCheckTrigger.run();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.codesystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.codesystem.payload.PackageChunk;
+import org.codesystem.utility.CryptoUtility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the cached package chunks with other Agents in the same network, so a package only has to be downloaded from the server once per site.
+ * The Agents announce their chunk port by multicast (or use a configured peer list) and request missing chunks from the peers before asking the server.
+ * A chunk from a peer is only used if its checksum matches the id in the signed package details of the server, the content stays encrypted with the package key.
+ */
+public class PeerDistribution {
+    private static final String ANNOUNCEMENT_PREFIX = "OPD-PEER";
+    private static final String CHUNK_PATH = "/chunks/";
+    private static final String CHUNK_ID_PATTERN = "^[0-9a-f]{128}$";
+    private static final int MAXIMUM_ANNOUNCEMENT_SIZE = 256;
+    // the announcements are not authenticated, the cap keeps a flood of fake peers from growing the list and the requests per chunk
+    private static final int MAXIMUM_DISCOVERED_PEERS = 32;
+    // after this many chunks in a row that no peer had, the remaining chunks of the fetch are requested from the server only
+    private static final int MAXIMUM_CONSECUTIVE_MISSES = 8;
+    private final CryptoUtility cryptoUtility;
+    private final Path cacheFolder;
+    private final int port;
+    private final List<InetSocketAddress> configuredPeers;
+    private final Map<InetSocketAddress, Instant> discoveredPeers = new ConcurrentHashMap<>();
+    // identifies the own announcements, several Agents can run on the same host
+    private final String instanceId = UUID.randomUUID().toString();
+    private final OkHttpClient client;
+    private HttpServer httpServer;
+    private MulticastSocket multicastSocket;
+    private ExecutorService executorService;
+
+    public PeerDistribution(CryptoUtility cryptoUtility, Path cacheFolder, int port, List<InetSocketAddress> configuredPeers) {
+        this.cryptoUtility = cryptoUtility;
+        this.cacheFolder = cacheFolder;
+        this.port = port;
+        this.configuredPeers = configuredPeers;
+        // a peer that does not answer quickly is skipped, the server is always available as fallback
+        this.client = new OkHttpClient.Builder().connectTimeout(Variables.PEER_TIMEOUT).readTimeout(Variables.PEER_TIMEOUT).build();
+    }
+
+    public void start() throws IOException {
+        executorService = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Peer-Distribution");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext(CHUNK_PATH, this::serveChunk);
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+
+        try {
+            MulticastSocket socket = new MulticastSocket(Variables.PEER_DISCOVERY_PORT);
+            multicastSocket = socket;
+            socket.joinGroup(new InetSocketAddress(InetAddress.getByName(Variables.PEER_DISCOVERY_GROUP), 0), null);
+            executorService.execute(() -> receiveAnnouncements(socket));
+            executorService.execute(() -> sendAnnouncements(socket));
+        } catch (IOException e) {
+            AgentApplication.logger.warning("Peer discovery is not available, only the configured peers are used: " + e.getMessage());
+        }
+        AgentApplication.logger.info("Sharing package chunks with peers on port " + port);
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (multicastSocket != null) {
+            multicastSocket.close();
+            multicastSocket = null;
+        }
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+    }
+
+    /**
+     * Returns the configured peers and the peers announced recently, in random order to spread the load.
+     */
+    public List<InetSocketAddress> getPeers() {
+        Instant expired = Instant.now().minus(Variables.PEER_EXPIRATION);
+        discoveredPeers.values().removeIf(lastSeen -> lastSeen.isBefore(expired));
+        List<InetSocketAddress> peers = new ArrayList<>(configuredPeers);
+        discoveredPeers.keySet().stream().filter(peer -> !peers.contains(peer)).forEach(peers::add);
+        Collections.shuffle(peers);
+        return peers;
+    }
+
+    /**
+     * Starts fetching the chunks of one package, the returned fetch remembers the peers that failed and the chunks no peer had.
+     */
+    public PeerFetch startFetch() {
+        return new PeerFetch();
+    }
+
+    void processAnnouncement(String announcement, InetAddress address) {
+        String[] parts = announcement.trim().split(" ");
+        if (parts.length != 3 || !parts[0].equals(ANNOUNCEMENT_PREFIX) || parts[1].equals(instanceId)) {
+            return;
+        }
+        try {
+            int peerPort = Integer.parseInt(parts[2]);
+            if (peerPort <= 0 || peerPort > 65535) {
+                return;
+            }
+            InetSocketAddress peer = new InetSocketAddress(address, peerPort);
+            if (!discoveredPeers.containsKey(peer) && discoveredPeers.size() >= MAXIMUM_DISCOVERED_PEERS) {
+                AgentApplication.logger.fine("Too many peers, announcement ignored from " + address);
+                return;
+            }
+            discoveredPeers.put(peer, Instant.now());
+        } catch (NumberFormatException e) {
+            AgentApplication.logger.fine("Invalid peer announcement from " + address);
+        }
+    }
+
+    String createAnnouncement() {
+        return ANNOUNCEMENT_PREFIX + " " + instanceId + " " + port;
+    }
+
+    private void receiveAnnouncements(MulticastSocket socket) {
+        byte[] buffer = new byte[MAXIMUM_ANNOUNCEMENT_SIZE];
+        while (!socket.isClosed()) {
+            DatagramPacket datagramPacket = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(datagramPacket);
+                processAnnouncement(new String(datagramPacket.getData(), 0, datagramPacket.getLength(), StandardCharsets.UTF_8), datagramPacket.getAddress());
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    AgentApplication.logger.fine("Cannot receive peer announcement: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void sendAnnouncements(MulticastSocket socket) {
+        byte[] announcement = createAnnouncement().getBytes(StandardCharsets.UTF_8);
+        while (!socket.isClosed() && !Thread.currentThread().isInterrupted()) {
+            try {
+                socket.send(new DatagramPacket(announcement, announcement.length, InetAddress.getByName(Variables.PEER_DISCOVERY_GROUP), Variables.PEER_DISCOVERY_PORT));
+            } catch (IOException e) {
+                AgentApplication.logger.fine("Cannot send peer announcement: " + e.getMessage());
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(Variables.PEER_ANNOUNCEMENT_INTERVAL.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void serveChunk(HttpExchange httpExchange) throws IOException {
+        try {
+            String chunkId = httpExchange.getRequestURI().getPath().substring(CHUNK_PATH.length());
+            Path chunkFile = cacheFolder.resolve(chunkId);
+            if (!httpExchange.getRequestMethod().equals("GET") || !chunkId.matches(CHUNK_ID_PATTERN) || !Files.exists(chunkFile)) {
+                httpExchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            httpExchange.sendResponseHeaders(200, Files.size(chunkFile));
+            try (OutputStream outputStream = httpExchange.getResponseBody()) {
+                Files.copy(chunkFile, outputStream);
+            }
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    /**
+     * Fetches the chunks of one package from the peers. A peer that cannot be reached is skipped for the rest of the fetch,
+     * a discovered peer is only asked again in a later fetch once it announced itself again.
+     */
+    public class PeerFetch {
+        private final Set<InetSocketAddress> failedPeers = new HashSet<>();
+        private int consecutiveMisses = 0;
+
+        /**
+         * Requests the chunk from the peers until one of them returns the verified chunk.
+         * Returns null if no peer has the chunk or the peers missed too many chunks in a row.
+         */
+        public byte[] fetchChunk(PackageChunk packageChunk) {
+            if (consecutiveMisses >= MAXIMUM_CONSECUTIVE_MISSES) {
+                return null;
+            }
+            for (InetSocketAddress peer : getPeers()) {
+                if (failedPeers.contains(peer)) {
+                    continue;
+                }
+                Request request = new Request.Builder().url("http://" + peer.getHostString() + ":" + peer.getPort() + CHUNK_PATH + packageChunk.getId()).get().build();
+                try (Response response = client.newCall(request).execute()) {
+                    if (response.code() != 200 || response.body() == null || response.body().contentLength() != packageChunk.getSize()) {
+                        continue;
+                    }
+                    byte[] chunk = response.body().bytes();
+                    if (cryptoUtility.calculateChecksum(chunk).equals(packageChunk.getId())) {
+                        consecutiveMisses = 0;
+                        return chunk;
+                    }
+                    AgentApplication.logger.warning("Peer " + peer + " sent an invalid chunk: " + packageChunk.getId());
+                } catch (IOException e) {
+                    AgentApplication.logger.fine("Peer " + peer + " is not available: " + e.getMessage());
+                    failedPeers.add(peer);
+                    discoveredPeers.remove(peer);
+                }
+            }
+            consecutiveMisses++;
+            if (consecutiveMisses == MAXIMUM_CONSECUTIVE_MISSES) {
+                AgentApplication.logger.info("The peers missed " + consecutiveMisses + " chunks in a row, the remaining chunks are requested from the server");
+            }
+            return null;
+        }
+    }
+}
@@ -16,7 +16,7 @@ import java.util.*;
 
 public class PropertiesLoader extends Properties {
     private static final File PROPERTIES_FILE = new File("opd-agent.properties");
-    private final List<String> requiredPropertiesOptions = new ArrayList<>(Arrays.asList(Variables.PROPERTIES_SERVER_URL, Variables.PROPERTIES_SERVER_REGISTERED, Variables.PROPERTIES_SERVER_ECC_PUBLIC_KEY, Variables.PROPERTIES_AGENT_ECC_PUBLIC_KEY, Variables.PROPERTIES_AGENT_ECC_PRIVATE_KEY, Variables.PROPERTIES_AGENT_UPDATE_INTERVAL));
+    private final List<String> requiredPropertiesOptions = new ArrayList<>(Arrays.asList(Variables.PROPERTIES_SERVER_URL, Variables.PROPERTIES_SERVER_REGISTERED, Variables.PROPERTIES_SERVER_ECC_PUBLIC_KEY, Variables.PROPERTIES_AGENT_ECC_PUBLIC_KEY, Variables.PROPERTIES_AGENT_ECC_PRIVATE_KEY, Variables.PROPERTIES_AGENT_UPDATE_INTERVAL, Variables.PROPERTIES_AGENT_PEER_MODE, Variables.PROPERTIES_AGENT_PEER_PORT));
 
     @Override
     public synchronized int hashCode() {
@@ -104,6 +104,10 @@ public class PropertiesLoader extends Properties {
 
                 case Variables.PROPERTIES_AGENT_UPDATE_INTERVAL -> validateUpdateInterval(propertiesKey);
 
+                case Variables.PROPERTIES_AGENT_PEER_MODE -> validatePeerMode(propertiesKey);
+
+                case Variables.PROPERTIES_AGENT_PEER_PORT -> validatePeerPort(propertiesKey);
+
                 default -> checkPropertiesPresentAndSet(propertiesKey);
             }
         }
@@ -169,6 +173,32 @@ public class PropertiesLoader extends Properties {
 
     }
 
+    private void validatePeerMode(String propertiesKey) {
+        if (!isPropertiesPresentAndSet(propertiesKey)) {
+            this.setProperty(propertiesKey, "false");
+            saveProperties();
+        } else if (!this.getProperty(propertiesKey).equals("false") && !this.getProperty(propertiesKey).equals("true")) {
+            throw new SevereAgentErrorException("Only 'true' or 'false' values are allowed for: " + propertiesKey);
+        }
+    }
+
+    private void validatePeerPort(String propertiesKey) {
+        if (!isPropertiesPresentAndSet(propertiesKey)) {
+            this.setProperty(propertiesKey, "8901");
+            saveProperties();
+            return;
+        }
+        int port;
+        try {
+            port = Integer.parseInt(this.getProperty(propertiesKey));
+        } catch (Exception e) {
+            throw new SevereAgentErrorException("Unable to parse " + propertiesKey + ": " + e.getMessage());
+        }
+        if (port < 1 || port > 65535) {
+            throw new SevereAgentErrorException("Invalid port for " + propertiesKey + ": " + port);
+        }
+    }
+
     private void validateAgentKeys() {
         if (isPropertiesPresentAndSet(Variables.PROPERTIES_AGENT_ECC_PUBLIC_KEY) && isPropertiesPresentAndSet(Variables.PROPERTIES_AGENT_ECC_PRIVATE_KEY)) {
             //load existing Key Pair
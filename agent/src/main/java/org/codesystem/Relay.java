@@ -0,0 +1,395 @@
+package org.codesystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.codesystem.exceptions.SevereAgentErrorException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Runs the Agent.jar as relay for a remote site (java -jar Agent.jar --relay Server-Url [Port] [Cache-Size-GB]), the Agents of the site use the relay as their server url.
+ * Every request is passed on to the server, which still validates the requests of the Agents. The package files, the chunk batches and the Agent.jar are
+ * additionally stored on disk under their ETag: the relay asks the server with "If-None-Match: *" first and sends its own copy if the confirmed ETag is cached,
+ * so a file only crosses the WAN once per site. The least recently used files are removed once the cache exceeds its maximum size.
+ */
+public class Relay {
+    private static final String STATISTICS_PATH = "/relay/statistics";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Pattern ETAG_PATTERN = Pattern.compile("^\"([0-9A-Za-z-]{1,200})\"$");
+    private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+    // headers of a single connection, the relay sets them itself
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of("connection", "keep-alive", "proxy-connection", "transfer-encoding", "te", "trailer", "upgrade", "host", "content-length");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final String serverUrl;
+    private final int port;
+    private final Path cacheFolder;
+    private final long maximumCacheSize;
+    private final OkHttpClient client;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+    private HttpServer httpServer;
+    private ExecutorService executorService;
+    private ScheduledExecutorService statisticsExecutorService;
+
+    public Relay(String serverUrl, int port, Path cacheFolder, long maximumCacheSize) {
+        this.serverUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+        this.port = port;
+        this.cacheFolder = cacheFolder;
+        this.maximumCacheSize = maximumCacheSize;
+        // the notification stream only sends a keep-alive every 30 seconds
+        this.client = new OkHttpClient.Builder().readTimeout(Variables.NOTIFICATION_READ_TIMEOUT).build();
+    }
+
+    public static Relay fromArguments(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            throw new SevereAgentErrorException("Usage: java -jar Agent.jar " + Variables.ARGUMENT_RELAY + " <Server-Url> [Port] [Cache-Size-GB]");
+        }
+        try {
+            String protocol = new URL(args[1]).getProtocol();
+            if (!protocol.equals("https") && !protocol.equals("http")) {
+                throw new SevereAgentErrorException("The protocol is not supported to communicate with the Server: '" + protocol + "'");
+            }
+        } catch (MalformedURLException e) {
+            throw new SevereAgentErrorException("Error when parsing the Server URL: '" + e.getMessage() + "'");
+        }
+        int relayPort = Variables.RELAY_DEFAULT_PORT;
+        long cacheSizeGB = Variables.RELAY_DEFAULT_CACHE_SIZE_GB;
+        try {
+            if (args.length > 2) {
+                relayPort = Integer.parseInt(args[2]);
+            }
+            if (args.length > 3) {
+                cacheSizeGB = Long.parseLong(args[3]);
+            }
+        } catch (NumberFormatException e) {
+            throw new SevereAgentErrorException("Unable to parse the relay arguments: " + e.getMessage());
+        }
+        if (relayPort < 1 || relayPort > 65535 || cacheSizeGB < 1) {
+            throw new SevereAgentErrorException("Invalid relay port or cache size: " + relayPort + ", " + cacheSizeGB);
+        }
+        return new Relay(args[1], relayPort, Variables.PATH_RELAY_CACHE, cacheSizeGB * 1024 * 1024 * 1024);
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(cacheFolder);
+        // files of interrupted downloads
+        try (Stream<Path> stream = Files.list(cacheFolder)) {
+            for (Path path : stream.filter(path -> path.getFileName().toString().endsWith(TEMPORARY_SUFFIX)).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        executorService = Executors.newCachedThreadPool(runnable -> new Thread(runnable, "Relay"));
+        httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        httpServer.createContext("/", this::handle);
+        httpServer.setExecutor(executorService);
+        httpServer.start();
+
+        statisticsExecutorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Relay-Statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Variables.RELAY_STATISTICS_INTERVAL.toMillis();
+        statisticsExecutorService.scheduleWithFixedDelay(this::logStatistics, interval, interval, TimeUnit.MILLISECONDS);
+        AgentApplication.logger.info("Relaying requests on port " + port + " to " + serverUrl);
+    }
+
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (executorService != null) {
+            executorService.shutdownNow();
+            executorService = null;
+        }
+        if (statisticsExecutorService != null) {
+            statisticsExecutorService.shutdownNow();
+            statisticsExecutorService = null;
+        }
+    }
+
+    public JSONObject getStatistics() {
+        long hits = cacheHits.get();
+        long requests = hits + cacheMisses.get();
+        return new JSONObject()
+                .put("cacheHits", hits)
+                .put("cacheMisses", cacheMisses.get())
+                .put("hitRatio", requests == 0 ? 0 : (double) hits / requests)
+                .put("bytesSaved", bytesSaved.get())
+                .put("bytesDownloaded", bytesDownloaded.get());
+    }
+
+    /**
+     * Removes the least recently used files until the cache is smaller than the maximum size.
+     */
+    public synchronized void evict() throws IOException {
+        List<Path> cachedFiles;
+        try (Stream<Path> stream = Files.list(cacheFolder)) {
+            cachedFiles = stream.filter(path -> !path.getFileName().toString().endsWith(TEMPORARY_SUFFIX)).sorted(Comparator.comparing(this::getLastModifiedTime).reversed()).toList();
+        }
+        long cacheSize = 0;
+        for (Path cachedFile : cachedFiles) {
+            cacheSize += Files.size(cachedFile);
+            if (cacheSize > maximumCacheSize) {
+                Files.deleteIfExists(cachedFile);
+            }
+        }
+    }
+
+    private void handle(HttpExchange httpExchange) {
+        String path = httpExchange.getRequestURI().getRawPath();
+        try {
+            if (path.equals(STATISTICS_PATH)) {
+                byte[] statistics = getStatistics().toString().getBytes(StandardCharsets.UTF_8);
+                httpExchange.getResponseHeaders().set("Content-Type", "application/json");
+                httpExchange.sendResponseHeaders(200, statistics.length);
+                httpExchange.getResponseBody().write(statistics);
+                return;
+            }
+            byte[] body = httpExchange.getRequestBody().readAllBytes();
+            if (httpExchange.getRequestMethod().equals("POST") && isCacheable(path)) {
+                relayCacheable(httpExchange, body);
+                return;
+            }
+            try (Response response = client.newCall(createRequest(httpExchange, body, false, false)).execute()) {
+                relayResponse(httpExchange, response, false, false);
+            }
+        } catch (IOException e) {
+            AgentApplication.logger.warning("Cannot relay request to " + path + ": " + e.getMessage());
+            if (httpExchange.getResponseCode() == -1) {
+                try {
+                    httpExchange.sendResponseHeaders(502, -1);
+                } catch (IOException ignored) {
+                    // the Agent is not connected anymore
+                }
+            }
+        } finally {
+            httpExchange.close();
+        }
+    }
+
+    private boolean isCacheable(String path) {
+        return path.startsWith(Variables.URL_PACKAGE_DOWNLOAD) || path.startsWith(Variables.URL_CHUNKS) || path.equals(Variables.URL_AGENT_DOWNLOAD);
+    }
+
+    private void relayCacheable(HttpExchange httpExchange, byte[] body) throws IOException {
+        String range = httpExchange.getRequestHeaders().getFirst("Range");
+        // the server validates the request, but only sends the ETag if the file is not needed
+        try (Response validationResponse = client.newCall(createRequest(httpExchange, body, true, true)).execute()) {
+            if (validationResponse.code() != 304) {
+                // error responses and servers without support for "If-None-Match: *"
+                relayResponse(httpExchange, validationResponse, true, range == null);
+                return;
+            }
+            String eTag = validationResponse.header("ETag");
+            Path cachedFile = getCacheFile(eTag);
+            if (cachedFile != null && serveCachedFile(httpExchange, cachedFile, eTag, range)) {
+                return;
+            }
+        }
+        try (Response response = client.newCall(createRequest(httpExchange, body, true, false)).execute()) {
+            relayResponse(httpExchange, response, true, range == null);
+        }
+    }
+
+    private Request createRequest(HttpExchange httpExchange, byte[] body, boolean cacheable, boolean validation) {
+        String query = httpExchange.getRequestURI().getRawQuery();
+        Request.Builder builder = new Request.Builder().url(serverUrl + httpExchange.getRequestURI().getRawPath() + (query == null ? "" : "?" + query));
+        httpExchange.getRequestHeaders().forEach((name, values) -> {
+            if (!HOP_BY_HOP_HEADERS.contains(name.toLowerCase())) {
+                values.forEach(value -> builder.addHeader(name, value));
+            }
+        });
+        // cached files are stored uncompressed, other responses are passed on as the Agent accepts them
+        if (cacheable || httpExchange.getRequestHeaders().getFirst("Accept-Encoding") == null) {
+            builder.header("Accept-Encoding", "identity");
+        }
+        if (validation) {
+            builder.header("If-None-Match", "*");
+        } else if (cacheable) {
+            builder.removeHeader("If-None-Match");
+        }
+        String method = httpExchange.getRequestMethod();
+        if (method.equals("GET") || method.equals("HEAD")) {
+            return builder.method(method, null).build();
+        }
+        String contentType = httpExchange.getRequestHeaders().getFirst("Content-Type");
+        return builder.method(method, RequestBody.create(body, contentType == null ? null : MediaType.parse(contentType))).build();
+    }
+
+    /**
+     * Passes the response of the server on to the Agent, a complete file with ETag is stored in the cache at the same time.
+     */
+    private void relayResponse(HttpExchange httpExchange, Response response, boolean cacheable, boolean completeFile) throws IOException {
+        Headers headers = response.headers();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!HOP_BY_HOP_HEADERS.contains(headers.name(i).toLowerCase())) {
+                httpExchange.getResponseHeaders().add(headers.name(i), headers.value(i));
+            }
+        }
+        ResponseBody responseBody = response.body();
+        long contentLength = responseBody == null ? 0 : responseBody.contentLength();
+        if (responseBody == null || contentLength == 0 || response.code() == 204 || response.code() == 304 || httpExchange.getRequestMethod().equals("HEAD")) {
+            httpExchange.sendResponseHeaders(response.code(), -1);
+            return;
+        }
+        // an unknown length is sent chunked
+        httpExchange.sendResponseHeaders(response.code(), Math.max(contentLength, 0));
+
+        boolean download = cacheable && (response.code() == 200 || response.code() == 206);
+        if (download) {
+            cacheMisses.incrementAndGet();
+        }
+        Path cacheFile = download && completeFile && response.code() == 200 && response.header("Content-Encoding") == null ? getCacheFile(response.header("ETag")) : null;
+        Path temporaryFile = cacheFile == null ? null : cacheFile.resolveSibling(cacheFile.getFileName() + "." + UUID.randomUUID() + TEMPORARY_SUFFIX);
+        long transferred = 0;
+        boolean completed = false;
+        try (InputStream inputStream = responseBody.byteStream();
+             OutputStream outputStream = httpExchange.getResponseBody();
+             OutputStream cacheOutputStream = temporaryFile == null ? OutputStream.nullOutputStream() : Files.newOutputStream(temporaryFile)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                cacheOutputStream.write(buffer, 0, read);
+                outputStream.write(buffer, 0, read);
+                // the notification stream has to reach the Agent immediately
+                outputStream.flush();
+                transferred += read;
+            }
+            completed = contentLength < 0 || transferred == contentLength;
+        } finally {
+            if (download) {
+                bytesDownloaded.addAndGet(transferred);
+            }
+            if (temporaryFile != null) {
+                store(temporaryFile, cacheFile, completed);
+            }
+        }
+    }
+
+    /**
+     * Returns false if the file was removed from the cache in the meantime.
+     */
+    private boolean serveCachedFile(HttpExchange httpExchange, Path cachedFile, String eTag, String range) throws IOException {
+        FileChannel fileChannel;
+        try {
+            fileChannel = FileChannel.open(cachedFile);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try (fileChannel) {
+            long size = fileChannel.size();
+            httpExchange.getResponseHeaders().set("ETag", eTag);
+            httpExchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            httpExchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+            long start = 0;
+            long end = size;
+            int responseCode = 200;
+            Matcher matcher = range == null ? null : RANGE_PATTERN.matcher(range);
+            if (matcher != null && matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                if (matcher.group(1).isEmpty()) {
+                    start = Math.max(size - Long.parseLong(matcher.group(2)), 0);
+                } else {
+                    start = Long.parseLong(matcher.group(1));
+                    end = matcher.group(2).isEmpty() ? size : Math.min(Long.parseLong(matcher.group(2)) + 1, size);
+                }
+                if (start >= size || start >= end) {
+                    httpExchange.getResponseHeaders().set("Content-Range", "bytes */" + size);
+                    httpExchange.sendResponseHeaders(416, -1);
+                    return true;
+                }
+                responseCode = 206;
+                httpExchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+            long length = end - start;
+            cacheHits.incrementAndGet();
+            httpExchange.sendResponseHeaders(responseCode, length == 0 ? -1 : length);
+            try (OutputStream outputStream = httpExchange.getResponseBody()) {
+                WritableByteChannel targetChannel = Channels.newChannel(outputStream);
+                long position = start;
+                while (position < end) {
+                    long transferred = fileChannel.transferTo(position, end - position, targetChannel);
+                    if (transferred <= 0) {
+                        break;
+                    }
+                    position += transferred;
+                    bytesSaved.addAndGet(transferred);
+                }
+            }
+        }
+        // keeps recently used files in the cache
+        Files.setLastModifiedTime(cachedFile, FileTime.from(Instant.now()));
+        return true;
+    }
+
+    private void store(Path temporaryFile, Path cacheFile, boolean completed) throws IOException {
+        if (!completed) {
+            Files.deleteIfExists(temporaryFile);
+            return;
+        }
+        Files.move(temporaryFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        evict();
+    }
+
+    /**
+     * Returns null for weak or unusual ETags, the files of the server use checksums.
+     */
+    private Path getCacheFile(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        Matcher matcher = ETAG_PATTERN.matcher(eTag);
+        return matcher.matches() ? cacheFolder.resolve(matcher.group(1)) : null;
+    }
+
+    private void logStatistics() {
+        JSONObject statistics = getStatistics();
+        AgentApplication.logger.info(String.format("Relay cache: hit ratio %.1f%%, %d bytes saved, %d bytes downloaded", statistics.getDouble("hitRatio") * 100, statistics.getLong("bytesSaved"), statistics.getLong("bytesDownloaded")));
+    }
+
+    private FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -9,8 +9,10 @@ import org.codesystem.payload.UpdateCheckResponse;
 import org.codesystem.utility.CryptoUtility;
 import org.codesystem.utility.PackageUtility;
 import org.codesystem.utility.SystemExitUtility;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.concurrent.TimeUnit;
@@ -21,13 +23,17 @@ public class ServerCommunication {
     private final String agentChecksum;
     private final UpdateHandler updateHandler;
     private final PackageUtility packageUtility;
+    private final SystemInformationTracker systemInformationTracker;
+    private final SessionHandler sessionHandler;
 
-    public ServerCommunication(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, String agentChecksum, UpdateHandler updateHandler, PackageUtility packageUtility) {
+    public ServerCommunication(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader, String agentChecksum, UpdateHandler updateHandler, PackageUtility packageUtility, SystemInformationTracker systemInformationTracker, SessionHandler sessionHandler) {
         this.cryptoUtility = cryptoUtility;
         this.propertiesLoader = propertiesLoader;
         this.agentChecksum = agentChecksum;
         this.updateHandler = updateHandler;
         this.packageUtility = packageUtility;
+        this.systemInformationTracker = systemInformationTracker;
+        this.sessionHandler = sessionHandler;
     }
 
     private boolean isServerAvailable() {
@@ -58,8 +64,72 @@ public class ServerCommunication {
     }
 
     public boolean sendUpdateRequest() {
+        String systemInformationFingerprint = systemInformationTracker.getFingerprint();
+        DetailedSystemInformation detailedSystemInformation = systemInformationTracker.getPendingSystemInformation();
+        UpdateCheckRequest updateCheckRequest = new UpdateCheckRequest(agentChecksum, detailedSystemInformation, systemInformationFingerprint);
+        JSONObject jsonObject = null;
+        if (sessionHandler.ensureSession()) {
+            try {
+                jsonObject = sendUpdateRequestWithSession(updateCheckRequest);
+            } catch (IOException e) {
+                // the session is kept and the next poll tries it again, the envelope would only add load to a busy server
+                AgentApplication.logger.info("Update check with session failed: " + e.getMessage());
+                return false;
+            }
+        }
+        if (jsonObject == null) {
+            jsonObject = sendUpdateRequestWithEnvelope(updateCheckRequest);
+        }
+        if (jsonObject == null) {
+            return false;
+        }
+
+        UpdateCheckResponse updateCheckResponse = new UpdateCheckResponse(jsonObject);
+        if (detailedSystemInformation != null) {
+            systemInformationTracker.markSent(systemInformationFingerprint);
+        }
+        boolean resendImmediately = false;
+        if (updateCheckResponse.isSystemInformationRequired() && detailedSystemInformation == null) {
+            systemInformationTracker.requestSystemInformation();
+            resendImmediately = true;
+        }
+        return processUpdateCheckResponse(updateCheckResponse) || resendImmediately;
+    }
+
+    /**
+     * Returns the response to the update check, or null if the server rejected the session.
+     * Throws an IOException if the server cannot be reached or is busy, the session stays valid in that case.
+     */
+    private JSONObject sendUpdateRequestWithSession(UpdateCheckRequest updateCheckRequest) throws IOException {
+        RequestBody body = RequestBody.create(sessionHandler.createSessionMessage(updateCheckRequest), Variables.MEDIA_TYPE_JSON);
+        Request request = new Request.Builder()
+                .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_UPDATE_CHECK_REQUEST)
+                .post(body)
+                .build();
+
+        OkHttpClient client = new OkHttpClient();
+        JSONObject jsonObject = null;
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() == 200) {
+                jsonObject = sessionHandler.decryptSessionResponse(new JSONObject(response.body().string()).getString("message"));
+            } else if (response.code() == 400) {
+                AgentApplication.logger.info("Session rejected by the server");
+            } else {
+                throw new IOException("HTTP response-code with session: " + response.code());
+            }
+        } catch (JSONException e) {
+            AgentApplication.logger.info("Invalid response with session: " + e.getMessage());
+        }
+        // e.g. the server restarted and lost the session, the signed envelope is used until a new session is negotiated
+        if (jsonObject == null) {
+            sessionHandler.invalidate();
+        }
+        return jsonObject;
+    }
+
+    private JSONObject sendUpdateRequestWithEnvelope(UpdateCheckRequest updateCheckRequest) {
         MediaType mediaType = MediaType.parse("application/json");
-        RequestBody body = RequestBody.create(new EncryptedMessage(new UpdateCheckRequest(agentChecksum, new DetailedSystemInformation(new HardwareInfo())).toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
+        RequestBody body = RequestBody.create(new EncryptedMessage(updateCheckRequest.toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
         Request request = new Request.Builder()
                 .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_UPDATE_CHECK_REQUEST)
                 .post(body)
@@ -69,7 +139,7 @@ public class ServerCommunication {
         try (Response response = client.newCall(request).execute()) {
             if (response.code() != 200) {
                 AgentApplication.logger.info("HTTP response-code: " + response.code());
-                return false;
+                return null;
             }
             String responseBody = new JSONObject(response.body().string()).getString("message");
             JSONObject jsonObject = new JSONObject(cryptoUtility.decryptECC(Base64.getDecoder().decode(responseBody.getBytes(StandardCharsets.UTF_8))));
@@ -78,12 +148,10 @@ public class ServerCommunication {
             if (!cryptoUtility.verifySignatureECC(jsonObject.toString(), Base64.getDecoder().decode(signature))) {
                 throw new SevereAgentErrorException("Invalid Signature when processing Update Check Response");
             }
-            UpdateCheckResponse updateCheckResponse = new UpdateCheckResponse(jsonObject);
-            return processUpdateCheckResponse(updateCheckResponse);
+            return jsonObject;
         } catch (Exception e) {
             throw new SevereAgentErrorException(e.getMessage());
         }
-
     }
 
     public boolean processUpdateCheckResponse(UpdateCheckResponse updateCheckResponse) {
@@ -103,8 +171,7 @@ public class ServerCommunication {
 
         if (updateCheckResponse.isDeploymentAvailable()) {
             AgentApplication.logger.info("Deployment Found");
-            packageUtility.initiateDeployment();
-            return true;
+            return packageUtility.initiateDeployment();
         }
         return false;
     }
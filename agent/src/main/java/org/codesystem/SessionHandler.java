@@ -0,0 +1,146 @@
+package org.codesystem;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.codesystem.exceptions.SevereAgentErrorException;
+import org.codesystem.payload.EmptyRequest;
+import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.payload.SessionRequest;
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONObject;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Negotiates a short-lived AES-GCM session with the server, so the regular polls do not need the
+ * ECIES envelope and the signatures. The session key is derived from a secret sent in the signed
+ * envelope and a nonce chosen by the server.
+ */
+public class SessionHandler {
+    private static final int AGENT_SECRET_LENGTH = 32;
+    // a new session is negotiated shortly before the current one expires
+    private static final Duration RENEWAL_MARGIN = Duration.ofMinutes(1);
+    // the direction is part of the initialization vector, so request and response never share one
+    private static final int SESSION_DIRECTION_AGENT = 0;
+    private static final int SESSION_DIRECTION_SERVER = 1;
+    private final CryptoUtility cryptoUtility;
+    private final PropertiesLoader propertiesLoader;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private String sessionId = null;
+    private SecretKey sessionKey = null;
+    private Instant renewalTime = Instant.EPOCH;
+    private long sequence = 0;
+
+    public SessionHandler(CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader) {
+        this.cryptoUtility = cryptoUtility;
+        this.propertiesLoader = propertiesLoader;
+    }
+
+    /**
+     * Returns true if a session can be used, negotiating a new one if required.
+     */
+    public boolean ensureSession() {
+        if (sessionId != null && Instant.now().isBefore(renewalTime)) {
+            return true;
+        }
+        invalidate();
+        return negotiateSession();
+    }
+
+    public void invalidate() {
+        this.sessionId = null;
+        this.sessionKey = null;
+        this.renewalTime = Instant.EPOCH;
+        this.sequence = 0;
+    }
+
+    public String createSessionMessage(EmptyRequest emptyRequest) {
+        if (sessionId == null) {
+            return null;
+        }
+        sequence++;
+        byte[] encryptedMessage = cryptoUtility.encryptSession(emptyRequest.toUnsignedJsonObject().toString().getBytes(StandardCharsets.UTF_8), sessionKey,
+                createInitializationVector(SESSION_DIRECTION_AGENT, sequence), sessionId.getBytes(StandardCharsets.UTF_8));
+        byte[] message = ByteBuffer.allocate(Long.BYTES + encryptedMessage.length).putLong(sequence).put(encryptedMessage).array();
+        return new JSONObject()
+                .put("publicKeyBase64", propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_ECC_PUBLIC_KEY))
+                .put("sessionId", sessionId)
+                .put("message", Base64.getEncoder().encodeToString(message))
+                .toString();
+    }
+
+    /**
+     * Returns the decrypted response to the last session message, or null if it cannot be authenticated.
+     */
+    public JSONObject decryptSessionResponse(String responseMessage) {
+        if (sessionId == null || responseMessage == null) {
+            return null;
+        }
+        byte[] message;
+        try {
+            message = Base64.getDecoder().decode(responseMessage);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        // the server answers with the sequence number of the request
+        if (message.length <= Long.BYTES || ByteBuffer.wrap(message).getLong() != sequence) {
+            return null;
+        }
+        byte[] decryptedMessage = cryptoUtility.decryptSession(Arrays.copyOfRange(message, Long.BYTES, message.length), sessionKey,
+                createInitializationVector(SESSION_DIRECTION_SERVER, sequence), sessionId.getBytes(StandardCharsets.UTF_8));
+        if (decryptedMessage == null) {
+            return null;
+        }
+        return new JSONObject(new String(decryptedMessage, StandardCharsets.UTF_8));
+    }
+
+    private boolean negotiateSession() {
+        byte[] agentSecret = new byte[AGENT_SECRET_LENGTH];
+        secureRandom.nextBytes(agentSecret);
+        RequestBody body = RequestBody.create(new EncryptedMessage(new SessionRequest(agentSecret).toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+        Request request = new Request.Builder()
+                .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_SESSION_REQUEST)
+                .post(body)
+                .build();
+
+        OkHttpClient client = new OkHttpClient();
+        JSONObject jsonObject;
+        try (Response response = client.newCall(request).execute()) {
+            if (response.code() != 200) {
+                AgentApplication.logger.info("Cannot negotiate session, HTTP response-code: " + response.code());
+                return false;
+            }
+            jsonObject = new JSONObject(cryptoUtility.decryptECC(Base64.getDecoder().decode(new JSONObject(response.body().string()).getString("message").getBytes(StandardCharsets.UTF_8))));
+        } catch (Exception e) {
+            AgentApplication.logger.info("Cannot negotiate session: " + e.getMessage());
+            return false;
+        }
+        String signature = jsonObject.getString("signature");
+        jsonObject.remove("signature");
+        if (!cryptoUtility.verifySignatureECC(jsonObject.toString(), Base64.getDecoder().decode(signature))) {
+            throw new SevereAgentErrorException("Invalid Signature when processing Session Response");
+        }
+
+        String newSessionId = jsonObject.getString("sessionId");
+        // the lifetime is taken relative to the server time, so a clock difference does not shorten or extend the session
+        Duration sessionLifetime = Duration.between(Instant.parse(jsonObject.getString("timestamp")), Instant.parse(jsonObject.getString("expiresAt")));
+        this.sessionKey = cryptoUtility.deriveSessionKey(agentSecret, Base64.getDecoder().decode(jsonObject.getString("serverNonce")), newSessionId);
+        this.sessionId = newSessionId;
+        this.renewalTime = Instant.now().plus(sessionLifetime).minus(RENEWAL_MARGIN);
+        this.sequence = 0;
+        return true;
+    }
+
+    private byte[] createInitializationVector(int direction, long sequence) {
+        return ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(direction).putLong(sequence).array();
+    }
+}
@@ -0,0 +1,89 @@
+package org.codesystem;
+
+import org.codesystem.exceptions.SevereAgentErrorException;
+import org.codesystem.payload.DetailedSystemInformation;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the system information between update checks, so the hardware is only probed periodically
+ * and the full information is only sent to the server when it changed or the server asks for it.
+ */
+public class SystemInformationTracker {
+    private final Supplier<HardwareInfo> hardwareInfoSupplier;
+    private final String agentChecksum;
+    private final Duration refreshInterval;
+    private DetailedSystemInformation detailedSystemInformation;
+    private String fingerprint;
+    private Instant lastRefresh;
+    private String sentFingerprint = null;
+    private boolean systemInformationRequested = false;
+
+    public SystemInformationTracker(DetailedSystemInformation detailedSystemInformation, Supplier<HardwareInfo> hardwareInfoSupplier, String agentChecksum, Duration refreshInterval) {
+        this.hardwareInfoSupplier = hardwareInfoSupplier;
+        this.agentChecksum = agentChecksum;
+        this.refreshInterval = refreshInterval;
+        update(detailedSystemInformation);
+    }
+
+    public String getFingerprint() {
+        refreshIfDue();
+        return fingerprint;
+    }
+
+    /**
+     * Returns the system information if it has to be sent with the next update check, otherwise null.
+     */
+    public DetailedSystemInformation getPendingSystemInformation() {
+        refreshIfDue();
+        if (systemInformationRequested || !fingerprint.equals(sentFingerprint)) {
+            return detailedSystemInformation;
+        }
+        return null;
+    }
+
+    public void markSent(String sentFingerprint) {
+        this.sentFingerprint = sentFingerprint;
+        this.systemInformationRequested = false;
+    }
+
+    public void requestSystemInformation() {
+        this.systemInformationRequested = true;
+    }
+
+    private void refreshIfDue() {
+        if (!Instant.now().isBefore(lastRefresh.plus(refreshInterval))) {
+            update(new DetailedSystemInformation(hardwareInfoSupplier.get()));
+        }
+    }
+
+    private void update(DetailedSystemInformation detailedSystemInformation) {
+        this.detailedSystemInformation = detailedSystemInformation;
+        this.fingerprint = calculateFingerprint(detailedSystemInformation);
+        this.lastRefresh = Instant.now();
+    }
+
+    private String calculateFingerprint(DetailedSystemInformation detailedSystemInformation) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA3-256");
+            // the agent checksum is part of the fingerprint, the server stores it together with the system information
+            messageDigest.update(detailedSystemInformation.toJsonObject().toString().getBytes(StandardCharsets.UTF_8));
+            if (agentChecksum != null) {
+                messageDigest.update(agentChecksum.getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] digest = messageDigest.digest();
+
+            StringBuilder stringBuilder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                stringBuilder.append(String.format("%02x", b));
+            }
+            return stringBuilder.toString();
+        } catch (Exception e) {
+            throw new SevereAgentErrorException("Unable to calculate system information fingerprint: " + e.getMessage());
+        }
+    }
+}
@@ -4,8 +4,10 @@ import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import org.codesystem.exceptions.SevereAgentErrorException;
+import org.codesystem.payload.AgentPatchRequest;
 import org.codesystem.payload.EmptyRequest;
 import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.utility.AutoUpdateUtility;
 import org.codesystem.utility.CryptoUtility;
 import org.codesystem.utility.DownloadUtility;
 import org.codesystem.utility.SystemExitUtility;
@@ -20,6 +22,7 @@ public class UpdateHandler {
     private final DownloadUtility downloadUtility;
     private final CryptoUtility cryptoUtility;
     private final PropertiesLoader propertiesLoader;
+    private final AutoUpdateUtility autoUpdateUtility = new AutoUpdateUtility();
 
     public UpdateHandler(DownloadUtility downloadUtility, CryptoUtility cryptoUtility, PropertiesLoader propertiesLoader) {
         this.downloadUtility = downloadUtility;
@@ -37,6 +40,11 @@ public class UpdateHandler {
             throw new SevereAgentErrorException("Cannot delete old update: " + e.getMessage());
         }
 
+        if (updateWithPatch(checksum)) {
+            SystemExitUtility.exit(0);
+            return;
+        }
+
         MediaType mediaType = MediaType.parse("application/json");
         RequestBody body = RequestBody.create(new EncryptedMessage(new EmptyRequest().toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
         Request request = new Request.Builder()
@@ -63,4 +71,45 @@ public class UpdateHandler {
         }
         SystemExitUtility.exit(0);
     }
+
+    /**
+     * Builds the update from the running Agent and a patch, as most of the jar does not change between two builds.
+     * Returns false if the server has no patch for this build or the result is invalid, the whole Agent is downloaded instead.
+     */
+    private boolean updateWithPatch(String checksum) {
+        if (!Variables.PATH_FILE.toFile().exists()) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(Variables.PATH_PATCH_FILE);
+            RequestBody body = RequestBody.create(new EncryptedMessage(new AgentPatchRequest(cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_AGENT)).toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+            Request request = new Request.Builder()
+                    .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_AGENT_PATCH)
+                    .post(body)
+                    .build();
+            if (!downloadUtility.downloadFile(Variables.PATH_PATCH_FILE, request)) {
+                return false;
+            }
+            autoUpdateUtility.applyPatch(Variables.PATH_FILE, Variables.PATH_PATCH_FILE, PATH_UPDATE_FILE);
+            if (cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_AGENT_UPDATE).equals(checksum)) {
+                AgentApplication.logger.info("Agent updated with a patch of " + Files.size(Variables.PATH_PATCH_FILE) + " bytes");
+                return true;
+            }
+            AgentApplication.logger.warning("Checksum of the patched Agent is invalid, downloading the complete Agent");
+        } catch (Exception e) {
+            AgentApplication.logger.warning("Cannot update with a patch, downloading the complete Agent: " + e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(Variables.PATH_PATCH_FILE);
+            } catch (IOException e) {
+                AgentApplication.logger.warning("Cannot delete patch: " + e.getMessage());
+            }
+        }
+        try {
+            Files.deleteIfExists(PATH_UPDATE_FILE);
+        } catch (IOException e) {
+            throw new SevereAgentErrorException("Cannot delete invalid Agent: " + e.getMessage());
+        }
+        return false;
+    }
 }
@@ -3,12 +3,14 @@ package org.codesystem;
 import okhttp3.MediaType;
 
 import java.io.File;
+import java.time.Duration;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 public class Variables {
     public static final String NAME_DOWNLOAD = "download";
     public static final String NAME_EXTRACTED = "extracted";
+    public static final String NAME_DOWNLOAD_PARTIAL = "download-partial";
 
     // files
     public static final String FILE_NAME_AGENT_UPDATE = "Agent_update.jar";
@@ -17,15 +19,29 @@ public class Variables {
     public static final Path PATH_UPDATE_FILE = Paths.get(FILE_NAME_AGENT_UPDATE);
     public static final Path PATH_BACKUP_FILE = Paths.get(FILE_NAME_AGENT_UPDATE_BACKUP);
     public static final Path PATH_FILE = Paths.get(FILE_NAME_AGENT);
+    public static final String FILE_NAME_AGENT_PATCH = "Agent.patch";
+    public static final Path PATH_PATCH_FILE = Paths.get(FILE_NAME_AGENT_PATCH);
     public static final String FILE_NAME_PACKAGE_ENCRYPTED = NAME_DOWNLOAD + File.separator + "file";
     public static final Path PATH_PACKAGE_ENCRYPTED = Paths.get(FILE_NAME_PACKAGE_ENCRYPTED);
     public static final String FILE_NAME_PACKAGE_DECRYPTED = NAME_DOWNLOAD + File.separator + "file.zip";
+    public static final Path PATH_PACKAGE_PARTIAL = Paths.get(NAME_DOWNLOAD_PARTIAL, "file");
+    public static final Path PATH_DOWNLOAD_JOURNAL = Paths.get(NAME_DOWNLOAD_PARTIAL, "journal.json");
+    public static final String FILE_NAME_DEPLOYMENT_RESULT_OUTBOX = "deployment-results.json";
+    public static final Path PATH_DEPLOYMENT_RESULT_OUTBOX = Paths.get(FILE_NAME_DEPLOYMENT_RESULT_OUTBOX);
+    public static final Path PATH_CHUNK_CACHE = Paths.get("chunk-cache");
+    // the least recently used chunks are removed above this size
+    public static final long CHUNK_CACHE_MAXIMUM_SIZE = 4L * 1024 * 1024 * 1024;
     //urls
     public static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json");
     public static final String URL_AGENT_DOWNLOAD = "/api/agent/communication/agent";
+    public static final String URL_AGENT_PATCH = "/api/agent/communication/agentPatch";
     public static final String URL_UPDATE_CHECK_REQUEST = "/api/agent/communication/checkForUpdates";
-    public static final String URL_PACKAGE_DETAIL = "/api/agent/communication/package";
-    public static final String URL_DEPLOYMENT_RESULT = "/api/agent/communication/deploymentResult";
+    public static final String URL_DEPLOYMENT_MANIFEST = "/api/agent/communication/deploymentManifest";
+    public static final String URL_DEPLOYMENT_RESULTS = "/api/agent/communication/deploymentResults";
+    public static final String URL_CHUNKS = "/api/agent/communication/chunks/";
+    public static final String URL_PACKAGE_DOWNLOAD = "/api/agent/communication/package/";
+    public static final String URL_SESSION_REQUEST = "/api/agent/communication/session";
+    public static final String URL_NOTIFICATIONS = "/api/agent/communication/notifications";
     public static final String URL_REGISTRATION_REQUEST = "/api/agent/registration";
     public static final String URL_REGISTRATION_VERIFICATION_REQUEST = "/api/agent/registration/verify";
 
@@ -37,6 +53,38 @@ public class Variables {
     public static final String PROPERTIES_AGENT_ECC_PUBLIC_KEY = "Agent.ECC.Public-Key";
     public static final String PROPERTIES_AGENT_ECC_PRIVATE_KEY = "Agent.ECC.Private-Key";
     public static final String PROPERTIES_AGENT_UPDATE_INTERVAL = "Agent.Update-Interval";
+    public static final String PROPERTIES_AGENT_PEER_MODE = "Agent.Peer-Mode";
+    public static final String PROPERTIES_AGENT_PEER_PORT = "Agent.Peer-Port";
+    // optional comma separated list of host:port, for networks without multicast
+    public static final String PROPERTIES_AGENT_PEERS = "Agent.Peers";
+    // optional, the JCA provider of the AES-GCM package decryption, "auto" selects the fastest available provider
+    public static final String PROPERTIES_AGENT_CRYPTO_SYMMETRIC_PROVIDER = "Agent.Crypto.Symmetric-Provider";
+    // optional, "false" downloads segmented packages to a file before they are decrypted and extracted
+    public static final String PROPERTIES_AGENT_PACKAGE_STREAMING = "Agent.Package-Streaming";
+
+    // system information
+    public static final Duration SYSTEM_INFORMATION_REFRESH_INTERVAL = Duration.ofHours(1);
+
+    // notifications
+    public static final String NOTIFICATION_EVENT_DEPLOYMENT = "deployment";
+    public static final String NOTIFICATION_EVENT_CONFIGURATION = "configuration";
+    // the server sends a keep-alive every 30 seconds
+    public static final Duration NOTIFICATION_READ_TIMEOUT = Duration.ofSeconds(90);
+    public static final Duration NOTIFICATION_RECONNECT_DELAY = Duration.ofSeconds(30);
+
+    // peer distribution
+    public static final String PEER_DISCOVERY_GROUP = "239.255.79.68";
+    public static final int PEER_DISCOVERY_PORT = 8902;
+    public static final Duration PEER_ANNOUNCEMENT_INTERVAL = Duration.ofSeconds(30);
+    public static final Duration PEER_EXPIRATION = Duration.ofSeconds(90);
+    public static final Duration PEER_TIMEOUT = Duration.ofSeconds(5);
+
+    // relay
+    public static final String ARGUMENT_RELAY = "--relay";
+    public static final int RELAY_DEFAULT_PORT = 8903;
+    public static final long RELAY_DEFAULT_CACHE_SIZE_GB = 20;
+    public static final Path PATH_RELAY_CACHE = Paths.get("relay-cache");
+    public static final Duration RELAY_STATISTICS_INTERVAL = Duration.ofMinutes(15);
 
     private Variables() {
     }
@@ -0,0 +1,6 @@
+package org.codesystem.enums;
+
+public enum DigestAlgorithm {
+    SHA3_512,
+    SHA256_TREE
+}
@@ -0,0 +1,6 @@
+package org.codesystem.enums;
+
+public enum EncryptionFormat {
+    MONOLITHIC,
+    SEGMENTED
+}
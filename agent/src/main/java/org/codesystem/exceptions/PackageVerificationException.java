@@ -0,0 +1,12 @@
+package org.codesystem.exceptions;
+
+import java.io.IOException;
+
+/**
+ * The package content cannot be authenticated. Thrown while reading a package stream, so it is checked to pass through the stream API.
+ */
+public class PackageVerificationException extends IOException {
+    public PackageVerificationException(String errorMessage) {
+        super(errorMessage);
+    }
+}
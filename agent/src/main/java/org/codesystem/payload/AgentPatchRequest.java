@@ -0,0 +1,23 @@
+package org.codesystem.payload;
+
+import org.json.JSONObject;
+
+public class AgentPatchRequest extends EmptyRequest {
+    private final String agentChecksum;
+
+    public AgentPatchRequest(String agentChecksum) {
+        super();
+        this.agentChecksum = agentChecksum;
+    }
+
+    @Override
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
+        if (agentChecksum == null) {
+            jsonObject.put("agentChecksum", JSONObject.NULL);
+        } else {
+            jsonObject.put("agentChecksum", agentChecksum.trim());
+        }
+        return jsonObject;
+    }
+}
@@ -0,0 +1,25 @@
+package org.codesystem.payload;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+
+public class ChunkRequest extends EmptyRequest {
+    private final List<PackageChunk> chunks;
+
+    public ChunkRequest(List<PackageChunk> chunks) {
+        this.chunks = chunks;
+    }
+
+    @Override
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
+        JSONArray jsonArray = new JSONArray();
+        if (chunks != null) {
+            chunks.forEach(packageChunk -> jsonArray.put(packageChunk.getId()));
+        }
+        jsonObject.put("chunks", jsonArray);
+        return jsonObject;
+    }
+}
@@ -0,0 +1,29 @@
+package org.codesystem.payload;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeploymentManifestResponse {
+    private static final String DEPLOYMENTS = "deployments";
+    private final List<PackageDetailResponse> packageDetailResponses = new ArrayList<>();
+
+    public DeploymentManifestResponse(JSONObject jsonObject) {
+        if (jsonObject.isNull(DEPLOYMENTS) || !(jsonObject.get(DEPLOYMENTS) instanceof JSONArray)) {
+            return;
+        }
+        JSONArray deployments = jsonObject.getJSONArray(DEPLOYMENTS);
+        for (int i = 0; i < deployments.length(); i++) {
+            PackageDetailResponse packageDetailResponse = new PackageDetailResponse(deployments.getJSONObject(i));
+            if (packageDetailResponse.getDeploymentUUID() != null) {
+                packageDetailResponses.add(packageDetailResponse);
+            }
+        }
+    }
+
+    public List<PackageDetailResponse> getPackageDetailResponses() {
+        return packageDetailResponses;
+    }
+}
@@ -1,10 +1,7 @@
 package org.codesystem.payload;
 
-import org.codesystem.utility.CryptoUtility;
 import org.json.JSONObject;
 
-import java.util.Base64;
-
 public class DeploymentResult extends EmptyRequest {
     private final String deploymentUUID;
     private final String resultCode;
@@ -14,13 +11,29 @@ public class DeploymentResult extends EmptyRequest {
         this.resultCode = resultCode;
     }
 
+    public String getDeploymentUUID() {
+        return deploymentUUID;
+    }
+
+    public String getResultCode() {
+        return resultCode;
+    }
+
     @Override
-    public JSONObject toJsonObject(CryptoUtility cryptoUtility) {
-        if (cryptoUtility == null) {
-            return null;
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
+        JSONObject resultJsonObject = toResultJsonObject();
+        for (String key : resultJsonObject.keySet()) {
+            jsonObject.put(key, resultJsonObject.get(key));
         }
+        return jsonObject;
+    }
+
+    /**
+     * Returns the result without timestamp, as it is stored in the outbox and sent in a batch.
+     */
+    public JSONObject toResultJsonObject() {
         JSONObject jsonObject = new JSONObject();
-        jsonObject.put("timestamp", this.timestamp);
         if (deploymentUUID == null || deploymentUUID.isBlank()) {
             jsonObject.put("deploymentUUID", JSONObject.NULL);
         } else {
@@ -31,8 +44,6 @@ public class DeploymentResult extends EmptyRequest {
         } else {
             jsonObject.put("resultCode", this.resultCode.trim());
         }
-        String signature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(jsonObject.toString()));
-        jsonObject.put("signature", signature);
         return jsonObject;
     }
 }
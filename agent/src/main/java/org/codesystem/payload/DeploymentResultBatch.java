@@ -0,0 +1,25 @@
+package org.codesystem.payload;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+
+public class DeploymentResultBatch extends EmptyRequest {
+    private final List<DeploymentResult> deploymentResults;
+
+    public DeploymentResultBatch(List<DeploymentResult> deploymentResults) {
+        this.deploymentResults = deploymentResults;
+    }
+
+    @Override
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
+        JSONArray jsonArray = new JSONArray();
+        if (deploymentResults != null) {
+            deploymentResults.forEach(deploymentResult -> jsonArray.put(deploymentResult.toResultJsonObject()));
+        }
+        jsonObject.put("deploymentResults", jsonArray);
+        return jsonObject;
+    }
+}
@@ -17,10 +17,18 @@ public class EmptyRequest {
         if (cryptoUtility == null) {
             return null;
         }
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("timestamp", this.timestamp);
+        JSONObject jsonObject = toUnsignedJsonObject();
         String signature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(jsonObject.toString()));
         jsonObject.put("signature", signature);
         return jsonObject;
     }
+
+    /**
+     * Messages sent through a session are authenticated by the session key, so they are not signed.
+     */
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("timestamp", this.timestamp);
+        return jsonObject;
+    }
 }
@@ -0,0 +1,19 @@
+package org.codesystem.payload;
+
+public class PackageChunk {
+    private final String id;
+    private final long size;
+
+    public PackageChunk(String id, long size) {
+        this.id = id;
+        this.size = size;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
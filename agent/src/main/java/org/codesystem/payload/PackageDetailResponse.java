@@ -1,22 +1,35 @@
 package org.codesystem.payload;
 
+import org.codesystem.enums.DigestAlgorithm;
+import org.codesystem.enums.EncryptionFormat;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 
 public class PackageDetailResponse {
     private static final String DEPLOYMENT_UUID = "deploymentUUID";
     private static final String ENCRYPTION_TOKEN = "encryptionToken";
     private static final String INITIALIZATION_VECTOR = "initializationVector";
+    private static final String ENCRYPTION_FORMAT = "encryptionFormat";
     private static final String CHECKSUM_PLAINTEXT = "checksumPlaintext";
     private static final String CHECKSUM_ENCRYPTED = "checksumEncrypted";
+    private static final String DIGEST_ALGORITHM = "digestAlgorithm";
+    private static final String CHUNK_ENCRYPTION_TOKEN = "chunkEncryptionToken";
+    private static final String CHUNKS = "chunks";
     private final String deploymentUUID;
     private final SecretKey encryptionToken;
     private final byte[] initializationVector;
+    private final EncryptionFormat encryptionFormat;
     private final String checksumPlaintext;
     private final String checksumEncrypted;
+    private final DigestAlgorithm digestAlgorithm;
+    private final SecretKey chunkEncryptionToken;
+    private final List<PackageChunk> chunks = new ArrayList<>();
 
     public PackageDetailResponse(JSONObject jsonObject) {
         if (jsonObject.isNull(DEPLOYMENT_UUID) || jsonObject.getString(DEPLOYMENT_UUID).isBlank()) {
@@ -34,6 +47,12 @@ public class PackageDetailResponse {
         } else {
             this.initializationVector = Base64.getDecoder().decode(jsonObject.getString(INITIALIZATION_VECTOR));
         }
+        // servers without the segmented format do not send the format
+        if (!jsonObject.isNull(ENCRYPTION_FORMAT) && jsonObject.getString(ENCRYPTION_FORMAT).trim().equals(EncryptionFormat.SEGMENTED.name())) {
+            this.encryptionFormat = EncryptionFormat.SEGMENTED;
+        } else {
+            this.encryptionFormat = EncryptionFormat.MONOLITHIC;
+        }
         if (jsonObject.isNull(CHECKSUM_PLAINTEXT) || jsonObject.getString(CHECKSUM_PLAINTEXT).isBlank()) {
             this.checksumPlaintext = null;
         } else {
@@ -44,6 +63,23 @@ public class PackageDetailResponse {
         } else {
             this.checksumEncrypted = jsonObject.getString(CHECKSUM_ENCRYPTED).trim();
         }
+        // servers without the tree hash do not send the algorithm
+        if (!jsonObject.isNull(DIGEST_ALGORITHM) && jsonObject.getString(DIGEST_ALGORITHM).trim().equals(DigestAlgorithm.SHA256_TREE.name())) {
+            this.digestAlgorithm = DigestAlgorithm.SHA256_TREE;
+        } else {
+            this.digestAlgorithm = DigestAlgorithm.SHA3_512;
+        }
+        if (jsonObject.isNull(CHUNK_ENCRYPTION_TOKEN) || jsonObject.getString(CHUNK_ENCRYPTION_TOKEN).isBlank()) {
+            this.chunkEncryptionToken = null;
+        } else {
+            this.chunkEncryptionToken = new SecretKeySpec(Base64.getDecoder().decode(jsonObject.getString(CHUNK_ENCRYPTION_TOKEN)), "AES");
+        }
+        if (!jsonObject.isNull(CHUNKS) && jsonObject.get(CHUNKS) instanceof JSONArray jsonArray) {
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject chunk = jsonArray.getJSONObject(i);
+                chunks.add(new PackageChunk(chunk.getString("id"), chunk.getLong("size")));
+            }
+        }
     }
 
     public String getDeploymentUUID() {
@@ -58,6 +94,14 @@ public class PackageDetailResponse {
         return initializationVector;
     }
 
+    public EncryptionFormat getEncryptionFormat() {
+        return encryptionFormat;
+    }
+
+    public DigestAlgorithm getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+
     public String getChecksumPlaintext() {
         return checksumPlaintext;
     }
@@ -65,4 +109,12 @@ public class PackageDetailResponse {
     public String getChecksumEncrypted() {
         return checksumEncrypted;
     }
+
+    public SecretKey getChunkEncryptionToken() {
+        return chunkEncryptionToken;
+    }
+
+    public List<PackageChunk> getChunks() {
+        return chunks;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package org.codesystem.payload;
+
+import org.json.JSONObject;
+
+import java.util.Base64;
+
+public class SessionRequest extends EmptyRequest {
+    private final byte[] agentSecret;
+
+    public SessionRequest(byte[] agentSecret) {
+        super();
+        this.agentSecret = agentSecret;
+    }
+
+    @Override
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
+        if (agentSecret == null) {
+            jsonObject.put("agentSecret", JSONObject.NULL);
+        } else {
+            jsonObject.put("agentSecret", Base64.getEncoder().encodeToString(agentSecret));
+        }
+        return jsonObject;
+    }
+}
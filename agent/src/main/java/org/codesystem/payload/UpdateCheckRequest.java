@@ -1,27 +1,22 @@
 package org.codesystem.payload;
 
-import org.codesystem.utility.CryptoUtility;
 import org.json.JSONObject;
 
-import java.util.Base64;
-
 public class UpdateCheckRequest extends EmptyRequest {
     private final DetailedSystemInformation detailedSystemInformation;
     private final String agentChecksum;
+    private final String systemInformationFingerprint;
 
-    public UpdateCheckRequest(String agentChecksum, DetailedSystemInformation detailedSystemInformation) {
+    public UpdateCheckRequest(String agentChecksum, DetailedSystemInformation detailedSystemInformation, String systemInformationFingerprint) {
         super();
         this.detailedSystemInformation = detailedSystemInformation;
         this.agentChecksum = agentChecksum;
+        this.systemInformationFingerprint = systemInformationFingerprint;
     }
 
     @Override
-    public JSONObject toJsonObject(CryptoUtility cryptoUtility) {
-        if (cryptoUtility == null) {
-            return null;
-        }
-        JSONObject jsonObject = new JSONObject();
-        jsonObject.put("timestamp", this.timestamp);
+    public JSONObject toUnsignedJsonObject() {
+        JSONObject jsonObject = super.toUnsignedJsonObject();
         if (detailedSystemInformation == null) {
             jsonObject.put("systemInformation", JSONObject.NULL);
         } else {
@@ -32,8 +27,11 @@ public class UpdateCheckRequest extends EmptyRequest {
         } else {
             jsonObject.put("agentChecksum", agentChecksum.trim());
         }
-        String signature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(jsonObject.toString()));
-        jsonObject.put("signature", signature);
+        if (systemInformationFingerprint == null) {
+            jsonObject.put("systemInformationFingerprint", JSONObject.NULL);
+        } else {
+            jsonObject.put("systemInformationFingerprint", systemInformationFingerprint);
+        }
         return jsonObject;
     }
 }
@@ -6,9 +6,11 @@ public class UpdateCheckResponse {
     private static final String UPDATE_INTERVAL = "updateInterval";
     private static final String DEPLOYMENT_AVAILABLE = "deploymentAvailable";
     private static final String AGENT_CHECKSUM = "agentChecksum";
+    private static final String SYSTEM_INFORMATION_REQUIRED = "systemInformationRequired";
     private final int updateInterval;
     private final boolean deploymentAvailable;
     private final String agentChecksum;
+    private final boolean systemInformationRequired;
 
     public UpdateCheckResponse(JSONObject jsonObject) {
         if (jsonObject.isNull(UPDATE_INTERVAL) || !(jsonObject.get(UPDATE_INTERVAL) instanceof Integer || jsonObject.get(UPDATE_INTERVAL) instanceof Long)) {
@@ -26,6 +28,11 @@ public class UpdateCheckResponse {
         } else {
             this.agentChecksum = jsonObject.getString(AGENT_CHECKSUM).trim();
         }
+        if (jsonObject.isNull(SYSTEM_INFORMATION_REQUIRED) || !(jsonObject.get(SYSTEM_INFORMATION_REQUIRED) instanceof Boolean)) {
+            this.systemInformationRequired = false;
+        } else {
+            this.systemInformationRequired = jsonObject.getBoolean(SYSTEM_INFORMATION_REQUIRED);
+        }
     }
 
     public int getUpdateInterval() {
@@ -39,4 +46,8 @@ public class UpdateCheckResponse {
     public String getAgentChecksum() {
         return agentChecksum;
     }
+
+    public boolean isSystemInformationRequired() {
+        return systemInformationRequired;
+    }
 }
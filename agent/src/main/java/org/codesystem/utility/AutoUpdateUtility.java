@@ -3,10 +3,26 @@ package org.codesystem.utility;
 import org.codesystem.Variables;
 import org.codesystem.exceptions.SevereAgentErrorException;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
 
 public class AutoUpdateUtility {
+    // patch format of the server (BinaryDelta)
+    private static final int PATCH_MAGIC = 0x4F504444;
+    private static final int PATCH_END = 0;
+    private static final int PATCH_COPY = 1;
+    private static final int PATCH_INSERT = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     public void updateApplication() {
         if (!Variables.PATH_UPDATE_FILE.toFile().exists()) {
@@ -42,4 +58,56 @@ public class AutoUpdateUtility {
         SystemExitUtility.exit(0);
     }
 
+    /**
+     * Rebuilds the new Agent from the current Agent and a patch created by the server.
+     * The patch consists of ranges copied from the current Agent and inserted bytes, the caller has to verify the checksum of the result.
+     */
+    public void applyPatch(Path baseFile, Path patchFile, Path targetFile) throws IOException {
+        try (FileChannel baseChannel = FileChannel.open(baseFile, StandardOpenOption.READ);
+             DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(patchFile))));
+             OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(targetFile))) {
+            if (dataInputStream.readInt() != PATCH_MAGIC) {
+                throw new IOException("Invalid patch");
+            }
+            long targetLength = dataInputStream.readLong();
+            WritableByteChannel targetChannel = Channels.newChannel(outputStream);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long written = 0;
+            int instruction;
+            while ((instruction = dataInputStream.readByte()) != PATCH_END) {
+                if (instruction == PATCH_COPY) {
+                    long offset = dataInputStream.readLong();
+                    int length = dataInputStream.readInt();
+                    if (offset < 0 || length < 0 || offset + length > baseChannel.size()) {
+                        throw new IOException("Invalid patch range");
+                    }
+                    long remaining = length;
+                    while (remaining > 0) {
+                        long transferred = baseChannel.transferTo(offset + length - remaining, remaining, targetChannel);
+                        if (transferred <= 0) {
+                            throw new IOException("Incomplete Agent");
+                        }
+                        remaining -= transferred;
+                    }
+                    written += length;
+                } else if (instruction == PATCH_INSERT) {
+                    int remaining = dataInputStream.readInt();
+                    written += remaining;
+                    while (remaining > 0) {
+                        int bytesRead = dataInputStream.read(buffer, 0, Math.min(buffer.length, remaining));
+                        if (bytesRead < 0) {
+                            throw new IOException("Incomplete patch");
+                        }
+                        outputStream.write(buffer, 0, bytesRead);
+                        remaining -= bytesRead;
+                    }
+                } else {
+                    throw new IOException("Invalid patch instruction: " + instruction);
+                }
+            }
+            if (written != targetLength) {
+                throw new IOException("Invalid patch length");
+            }
+        }
+    }
 }
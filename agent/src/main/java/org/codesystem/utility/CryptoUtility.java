@@ -1,28 +1,60 @@
 package org.codesystem.utility;
 
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.IESParameterSpec;
 import org.codesystem.PropertiesLoader;
 import org.codesystem.Variables;
+import org.codesystem.enums.DigestAlgorithm;
+import org.codesystem.exceptions.PackageVerificationException;
 import org.codesystem.exceptions.SevereAgentErrorException;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.*;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.IntStream;
 
 public class CryptoUtility {
+    private static final int SESSION_KEY_LENGTH = 32;
+    private static final String SESSION_KEY_INFO = "OPD-Agent-Session:";
+    private static final int CHUNK_INITIALIZATION_VECTOR_LENGTH = 12;
+    private static final int CHECKSUM_BUFFER_SIZE = 1024 * 1024;
+    // segmented package format: header (magic, version, segment size, nonce prefix) followed by the AES-GCM encrypted segments
+    private static final int SEGMENT_HEADER_LENGTH = 16;
+    private static final int SEGMENT_MAGIC = 0x4F504453;
+    private static final byte SEGMENT_FORMAT_VERSION = 1;
+    private static final int SEGMENT_NONCE_PREFIX_LENGTH = 7;
+    private static final int MAXIMUM_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int GCM_TAG_LENGTH = 16;
+    private static final int SEGMENT_BATCH_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    public static final String SYMMETRIC_PROVIDER_AUTO = "auto";
+    private static final String AES_GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    // all providers produce the same AES-GCM output, SunJCE is preferred as it uses the AES and carry-less multiplication instructions of the CPU
+    private static final List<String> PREFERRED_SYMMETRIC_PROVIDERS = List.of("SunJCE", BouncyCastleProvider.PROVIDER_NAME);
     private final Cipher cipherEcc;
     private final Cipher cipherAES;
+    private final String symmetricProvider;
 
     private final Signature signature;
     private final PrivateKey privateKeyAgent;
@@ -39,7 +71,9 @@ public class CryptoUtility {
         try {
             KeyFactory keyFactory = KeyFactory.getInstance("EC");
             this.cipherEcc = Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
-            this.cipherAES = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+            // the monolithic format is decrypted as a stream, which SunJCE only supports by buffering the whole file
+            this.cipherAES = Cipher.getInstance(AES_GCM_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
+            this.symmetricProvider = resolveSymmetricProvider(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_CRYPTO_SYMMETRIC_PROVIDER));
             this.signature = Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
 
             this.privateKeyAgent = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_ECC_PRIVATE_KEY))));
@@ -54,6 +88,37 @@ public class CryptoUtility {
         }
     }
 
+    /**
+     * Uses the configured provider or, if none is configured, the fastest available one.
+     */
+    private String resolveSymmetricProvider(String configuredProvider) {
+        if (configuredProvider == null || configuredProvider.isBlank() || configuredProvider.trim().equalsIgnoreCase(SYMMETRIC_PROVIDER_AUTO)) {
+            for (String provider : PREFERRED_SYMMETRIC_PROVIDERS) {
+                try {
+                    Cipher.getInstance(AES_GCM_TRANSFORMATION, provider);
+                    return provider;
+                } catch (GeneralSecurityException e) {
+                    // try the next provider
+                }
+            }
+            throw new SevereAgentErrorException("No symmetric cipher provider is available");
+        }
+        try {
+            Cipher.getInstance(AES_GCM_TRANSFORMATION, configuredProvider.trim());
+        } catch (GeneralSecurityException e) {
+            throw new SevereAgentErrorException("The symmetric cipher provider is not available: '" + configuredProvider + "'");
+        }
+        return configuredProvider.trim();
+    }
+
+    public String getSymmetricProvider() {
+        return symmetricProvider;
+    }
+
+    private Cipher createCipherAES() throws GeneralSecurityException {
+        return Cipher.getInstance(AES_GCM_TRANSFORMATION, symmetricProvider);
+    }
+
     public String decryptECC(byte[] message) {
         byte[] decryptedMessage;
         try {
@@ -98,6 +163,39 @@ public class CryptoUtility {
         }
     }
 
+    public SecretKey deriveSessionKey(byte[] agentSecret, byte[] serverNonce, String sessionId) {
+        HKDFBytesGenerator hkdfBytesGenerator = new HKDFBytesGenerator(new SHA256Digest());
+        hkdfBytesGenerator.init(new HKDFParameters(agentSecret, serverNonce, (SESSION_KEY_INFO + sessionId).getBytes(StandardCharsets.UTF_8)));
+        byte[] sessionKey = new byte[SESSION_KEY_LENGTH];
+        hkdfBytesGenerator.generateBytes(sessionKey, 0, sessionKey.length);
+        return new SecretKeySpec(sessionKey, "AES");
+    }
+
+    public byte[] encryptSession(byte[] message, SecretKey sessionKey, byte[] initializationVector, byte[] associatedData) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, new GCMParameterSpec(128, initializationVector));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(message);
+        } catch (Exception e) {
+            throw new SevereAgentErrorException("Unable to encrypt the session message: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns null if the message cannot be authenticated, so the caller can fall back to a new session.
+     */
+    public byte[] decryptSession(byte[] message, SecretKey sessionKey, byte[] initializationVector, byte[] associatedData) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, sessionKey, new GCMParameterSpec(128, initializationVector));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(message);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public boolean decryptFile(SecretKey secretKey, byte[] initializationVector, File encryptedFile, Path targetPath) {
         Cipher cipher = cipherAES;
         try (
@@ -118,25 +216,226 @@ public class CryptoUtility {
         return true;
     }
 
+    /**
+     * Decrypts a package in the segmented format of the server. The segments are authenticated one after another (several in parallel),
+     * so a corrupt segment is rejected before the rest of the file is processed and only authenticated plaintext is written.
+     * The header is authenticated with every segment and its nonce prefix has to match the signed initialization vector.
+     */
+    public boolean decryptSegmentedFile(SecretKey secretKey, byte[] initializationVector, File encryptedFile, Path targetPath) {
+        try (InputStream inputStream = Files.newInputStream(encryptedFile.toPath());
+             OutputStream outputStream = Files.newOutputStream(targetPath)) {
+            byte[] header = inputStream.readNBytes(SEGMENT_HEADER_LENGTH);
+            int encryptedSegmentSize = readSegmentHeader(header, initializationVector) + GCM_TAG_LENGTH;
+            long remainingSize = Files.size(encryptedFile.toPath()) - SEGMENT_HEADER_LENGTH;
+            long segmentCount = (remainingSize + encryptedSegmentSize - 1) / encryptedSegmentSize;
+            // even an empty package has one segment with its tag, a file with only the header is truncated
+            if (segmentCount < 1 || remainingSize - (segmentCount - 1) * encryptedSegmentSize < GCM_TAG_LENGTH) {
+                return false;
+            }
+            int maximumBatchSize = (int) Math.min(SEGMENT_BATCH_SIZE, segmentCount);
+            for (long firstSegment = 0; firstSegment < segmentCount; firstSegment += maximumBatchSize) {
+                int batchSize = (int) Math.min(maximumBatchSize, segmentCount - firstSegment);
+                byte[][] encryptedSegments = new byte[batchSize][];
+                for (int i = 0; i < batchSize; i++) {
+                    encryptedSegments[i] = inputStream.readNBytes(encryptedSegmentSize);
+                }
+                long batchStart = firstSegment;
+                byte[][] segments = new byte[batchSize][];
+                IntStream.range(0, batchSize).parallel().forEach(i -> segments[i] = decryptSegment(secretKey, header, batchStart + i, batchStart + i == segmentCount - 1, encryptedSegments[i]));
+                for (byte[] segment : segments) {
+                    if (segment == null) {
+                        return false;
+                    }
+                    outputStream.write(segment);
+                }
+            }
+        } catch (Exception e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Decrypts a package in the segmented format while it is read from the stream, e.g. during the download.
+     * Only authenticated segments are returned, a segment that cannot be authenticated results in a PackageVerificationException.
+     * The last segment is recognized by reading one segment ahead, so the stream does not need to know the size of the package.
+     */
+    public InputStream decryptSegmentedStream(SecretKey secretKey, byte[] initializationVector, InputStream encryptedStream) throws IOException {
+        byte[] header = encryptedStream.readNBytes(SEGMENT_HEADER_LENGTH);
+        try {
+            return new SegmentedDecryptionInputStream(secretKey, header, readSegmentHeader(header, initializationVector) + GCM_TAG_LENGTH, encryptedStream);
+        } catch (IllegalArgumentException e) {
+            throw new PackageVerificationException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the size of the plaintext segments.
+     */
+    private int readSegmentHeader(byte[] header, byte[] expectedNoncePrefix) {
+        if (header.length != SEGMENT_HEADER_LENGTH) {
+            throw new IllegalArgumentException("Incomplete segment header");
+        }
+        ByteBuffer byteBuffer = ByteBuffer.wrap(header);
+        int magic = byteBuffer.getInt();
+        byte version = byteBuffer.get();
+        int segmentSize = byteBuffer.getInt();
+        byte[] noncePrefix = new byte[SEGMENT_NONCE_PREFIX_LENGTH];
+        byteBuffer.get(noncePrefix);
+        if (magic != SEGMENT_MAGIC || version != SEGMENT_FORMAT_VERSION || segmentSize <= 0 || segmentSize > MAXIMUM_SEGMENT_SIZE || !MessageDigest.isEqual(noncePrefix, expectedNoncePrefix)) {
+            throw new IllegalArgumentException("Invalid segment header");
+        }
+        return segmentSize;
+    }
+
+    /**
+     * The nonce contains the index of the segment and marks the last segment, so reordered, removed or appended segments fail the authentication.
+     * Returns null if the segment cannot be authenticated.
+     */
+    private byte[] decryptSegment(SecretKey secretKey, byte[] header, long segmentIndex, boolean lastSegment, byte[] encryptedSegment) {
+        try {
+            byte[] nonce = ByteBuffer.allocate(12)
+                    .put(header, SEGMENT_HEADER_LENGTH - SEGMENT_NONCE_PREFIX_LENGTH, SEGMENT_NONCE_PREFIX_LENGTH)
+                    .putInt((int) segmentIndex)
+                    .put(lastSegment ? (byte) 1 : (byte) 0)
+                    .array();
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+            return cipher.doFinal(encryptedSegment);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The initialization vector is stored in front of the encrypted chunk. Returns null if the chunk cannot be authenticated.
+     */
+    public byte[] decryptChunk(byte[] encryptedChunk, SecretKey chunkEncryptionToken) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, chunkEncryptionToken, new GCMParameterSpec(128, encryptedChunk, 0, CHUNK_INITIALIZATION_VECTOR_LENGTH));
+            return cipher.doFinal(encryptedChunk, CHUNK_INITIALIZATION_VECTOR_LENGTH, encryptedChunk.length - CHUNK_INITIALIZATION_VECTOR_LENGTH);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public String calculateChecksum(byte[] data) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA3-512").digest(data));
+        } catch (Exception e) {
+            throw new SevereAgentErrorException("Unable to calculate checksum: " + e.getMessage());
+        }
+    }
+
     public String calculateChecksumOfFile(String filePath) {
-        try (FileInputStream fileInputStream = new FileInputStream(filePath)) {
-            MessageDigest messageDigest;
-            messageDigest = MessageDigest.getInstance("SHA3-512");
+        return calculateChecksumOfFile(filePath, DigestAlgorithm.SHA3_512);
+    }
 
-            byte[] buffer = new byte[4096];
+    public String calculateChecksumOfFile(String filePath, DigestAlgorithm digestAlgorithm) {
+        try (FileInputStream fileInputStream = new FileInputStream(filePath)) {
+            PackageDigest packageDigest = PackageDigest.create(digestAlgorithm);
+            byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
             int bytesRead;
             while ((bytesRead = fileInputStream.read(buffer)) != -1) {
-                messageDigest.update(buffer, 0, bytesRead);
-            }
-            byte[] checkSum = messageDigest.digest();
-
-            StringBuilder stringBuilder = new StringBuilder(checkSum.length * 2);
-            for (byte b : checkSum) {
-                stringBuilder.append(String.format("%02x", b));
+                packageDigest.update(buffer, 0, bytesRead);
             }
-            return stringBuilder.toString();
+            return packageDigest.digestHex();
         } catch (Exception e) {
             throw new SevereAgentErrorException("Unable to calculate checksum: " + e.getMessage());
         }
     }
+
+    private String toHex(byte[] checkSum) {
+        return HexFormat.of().formatHex(checkSum);
+    }
+
+    private final class SegmentedDecryptionInputStream extends InputStream {
+        private final SecretKey secretKey;
+        private final byte[] header;
+        private final int encryptedSegmentSize;
+        private final InputStream encryptedStream;
+        private byte[] nextEncryptedSegment = null;
+        private long nextSegmentIndex = 0;
+        private boolean lastSegmentRead = false;
+        private byte[][] segments = new byte[0][];
+        private int segmentIndex = 0;
+        private int segmentPosition = 0;
+
+        private SegmentedDecryptionInputStream(SecretKey secretKey, byte[] header, int encryptedSegmentSize, InputStream encryptedStream) {
+            this.secretKey = secretKey;
+            this.header = header;
+            this.encryptedSegmentSize = encryptedSegmentSize;
+            this.encryptedStream = encryptedStream;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] singleByte = new byte[1];
+            return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (segmentIndex == segments.length || segmentPosition == segments[segmentIndex].length) {
+                if (segmentIndex < segments.length) {
+                    segmentIndex++;
+                    segmentPosition = 0;
+                    continue;
+                }
+                if (!decryptNextBatch()) {
+                    return -1;
+                }
+            }
+            int readLength = Math.min(length, segments[segmentIndex].length - segmentPosition);
+            System.arraycopy(segments[segmentIndex], segmentPosition, buffer, offset, readLength);
+            segmentPosition += readLength;
+            return readLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            encryptedStream.close();
+        }
+
+        private boolean decryptNextBatch() throws IOException {
+            if (lastSegmentRead) {
+                return false;
+            }
+            List<byte[]> encryptedSegments = new ArrayList<>();
+            while (encryptedSegments.size() < SEGMENT_BATCH_SIZE && !lastSegmentRead) {
+                byte[] encryptedSegment = nextEncryptedSegment != null ? nextEncryptedSegment : encryptedStream.readNBytes(encryptedSegmentSize);
+                nextEncryptedSegment = null;
+                if (encryptedSegment.length < GCM_TAG_LENGTH) {
+                    throw new PackageVerificationException("Incomplete segment " + (nextSegmentIndex + encryptedSegments.size()));
+                }
+                if (encryptedSegment.length < encryptedSegmentSize) {
+                    lastSegmentRead = true;
+                } else {
+                    nextEncryptedSegment = encryptedStream.readNBytes(encryptedSegmentSize);
+                    lastSegmentRead = nextEncryptedSegment.length == 0;
+                }
+                encryptedSegments.add(encryptedSegment);
+            }
+            long batchStart = nextSegmentIndex;
+            int batchSize = encryptedSegments.size();
+            boolean lastBatch = lastSegmentRead;
+            byte[][] decryptedSegments = new byte[batchSize][];
+            IntStream.range(0, batchSize).parallel().forEach(i -> decryptedSegments[i] = decryptSegment(secretKey, header, batchStart + i, lastBatch && i == batchSize - 1, encryptedSegments.get(i)));
+            for (int i = 0; i < batchSize; i++) {
+                if (decryptedSegments[i] == null) {
+                    throw new PackageVerificationException("Segment " + (batchStart + i) + " cannot be authenticated");
+                }
+            }
+            nextSegmentIndex += batchSize;
+            segments = decryptedSegments;
+            segmentIndex = 0;
+            segmentPosition = 0;
+            return true;
+        }
+    }
 }
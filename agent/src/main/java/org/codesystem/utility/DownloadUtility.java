@@ -11,9 +11,12 @@ import org.codesystem.exceptions.DownloadException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
 public class DownloadUtility {
+    private static final int MAXIMUM_RESUME_ATTEMPTS = 3;
+
     /**
      * returns true if the file was successfully downloaded. Otherwise, false is returned.
      * Missing folders will be created.
@@ -50,4 +53,52 @@ public class DownloadUtility {
         }
         return true;
     }
+
+    /**
+     * Downloads the file into the target and continues where a previous attempt stopped, if the target is already partially present.
+     * A broken connection is resumed a few times and the partial file is kept afterward, so a later attempt can continue.
+     * The caller has to verify the complete file, as the server might have ignored the requested range.
+     * returns true if the file was completely downloaded and false if the server refused the download.
+     */
+    public boolean resumeDownload(Path targetFileLocation, Supplier<Request> requestSupplier) {
+        if (targetFileLocation == null || requestSupplier == null) {
+            return false;
+        }
+        if (targetFileLocation.toFile().getParentFile() != null && !targetFileLocation.toFile().getParentFile().exists() && !targetFileLocation.toFile().getParentFile().mkdirs()) {
+            return false;
+        }
+
+        OkHttpClient client = new OkHttpClient();
+        IOException lastException = null;
+        for (int attempt = 0; attempt < MAXIMUM_RESUME_ATTEMPTS; attempt++) {
+            long offset = targetFileLocation.toFile().length();
+            Request request = requestSupplier.get();
+            if (offset > 0) {
+                request = request.newBuilder().header("Range", "bytes=" + offset + "-").build();
+            }
+            try (Response response = client.newCall(request).execute()) {
+                if (response.code() == 416) {
+                    // nothing left to download
+                    return true;
+                }
+                boolean resumed = response.code() == 206 && response.header("Content-Range", "").startsWith("bytes " + offset + "-");
+                if (response.code() != 200 && !resumed) {
+                    Files.deleteIfExists(targetFileLocation);
+                    AgentApplication.logger.log(Level.WARNING, "Error during download. Response Code: {0}", response.code());
+                    return false;
+                }
+                if (offset > 0) {
+                    AgentApplication.logger.log(Level.INFO, resumed ? "Resuming download at byte {0}" : "Server ignored the range, restarting download from byte 0 instead of {0}", offset);
+                }
+                try (BufferedSink bufferedSink = Okio.buffer(resumed ? Okio.appendingSink(targetFileLocation) : Okio.sink(targetFileLocation))) {
+                    bufferedSink.writeAll(response.body().source());
+                }
+                return true;
+            } catch (IOException e) {
+                lastException = e;
+                AgentApplication.logger.log(Level.WARNING, "Download interrupted: {0}", e.getMessage());
+            }
+        }
+        throw new DownloadException("Unable to download file: " + lastException.getMessage());
+    }
 }
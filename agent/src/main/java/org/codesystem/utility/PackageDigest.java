@@ -0,0 +1,187 @@
+package org.codesystem.utility;
+
+import org.codesystem.enums.DigestAlgorithm;
+import org.codesystem.exceptions.SevereAgentErrorException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Incremental checksum of a package, calculates the same checksums as the server.
+ * The tree hash hashes 1 MiB leaves in parallel with SHA-256 and combines the leaf hashes to a Merkle tree.
+ */
+public abstract class PackageDigest {
+    static final int LEAF_SIZE = 1024 * 1024;
+
+    public static PackageDigest create(DigestAlgorithm digestAlgorithm) {
+        if (digestAlgorithm == DigestAlgorithm.SHA256_TREE) {
+            return new TreeDigest();
+        }
+        try {
+            return new SingleDigest(MessageDigest.getInstance("SHA3-512"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new SevereAgentErrorException("Digest algorithm not available: " + e.getMessage());
+        }
+    }
+
+    public abstract void update(byte[] data, int offset, int length);
+
+    public void update(byte[] data) {
+        update(data, 0, data.length);
+    }
+
+    /**
+     * Completes the calculation, the digest cannot be updated afterwards.
+     */
+    public abstract byte[] digest();
+
+    public String digestHex() {
+        return HexFormat.of().formatHex(digest());
+    }
+
+    /**
+     * Updates the digest with everything read from the source.
+     */
+    public InputStream asInputStream(InputStream source) {
+        return new FilterInputStream(source) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b != -1) {
+                    update(new byte[]{(byte) b});
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int readLength = super.read(b, off, len);
+                if (readLength > 0) {
+                    update(b, off, readLength);
+                }
+                return readLength;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // skipped bytes have to be part of the digest as well
+                return n <= 0 ? 0 : Math.max(0, read(new byte[(int) Math.min(n, 8192)]));
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    private static final class SingleDigest extends PackageDigest {
+        private final MessageDigest messageDigest;
+
+        private SingleDigest(MessageDigest messageDigest) {
+            this.messageDigest = messageDigest;
+        }
+
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            messageDigest.update(data, offset, length);
+        }
+
+        @Override
+        public byte[] digest() {
+            return messageDigest.digest();
+        }
+    }
+
+    private static final class TreeDigest extends PackageDigest {
+        private static final byte LEAF_PREFIX = 0;
+        private static final byte NODE_PREFIX = 1;
+        // leaves hashed in parallel, this limits the memory usage to a few leaves per processor
+        private static final int LEAF_BATCH_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private final byte[][] leaves = new byte[LEAF_BATCH_SIZE][];
+        private final List<byte[]> leafHashes = new ArrayList<>();
+        private int currentLeaf = 0;
+        private int currentLeafLength = 0;
+
+        @Override
+        public void update(byte[] data, int offset, int length) {
+            while (length > 0) {
+                if (currentLeafLength == LEAF_SIZE) {
+                    nextLeaf();
+                }
+                if (leaves[currentLeaf] == null) {
+                    leaves[currentLeaf] = new byte[LEAF_SIZE];
+                }
+                int copyLength = Math.min(length, LEAF_SIZE - currentLeafLength);
+                System.arraycopy(data, offset, leaves[currentLeaf], currentLeafLength, copyLength);
+                currentLeafLength += copyLength;
+                offset += copyLength;
+                length -= copyLength;
+            }
+        }
+
+        @Override
+        public byte[] digest() {
+            // an empty package is a single empty leaf
+            hashLeaves(currentLeaf + 1, currentLeafLength);
+            List<byte[]> level = leafHashes;
+            while (level.size() > 1) {
+                List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+                for (int i = 0; i < level.size(); i += 2) {
+                    // an odd node is moved up to the next level unchanged
+                    parents.add(i + 1 < level.size() ? hashNode(level.get(i), level.get(i + 1)) : level.get(i));
+                }
+                level = parents;
+            }
+            return level.get(0);
+        }
+
+        private void nextLeaf() {
+            currentLeaf++;
+            currentLeafLength = 0;
+            if (currentLeaf == LEAF_BATCH_SIZE) {
+                hashLeaves(LEAF_BATCH_SIZE, LEAF_SIZE);
+                currentLeaf = 0;
+            }
+        }
+
+        /**
+         * All leaves of the batch are complete, except the last one.
+         */
+        private void hashLeaves(int leafCount, int lastLeafLength) {
+            byte[][] hashes = new byte[leafCount][];
+            IntStream.range(0, leafCount).parallel().forEach(i -> {
+                MessageDigest messageDigest = createDigest();
+                messageDigest.update(LEAF_PREFIX);
+                if (leaves[i] != null) {
+                    messageDigest.update(leaves[i], 0, i == leafCount - 1 ? lastLeafLength : LEAF_SIZE);
+                }
+                hashes[i] = messageDigest.digest();
+            });
+            leafHashes.addAll(List.of(hashes));
+        }
+
+        private static byte[] hashNode(byte[] left, byte[] right) {
+            MessageDigest messageDigest = createDigest();
+            messageDigest.update(NODE_PREFIX);
+            messageDigest.update(left);
+            messageDigest.update(right);
+            return messageDigest.digest();
+        }
+
+        private static MessageDigest createDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new SevereAgentErrorException("Digest algorithm not available: " + e.getMessage());
+            }
+        }
+    }
+}
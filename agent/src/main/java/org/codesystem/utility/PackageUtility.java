@@ -3,70 +3,118 @@ package org.codesystem.utility;
 import net.lingala.zip4j.ZipFile;
 import okhttp3.*;
 import org.codesystem.AgentApplication;
+import org.codesystem.ChunkCache;
+import org.codesystem.DeploymentResultOutbox;
 import org.codesystem.PropertiesLoader;
 import org.codesystem.Variables;
+import org.codesystem.enums.EncryptionFormat;
 import org.codesystem.enums.OperatingSystem;
 import org.codesystem.enums.PackageDeploymentErrorState;
 import org.codesystem.exceptions.PackageErrorException;
+import org.codesystem.exceptions.PackageVerificationException;
+import org.codesystem.payload.DeploymentManifestResponse;
 import org.codesystem.payload.DeploymentResult;
 import org.codesystem.payload.EmptyRequest;
 import org.codesystem.payload.EncryptedMessage;
+import org.codesystem.payload.PackageChunk;
 import org.codesystem.payload.PackageDetailResponse;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Base64;
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
 
 public class PackageUtility {
     private final CryptoUtility cryptoUtility;
     private final OperatingSystem operatingSystem;
     private final PropertiesLoader propertiesLoader;
     private final DownloadUtility downloadUtility;
+    private final DeploymentResultOutbox deploymentResultOutbox;
+    private final ChunkCache chunkCache;
     private PackageDetailResponse packageDetailResponse;
 
-    public PackageUtility(CryptoUtility cryptoUtility, OperatingSystem operatingSystem, PropertiesLoader propertiesLoader, DownloadUtility downloadUtility) {
+    public PackageUtility(CryptoUtility cryptoUtility, OperatingSystem operatingSystem, PropertiesLoader propertiesLoader, DownloadUtility downloadUtility, DeploymentResultOutbox deploymentResultOutbox, ChunkCache chunkCache) {
         this.cryptoUtility = cryptoUtility;
         this.operatingSystem = operatingSystem;
         this.propertiesLoader = propertiesLoader;
         this.downloadUtility = downloadUtility;
+        this.deploymentResultOutbox = deploymentResultOutbox;
+        this.chunkCache = chunkCache;
     }
 
-    public void initiateDeployment() {
+    /**
+     * Fetches all available deployments in one request and processes them one after another.
+     *
+     * @return Returns true if a deployment was processed and all results got sent, so the server can be asked for further deployments right away.
+     * Otherwise, the deployments are still pending on the server and the agent waits for the next update interval.
+     */
+    public boolean initiateDeployment() {
+        AgentApplication.logger.info("Get Deployment Manifest");
+        List<PackageDetailResponse> packageDetailResponses = getDeploymentManifest();
+        AgentApplication.logger.info("Deployments in Manifest: " + packageDetailResponses.size());
+        boolean deployed = false;
+        for (PackageDetailResponse manifestEntry : packageDetailResponses) {
+            // the result is already stored, the server just did not receive it yet
+            if (deploymentResultOutbox.contains(manifestEntry.getDeploymentUUID())) {
+                continue;
+            }
+            this.packageDetailResponse = manifestEntry;
+            deployPackage();
+            deployed = true;
+        }
+        return deploymentResultOutbox.flush() && deployed;
+    }
+
+    private void deployPackage() {
         try {
             AgentApplication.logger.info("Clean Folder");
             cleanupDownloadFolder();
-            AgentApplication.logger.info("Get Package Details");
-            getPackageDetails();
             AgentApplication.logger.info("Download Package");
-            MediaType mediaType = Variables.MEDIA_TYPE_JSON;
-            RequestBody body = RequestBody.create(new EncryptedMessage(new EmptyRequest().toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
-            Request request = new Request.Builder()
-                    .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + "/api/agent/communication/package/" + packageDetailResponse.getDeploymentUUID())
-                    .post(body)
-                    .build();
-            downloadUtility.downloadFile(Variables.PATH_PACKAGE_ENCRYPTED, request);
-            AgentApplication.logger.info("Verify");
-            if (!cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_PACKAGE_ENCRYPTED).equals(packageDetailResponse.getChecksumEncrypted())) {
-                sendDeploymentResponse(PackageDeploymentErrorState.ENCRYPTED_CHECKSUM_MISMATCH.toString());
+            boolean extracted = false;
+            if (!assemblePackageFromChunks()) {
+                StreamResult streamResult = streamPackage();
+                if (streamResult == StreamResult.FAILED) {
+                    return;
+                }
+                extracted = streamResult == StreamResult.EXTRACTED;
+                if (!extracted) {
+                    downloadPackage();
+                    AgentApplication.logger.info("Verify");
+                    if (!cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_PACKAGE_ENCRYPTED, packageDetailResponse.getDigestAlgorithm()).equals(packageDetailResponse.getChecksumEncrypted())) {
+                        abortDeployment(PackageDeploymentErrorState.ENCRYPTED_CHECKSUM_MISMATCH);
+                        return;
+                    }
+                    AgentApplication.logger.info("Decrypt");
+                    if (!decryptPackage()) {
+                        abortDeployment(PackageDeploymentErrorState.DECRYPTION_FAILED);
+                        return;
+                    }
+                }
             }
-            AgentApplication.logger.info("Decrypt");
-            if (!decryptPackage()) {
-                sendDeploymentResponse(PackageDeploymentErrorState.DECRYPTION_FAILED.toString());
+            if (!extracted) {
+                AgentApplication.logger.info("Verify");
+                if (!cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_PACKAGE_DECRYPTED, packageDetailResponse.getDigestAlgorithm()).equals(packageDetailResponse.getChecksumPlaintext())) {
+                    abortDeployment(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH);
+                    return;
+                }
+                AgentApplication.logger.info("extract");
+                extractPackage(Variables.FILE_NAME_PACKAGE_DECRYPTED, Variables.NAME_DOWNLOAD + File.separator + Variables.NAME_EXTRACTED);
             }
-            AgentApplication.logger.info("Verify");
-            if (!cryptoUtility.calculateChecksumOfFile(Variables.FILE_NAME_PACKAGE_DECRYPTED).equals(packageDetailResponse.getChecksumPlaintext())) {
-                sendDeploymentResponse(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH.toString());
-            }
-            AgentApplication.logger.info("extract");
-            extractPackage(Variables.FILE_NAME_PACKAGE_DECRYPTED, Variables.NAME_DOWNLOAD + File.separator + Variables.NAME_EXTRACTED);
             AgentApplication.logger.info("start deployment");
             sendDeploymentResponse(executeDeployment());
             AgentApplication.logger.info("Final cleanup");
@@ -81,6 +129,139 @@ public class PackageUtility {
         cleanupDownloadFolder();
     }
 
+    /**
+     * Records the failed verification as the only result of the deployment, the package is neither extracted nor executed.
+     */
+    private void abortDeployment(PackageDeploymentErrorState packageDeploymentErrorState) {
+        sendDeploymentResponse(packageDeploymentErrorState.toString());
+        cleanupDownloadFolder();
+    }
+
+    /**
+     * Downloads the chunks missing in the cache and decrypts them into the package file.
+     * Returns false if the package has no chunks or the chunks cannot be used, the complete package is downloaded instead.
+     */
+    private boolean assemblePackageFromChunks() {
+        if (packageDetailResponse.getChunks().isEmpty() || packageDetailResponse.getChunkEncryptionToken() == null) {
+            return false;
+        }
+        try {
+            long downloadedBytes = chunkCache.fetch(packageDetailResponse.getDeploymentUUID(), packageDetailResponse.getChunks());
+            long packageSize = packageDetailResponse.getChunks().stream().mapToLong(PackageChunk::getSize).sum();
+            AgentApplication.logger.info("Downloaded " + downloadedBytes + " of " + packageSize + " bytes, the remaining chunks were cached");
+            chunkCache.assemble(packageDetailResponse.getChunks(), packageDetailResponse.getChunkEncryptionToken(), Paths.get(Variables.FILE_NAME_PACKAGE_DECRYPTED));
+            chunkCache.evict(Variables.CHUNK_CACHE_MAXIMUM_SIZE);
+            return true;
+        } catch (Exception e) {
+            AgentApplication.logger.warning("Cannot use the package chunks, downloading the complete package: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Downloads, verifies, decrypts and extracts a segmented package in a single pass, only the extracted files are written to disk.
+     * Every segment is authenticated before its content reaches the extraction, the checksums of the complete package are compared afterward.
+     * Monolithic packages are only authenticated at their end and some zip files can only be read with the central directory,
+     * these packages, interrupted downloads and agents with disabled streaming use the download to a file instead.
+     */
+    private StreamResult streamPackage() {
+        if (packageDetailResponse.getEncryptionFormat() != EncryptionFormat.SEGMENTED || "false".equals(propertiesLoader.getProperty(Variables.PROPERTIES_AGENT_PACKAGE_STREAMING)) || isJournalMatching()) {
+            return StreamResult.NOT_STREAMED;
+        }
+        PackageDigest encryptedDigest = PackageDigest.create(packageDetailResponse.getDigestAlgorithm());
+        PackageDigest plaintextDigest = PackageDigest.create(packageDetailResponse.getDigestAlgorithm());
+        OkHttpClient client = new OkHttpClient();
+        try (Response response = client.newCall(createPackageRequest()).execute()) {
+            if (response.code() != 200) {
+                AgentApplication.logger.log(Level.WARNING, "Cannot stream package. Response Code: {0}", response.code());
+                return StreamResult.NOT_STREAMED;
+            }
+            try (InputStream plaintextStream = plaintextDigest.asInputStream(cryptoUtility.decryptSegmentedStream(packageDetailResponse.getEncryptionToken(), packageDetailResponse.getInitializationVector(), encryptedDigest.asInputStream(response.body().byteStream())))) {
+                extractStream(plaintextStream, Paths.get(Variables.NAME_DOWNLOAD, Variables.NAME_EXTRACTED));
+                // the checksums cover the whole package, including the central directory after the last entry
+                plaintextStream.transferTo(OutputStream.nullOutputStream());
+            }
+        } catch (PackageVerificationException e) {
+            AgentApplication.logger.warning("Cannot authenticate package: " + e.getMessage());
+            abortDeployment(PackageDeploymentErrorState.DECRYPTION_FAILED);
+            return StreamResult.FAILED;
+        } catch (Exception e) {
+            AgentApplication.logger.warning("Cannot stream package, downloading it to a file instead: " + e.getMessage());
+            cleanupDownloadFolder();
+            return StreamResult.NOT_STREAMED;
+        }
+        AgentApplication.logger.info("Verify");
+        if (!encryptedDigest.digestHex().equals(packageDetailResponse.getChecksumEncrypted())) {
+            abortDeployment(PackageDeploymentErrorState.ENCRYPTED_CHECKSUM_MISMATCH);
+            return StreamResult.FAILED;
+        }
+        if (!plaintextDigest.digestHex().equals(packageDetailResponse.getChecksumPlaintext())) {
+            abortDeployment(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH);
+            return StreamResult.FAILED;
+        }
+        return StreamResult.EXTRACTED;
+    }
+
+    /**
+     * Extracts the entries in the order of the stream. Entries without their size in the local header cannot be read this way and throw a ZipException.
+     */
+    private void extractStream(InputStream inputStream, Path destinationFolder) throws IOException {
+        Path destination = destinationFolder.toAbsolutePath().normalize();
+        Files.createDirectories(destination);
+        // not closed, the caller still reads the rest of the stream
+        ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+        ZipEntry zipEntry;
+        while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+            Path target = destination.resolve(zipEntry.getName()).normalize();
+            if (!target.startsWith(destination)) {
+                throw new ZipException("Entry outside of the destination folder: " + zipEntry.getName());
+            }
+            if (zipEntry.isDirectory()) {
+                Files.createDirectories(target);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.copy(zipInputStream, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Downloads the package into a separate folder that survives the cleanup, so an interrupted download can be resumed by the next attempt.
+     * The journal records which package the partial file belongs to. The complete file is verified against the encrypted checksum afterward.
+     */
+    private void downloadPackage() throws IOException {
+        Files.createDirectories(Variables.PATH_PACKAGE_PARTIAL.getParent());
+        if (!isJournalMatching()) {
+            Files.deleteIfExists(Variables.PATH_PACKAGE_PARTIAL);
+            Files.writeString(Variables.PATH_DOWNLOAD_JOURNAL, new JSONObject().put("checksumEncrypted", packageDetailResponse.getChecksumEncrypted()).toString(), StandardCharsets.UTF_8);
+        }
+        if (!downloadUtility.resumeDownload(Variables.PATH_PACKAGE_PARTIAL, this::createPackageRequest)) {
+            throw new PackageErrorException("Package download refused by the server");
+        }
+        Files.move(Variables.PATH_PACKAGE_PARTIAL, Variables.PATH_PACKAGE_ENCRYPTED, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(Variables.PATH_DOWNLOAD_JOURNAL);
+    }
+
+    private boolean isJournalMatching() {
+        if (!Files.exists(Variables.PATH_DOWNLOAD_JOURNAL)) {
+            return false;
+        }
+        try {
+            JSONObject journal = new JSONObject(Files.readString(Variables.PATH_DOWNLOAD_JOURNAL, StandardCharsets.UTF_8));
+            return journal.optString("checksumEncrypted", "").equals(packageDetailResponse.getChecksumEncrypted());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private Request createPackageRequest() {
+        RequestBody body = RequestBody.create(new EncryptedMessage(new EmptyRequest().toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), Variables.MEDIA_TYPE_JSON);
+        return new Request.Builder()
+                .url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_PACKAGE_DOWNLOAD + packageDetailResponse.getDeploymentUUID())
+                .post(body)
+                .build();
+    }
+
     private void cleanupDownloadFolder() {
         //clear download folder
         Path downloadFolder = Paths.get(Variables.NAME_DOWNLOAD);
@@ -94,31 +275,33 @@ public class PackageUtility {
         new File(downloadFolder.toAbsolutePath().toString()).mkdirs();
     }
 
-    private void getPackageDetails() {
+    private List<PackageDetailResponse> getDeploymentManifest() {
         MediaType mediaType = Variables.MEDIA_TYPE_JSON;
         RequestBody body = RequestBody.create(new EncryptedMessage(new EmptyRequest().toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
-        Request request = new Request.Builder().url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_PACKAGE_DETAIL).post(body).build();
+        Request request = new Request.Builder().url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_DEPLOYMENT_MANIFEST).post(body).build();
 
         OkHttpClient client = new OkHttpClient();
         try (Response response = client.newCall(request).execute()) {
             if (response.code() != 200) {
-                throw new PackageErrorException("Error getting details: " + response.code());
+                throw new PackageErrorException("Error getting deployment manifest: " + response.code());
             }
             String responseBody = new JSONObject(response.body().string()).getString("message");
             JSONObject jsonObject = new JSONObject(cryptoUtility.decryptECC(Base64.getDecoder().decode(responseBody.getBytes(StandardCharsets.UTF_8))));
             String signature = jsonObject.getString("signature");
             jsonObject.remove("signature");
             if (!cryptoUtility.verifySignatureECC(jsonObject.toString(), Base64.getDecoder().decode(signature))) {
-                throw new PackageErrorException("Invalid Signature when processing Package Details");
+                throw new PackageErrorException("Invalid Signature when processing Deployment Manifest");
             }
-            this.packageDetailResponse = new PackageDetailResponse(jsonObject);
+            return new DeploymentManifestResponse(jsonObject).getPackageDetailResponses();
         } catch (Exception e) {
-            throw new PackageErrorException("Cannot process Package Detail request: " + e.getMessage());
+            throw new PackageErrorException("Cannot process Deployment Manifest request: " + e.getMessage());
         }
-
     }
 
     private boolean decryptPackage() {
+        if (packageDetailResponse.getEncryptionFormat() == EncryptionFormat.SEGMENTED) {
+            return cryptoUtility.decryptSegmentedFile(packageDetailResponse.getEncryptionToken(), packageDetailResponse.getInitializationVector(), new File(Variables.FILE_NAME_PACKAGE_ENCRYPTED), Paths.get(Variables.FILE_NAME_PACKAGE_DECRYPTED));
+        }
         return cryptoUtility.decryptFile(packageDetailResponse.getEncryptionToken(), packageDetailResponse.getInitializationVector(), new File(Variables.FILE_NAME_PACKAGE_ENCRYPTED), Paths.get(Variables.FILE_NAME_PACKAGE_DECRYPTED));
     }
 
@@ -131,23 +314,9 @@ public class PackageUtility {
     }
 
     private void sendDeploymentResponse(String responseMessage) {
-        DeploymentResult deploymentResult = new DeploymentResult(packageDetailResponse.getDeploymentUUID(), responseMessage);
-        MediaType mediaType = Variables.MEDIA_TYPE_JSON;
-        RequestBody body = RequestBody.create(new EncryptedMessage(deploymentResult.toJsonObject(cryptoUtility), cryptoUtility, propertiesLoader).toJsonObject().toString(), mediaType);
-        Request request = new Request.Builder().url(propertiesLoader.getProperty(Variables.PROPERTIES_SERVER_URL) + Variables.URL_DEPLOYMENT_RESULT).post(body).build();
-
-        OkHttpClient client = new OkHttpClient();
-        try (Response response = client.newCall(request).execute()) {
-            if (response.code() != 200) {
-                throw new PackageErrorException("Error sending response: " + response.code());
-            }
-        } catch (IOException e) {
-            throw new PackageErrorException("Cannot send Deployment Result: " + e.getMessage());
-        }
-
+        deploymentResultOutbox.add(new DeploymentResult(packageDetailResponse.getDeploymentUUID(), responseMessage));
     }
 
-
     private String executeDeployment() {
         File file = null;
         if (operatingSystem == OperatingSystem.LINUX || operatingSystem == OperatingSystem.MACOS) {
@@ -176,4 +345,10 @@ public class PackageUtility {
             throw new PackageErrorException("Cannot start Deployment: " + e.getMessage());
         }
     }
+
+    private enum StreamResult {
+        EXTRACTED,
+        FAILED,
+        NOT_STREAMED
+    }
 }
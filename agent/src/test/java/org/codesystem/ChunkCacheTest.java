@@ -0,0 +1,181 @@
+package org.codesystem;
+
+import org.codesystem.exceptions.DownloadException;
+import org.codesystem.exceptions.PackageErrorException;
+import org.codesystem.payload.PackageChunk;
+import org.codesystem.utility.CryptoUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockserver.model.HttpRequest.request;
+
+class ChunkCacheTest {
+    Path cacheFolder = Paths.get("chunk-cache-test");
+    Path targetFile = Paths.get("chunk-cache-test-file");
+    PropertiesLoader propertiesLoader;
+    CryptoUtility cryptoUtility;
+    ClientAndServer mockServer;
+    ChunkCache chunkCache;
+    PackageChunk chunkOne;
+    PackageChunk chunkTwo;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        propertiesLoader = Mockito.mock(PropertiesLoader.class);
+        Mockito.when(propertiesLoader.getProperty("Server.Url")).thenReturn("http://localhost:8899");
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Public-Key")).thenReturn("PublicKey");
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.encryptECC(Mockito.any())).thenReturn("Encrypted".getBytes());
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes());
+        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenAnswer(invocation -> "id-" + new String(invocation.getArgument(0, byte[].class), StandardCharsets.UTF_8));
+        Mockito.when(cryptoUtility.decryptChunk(Mockito.any(), Mockito.any())).thenAnswer(invocation -> ("decrypted " + new String(invocation.getArgument(0, byte[].class), StandardCharsets.UTF_8) + ";").getBytes(StandardCharsets.UTF_8));
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        chunkCache = new ChunkCache(cryptoUtility, propertiesLoader, cacheFolder);
+        chunkOne = new PackageChunk("id-one", 3);
+        chunkTwo = new PackageChunk("id-chunk-two", 9);
+        deleteFolder();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockServer.stop();
+        Files.deleteIfExists(targetFile);
+        deleteFolder();
+    }
+
+    private void deleteFolder() throws IOException {
+        if (Files.exists(cacheFolder)) {
+            try (Stream<Path> stream = Files.walk(cacheFolder)) {
+                stream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void fetch_onlyMissingChunks() throws IOException {
+        Files.createDirectories(cacheFolder);
+        Files.writeString(cacheFolder.resolve("id-one"), "one");
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"))
+                .respond(HttpResponse.response().withStatusCode(200).withBody("chunk-two".getBytes(StandardCharsets.UTF_8)));
+
+        Assertions.assertEquals(List.of(chunkTwo), chunkCache.getMissingChunks(List.of(chunkOne, chunkTwo, chunkTwo)));
+        Assertions.assertEquals(9, chunkCache.fetch("deploymentUUID", List.of(chunkOne, chunkTwo, chunkTwo)));
+        Assertions.assertEquals("chunk-two", Files.readString(cacheFolder.resolve("id-chunk-two")));
+        Assertions.assertTrue(chunkCache.getMissingChunks(List.of(chunkOne, chunkTwo)).isEmpty());
+
+        // everything is cached, nothing is requested
+        Assertions.assertEquals(0, chunkCache.fetch("deploymentUUID", List.of(chunkOne, chunkTwo)));
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), VerificationTimes.once());
+    }
+
+    @Test
+    void fetch_fromPeers() throws IOException {
+        PeerDistribution peerDistribution = Mockito.mock(PeerDistribution.class);
+        Mockito.when(peerDistribution.getPeers()).thenReturn(List.of(InetSocketAddress.createUnresolved("localhost", 8901)));
+        PeerDistribution.PeerFetch peerFetch = Mockito.mock(PeerDistribution.PeerFetch.class);
+        Mockito.when(peerDistribution.startFetch()).thenReturn(peerFetch);
+        Mockito.when(peerFetch.fetchChunk(chunkOne)).thenReturn("one".getBytes(StandardCharsets.UTF_8));
+        chunkCache = new ChunkCache(cryptoUtility, propertiesLoader, cacheFolder, peerDistribution);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"))
+                .respond(HttpResponse.response().withStatusCode(200).withBody("chunk-two".getBytes(StandardCharsets.UTF_8)));
+
+        // only the chunk no peer has is downloaded from the server
+        Assertions.assertEquals(9, chunkCache.fetch("deploymentUUID", List.of(chunkOne, chunkTwo)));
+        Assertions.assertEquals("one", Files.readString(cacheFolder.resolve("id-one")));
+        Assertions.assertEquals("chunk-two", Files.readString(cacheFolder.resolve("id-chunk-two")));
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), VerificationTimes.once());
+
+        // no peers known
+        Files.delete(cacheFolder.resolve("id-one"));
+        Mockito.when(peerDistribution.getPeers()).thenReturn(List.of());
+        mockServer.reset();
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"))
+                .respond(HttpResponse.response().withStatusCode(200).withBody("one".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(3, chunkCache.fetch("deploymentUUID", List.of(chunkOne, chunkTwo)));
+        Mockito.verify(peerFetch, Mockito.times(2)).fetchChunk(Mockito.any());
+    }
+
+    @Test
+    void fetch_batches() throws IOException {
+        List<PackageChunk> chunks = new ArrayList<>();
+        for (int i = 0; i < 65; i++) {
+            chunks.add(new PackageChunk("id-" + (char) ('A' + i % 26) + (char) ('A' + i / 26), 2));
+        }
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), org.mockserver.matchers.Times.once())
+                .respond(HttpResponse.response().withStatusCode(200).withBody(chunks.subList(0, 64).stream().map(chunk -> chunk.getId().substring(3)).reduce("", String::concat).getBytes(StandardCharsets.UTF_8)));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), org.mockserver.matchers.Times.once())
+                .respond(HttpResponse.response().withStatusCode(200).withBody(chunks.get(64).getId().substring(3).getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(130, chunkCache.fetch("deploymentUUID", chunks));
+        Assertions.assertTrue(chunkCache.getMissingChunks(chunks).isEmpty());
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), VerificationTimes.exactly(2));
+    }
+
+    @Test
+    void fetch_invalidResponse() {
+        // checksum mismatch
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), org.mockserver.matchers.Times.once())
+                .respond(HttpResponse.response().withStatusCode(200).withBody("two".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(PackageErrorException.class, () -> chunkCache.fetch("deploymentUUID", List.of(new PackageChunk("id-one", 3))));
+        Assertions.assertFalse(Files.exists(cacheFolder.resolve("id-one")));
+
+        // response shorter than the chunks
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"), org.mockserver.matchers.Times.once())
+                .respond(HttpResponse.response().withStatusCode(200).withBody("one".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(DownloadException.class, () -> chunkCache.fetch("deploymentUUID", List.of(chunkOne, chunkTwo)));
+        // the verified chunk is kept for the next attempt
+        Assertions.assertTrue(Files.exists(cacheFolder.resolve("id-one")));
+
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/chunks/deploymentUUID"))
+                .respond(HttpResponse.response().withStatusCode(400));
+        Assertions.assertThrows(PackageErrorException.class, () -> chunkCache.fetch("deploymentUUID", List.of(chunkTwo)));
+    }
+
+    @Test
+    void assemble() throws IOException {
+        Files.createDirectories(cacheFolder);
+        Files.writeString(cacheFolder.resolve("id-one"), "one");
+        Files.writeString(cacheFolder.resolve("id-chunk-two"), "chunk-two");
+        chunkCache.assemble(List.of(chunkOne, chunkTwo, chunkOne), new SecretKeySpec(new byte[32], "AES"), targetFile);
+        Assertions.assertEquals("decrypted one;decrypted chunk-two;decrypted one;", Files.readString(targetFile));
+
+        // a chunk that cannot be decrypted is removed from the cache
+        Mockito.when(cryptoUtility.decryptChunk(Mockito.any(), Mockito.any())).thenReturn(null);
+        Assertions.assertThrows(PackageErrorException.class, () -> chunkCache.assemble(List.of(chunkOne), new SecretKeySpec(new byte[32], "AES"), targetFile));
+        Assertions.assertFalse(Files.exists(cacheFolder.resolve("id-one")));
+    }
+
+    @Test
+    void evict() throws IOException {
+        chunkCache.evict(0);
+        Files.createDirectories(cacheFolder);
+        Files.writeString(cacheFolder.resolve("id-old"), "old-chunk");
+        Files.setLastModifiedTime(cacheFolder.resolve("id-old"), FileTime.fromMillis(1000));
+        Files.writeString(cacheFolder.resolve("id-one"), "one");
+        Files.writeString(cacheFolder.resolve("id-chunk-two"), "chunk-two");
+
+        chunkCache.evict(12);
+        Assertions.assertFalse(Files.exists(cacheFolder.resolve("id-old")));
+        Assertions.assertTrue(Files.exists(cacheFolder.resolve("id-one")));
+        Assertions.assertTrue(Files.exists(cacheFolder.resolve("id-chunk-two")));
+    }
+}
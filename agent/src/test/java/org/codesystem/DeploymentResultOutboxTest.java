@@ -0,0 +1,104 @@
+package org.codesystem;
+
+import org.codesystem.payload.DeploymentResult;
+import org.codesystem.utility.CryptoUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.mockserver.model.HttpRequest.request;
+
+class DeploymentResultOutboxTest {
+    Path outboxFile = Paths.get("deployment-results-test.json");
+    PropertiesLoader propertiesLoader;
+    CryptoUtility cryptoUtility;
+    ClientAndServer mockServer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        propertiesLoader = Mockito.mock(PropertiesLoader.class);
+        Mockito.when(propertiesLoader.getProperty("Server.Url")).thenReturn("http://localhost:8899");
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Public-Key")).thenReturn("PublicKey");
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.encryptECC(Mockito.any())).thenReturn("Encrypted".getBytes());
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes());
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        Files.deleteIfExists(outboxFile);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        mockServer.stop();
+        Files.deleteIfExists(outboxFile);
+    }
+
+    @Test
+    void add_persisted() {
+        DeploymentResultOutbox deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        deploymentResultOutbox.add(new DeploymentResult("deploymentOne", "0"));
+        deploymentResultOutbox.add(new DeploymentResult("deploymentTwo", "1"));
+        Assertions.assertTrue(Files.exists(outboxFile));
+
+        // the results survive a restart of the Agent
+        deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        Assertions.assertEquals(2, deploymentResultOutbox.size());
+        Assertions.assertTrue(deploymentResultOutbox.contains("deploymentOne"));
+        Assertions.assertTrue(deploymentResultOutbox.contains("deploymentTwo"));
+        Assertions.assertFalse(deploymentResultOutbox.contains("deploymentThree"));
+        Assertions.assertFalse(deploymentResultOutbox.contains(null));
+    }
+
+    @Test
+    void load_invalidFile() throws IOException {
+        Files.writeString(outboxFile, "invalid", StandardCharsets.UTF_8);
+        DeploymentResultOutbox deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        Assertions.assertEquals(0, deploymentResultOutbox.size());
+    }
+
+    @Test
+    void flush_empty() {
+        DeploymentResultOutbox deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        Assertions.assertTrue(deploymentResultOutbox.flush());
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/deploymentResults"), VerificationTimes.never());
+    }
+
+    @Test
+    void flush_serverNotAvailable() {
+        DeploymentResultOutbox deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        deploymentResultOutbox.add(new DeploymentResult("deploymentOne", "0"));
+        mockServer.stop();
+        Assertions.assertFalse(deploymentResultOutbox.flush());
+        Assertions.assertEquals(1, deploymentResultOutbox.size());
+
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentResults")).respond(HttpResponse.response().withStatusCode(400));
+        Assertions.assertFalse(deploymentResultOutbox.flush());
+        Assertions.assertEquals(1, deploymentResultOutbox.size());
+    }
+
+    @Test
+    void flush_valid() {
+        DeploymentResultOutbox deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        for (int i = 0; i < 150; i++) {
+            deploymentResultOutbox.add(new DeploymentResult("deployment" + i, "0"));
+        }
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentResults")).respond(HttpResponse.response().withStatusCode(200));
+        Assertions.assertTrue(deploymentResultOutbox.flush());
+        Assertions.assertEquals(0, deploymentResultOutbox.size());
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/deploymentResults"), VerificationTimes.exactly(2));
+
+        deploymentResultOutbox = new DeploymentResultOutbox(cryptoUtility, propertiesLoader, outboxFile);
+        Assertions.assertEquals(0, deploymentResultOutbox.size());
+    }
+}
@@ -0,0 +1,71 @@
+package org.codesystem;
+
+import org.codesystem.utility.CryptoUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+
+import static org.mockserver.model.HttpRequest.request;
+
+class NotificationListenerTest {
+    NotificationListener notificationListener;
+    PropertiesLoader propertiesLoader;
+    CryptoUtility cryptoUtility;
+    Runnable updateCheckTrigger;
+    ClientAndServer mockServer;
+
+    @BeforeEach
+    void setUp() {
+        propertiesLoader = Mockito.mock(PropertiesLoader.class);
+        Mockito.when(propertiesLoader.getProperty("Server.Url")).thenReturn("http://localhost:8899");
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Public-Key")).thenReturn("PublicKey");
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.encryptECC(Mockito.any())).thenReturn("Encrypted".getBytes());
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes());
+        updateCheckTrigger = Mockito.mock(Runnable.class);
+        notificationListener = new NotificationListener(cryptoUtility, propertiesLoader, updateCheckTrigger);
+        mockServer = ClientAndServer.startClientAndServer(8899);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockServer.stop();
+    }
+
+    @Test
+    void listen_serverNotAvailable() {
+        mockServer.stop();
+        notificationListener.listen();
+        Mockito.verify(updateCheckTrigger, Mockito.never()).run();
+    }
+
+    @Test
+    void listen_invalidResponse() {
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/notifications")).respond(HttpResponse.response().withStatusCode(400));
+        notificationListener.listen();
+        notificationListener.listen();
+        Mockito.verify(updateCheckTrigger, Mockito.never()).run();
+    }
+
+    @Test
+    void listen_events() {
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/notifications")).respond(HttpResponse.response().withStatusCode(200)
+                .withBody(":keep-alive\n\nevent:deployment\ndata:deployment\n\nevent:unknown\ndata:unknown\n\nevent:configuration\ndata:configuration\n\n"));
+        notificationListener.listen();
+        Mockito.verify(updateCheckTrigger, Mockito.times(2)).run();
+    }
+
+    @Test
+    void listen_reconnect() {
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/notifications")).respond(HttpResponse.response().withStatusCode(200).withBody(":keep-alive\n\n"));
+        notificationListener.listen();
+        Mockito.verify(updateCheckTrigger, Mockito.never()).run();
+
+        // notifications might have been missed while the stream was closed
+        notificationListener.listen();
+        Mockito.verify(updateCheckTrigger, Mockito.times(1)).run();
+    }
+}
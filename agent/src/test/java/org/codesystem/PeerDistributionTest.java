@@ -0,0 +1,161 @@
+package org.codesystem;
+
+import org.codesystem.payload.PackageChunk;
+import org.codesystem.utility.CryptoUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+class PeerDistributionTest {
+    final Path cacheFolder = Paths.get("peer-chunk-cache-test");
+    final String chunkId = "a".repeat(128);
+    CryptoUtility cryptoUtility;
+    PeerDistribution sharingPeer;
+    PeerDistribution requestingPeer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenAnswer(invocation -> "chunk".equals(new String(invocation.getArgument(0, byte[].class), StandardCharsets.UTF_8)) ? chunkId : "invalid");
+        deleteFolder();
+        Files.createDirectories(cacheFolder);
+        sharingPeer = new PeerDistribution(cryptoUtility, cacheFolder, 8911, List.of());
+        sharingPeer.start();
+        requestingPeer = new PeerDistribution(cryptoUtility, Paths.get("missing-peer-chunk-cache-test"), 8912, List.of(InetSocketAddress.createUnresolved("localhost", 8911)));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        sharingPeer.stop();
+        requestingPeer.stop();
+        deleteFolder();
+    }
+
+    private void deleteFolder() throws IOException {
+        if (Files.exists(cacheFolder)) {
+            try (Stream<Path> stream = Files.walk(cacheFolder)) {
+                stream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void fetchChunk() throws IOException {
+        // not cached by the peer
+        Assertions.assertNull(requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+
+        Files.writeString(cacheFolder.resolve(chunkId), "chunk");
+        Assertions.assertArrayEquals("chunk".getBytes(StandardCharsets.UTF_8), requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+
+        // the size and the checksum have to match the package details
+        Assertions.assertNull(requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 6)));
+        Files.writeString(cacheFolder.resolve(chunkId), "other");
+        Assertions.assertNull(requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+
+        // only chunk ids are served
+        Files.writeString(cacheFolder.resolve("notAChunk"), "chunk");
+        Assertions.assertNull(requestingPeer.startFetch().fetchChunk(new PackageChunk("notAChunk", 5)));
+    }
+
+    @Test
+    void fetchChunk_peerNotAvailable() {
+        sharingPeer.stop();
+        Assertions.assertNull(requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+        Assertions.assertNull(new PeerDistribution(cryptoUtility, cacheFolder, 8913, List.of()).startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+    }
+
+    @Test
+    void fetchChunk_failedPeer() throws IOException {
+        Files.writeString(cacheFolder.resolve(chunkId), "chunk");
+        sharingPeer.stop();
+        PeerDistribution.PeerFetch peerFetch = requestingPeer.startFetch();
+        Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+
+        // the peer is not asked again during the same fetch
+        sharingPeer = new PeerDistribution(cryptoUtility, cacheFolder, 8911, List.of());
+        sharingPeer.start();
+        Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+        Assertions.assertArrayEquals("chunk".getBytes(StandardCharsets.UTF_8), requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+
+        // a discovered peer is forgotten until it announces itself again
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+        PeerDistribution peerDistribution = new PeerDistribution(cryptoUtility, cacheFolder, 8913, List.of());
+        peerDistribution.processAnnouncement(sharingPeer.createAnnouncement(), address);
+        sharingPeer.stop();
+        Assertions.assertNull(peerDistribution.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+        Assertions.assertTrue(peerDistribution.getPeers().isEmpty());
+        peerDistribution.processAnnouncement(sharingPeer.createAnnouncement(), address);
+        Assertions.assertEquals(1, peerDistribution.getPeers().size());
+    }
+
+    @Test
+    void fetchChunk_consecutiveMisses() throws IOException {
+        PeerDistribution.PeerFetch peerFetch = requestingPeer.startFetch();
+        for (int i = 0; i < 8; i++) {
+            Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+        }
+
+        // the peers are not asked anymore during this fetch
+        Files.writeString(cacheFolder.resolve(chunkId), "chunk");
+        Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+        Assertions.assertArrayEquals("chunk".getBytes(StandardCharsets.UTF_8), requestingPeer.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+
+        // a found chunk resets the misses
+        peerFetch = requestingPeer.startFetch();
+        for (int i = 0; i < 7; i++) {
+            Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk("b".repeat(128), 5)));
+        }
+        Assertions.assertNotNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+        Assertions.assertNull(peerFetch.fetchChunk(new PackageChunk("b".repeat(128), 5)));
+        Assertions.assertNotNull(peerFetch.fetchChunk(new PackageChunk(chunkId, 5)));
+    }
+
+    @Test
+    void processAnnouncement_maximumPeers() throws IOException {
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+        PeerDistribution peerDistribution = new PeerDistribution(cryptoUtility, cacheFolder, 8913, List.of());
+        for (int peerPort = 10000; peerPort < 10100; peerPort++) {
+            peerDistribution.processAnnouncement("OPD-PEER instance" + peerPort + " " + peerPort, address);
+        }
+        Assertions.assertEquals(32, peerDistribution.getPeers().size());
+
+        // known peers are still refreshed
+        peerDistribution.processAnnouncement("OPD-PEER instance10000 10000", address);
+        Assertions.assertEquals(32, peerDistribution.getPeers().size());
+        Assertions.assertTrue(peerDistribution.getPeers().contains(new InetSocketAddress(address, 10000)));
+    }
+
+    @Test
+    void processAnnouncement() throws IOException {
+        InetAddress address = InetAddress.getByName("127.0.0.1");
+        PeerDistribution peerDistribution = new PeerDistribution(cryptoUtility, cacheFolder, 8913, List.of());
+        peerDistribution.processAnnouncement("invalid", address);
+        peerDistribution.processAnnouncement("OPD-PEER instance invalidPort", address);
+        peerDistribution.processAnnouncement("OPD-PEER instance 70000", address);
+        // the own announcement is ignored
+        peerDistribution.processAnnouncement(peerDistribution.createAnnouncement(), address);
+        Assertions.assertTrue(peerDistribution.getPeers().isEmpty());
+
+        peerDistribution.processAnnouncement(sharingPeer.createAnnouncement(), address);
+        Assertions.assertEquals(List.of(new InetSocketAddress(address, 8911)), peerDistribution.getPeers());
+        peerDistribution.processAnnouncement(sharingPeer.createAnnouncement(), address);
+        Assertions.assertEquals(1, peerDistribution.getPeers().size());
+
+        Files.writeString(cacheFolder.resolve(chunkId), "chunk");
+        Assertions.assertArrayEquals("chunk".getBytes(StandardCharsets.UTF_8), peerDistribution.startFetch().fetchChunk(new PackageChunk(chunkId, 5)));
+    }
+}
@@ -196,4 +196,38 @@ class PropertiesLoaderTest {
         propertiesLoader.saveProperties();
         Assertions.assertDoesNotThrow(() -> propertiesLoader.loadProperties());
     }
-}
\ No newline at end of file
+
+    @Test
+    void loadProperties_invalidPeerMode() {
+        propertiesLoader = new PropertiesLoader();
+        propertiesLoader.put("Server.Url", "https://localhost");
+        propertiesLoader.put("Agent.Update-Interval", "30");
+        propertiesLoader.put("Agent.Peer-Mode", "invalid Value");
+        propertiesLoader.saveProperties();
+        Assertions.assertThrows(TestSystemExitException.class, () -> propertiesLoader.loadProperties());
+    }
+
+    @Test
+    void loadProperties_invalidPeerPort() {
+        propertiesLoader = new PropertiesLoader();
+        propertiesLoader.put("Server.Url", "https://localhost");
+        propertiesLoader.put("Agent.Update-Interval", "30");
+        propertiesLoader.put("Agent.Peer-Mode", "true");
+        propertiesLoader.put("Agent.Peer-Port", "invalid Value");
+        propertiesLoader.saveProperties();
+        Assertions.assertThrows(TestSystemExitException.class, () -> propertiesLoader.loadProperties());
+        propertiesLoader.put("Agent.Peer-Port", "70000");
+        propertiesLoader.saveProperties();
+        Assertions.assertThrows(TestSystemExitException.class, () -> propertiesLoader.loadProperties());
+    }
+
+    @Test
+    void loadProperties_peerDefaults() {
+        propertiesLoader = new PropertiesLoader();
+        propertiesLoader.put("Server.Url", "https://localhost");
+        propertiesLoader.saveProperties();
+        Assertions.assertDoesNotThrow(() -> propertiesLoader.loadProperties());
+        Assertions.assertEquals("false", propertiesLoader.getProperty("Agent.Peer-Mode"));
+        Assertions.assertEquals("8901", propertiesLoader.getProperty("Agent.Peer-Port"));
+    }
+}
@@ -0,0 +1,160 @@
+package org.codesystem;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.mockserver.model.HttpRequest.request;
+
+class RelayTest {
+    final Path cacheFolder = Paths.get("relay-cache-test");
+    final String packagePath = "/api/agent/communication/package/deploymentUUID";
+    ClientAndServer mockServer;
+    Relay relay;
+    OkHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        deleteFolder();
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        relay = new Relay("http://localhost:8899/", 8914, cacheFolder, 20);
+        relay.start();
+        client = new OkHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        relay.stop();
+        mockServer.stop();
+        deleteFolder();
+    }
+
+    private void deleteFolder() throws IOException {
+        if (Files.exists(cacheFolder)) {
+            try (Stream<Path> stream = Files.walk(cacheFolder)) {
+                stream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private Response post(String path, String range) throws IOException {
+        Request.Builder builder = new Request.Builder().url("http://localhost:8914" + path).post(RequestBody.create("{}", MediaType.parse("application/json")));
+        if (range != null) {
+            builder.header("Range", range);
+        }
+        return client.newCall(builder.build()).execute();
+    }
+
+    @Test
+    void relay_passThrough() throws IOException {
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates").withBody("{}"))
+                .respond(HttpResponse.response().withStatusCode(200).withHeader("Content-Type", "application/json").withBody("{\"message\":\"Test\"}"));
+        try (Response response = post("/api/agent/communication/checkForUpdates", null)) {
+            Assertions.assertEquals(200, response.code());
+            Assertions.assertEquals("{\"message\":\"Test\"}", response.body().string());
+        }
+        mockServer.when(request().withMethod("GET").withPath("/monitoring/health")).respond(HttpResponse.response().withStatusCode(503));
+        try (Response response = client.newCall(new Request.Builder().url("http://localhost:8914/monitoring/health").build()).execute()) {
+            Assertions.assertEquals(503, response.code());
+        }
+        Assertions.assertEquals(0, relay.getStatistics().getLong("cacheMisses"));
+    }
+
+    @Test
+    void relay_cache() throws IOException {
+        mockServer.when(request().withMethod("POST").withPath(packagePath).withHeader("If-None-Match", "\\*"))
+                .respond(HttpResponse.response().withStatusCode(304).withHeader("ETag", "\"abc123\""));
+        mockServer.when(request().withMethod("POST").withPath(packagePath))
+                .respond(HttpResponse.response().withStatusCode(200).withHeader("ETag", "\"abc123\"").withBody("Test Content"));
+
+        // the first request is downloaded from the server and stored
+        try (Response response = post(packagePath, null)) {
+            Assertions.assertEquals(200, response.code());
+            Assertions.assertEquals("Test Content", response.body().string());
+        }
+        Assertions.assertEquals("Test Content", Files.readString(cacheFolder.resolve("abc123")));
+
+        // the following requests are only validated by the server
+        try (Response response = post(packagePath, null)) {
+            Assertions.assertEquals(200, response.code());
+            Assertions.assertEquals("Test Content", response.body().string());
+            Assertions.assertEquals("\"abc123\"", response.header("ETag"));
+        }
+        try (Response response = post(packagePath, "bytes=5-")) {
+            Assertions.assertEquals(206, response.code());
+            Assertions.assertEquals("Content", response.body().string());
+            Assertions.assertEquals("bytes 5-11/12", response.header("Content-Range"));
+        }
+        try (Response response = post(packagePath, "bytes=12-")) {
+            Assertions.assertEquals(416, response.code());
+        }
+        mockServer.verify(request().withMethod("POST").withPath(packagePath).withHeader("If-None-Match", "\\*"), VerificationTimes.exactly(4));
+        mockServer.verify(request().withMethod("POST").withPath(packagePath), VerificationTimes.exactly(5));
+
+        JSONObject statistics = relay.getStatistics();
+        Assertions.assertEquals(2, statistics.getLong("cacheHits"));
+        Assertions.assertEquals(1, statistics.getLong("cacheMisses"));
+        Assertions.assertEquals(19, statistics.getLong("bytesSaved"));
+        Assertions.assertEquals(12, statistics.getLong("bytesDownloaded"));
+        try (Response response = client.newCall(new Request.Builder().url("http://localhost:8914/relay/statistics").build()).execute()) {
+            Assertions.assertEquals(2, new JSONObject(response.body().string()).getLong("cacheHits"));
+        }
+    }
+
+    @Test
+    void relay_invalidRequest() throws IOException {
+        // the server refuses the request, nothing is sent from the cache
+        Files.createDirectories(cacheFolder);
+        Files.writeString(cacheFolder.resolve("abc123"), "Test Content");
+        mockServer.when(request().withMethod("POST").withPath(packagePath)).respond(HttpResponse.response().withStatusCode(400));
+        try (Response response = post(packagePath, null)) {
+            Assertions.assertEquals(400, response.code());
+            Assertions.assertEquals("", response.body().string());
+        }
+
+        // files without ETag or with a range are not stored
+        mockServer.reset();
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/agent")).respond(HttpResponse.response().withStatusCode(200).withBody("Agent"));
+        try (Response response = post("/api/agent/communication/agent", null)) {
+            Assertions.assertEquals("Agent", response.body().string());
+        }
+        mockServer.when(request().withMethod("POST").withPath(packagePath)).respond(HttpResponse.response().withStatusCode(206).withHeader("ETag", "\"def456\"").withHeader("Content-Range", "bytes 5-11/12").withBody("Content"));
+        try (Response response = post(packagePath, "bytes=5-")) {
+            Assertions.assertEquals(206, response.code());
+            Assertions.assertEquals("Content", response.body().string());
+        }
+        try (Stream<Path> stream = Files.list(cacheFolder)) {
+            Assertions.assertEquals(1, stream.count());
+        }
+        Assertions.assertEquals(0, relay.getStatistics().getLong("cacheHits"));
+    }
+
+    @Test
+    void evict() throws IOException {
+        Files.writeString(cacheFolder.resolve("old"), "Old Content");
+        Files.setLastModifiedTime(cacheFolder.resolve("old"), FileTime.fromMillis(1000));
+        Files.writeString(cacheFolder.resolve("new"), "New Content");
+        relay.evict();
+        Assertions.assertFalse(Files.exists(cacheFolder.resolve("old")));
+        Assertions.assertTrue(Files.exists(cacheFolder.resolve("new")));
+    }
+}
@@ -1,6 +1,7 @@
 package org.codesystem;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.codesystem.payload.DetailedSystemInformation;
 import org.codesystem.payload.UpdateCheckResponse;
 import org.codesystem.utility.CryptoUtility;
 import org.codesystem.utility.PackageUtility;
@@ -14,6 +15,7 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockserver.integration.ClientAndServer;
 import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Security;
@@ -28,6 +30,8 @@ class ServerCommunicationTest {
     CryptoUtility cryptoUtility;
     UpdateHandler updateHandler;
     PackageUtility packageUtility;
+    SystemInformationTracker systemInformationTracker;
+    SessionHandler sessionHandler;
     ClientAndServer mockServer;
     MockedStatic<SystemExitUtility> systemExitMockedStatic;
 
@@ -43,7 +47,10 @@ class ServerCommunicationTest {
         Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes());
         updateHandler = Mockito.mock(UpdateHandler.class);
         packageUtility = Mockito.mock(PackageUtility.class);
-        serverCommunication = new ServerCommunication(cryptoUtility, propertiesLoader, "agentChecksum", updateHandler, packageUtility);
+        systemInformationTracker = Mockito.mock(SystemInformationTracker.class);
+        Mockito.when(systemInformationTracker.getFingerprint()).thenReturn("fingerprint");
+        sessionHandler = Mockito.mock(SessionHandler.class);
+        serverCommunication = new ServerCommunication(cryptoUtility, propertiesLoader, "agentChecksum", updateHandler, packageUtility, systemInformationTracker, sessionHandler);
         systemExitMockedStatic = Mockito.mockStatic(SystemExitUtility.class);
         systemExitMockedStatic.when(() -> SystemExitUtility.exit(Mockito.anyInt())).thenThrow(TestSystemExitException.class);
         mockServer = ClientAndServer.startClientAndServer(8899);
@@ -115,6 +122,73 @@ class ServerCommunicationTest {
         Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
         mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(systemInformationTracker, Mockito.never()).markSent(Mockito.any());
+
+        // system information sent
+        Mockito.when(systemInformationTracker.getPendingSystemInformation()).thenReturn(Mockito.mock(DetailedSystemInformation.class));
+        Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(systemInformationTracker).markSent("fingerprint");
+
+        // system information required by the server
+        mockServer.stop();
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        Mockito.when(systemInformationTracker.getPendingSystemInformation()).thenReturn(null);
+        jsonObject = new JSONObject().put("updateInterval", 10).put("deploymentAvailable", false).put("agentChecksum", "agentChecksum").put("systemInformationRequired", true).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)));
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        Assertions.assertTrue(serverCommunication.sendUpdateRequest());
+        Mockito.verify(systemInformationTracker).requestSystemInformation();
+    }
+
+    @Test
+    void sendUpdateRequest_session() {
+        Mockito.when(sessionHandler.ensureSession()).thenReturn(true);
+        Mockito.when(sessionHandler.createSessionMessage(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "PublicKey").put("sessionId", "Session").put("message", "Session Message").toString());
+        String sessionResponse = Base64.getEncoder().encodeToString("Session Response".getBytes(StandardCharsets.UTF_8));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", sessionResponse).toString()));
+
+        // valid session response
+        Mockito.when(sessionHandler.decryptSessionResponse(sessionResponse)).thenReturn(new JSONObject().put("updateInterval", 10).put("deploymentAvailable", true).put("agentChecksum", "agentChecksum"));
+        Mockito.when(packageUtility.initiateDeployment()).thenReturn(true);
+        Assertions.assertTrue(serverCommunication.sendUpdateRequest());
+        Mockito.verify(packageUtility).initiateDeployment();
+        Mockito.verify(cryptoUtility, Mockito.never()).encryptECC(Mockito.any());
+        Mockito.verify(cryptoUtility, Mockito.never()).decryptECC(Mockito.any());
+        Mockito.verify(sessionHandler, Mockito.never()).invalidate();
+
+        // invalid session response falls back to the signed envelope
+        Mockito.when(sessionHandler.decryptSessionResponse(sessionResponse)).thenReturn(null);
+        JSONObject jsonObject = new JSONObject().put("updateInterval", 10).put("deploymentAvailable", false).put("agentChecksum", "agentChecksum").put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)));
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(sessionHandler).invalidate();
+        Mockito.verify(cryptoUtility).decryptECC(Mockito.any());
+
+        // unknown session falls back to the signed envelope
+        mockServer.stop();
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates")).respond(HttpResponse.response().withStatusCode(400));
+        Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(sessionHandler, Mockito.times(2)).invalidate();
+        Mockito.verify(cryptoUtility, Mockito.times(2)).decryptECC(Mockito.any());
+
+        // busy server keeps the session and skips the poll
+        mockServer.stop();
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates")).respond(HttpResponse.response().withStatusCode(503));
+        Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(sessionHandler, Mockito.times(2)).invalidate();
+        Mockito.verify(cryptoUtility, Mockito.times(2)).decryptECC(Mockito.any());
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/checkForUpdates"), VerificationTimes.once());
+
+        // unreachable server keeps the session and skips the poll
+        mockServer.stop();
+        Assertions.assertFalse(serverCommunication.sendUpdateRequest());
+        Mockito.verify(sessionHandler, Mockito.times(2)).invalidate();
+        Mockito.verify(cryptoUtility, Mockito.times(2)).decryptECC(Mockito.any());
+        Mockito.verify(cryptoUtility, Mockito.times(2)).encryptECC(Mockito.any());
+        mockServer = ClientAndServer.startClientAndServer(8899);
     }
 
     @Test
@@ -146,8 +220,13 @@ class ServerCommunicationTest {
 
         // deployment
         jsonObject = new JSONObject().put("updateInterval", 10).put("deploymentAvailable", true).put("agentChecksum", "agentChecksum");
+        Mockito.when(packageUtility.initiateDeployment()).thenReturn(true);
         Assertions.assertTrue(serverCommunication.processUpdateCheckResponse(new UpdateCheckResponse(jsonObject)));
 
+        // the results were not sent or all deployments were skipped, the next update check waits for the update interval
+        Mockito.when(packageUtility.initiateDeployment()).thenReturn(false);
+        Assertions.assertFalse(serverCommunication.processUpdateCheckResponse(new UpdateCheckResponse(jsonObject)));
+
     }
 
 
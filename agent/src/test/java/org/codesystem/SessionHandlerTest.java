@@ -0,0 +1,153 @@
+package org.codesystem;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.codesystem.payload.EmptyRequest;
+import org.codesystem.utility.CryptoUtility;
+import org.codesystem.utility.SystemExitUtility;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockserver.integration.ClientAndServer;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
+
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.mockserver.model.HttpRequest.request;
+
+class SessionHandlerTest {
+    SessionHandler sessionHandler;
+    PropertiesLoader propertiesLoader;
+    CryptoUtility cryptoUtility;
+    ClientAndServer mockServer;
+    MockedStatic<SystemExitUtility> systemExitMockedStatic;
+    byte[] serverNonce = "Server Nonce".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() {
+        Security.addProvider(new BouncyCastleProvider());
+        propertiesLoader = Mockito.mock(PropertiesLoader.class);
+        Mockito.when(propertiesLoader.getProperty("Server.Url")).thenReturn("http://localhost:8899");
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Public-Key")).thenReturn("PublicKey");
+        // the session operations are real, the ECIES envelope is mocked
+        cryptoUtility = Mockito.mock(CryptoUtility.class, Mockito.CALLS_REAL_METHODS);
+        Mockito.doReturn("Encrypted".getBytes()).when(cryptoUtility).encryptECC(Mockito.any());
+        Mockito.doReturn("Signature".getBytes()).when(cryptoUtility).createSignatureECC(Mockito.any());
+        Mockito.doReturn(true).when(cryptoUtility).verifySignatureECC(Mockito.any(), Mockito.any());
+        sessionHandler = new SessionHandler(cryptoUtility, propertiesLoader);
+        systemExitMockedStatic = Mockito.mockStatic(SystemExitUtility.class);
+        systemExitMockedStatic.when(() -> SystemExitUtility.exit(Mockito.anyInt())).thenThrow(TestSystemExitException.class);
+        mockServer = ClientAndServer.startClientAndServer(8899);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mockServer.stop();
+        systemExitMockedStatic.close();
+    }
+
+    private void respondWithSession(String sessionId, long lifetime) {
+        Instant timestamp = Instant.now();
+        JSONObject jsonObject = new JSONObject().put("sessionId", sessionId).put("serverNonce", Base64.getEncoder().encodeToString(serverNonce))
+                .put("expiresAt", timestamp.plusSeconds(lifetime).toString()).put("timestamp", timestamp.toString())
+                .put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)));
+        Mockito.doReturn(jsonObject.toString()).when(cryptoUtility).decryptECC(Mockito.any());
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/session")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+    }
+
+    private SecretKey captureSessionKey(String sessionId) {
+        ArgumentCaptor<byte[]> argumentCaptor = ArgumentCaptor.forClass(byte[].class);
+        Mockito.verify(cryptoUtility, Mockito.atLeastOnce()).encryptECC(argumentCaptor.capture());
+        JSONObject sessionRequest = new JSONObject(new String(argumentCaptor.getValue(), StandardCharsets.UTF_8));
+        Assertions.assertFalse(sessionRequest.isNull("signature"));
+        byte[] agentSecret = Base64.getDecoder().decode(sessionRequest.getString("agentSecret"));
+        Assertions.assertEquals(32, agentSecret.length);
+        return cryptoUtility.deriveSessionKey(agentSecret, serverNonce, sessionId);
+    }
+
+    private String createServerMessage(SecretKey sessionKey, String sessionId, long sequence, JSONObject jsonObject) {
+        byte[] encryptedMessage = cryptoUtility.encryptSession(jsonObject.toString().getBytes(StandardCharsets.UTF_8), sessionKey,
+                ByteBuffer.allocate(12).putInt(1).putLong(sequence).array(), sessionId.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Long.BYTES + encryptedMessage.length).putLong(sequence).put(encryptedMessage).array());
+    }
+
+    @Test
+    void ensureSession_notAvailable() {
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/session")).respond(HttpResponse.response().withStatusCode(404));
+        Assertions.assertFalse(sessionHandler.ensureSession());
+        Assertions.assertNull(sessionHandler.createSessionMessage(new EmptyRequest()));
+        Assertions.assertNull(sessionHandler.decryptSessionResponse("Message"));
+        mockServer.stop();
+        Assertions.assertFalse(sessionHandler.ensureSession());
+    }
+
+    @Test
+    void ensureSession_invalidSignature() {
+        respondWithSession("Session", 900);
+        Mockito.doReturn(false).when(cryptoUtility).verifySignatureECC(Mockito.any(), Mockito.any());
+        Assertions.assertThrows(TestSystemExitException.class, () -> sessionHandler.ensureSession());
+    }
+
+    @Test
+    void ensureSession_valid() {
+        respondWithSession("Session", 900);
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        mockServer.verify(request().withPath("/api/agent/communication/session"), VerificationTimes.exactly(1));
+
+        sessionHandler.invalidate();
+        Assertions.assertNull(sessionHandler.createSessionMessage(new EmptyRequest()));
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        mockServer.verify(request().withPath("/api/agent/communication/session"), VerificationTimes.exactly(2));
+    }
+
+    @Test
+    void ensureSession_renewal() {
+        // sessions are renewed a minute before they expire
+        respondWithSession("Session", 30);
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        mockServer.verify(request().withPath("/api/agent/communication/session"), VerificationTimes.exactly(2));
+    }
+
+    @Test
+    void sessionMessages() {
+        respondWithSession("Session", 900);
+        Assertions.assertTrue(sessionHandler.ensureSession());
+        SecretKey sessionKey = captureSessionKey("Session");
+
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            JSONObject sessionMessage = new JSONObject(sessionHandler.createSessionMessage(new EmptyRequest()));
+            Assertions.assertEquals("PublicKey", sessionMessage.getString("publicKeyBase64"));
+            Assertions.assertEquals("Session", sessionMessage.getString("sessionId"));
+            byte[] message = Base64.getDecoder().decode(sessionMessage.getString("message"));
+            Assertions.assertEquals(sequence, ByteBuffer.wrap(message).getLong());
+            JSONObject request = new JSONObject(new String(cryptoUtility.decryptSession(Arrays.copyOfRange(message, Long.BYTES, message.length), sessionKey,
+                    ByteBuffer.allocate(12).putInt(0).putLong(sequence).array(), "Session".getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+            Assertions.assertFalse(request.isNull("timestamp"));
+            Assertions.assertTrue(request.isNull("signature"));
+
+            JSONObject response = sessionHandler.decryptSessionResponse(createServerMessage(sessionKey, "Session", sequence, new JSONObject().put("key", "value")));
+            Assertions.assertEquals("value", response.getString("key"));
+        }
+
+        // responses to other requests, other sessions or in the wrong direction are rejected
+        Assertions.assertNull(sessionHandler.decryptSessionResponse(createServerMessage(sessionKey, "Session", 2, new JSONObject().put("key", "value"))));
+        Assertions.assertNull(sessionHandler.decryptSessionResponse(createServerMessage(sessionKey, "Other Session", 3, new JSONObject().put("key", "value"))));
+        byte[] encryptedMessage = cryptoUtility.encryptSession("{}".getBytes(StandardCharsets.UTF_8), sessionKey, ByteBuffer.allocate(12).putInt(0).putLong(3).array(), "Session".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertNull(sessionHandler.decryptSessionResponse(Base64.getEncoder().encodeToString(ByteBuffer.allocate(Long.BYTES + encryptedMessage.length).putLong(3).put(encryptedMessage).array())));
+        Assertions.assertNull(sessionHandler.decryptSessionResponse("Invalid Message"));
+        Assertions.assertNull(sessionHandler.decryptSessionResponse(null));
+    }
+}
@@ -0,0 +1,68 @@
+package org.codesystem;
+
+import org.codesystem.payload.DetailedSystemInformation;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+class SystemInformationTrackerTest {
+    HardwareInfo hardwareInfo;
+    Supplier<HardwareInfo> hardwareInfoSupplier;
+    SystemInformationTracker systemInformationTracker;
+
+    @BeforeEach
+    void setUp() {
+        hardwareInfo = Mockito.mock(HardwareInfo.class);
+        Mockito.when(hardwareInfo.getOsManufacturer()).thenReturn("Linux");
+        Mockito.when(hardwareInfo.getHwMemory()).thenReturn("1024");
+        hardwareInfoSupplier = Mockito.mock(Supplier.class);
+        Mockito.when(hardwareInfoSupplier.get()).thenReturn(hardwareInfo);
+        systemInformationTracker = new SystemInformationTracker(new DetailedSystemInformation(hardwareInfo), hardwareInfoSupplier, "agentChecksum", Duration.ofHours(1));
+    }
+
+    @Test
+    void getPendingSystemInformation() {
+        String fingerprint = systemInformationTracker.getFingerprint();
+        Assertions.assertNotNull(fingerprint);
+        Assertions.assertNotNull(systemInformationTracker.getPendingSystemInformation());
+        systemInformationTracker.markSent(fingerprint);
+        Assertions.assertNull(systemInformationTracker.getPendingSystemInformation());
+        Assertions.assertEquals(fingerprint, systemInformationTracker.getFingerprint());
+        Mockito.verify(hardwareInfoSupplier, Mockito.never()).get();
+    }
+
+    @Test
+    void requestSystemInformation() {
+        systemInformationTracker.markSent(systemInformationTracker.getFingerprint());
+        systemInformationTracker.requestSystemInformation();
+        Assertions.assertNotNull(systemInformationTracker.getPendingSystemInformation());
+        systemInformationTracker.markSent(systemInformationTracker.getFingerprint());
+        Assertions.assertNull(systemInformationTracker.getPendingSystemInformation());
+    }
+
+    @Test
+    void fingerprint_agentChecksum() {
+        SystemInformationTracker otherSystemInformationTracker = new SystemInformationTracker(new DetailedSystemInformation(hardwareInfo), hardwareInfoSupplier, "otherAgentChecksum", Duration.ofHours(1));
+        Assertions.assertNotEquals(systemInformationTracker.getFingerprint(), otherSystemInformationTracker.getFingerprint());
+    }
+
+    @Test
+    void refresh() {
+        systemInformationTracker = new SystemInformationTracker(new DetailedSystemInformation(hardwareInfo), hardwareInfoSupplier, "agentChecksum", Duration.ZERO);
+        String fingerprint = systemInformationTracker.getFingerprint();
+        systemInformationTracker.markSent(fingerprint);
+        Mockito.verify(hardwareInfoSupplier, Mockito.atLeastOnce()).get();
+
+        // unchanged hardware keeps the fingerprint
+        Assertions.assertNull(systemInformationTracker.getPendingSystemInformation());
+
+        // changed hardware
+        Mockito.when(hardwareInfo.getHwMemory()).thenReturn("2048");
+        Assertions.assertNotNull(systemInformationTracker.getPendingSystemInformation());
+        Assertions.assertNotEquals(fingerprint, systemInformationTracker.getFingerprint());
+    }
+}
@@ -12,11 +12,13 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockserver.integration.ClientAndServer;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
 
 class UpdateHandlerTest {
     String FILE_NAME_AGENT_UPDATE = "Agent_update.jar";
@@ -25,6 +27,7 @@ class UpdateHandlerTest {
     Path PATH_BACKUP_FILE = Paths.get(FILE_NAME_AGENT_UPDATE_BACKUP);
     String FILE_NAME_AGENT = "Agent.jar";
     Path PATH_FILE = Paths.get(FILE_NAME_AGENT);
+    Path PATH_PATCH_FILE = Paths.get("Agent.patch");
 
     UpdateHandler updateHandler;
     DownloadUtility downloadUtility;
@@ -65,6 +68,22 @@ class UpdateHandlerTest {
         PATH_UPDATE_FILE.toFile().delete();
         PATH_BACKUP_FILE.toFile().delete();
         PATH_FILE.toFile().delete();
+        PATH_PATCH_FILE.toFile().delete();
+    }
+
+    private void writePatch(Path patchFile) throws IOException {
+        // keeps the first 6 bytes of the current Agent and appends new content
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(patchFile)))) {
+            dataOutputStream.writeInt(0x4F504444);
+            dataOutputStream.writeLong(13);
+            dataOutputStream.writeByte(1);
+            dataOutputStream.writeLong(0);
+            dataOutputStream.writeInt(6);
+            dataOutputStream.writeByte(2);
+            dataOutputStream.writeInt(7);
+            dataOutputStream.write("-Update".getBytes(StandardCharsets.UTF_8));
+            dataOutputStream.writeByte(0);
+        }
     }
 
     @Test
@@ -110,4 +129,42 @@ class UpdateHandlerTest {
         Assertions.assertArrayEquals(Files.readAllBytes(PATH_UPDATE_FILE), "Agent-Update_Content".getBytes(StandardCharsets.UTF_8));
     }
 
-}
\ No newline at end of file
+    @Test
+    void startUpdateProcess_patch() throws IOException {
+        Files.writeString(PATH_FILE, "Agent-Content");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile(Mockito.any())).thenReturn("valid CheckSum");
+        Mockito.when(downloadUtility.downloadFile(Mockito.eq(PATH_PATCH_FILE), Mockito.any())).then(invocationOnMock -> {
+            writePatch(PATH_PATCH_FILE);
+            return true;
+        });
+        Assertions.assertDoesNotThrow(() -> updateHandler.startUpdateProcess("valid CheckSum"));
+        Assertions.assertEquals("Agent--Update", Files.readString(PATH_UPDATE_FILE));
+        Assertions.assertFalse(PATH_PATCH_FILE.toFile().exists());
+        Mockito.verify(downloadUtility, Mockito.never()).downloadFile(Mockito.eq(PATH_UPDATE_FILE), Mockito.any());
+    }
+
+    @Test
+    void startUpdateProcess_patchFallback() throws IOException {
+        Files.writeString(PATH_FILE, "Agent-Content");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile(Mockito.any())).thenReturn("valid CheckSum");
+        Mockito.when(downloadUtility.downloadFile(Mockito.eq(PATH_UPDATE_FILE), Mockito.any())).then(invocationOnMock -> {
+            Files.writeString(PATH_UPDATE_FILE, "Agent-Update_Content");
+            return true;
+        });
+
+        // no patch available
+        Mockito.when(downloadUtility.downloadFile(Mockito.eq(PATH_PATCH_FILE), Mockito.any())).thenReturn(false);
+        Assertions.assertDoesNotThrow(() -> updateHandler.startUpdateProcess("valid CheckSum"));
+        Assertions.assertEquals("Agent-Update_Content", Files.readString(PATH_UPDATE_FILE));
+
+        // invalid patch
+        Mockito.when(downloadUtility.downloadFile(Mockito.eq(PATH_PATCH_FILE), Mockito.any())).then(invocationOnMock -> {
+            Files.writeString(PATH_PATCH_FILE, "invalid patch");
+            return true;
+        });
+        Assertions.assertDoesNotThrow(() -> updateHandler.startUpdateProcess("valid CheckSum"));
+        Assertions.assertEquals("Agent-Update_Content", Files.readString(PATH_UPDATE_FILE));
+        Assertions.assertFalse(PATH_PATCH_FILE.toFile().exists());
+        Mockito.verify(downloadUtility, Mockito.times(2)).downloadFile(Mockito.eq(PATH_UPDATE_FILE), Mockito.any());
+    }
+}
@@ -0,0 +1,40 @@
+package org.codesystem.payload;
+
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+
+class AgentPatchRequestTest {
+    CryptoUtility cryptoUtility;
+    AgentPatchRequest agentPatchRequest;
+
+    @BeforeEach
+    void setUp() {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJsonObject() {
+        // invalid
+        agentPatchRequest = new AgentPatchRequest("checksum");
+        Assertions.assertNull(agentPatchRequest.toJsonObject(null));
+
+        // null value
+        agentPatchRequest = new AgentPatchRequest(null);
+        JSONObject jsonObject = agentPatchRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("agentChecksum"));
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+
+        // valid
+        agentPatchRequest = new AgentPatchRequest(" checksum ");
+        jsonObject = agentPatchRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals("checksum", jsonObject.get("agentChecksum"));
+        Assertions.assertNotNull(jsonObject.get("signature"));
+    }
+}
@@ -0,0 +1,43 @@
+package org.codesystem.payload;
+
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class ChunkRequestTest {
+    CryptoUtility cryptoUtility;
+    ChunkRequest chunkRequest;
+
+    @BeforeEach
+    void setUp() {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJsonObject() {
+        // invalid
+        chunkRequest = new ChunkRequest(List.of());
+        Assertions.assertNull(chunkRequest.toJsonObject(null));
+
+        // null value
+        chunkRequest = new ChunkRequest(null);
+        JSONObject jsonObject = chunkRequest.toJsonObject(cryptoUtility);
+        Assertions.assertTrue(jsonObject.getJSONArray("chunks").isEmpty());
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+
+        // valid
+        chunkRequest = new ChunkRequest(List.of(new PackageChunk("chunkOne", 10), new PackageChunk("chunkTwo", 20)));
+        jsonObject = chunkRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals(2, jsonObject.getJSONArray("chunks").length());
+        Assertions.assertEquals("chunkOne", jsonObject.getJSONArray("chunks").getString(0));
+        Assertions.assertEquals("chunkTwo", jsonObject.getJSONArray("chunks").getString(1));
+        Assertions.assertNotNull(jsonObject.get("signature"));
+    }
+}
@@ -0,0 +1,29 @@
+package org.codesystem.payload;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DeploymentManifestResponseTest {
+
+    @Test
+    void deploymentManifestResponse() {
+        // null value
+        Assertions.assertTrue(new DeploymentManifestResponse(new JSONObject()).getPackageDetailResponses().isEmpty());
+
+        // invalid value
+        Assertions.assertTrue(new DeploymentManifestResponse(new JSONObject().put("deployments", "invalid")).getPackageDetailResponses().isEmpty());
+
+        // entries without deployment are skipped
+        JSONArray deployments = new JSONArray()
+                .put(new JSONObject().put("deploymentUUID", "deploymentOne").put("checksumPlaintext", "checksumPlaintext"))
+                .put(new JSONObject().put("deploymentUUID", "   "))
+                .put(new JSONObject().put("deploymentUUID", "deploymentTwo"));
+        DeploymentManifestResponse deploymentManifestResponse = new DeploymentManifestResponse(new JSONObject().put("deployments", deployments));
+        Assertions.assertEquals(2, deploymentManifestResponse.getPackageDetailResponses().size());
+        Assertions.assertEquals("deploymentOne", deploymentManifestResponse.getPackageDetailResponses().get(0).getDeploymentUUID());
+        Assertions.assertEquals("checksumPlaintext", deploymentManifestResponse.getPackageDetailResponses().get(0).getChecksumPlaintext());
+        Assertions.assertEquals("deploymentTwo", deploymentManifestResponse.getPackageDetailResponses().get(1).getDeploymentUUID());
+    }
+}
@@ -0,0 +1,38 @@
+package org.codesystem.payload;
+
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class DeploymentResultBatchTest {
+    CryptoUtility cryptoUtility;
+
+    @BeforeEach
+    void setup() {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJsonObject() {
+        Assertions.assertNull(new DeploymentResultBatch(List.of()).toJsonObject(null));
+        Assertions.assertTrue(new DeploymentResultBatch(null).toJsonObject(cryptoUtility).getJSONArray("deploymentResults").isEmpty());
+
+        JSONObject jsonObject = new DeploymentResultBatch(List.of(new DeploymentResult("deploymentOne", "0"), new DeploymentResult("deploymentTwo", null))).toJsonObject(cryptoUtility);
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+        Assertions.assertNotNull(jsonObject.get("signature"));
+        JSONArray jsonArray = jsonObject.getJSONArray("deploymentResults");
+        Assertions.assertEquals(2, jsonArray.length());
+        Assertions.assertEquals("deploymentOne", jsonArray.getJSONObject(0).getString("deploymentUUID"));
+        Assertions.assertEquals("0", jsonArray.getJSONObject(0).getString("resultCode"));
+        Assertions.assertEquals("deploymentTwo", jsonArray.getJSONObject(1).getString("deploymentUUID"));
+        Assertions.assertEquals(JSONObject.NULL, jsonArray.getJSONObject(1).get("resultCode"));
+    }
+}
@@ -59,4 +59,18 @@ class DeploymentResultTest {
 
     }
 
+    @Test
+    void toResultJsonObject() {
+        deploymentResult = new DeploymentResult(null, " ");
+        JSONObject jsonObject = deploymentResult.toResultJsonObject();
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("deploymentUUID"));
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("resultCode"));
+
+        deploymentResult = new DeploymentResult(" sampleUUID ", " sampleReturnCode ");
+        jsonObject = deploymentResult.toResultJsonObject();
+        Assertions.assertEquals(2, jsonObject.length());
+        Assertions.assertEquals("sampleUUID", jsonObject.getString("deploymentUUID"));
+        Assertions.assertEquals("sampleReturnCode", jsonObject.getString("resultCode"));
+    }
+
 }
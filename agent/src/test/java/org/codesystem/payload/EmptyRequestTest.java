@@ -35,4 +35,12 @@ class EmptyRequestTest {
         Assertions.assertEquals(Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)), jsonObject.getString("signature"));
         Assertions.assertArrayEquals("Signature".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("signature")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void toUnsignedJsonObject() {
+        JSONObject jsonObject = emptyRequest.toUnsignedJsonObject();
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+        Assertions.assertTrue(jsonObject.isNull("signature"));
+        Mockito.verifyNoInteractions(cryptoUtility);
+    }
+}
@@ -1,5 +1,8 @@
 package org.codesystem.payload;
 
+import org.codesystem.enums.DigestAlgorithm;
+import org.codesystem.enums.EncryptionFormat;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -53,6 +56,30 @@ class PackageDetailResponseTest {
         Assertions.assertArrayEquals("init Vector".getBytes(StandardCharsets.UTF_8), packageDetailResponse.getInitializationVector());
         Assertions.assertEquals("plaintext checksum", packageDetailResponse.getChecksumPlaintext());
         Assertions.assertEquals("encrypted checksum", packageDetailResponse.getChecksumEncrypted());
+        Assertions.assertNull(packageDetailResponse.getChunkEncryptionToken());
+        Assertions.assertTrue(packageDetailResponse.getChunks().isEmpty());
+
+        // chunks
+        jsonObject.put("chunkEncryptionToken", Base64.getEncoder().encodeToString("chunkEncryptionToken".getBytes(StandardCharsets.UTF_8))).put("chunks", new JSONArray().put(new JSONObject().put("id", "chunkOne").put("size", 10)).put(new JSONObject().put("id", "chunkTwo").put("size", 20)));
+        packageDetailResponse = new PackageDetailResponse(jsonObject);
+        Assertions.assertArrayEquals("chunkEncryptionToken".getBytes(StandardCharsets.UTF_8), packageDetailResponse.getChunkEncryptionToken().getEncoded());
+        Assertions.assertEquals(2, packageDetailResponse.getChunks().size());
+        Assertions.assertEquals("chunkTwo", packageDetailResponse.getChunks().get(1).getId());
+        Assertions.assertEquals(20, packageDetailResponse.getChunks().get(1).getSize());
+
+        // encryption format, missing for servers without the segmented format
+        Assertions.assertEquals(EncryptionFormat.MONOLITHIC, packageDetailResponse.getEncryptionFormat());
+        jsonObject.put("encryptionFormat", "SEGMENTED");
+        Assertions.assertEquals(EncryptionFormat.SEGMENTED, new PackageDetailResponse(jsonObject).getEncryptionFormat());
+        jsonObject.put("encryptionFormat", "Unknown");
+        Assertions.assertEquals(EncryptionFormat.MONOLITHIC, new PackageDetailResponse(jsonObject).getEncryptionFormat());
+
+        // digest algorithm, missing for servers without the tree hash
+        Assertions.assertEquals(DigestAlgorithm.SHA3_512, packageDetailResponse.getDigestAlgorithm());
+        jsonObject.put("digestAlgorithm", "SHA256_TREE");
+        Assertions.assertEquals(DigestAlgorithm.SHA256_TREE, new PackageDetailResponse(jsonObject).getDigestAlgorithm());
+        jsonObject.put("digestAlgorithm", "Unknown");
+        Assertions.assertEquals(DigestAlgorithm.SHA3_512, new PackageDetailResponse(jsonObject).getDigestAlgorithm());
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+package org.codesystem.payload;
+
+import org.codesystem.utility.CryptoUtility;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+class SessionRequestTest {
+    CryptoUtility cryptoUtility;
+    SessionRequest sessionRequest;
+
+    @BeforeEach
+    void setUp() {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void toJsonObject() {
+        // invalid
+        sessionRequest = new SessionRequest("Agent Secret".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertNull(sessionRequest.toJsonObject(null));
+
+        // null values
+        sessionRequest = new SessionRequest(null);
+        JSONObject jsonObject = sessionRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("agentSecret"));
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+
+        // valid
+        sessionRequest = new SessionRequest("Agent Secret".getBytes(StandardCharsets.UTF_8));
+        jsonObject = sessionRequest.toJsonObject(cryptoUtility);
+        Assertions.assertArrayEquals("Agent Secret".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("agentSecret")));
+        Assertions.assertNotNull(jsonObject.get("timestamp"));
+        Assertions.assertEquals(Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)), jsonObject.getString("signature"));
+    }
+}
@@ -17,7 +17,7 @@ class UpdateCheckRequestTest {
 
     @BeforeEach
     void setUp() {
-        updateCheckRequest = new UpdateCheckRequest(null, null);
+        updateCheckRequest = new UpdateCheckRequest(null, null, null);
         cryptoUtility = Mockito.mock(CryptoUtility.class);
         Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).thenReturn("Signature".getBytes(StandardCharsets.UTF_8));
     }
@@ -25,26 +25,26 @@ class UpdateCheckRequestTest {
     @Test
     void toJsonObject() {
         // invalid
-        updateCheckRequest = new UpdateCheckRequest(null, null);
+        updateCheckRequest = new UpdateCheckRequest(null, null, null);
         JSONObject jsonObject = updateCheckRequest.toJsonObject(null);
         Assertions.assertNull(jsonObject);
 
         // null values
-        updateCheckRequest = new UpdateCheckRequest(null, null);
+        updateCheckRequest = new UpdateCheckRequest(null, null, null);
         jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
         Assertions.assertEquals(JSONObject.NULL, jsonObject.get("systemInformation"));
         Assertions.assertEquals(JSONObject.NULL, jsonObject.get("agentChecksum"));
         Assertions.assertNotNull(jsonObject.get("timestamp"));
         Assertions.assertEquals(Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)), jsonObject.getString("signature"));
         Assertions.assertArrayEquals("Signature".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("signature")));
-        updateCheckRequest = new UpdateCheckRequest("checksum", null);
+        updateCheckRequest = new UpdateCheckRequest("checksum", null, null);
         jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
         Assertions.assertEquals(JSONObject.NULL, jsonObject.get("systemInformation"));
         Assertions.assertEquals("checksum", jsonObject.get("agentChecksum"));
         Assertions.assertNotNull(jsonObject.get("timestamp"));
         Assertions.assertEquals(Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)), jsonObject.getString("signature"));
         Assertions.assertArrayEquals("Signature".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("signature")));
-        updateCheckRequest = new UpdateCheckRequest(null, new DetailedSystemInformation(new HardwareInfo()));
+        updateCheckRequest = new UpdateCheckRequest(null, new DetailedSystemInformation(new HardwareInfo()), null);
         jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
         Assertions.assertNotNull(jsonObject.get("systemInformation"));
         Assertions.assertEquals(JSONObject.NULL, jsonObject.get("agentChecksum"));
@@ -53,7 +53,7 @@ class UpdateCheckRequestTest {
         Assertions.assertArrayEquals("Signature".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("signature")));
 
         // valid
-        updateCheckRequest = new UpdateCheckRequest("checksum", new DetailedSystemInformation(new HardwareInfo()));
+        updateCheckRequest = new UpdateCheckRequest("checksum", new DetailedSystemInformation(new HardwareInfo()), null);
         jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
         Assertions.assertNotNull(jsonObject.get("systemInformation"));
         Assertions.assertEquals("checksum", jsonObject.get("agentChecksum"));
@@ -61,5 +61,13 @@ class UpdateCheckRequestTest {
         Assertions.assertEquals(Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)), jsonObject.getString("signature"));
         Assertions.assertArrayEquals("Signature".getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(jsonObject.getString("signature")));
 
+        // fingerprint
+        updateCheckRequest = new UpdateCheckRequest("checksum", null, null);
+        jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("systemInformationFingerprint"));
+        updateCheckRequest = new UpdateCheckRequest("checksum", null, "fingerprint");
+        jsonObject = updateCheckRequest.toJsonObject(cryptoUtility);
+        Assertions.assertEquals(JSONObject.NULL, jsonObject.get("systemInformation"));
+        Assertions.assertEquals("fingerprint", jsonObject.get("systemInformationFingerprint"));
     }
 }
\ No newline at end of file
@@ -53,5 +53,14 @@ class UpdateCheckResponseTest {
         Assertions.assertEquals(231241, updateCheckResponse.getUpdateInterval());
         Assertions.assertTrue(updateCheckResponse.isDeploymentAvailable());
         Assertions.assertEquals("testChecksum", updateCheckResponse.getAgentChecksum());
+        Assertions.assertFalse(updateCheckResponse.isSystemInformationRequired());
+
+        // system information required
+        jsonObject = new JSONObject().put("updateInterval", 231241).put("deploymentAvailable", false).put("agentChecksum", "testChecksum").put("systemInformationRequired", "string");
+        updateCheckResponse = new UpdateCheckResponse(jsonObject);
+        Assertions.assertFalse(updateCheckResponse.isSystemInformationRequired());
+        jsonObject = new JSONObject().put("updateInterval", 231241).put("deploymentAvailable", false).put("agentChecksum", "testChecksum").put("systemInformationRequired", true);
+        updateCheckResponse = new UpdateCheckResponse(jsonObject);
+        Assertions.assertTrue(updateCheckResponse.isSystemInformationRequired());
     }
 }
\ No newline at end of file
@@ -8,11 +8,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
 
 class AutoUpdateUtilityTest {
 
@@ -22,6 +24,7 @@ class AutoUpdateUtilityTest {
     Path PATH_BACKUP_FILE = Paths.get(FILE_NAME_AGENT_UPDATE_BACKUP);
     String FILE_NAME_AGENT = "Agent.jar";
     Path PATH_FILE = Paths.get(FILE_NAME_AGENT);
+    Path PATH_PATCH_FILE = Paths.get("Agent.patch");
     AutoUpdateUtility autoUpdateUtility;
     MockedStatic<SystemExitUtility> systemExitMockedStatic;
 
@@ -44,6 +47,21 @@ class AutoUpdateUtilityTest {
         PATH_UPDATE_FILE.toFile().delete();
         PATH_BACKUP_FILE.toFile().delete();
         PATH_FILE.toFile().delete();
+        PATH_PATCH_FILE.toFile().delete();
+    }
+
+    private void writePatch(int magic, long length, long copyOffset, int copyLength) throws IOException {
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(PATH_PATCH_FILE)))) {
+            dataOutputStream.writeInt(magic);
+            dataOutputStream.writeLong(length);
+            dataOutputStream.writeByte(2);
+            dataOutputStream.writeInt(4);
+            dataOutputStream.write("New-".getBytes(StandardCharsets.UTF_8));
+            dataOutputStream.writeByte(1);
+            dataOutputStream.writeLong(copyOffset);
+            dataOutputStream.writeInt(copyLength);
+            dataOutputStream.writeByte(0);
+        }
     }
 
     @Test
@@ -90,4 +108,29 @@ class AutoUpdateUtilityTest {
         Assertions.assertArrayEquals(Files.readAllBytes(PATH_BACKUP_FILE), "Agent_File_Content".getBytes(StandardCharsets.UTF_8));
         Assertions.assertArrayEquals(Files.readAllBytes(PATH_UPDATE_FILE), "Agent_Update_File_Content".getBytes(StandardCharsets.UTF_8));
     }
-}
\ No newline at end of file
+
+    @Test
+    void applyPatch_valid() throws IOException {
+        Files.writeString(PATH_FILE, "Old-Agent");
+        writePatch(0x4F504444, 9, 4, 5);
+        autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE);
+        Assertions.assertEquals("New-Agent", Files.readString(PATH_UPDATE_FILE));
+    }
+
+    @Test
+    void applyPatch_invalid() throws IOException {
+        Files.writeString(PATH_FILE, "Old-Agent");
+        Assertions.assertThrows(IOException.class, () -> autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE));
+        Files.writeString(PATH_PATCH_FILE, "invalid patch");
+        Assertions.assertThrows(IOException.class, () -> autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE));
+        // wrong magic number
+        writePatch(0, 9, 4, 5);
+        Assertions.assertThrows(IOException.class, () -> autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE));
+        // range outside the current Agent
+        writePatch(0x4F504444, 9, 4, 50);
+        Assertions.assertThrows(IOException.class, () -> autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE));
+        // wrong length
+        writePatch(0x4F504444, 10, 4, 5);
+        Assertions.assertThrows(IOException.class, () -> autoUpdateUtility.applyPatch(PATH_FILE, PATH_PATCH_FILE, PATH_UPDATE_FILE));
+    }
+}
@@ -4,6 +4,8 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.IESParameterSpec;
 import org.codesystem.PropertiesLoader;
 import org.codesystem.TestSystemExitException;
+import org.codesystem.enums.DigestAlgorithm;
+import org.codesystem.exceptions.PackageVerificationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,16 +14,23 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
 import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.*;
 import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HexFormat;
 
 class CryptoUtilityTest {
     IESParameterSpec iesParamSpec = new IESParameterSpec(
@@ -111,6 +120,29 @@ class CryptoUtilityTest {
         Assertions.assertDoesNotThrow(() -> new CryptoUtility(propertiesLoader));
     }
 
+    @Test
+    void constructor_symmetricProvider() throws GeneralSecurityException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn("");
+        Assertions.assertEquals("SunJCE", new CryptoUtility(propertiesLoader).getSymmetricProvider());
+        Mockito.when(propertiesLoader.getProperty("Agent.Crypto.Symmetric-Provider")).thenReturn("auto");
+        Assertions.assertEquals("SunJCE", new CryptoUtility(propertiesLoader).getSymmetricProvider());
+        Mockito.when(propertiesLoader.getProperty("Agent.Crypto.Symmetric-Provider")).thenReturn("Invalid");
+        Assertions.assertThrows(TestSystemExitException.class, () -> new CryptoUtility(propertiesLoader));
+
+        // the providers are interchangeable
+        Mockito.when(propertiesLoader.getProperty("Agent.Crypto.Symmetric-Provider")).thenReturn(" BC ");
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        Assertions.assertEquals("BC", cryptoUtility.getSymmetricProvider());
+        byte[] initializationVector = new byte[12];
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", "SunJCE");
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(128, initializationVector));
+        byte[] ciphertext = cipher.doFinal("Test Message".getBytes(StandardCharsets.UTF_8));
+        byte[] encryptedChunk = new byte[initializationVector.length + ciphertext.length];
+        System.arraycopy(ciphertext, 0, encryptedChunk, initializationVector.length, ciphertext.length);
+        Assertions.assertArrayEquals("Test Message".getBytes(StandardCharsets.UTF_8), cryptoUtility.decryptChunk(encryptedChunk, aesKey));
+    }
+
     @Test
     void decryptECC_invalid() {
         Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
@@ -196,6 +228,43 @@ class CryptoUtilityTest {
         Assertions.assertFalse(cryptoUtility.verifySignatureECC("Test Message", signature.sign()));
     }
 
+    @Test
+    void deriveSessionKey() throws NoSuchAlgorithmException, InvalidKeyException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        byte[] agentSecret = "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8);
+        byte[] serverNonce = "Server Nonce".getBytes(StandardCharsets.UTF_8);
+
+        // HKDF-SHA256 as specified in RFC 5869, the server derives the key the same way
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(serverNonce, "HmacSHA256"));
+        byte[] pseudoRandomKey = mac.doFinal(agentSecret);
+        mac.init(new SecretKeySpec(pseudoRandomKey, "HmacSHA256"));
+        mac.update("OPD-Agent-Session:Session".getBytes(StandardCharsets.UTF_8));
+        byte[] expectedSessionKey = mac.doFinal(new byte[]{1});
+
+        Assertions.assertArrayEquals(expectedSessionKey, cryptoUtility.deriveSessionKey(agentSecret, serverNonce, "Session").getEncoded());
+        Assertions.assertFalse(Arrays.equals(expectedSessionKey, cryptoUtility.deriveSessionKey(agentSecret, serverNonce, "Other Session").getEncoded()));
+    }
+
+    @Test
+    void encryptSession_decryptSession() {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        byte[] initializationVector = new byte[12];
+        byte[] associatedData = "Session".getBytes(StandardCharsets.UTF_8);
+        byte[] encryptedMessage = cryptoUtility.encryptSession("Test Message".getBytes(StandardCharsets.UTF_8), aesKey, initializationVector, associatedData);
+        Assertions.assertEquals("Test Message", new String(cryptoUtility.decryptSession(encryptedMessage, aesKey, initializationVector, associatedData), StandardCharsets.UTF_8));
+
+        Assertions.assertNull(cryptoUtility.decryptSession(encryptedMessage, aesKey, initializationVector, "Other Session".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertNull(cryptoUtility.decryptSession(encryptedMessage, aesKey, new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, associatedData));
+        encryptedMessage[0] ^= 1;
+        Assertions.assertNull(cryptoUtility.decryptSession(encryptedMessage, aesKey, initializationVector, associatedData));
+        Assertions.assertThrows(TestSystemExitException.class, () -> cryptoUtility.encryptSession("Test Message".getBytes(StandardCharsets.UTF_8), null, initializationVector, associatedData));
+    }
+
     @Test
     void decryptFile_invalid() throws InvalidKeyException {
         Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
@@ -242,6 +311,109 @@ class CryptoUtilityTest {
         Assertions.assertArrayEquals("Test Message".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(pathForDecryptedFile));
     }
 
+    /**
+     * Creates a file in the segmented format of the server.
+     */
+    private void createSegmentedFile(byte[] content, int segmentSize, byte[] noncePrefix) throws GeneralSecurityException, IOException {
+        byte[] header = ByteBuffer.allocate(16).putInt(0x4F504453).put((byte) 1).putInt(segmentSize).put(noncePrefix).array();
+        int segmentCount = Math.max(1, (content.length + segmentSize - 1) / segmentSize);
+        try (FileOutputStream fileOutputStream = new FileOutputStream(encryptedFile)) {
+            fileOutputStream.write(header);
+            for (int i = 0; i < segmentCount; i++) {
+                byte[] nonce = ByteBuffer.allocate(12).put(noncePrefix).putInt(i).put(i == segmentCount - 1 ? (byte) 1 : (byte) 0).array();
+                Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+                cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(128, nonce));
+                cipher.updateAAD(header);
+                fileOutputStream.write(cipher.doFinal(content, i * segmentSize, Math.min(segmentSize, content.length - i * segmentSize)));
+            }
+        }
+    }
+
+    @Test
+    void decryptSegmentedFile() throws GeneralSecurityException, IOException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        byte[] noncePrefix = "Nonce01".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[100];
+        new SecureRandom().nextBytes(content);
+
+        // several segments, the last one is not complete
+        createSegmentedFile(content, 16, noncePrefix);
+        Assertions.assertTrue(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, encryptedFile, pathForDecryptedFile));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(pathForDecryptedFile));
+        createSegmentedFile(new byte[0], 16, noncePrefix);
+        Assertions.assertTrue(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, encryptedFile, pathForDecryptedFile));
+        Assertions.assertEquals(0, Files.size(pathForDecryptedFile));
+
+        // the header does not belong to the signed package details
+        createSegmentedFile(content, 16, noncePrefix);
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(aesKey, "Nonce02".getBytes(StandardCharsets.UTF_8), encryptedFile, pathForDecryptedFile));
+
+        // missing last segment
+        byte[] encryptedContent = Files.readAllBytes(encryptedFile.toPath());
+        Files.write(encryptedFile.toPath(), Arrays.copyOf(encryptedContent, 16 + 6 * 32));
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, encryptedFile, pathForDecryptedFile));
+
+        // only the header, no segment is left to authenticate
+        Files.write(encryptedFile.toPath(), Arrays.copyOf(encryptedContent, 16));
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, encryptedFile, pathForDecryptedFile));
+
+        // a corrupt segment is rejected, nothing after it is written
+        encryptedContent[16 + 32 * 5 + 3] ^= 1;
+        Files.write(encryptedFile.toPath(), encryptedContent);
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, encryptedFile, pathForDecryptedFile));
+        Assertions.assertTrue(Files.size(pathForDecryptedFile) < content.length);
+
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(aesKey, noncePrefix, plaintextFile, pathForDecryptedFile));
+        Assertions.assertFalse(cryptoUtility.decryptSegmentedFile(null, noncePrefix, encryptedFile, pathForDecryptedFile));
+    }
+
+    @Test
+    void decryptSegmentedStream() throws GeneralSecurityException, IOException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        byte[] noncePrefix = "Nonce01".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[100];
+        new SecureRandom().nextBytes(content);
+
+        // the last segment is incomplete, complete or empty
+        for (byte[] testContent : new byte[][]{content, Arrays.copyOf(content, 96), new byte[0]}) {
+            createSegmentedFile(testContent, 16, noncePrefix);
+            try (InputStream inputStream = cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new FileInputStream(encryptedFile))) {
+                Assertions.assertArrayEquals(testContent, inputStream.readAllBytes());
+            }
+        }
+
+        createSegmentedFile(content, 16, noncePrefix);
+        byte[] encryptedContent = Files.readAllBytes(encryptedFile.toPath());
+        Assertions.assertThrows(PackageVerificationException.class, () -> cryptoUtility.decryptSegmentedStream(aesKey, "Nonce02".getBytes(StandardCharsets.UTF_8), new ByteArrayInputStream(encryptedContent)));
+        Assertions.assertThrows(PackageVerificationException.class, () -> cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new ByteArrayInputStream(new byte[3])));
+
+        // only the header
+        Assertions.assertThrows(PackageVerificationException.class, () -> cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new ByteArrayInputStream(Arrays.copyOf(encryptedContent, 16))).readAllBytes());
+        // missing last segment
+        Assertions.assertThrows(PackageVerificationException.class, () -> cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new ByteArrayInputStream(Arrays.copyOf(encryptedContent, 16 + 6 * 32))).readAllBytes());
+        // incomplete tag
+        Assertions.assertThrows(PackageVerificationException.class, () -> cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new ByteArrayInputStream(Arrays.copyOf(encryptedContent, 16 + 6 * 32 + 10))).readAllBytes());
+
+        // the segments in front of a corrupt segment are returned, the corrupt one is rejected
+        encryptedContent[16 + 32 * 5 + 3] ^= 1;
+        InputStream inputStream = cryptoUtility.decryptSegmentedStream(aesKey, noncePrefix, new ByteArrayInputStream(encryptedContent));
+        byte[] buffer = new byte[content.length];
+        int readLength = 0;
+        try {
+            for (int read = inputStream.read(buffer); read != -1; read = inputStream.read(buffer, readLength, buffer.length - readLength)) {
+                readLength += read;
+            }
+            Assertions.fail("Corrupt segment was not rejected");
+        } catch (PackageVerificationException e) {
+            Assertions.assertTrue(readLength <= 16 * 5);
+            Assertions.assertArrayEquals(Arrays.copyOf(content, readLength), Arrays.copyOf(buffer, readLength));
+        }
+    }
+
     @Test
     void calculateChecksumOfFile_invalid() {
         Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
@@ -284,5 +456,54 @@ class CryptoUtilityTest {
             stringBuilder.append(String.format("%02x", b));
         }
         Assertions.assertEquals(stringBuilder.toString(), cryptoUtility.calculateChecksumOfFile(plaintextFile.getPath()));
+        Assertions.assertEquals(stringBuilder.toString(), cryptoUtility.calculateChecksumOfFile(plaintextFile.getPath(), DigestAlgorithm.SHA3_512));
+    }
+
+    @Test
+    void calculateChecksumOfFile_tree() throws IOException, NoSuchAlgorithmException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        Files.write(plaintextFile.toPath(), "Test Message".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(HexFormat.of().formatHex(sha256((byte) 0, "Test Message".getBytes(StandardCharsets.UTF_8))), cryptoUtility.calculateChecksumOfFile(plaintextFile.getPath(), DigestAlgorithm.SHA256_TREE));
+
+        // three leaves of 1 MiB, the last one is not complete and moved up unchanged
+        byte[] content = new byte[1024 * 1024 * 2 + 5];
+        new SecureRandom().nextBytes(content);
+        Files.write(plaintextFile.toPath(), content);
+        byte[] leafOne = sha256((byte) 0, Arrays.copyOfRange(content, 0, 1024 * 1024));
+        byte[] leafTwo = sha256((byte) 0, Arrays.copyOfRange(content, 1024 * 1024, 1024 * 1024 * 2));
+        byte[] leafThree = sha256((byte) 0, Arrays.copyOfRange(content, 1024 * 1024 * 2, content.length));
+        String expected = HexFormat.of().formatHex(sha256((byte) 1, sha256((byte) 1, leafOne, leafTwo), leafThree));
+        Assertions.assertEquals(expected, cryptoUtility.calculateChecksumOfFile(plaintextFile.getPath(), DigestAlgorithm.SHA256_TREE));
+    }
+
+    private byte[] sha256(byte prefix, byte[]... parts) throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        messageDigest.update(prefix);
+        for (byte[] part : parts) {
+            messageDigest.update(part);
+        }
+        return messageDigest.digest();
+    }
+
+    @Test
+    void decryptChunk() throws GeneralSecurityException {
+        Mockito.when(propertiesLoader.getProperty("Agent.ECC.Private-Key")).thenReturn(Base64.getEncoder().encodeToString(agentPrivateKey.getEncoded()));
+        Mockito.when(propertiesLoader.getProperty("Server.ECC.Public-Key")).thenReturn(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        cryptoUtility = new CryptoUtility(propertiesLoader);
+        byte[] initializationVector = new byte[12];
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+        cipher.init(Cipher.ENCRYPT_MODE, aesKey, new GCMParameterSpec(128, initializationVector));
+        byte[] ciphertext = cipher.doFinal("Test Message".getBytes(StandardCharsets.UTF_8));
+        byte[] encryptedChunk = new byte[initializationVector.length + ciphertext.length];
+        System.arraycopy(ciphertext, 0, encryptedChunk, initializationVector.length, ciphertext.length);
+
+        Assertions.assertArrayEquals("Test Message".getBytes(StandardCharsets.UTF_8), cryptoUtility.decryptChunk(encryptedChunk, aesKey));
+        encryptedChunk[encryptedChunk.length - 1] ^= 1;
+        Assertions.assertNull(cryptoUtility.decryptChunk(encryptedChunk, aesKey));
+        Assertions.assertNull(cryptoUtility.decryptChunk(new byte[4], aesKey));
+        Assertions.assertNull(cryptoUtility.decryptChunk(encryptedChunk, null));
+        Assertions.assertEquals(128, cryptoUtility.calculateChecksum(encryptedChunk).length());
     }
-}
\ No newline at end of file
+}
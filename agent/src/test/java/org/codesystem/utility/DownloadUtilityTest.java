@@ -159,4 +159,51 @@ class DownloadUtilityTest {
         Assertions.assertFalse(downloadUtility.downloadFile(downloadFileOne, request));
         Assertions.assertTrue(Files.exists(downloadFileOne));
     }
-}
\ No newline at end of file
+
+    @Test
+    void resumeDownload() throws IOException {
+        Request request = new Request.Builder().url("http://localhost:8899/download/test").build();
+        Assertions.assertFalse(downloadUtility.resumeDownload(null, null));
+        Assertions.assertFalse(downloadUtility.resumeDownload(downloadFileOne, null));
+
+        // server not available, the partial file is kept
+        mockServer.stop();
+        downloadFolder.toFile().mkdirs();
+        Files.writeString(downloadFileOne, "Test-");
+        Assertions.assertThrows(DownloadException.class, () -> downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertEquals("Test-", Files.readString(downloadFileOne));
+
+        // download refused
+        mockServer = ClientAndServer.startClientAndServer(8899);
+        mockServer.when(request().withMethod("GET").withPath("/download/test")).respond(HttpResponse.response().withStatusCode(400));
+        Assertions.assertFalse(downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertFalse(Files.exists(downloadFileOne));
+        deleteFolderWithContent();
+
+        // new download
+        mockServer.reset();
+        mockServer.when(request().withMethod("GET").withPath("/download/test")).respond(HttpResponse.response().withStatusCode(200).withBody("Test-Content".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertEquals("Test-Content", Files.readString(downloadFileOne));
+
+        // resumed download
+        mockServer.reset();
+        Files.writeString(downloadFileOne, "Test-");
+        mockServer.when(request().withMethod("GET").withPath("/download/test").withHeader("Range", "bytes=5-")).respond(HttpResponse.response().withStatusCode(206).withHeader("Content-Range", "bytes 5-11/12").withBody("Content".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertEquals("Test-Content", Files.readString(downloadFileOne));
+
+        // range ignored by the server
+        mockServer.reset();
+        Files.writeString(downloadFileOne, "Test-");
+        mockServer.when(request().withMethod("GET").withPath("/download/test")).respond(HttpResponse.response().withStatusCode(200).withBody("Test-Content".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertTrue(downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertEquals("Test-Content", Files.readString(downloadFileOne));
+
+        // already complete
+        mockServer.reset();
+        mockServer.when(request().withMethod("GET").withPath("/download/test")).respond(HttpResponse.response().withStatusCode(416));
+        Assertions.assertTrue(downloadUtility.resumeDownload(downloadFileOne, () -> request));
+        Assertions.assertEquals("Test-Content", Files.readString(downloadFileOne));
+    }
+}
@@ -1,23 +1,41 @@
 package org.codesystem.utility;
 
+import org.codesystem.ChunkCache;
+import org.codesystem.DeploymentResultOutbox;
 import org.codesystem.PropertiesLoader;
 import org.codesystem.TestSystemExitException;
+import org.codesystem.enums.DigestAlgorithm;
 import org.codesystem.enums.OperatingSystem;
+import org.codesystem.enums.PackageDeploymentErrorState;
 import org.codesystem.exceptions.PackageErrorException;
+import org.codesystem.exceptions.PackageVerificationException;
+import org.codesystem.payload.DeploymentResult;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockserver.integration.ClientAndServer;
 import org.mockserver.model.HttpResponse;
+import org.mockserver.verify.VerificationTimes;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -28,6 +46,8 @@ class PackageUtilityTest {
     OperatingSystem operatingSystem;
     PropertiesLoader propertiesLoader;
     DownloadUtility downloadUtility;
+    DeploymentResultOutbox deploymentResultOutbox;
+    ChunkCache chunkCache;
     PackageUtility packageUtility;
     ClientAndServer mockServer;
     MockedStatic<SystemExitUtility> systemExitMockedStatic;
@@ -39,7 +59,9 @@ class PackageUtilityTest {
         operatingSystem = Mockito.mock(OperatingSystem.class);
         propertiesLoader = Mockito.mock(PropertiesLoader.class);
         downloadUtility = Mockito.mock(DownloadUtility.class);
-        packageUtility = new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, downloadUtility);
+        deploymentResultOutbox = Mockito.mock(DeploymentResultOutbox.class);
+        chunkCache = Mockito.mock(ChunkCache.class);
+        packageUtility = new PackageUtility(cryptoUtility, operatingSystem, propertiesLoader, downloadUtility, deploymentResultOutbox, chunkCache);
 
         Mockito.when(propertiesLoader.getProperty("Server.Url")).thenReturn("http://localhost:8899");
         Mockito.when(propertiesLoader.getProperty("Agent.ECC.Public-Key")).thenReturn("Agent PublicKey");
@@ -61,6 +83,17 @@ class PackageUtilityTest {
 
     private void deleteFiles() {
         Paths.get("download").toFile().delete();
+        Paths.get("download-partial/file").toFile().delete();
+        Paths.get("download-partial/journal.json").toFile().delete();
+        Paths.get("download-partial").toFile().delete();
+    }
+
+    private JSONObject createManifest(JSONObject... packageDetails) {
+        JSONArray deployments = new JSONArray();
+        for (JSONObject packageDetail : packageDetails) {
+            deployments.put(packageDetail);
+        }
+        return new JSONObject().put("deployments", deployments);
     }
 
     @Test
@@ -68,84 +101,84 @@ class PackageUtilityTest {
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(400));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(400));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("invalidChecksum");
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("invalidChecksum");
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("invalidChecksum");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("invalidChecksum");
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true).then(invocationOnMock -> {
             Paths.get("download/file.zip").toFile().createNewFile();
             return null;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true).then(invocationOnMock -> {
             Paths.get("download/file.zip").toFile().createNewFile();
             return null;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
             ZipEntry zipEntry = new ZipEntry("test");
             ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
@@ -155,19 +188,19 @@ class PackageUtilityTest {
             zipOutputStream.close();
             return true;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
 
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
             ZipEntry zipEntry = new ZipEntry("test");
             ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
@@ -179,7 +212,7 @@ class PackageUtilityTest {
             Paths.get("download/extracted/start.sh").toFile().createNewFile();
             return true;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
     }
 
@@ -189,13 +222,13 @@ class PackageUtilityTest {
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
             ZipEntry zipEntry = new ZipEntry("test");
             ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
@@ -207,8 +240,7 @@ class PackageUtilityTest {
             Paths.get("download/extracted/start.sh").toFile().createNewFile();
             return true;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentResult")).respond(HttpResponse.response().withStatusCode(200));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertThrows(PackageErrorException.class, () -> packageUtility.initiateDeployment());
     }
 
@@ -217,14 +249,14 @@ class PackageUtilityTest {
         // valid deployment Linux
         mockServer.stop();
         mockServer = ClientAndServer.startClientAndServer(8899);
-        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted").put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8)));
-        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(jsonObject.toString());
-        Mockito.when(downloadUtility.downloadFile(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
-            Paths.get("download/file").toFile().createNewFile();
-            return null;
+        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
         });
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file")).thenReturn("checksumEncrypted");
-        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip")).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
         Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
         Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
             ZipEntry zipEntry = new ZipEntry("test");
@@ -237,8 +269,273 @@ class PackageUtilityTest {
             Paths.get("download/extracted/start.sh").toFile().createNewFile();
             return true;
         });
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
-        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentResult")).respond(HttpResponse.response().withStatusCode(200));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString(jsonObject.toString().getBytes(StandardCharsets.UTF_8))).toString()));
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+    }
+
+    @Test
+    void initiateDeployment_chunks() throws IOException {
+        JSONArray chunks = new JSONArray().put(new JSONObject().put("id", "chunkOne").put("size", 10)).put(new JSONObject().put("id", "chunkTwo").put("size", 20));
+        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted")
+                .put("chunkEncryptionToken", Base64.getEncoder().encodeToString(new byte[32])).put("chunks", chunks);
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
+        Mockito.when(chunkCache.fetch(Mockito.any(), Mockito.any())).thenReturn(20L);
+        Mockito.doAnswer(invocationOnMock -> {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
+            zipOutputStream.putNextEntry(new ZipEntry("test"));
+            zipOutputStream.write("Test content".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+            zipOutputStream.close();
+            Paths.get("download/extracted").toFile().mkdirs();
+            Paths.get("download/extracted/start.sh").toFile().createNewFile();
+            return null;
+        }).when(chunkCache).assemble(Mockito.any(), Mockito.any(), Mockito.any());
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
         Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        Mockito.verify(chunkCache).fetch(Mockito.eq("deploymentUUID"), Mockito.argThat(packageChunks -> packageChunks.size() == 2));
+        Mockito.verify(chunkCache).evict(Mockito.anyLong());
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+        Mockito.verify(cryptoUtility, Mockito.never()).decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void initiateDeployment_chunksFallback() throws IOException {
+        JSONArray chunks = new JSONArray().put(new JSONObject().put("id", "chunkOne").put("size", 10));
+        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted")
+                .put("chunkEncryptionToken", Base64.getEncoder().encodeToString(new byte[32])).put("chunks", chunks);
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        Mockito.when(chunkCache.fetch(Mockito.any(), Mockito.any())).thenThrow(new PackageErrorException("Error downloading chunks, HTTP response-code: 400"));
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
+        });
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
+            zipOutputStream.putNextEntry(new ZipEntry("test"));
+            zipOutputStream.write("Test content".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+            zipOutputStream.close();
+            Paths.get("download/extracted").toFile().mkdirs();
+            Paths.get("download/extracted/start.sh").toFile().createNewFile();
+            return true;
+        });
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        Mockito.verify(downloadUtility).resumeDownload(Mockito.any(), Mockito.any());
+        Mockito.verify(chunkCache, Mockito.never()).assemble(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    private List<String> deployAndGetResults(JSONObject packageDetail) {
+        Mockito.clearInvocations(deploymentResultOutbox);
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(packageDetail).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        ArgumentCaptor<DeploymentResult> deploymentResultCaptor = ArgumentCaptor.forClass(DeploymentResult.class);
+        Mockito.verify(deploymentResultOutbox, Mockito.atLeastOnce()).add(deploymentResultCaptor.capture());
+        return deploymentResultCaptor.getAllValues().stream().map(DeploymentResult::getResultCode).toList();
+    }
+
+    @Test
+    void initiateDeployment_verificationFailed() {
+        // a package that fails a check is neither extracted nor executed, the failed check is the only result
+        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
+        });
+        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
+            zipOutputStream.putNextEntry(new ZipEntry("test"));
+            zipOutputStream.write("Test content".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+            zipOutputStream.close();
+            return true;
+        });
+
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("invalidChecksum");
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.ENCRYPTED_CHECKSUM_MISMATCH.toString()), deployAndGetResults(jsonObject));
+        Mockito.verify(cryptoUtility, Mockito.never()).decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(false);
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.DECRYPTION_FAILED.toString()), deployAndGetResults(jsonObject));
+        Mockito.verify(cryptoUtility, Mockito.never()).calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512);
+
+        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("invalidChecksum");
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH.toString()), deployAndGetResults(jsonObject));
+
+        // package assembled from the chunks
+        JSONArray chunks = new JSONArray().put(new JSONObject().put("id", "chunkOne").put("size", 10));
+        jsonObject.put("chunkEncryptionToken", Base64.getEncoder().encodeToString(new byte[32])).put("chunks", chunks);
+        Mockito.clearInvocations(downloadUtility);
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH.toString()), deployAndGetResults(jsonObject));
+        Mockito.verify(chunkCache).assemble(Mockito.any(), Mockito.any(), Mockito.any());
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+        Assertions.assertFalse(Files.exists(Paths.get("download/extracted")));
+    }
+
+    @Test
+    void initiateDeployment_emptyManifest() {
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest().put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void initiateDeployment_multipleDeployments() {
+        JSONObject deploymentOne = new JSONObject().put("deploymentUUID", "deploymentOne").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        JSONObject deploymentTwo = new JSONObject().put("deploymentUUID", "deploymentTwo").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(deploymentOne, deploymentTwo).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
+        });
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file", DigestAlgorithm.SHA3_512)).thenReturn("checksumEncrypted");
+        Mockito.when(cryptoUtility.calculateChecksumOfFile("download/file.zip", DigestAlgorithm.SHA3_512)).thenReturn("checksumPlaintext");
+        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream("download/file.zip"));
+            zipOutputStream.putNextEntry(new ZipEntry("test"));
+            zipOutputStream.write("Test content".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+            zipOutputStream.close();
+            Paths.get("download/extracted").toFile().mkdirs();
+            Paths.get("download/extracted/start.sh").toFile().createNewFile();
+            return true;
+        });
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        Mockito.when(deploymentResultOutbox.flush()).thenReturn(true);
+        Assertions.assertTrue(packageUtility.initiateDeployment());
+        Mockito.verify(downloadUtility, Mockito.times(2)).resumeDownload(Mockito.any(), Mockito.any());
+        mockServer.verify(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest"), VerificationTimes.exactly(1));
+        Mockito.verify(deploymentResultOutbox, Mockito.times(2)).add(Mockito.any());
+        Mockito.verify(deploymentResultOutbox).flush();
+
+        // the results are still pending on the server, e.g. it is overloaded
+        Mockito.when(deploymentResultOutbox.flush()).thenReturn(false);
+        Assertions.assertFalse(packageUtility.initiateDeployment());
+    }
+
+    @Test
+    void initiateDeployment_resultNotSent() {
+        JSONObject deploymentOne = new JSONObject().put("deploymentUUID", "deploymentOne").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(deploymentOne).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        Mockito.when(deploymentResultOutbox.contains("deploymentOne")).thenReturn(true);
+        Mockito.when(deploymentResultOutbox.flush()).thenReturn(true);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        // nothing was deployed, asking again right away would only return the same deployment
+        Assertions.assertFalse(Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment()));
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+        Mockito.verify(deploymentResultOutbox, Mockito.never()).add(Mockito.any());
+        Mockito.verify(deploymentResultOutbox).flush();
+    }
+
+    @Test
+    void initiateDeployment_resumeDownload() throws IOException {
+        JSONObject deploymentOne = new JSONObject().put("deploymentUUID", "deploymentOne").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("checksumPlaintext", "checksumPlaintext").put("checksumEncrypted", "checksumEncrypted");
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(deploymentOne).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        List<String> partialContents = new ArrayList<>();
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Path partialFile = invocationOnMock.getArgument(0);
+            partialContents.add(Files.exists(partialFile) ? Files.readString(partialFile) : "");
+            Files.writeString(partialFile, "Content");
+            return true;
+        });
+
+        // partial file of the same package
+        Files.createDirectories(Paths.get("download-partial"));
+        Files.writeString(Paths.get("download-partial/file"), "Partial");
+        Files.writeString(Paths.get("download-partial/journal.json"), new JSONObject().put("checksumEncrypted", "checksumEncrypted").toString());
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        Assertions.assertFalse(Files.exists(Paths.get("download-partial/journal.json")));
+
+        // partial file of another package
+        Files.writeString(Paths.get("download-partial/file"), "Partial");
+        Files.writeString(Paths.get("download-partial/journal.json"), new JSONObject().put("checksumEncrypted", "otherChecksum").toString());
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        Assertions.assertEquals(List.of("Partial", ""), partialContents);
+    }
+
+    private byte[] createZip() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream)) {
+            zipOutputStream.putNextEntry(new ZipEntry("folder/test"));
+            zipOutputStream.write("Test content".getBytes(StandardCharsets.UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private List<String> startStreamedDeployment(byte[] zip, String checksumPlaintext) throws NoSuchAlgorithmException {
+        String checksum = HexFormat.of().formatHex(MessageDigest.getInstance("SHA3-512").digest(zip));
+        JSONObject jsonObject = new JSONObject().put("deploymentUUID", "deploymentUUID").put("encryptionToken", "encryptionToken").put("initializationVector", "initializationVector").put("encryptionFormat", "SEGMENTED")
+                .put("checksumPlaintext", checksumPlaintext == null ? checksum : checksumPlaintext).put("checksumEncrypted", checksum);
+        Mockito.when(cryptoUtility.decryptECC(Mockito.any())).thenReturn(createManifest(jsonObject).put("signature", Base64.getEncoder().encodeToString("Signature".getBytes(StandardCharsets.UTF_8))).toString());
+        Mockito.when(cryptoUtility.verifySignatureECC(Mockito.any(), Mockito.any())).thenReturn(true);
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/deploymentManifest")).respond(HttpResponse.response().withStatusCode(200).withBody(new JSONObject().put("message", Base64.getEncoder().encodeToString("Encrypted".getBytes(StandardCharsets.UTF_8))).toString()));
+        mockServer.when(request().withMethod("POST").withPath("/api/agent/communication/package/deploymentUUID")).respond(HttpResponse.response().withStatusCode(200).withBody(zip));
+        Assertions.assertDoesNotThrow(() -> packageUtility.initiateDeployment());
+        ArgumentCaptor<DeploymentResult> deploymentResultCaptor = ArgumentCaptor.forClass(DeploymentResult.class);
+        Mockito.verify(deploymentResultOutbox, Mockito.atLeastOnce()).add(deploymentResultCaptor.capture());
+        return deploymentResultCaptor.getAllValues().stream().map(DeploymentResult::getResultCode).toList();
+    }
+
+    @Test
+    void initiateDeployment_streamed() throws IOException, NoSuchAlgorithmException {
+        // the segments are decrypted by the stream, the mocked decryption returns the downloaded content
+        Mockito.when(cryptoUtility.decryptSegmentedStream(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> invocationOnMock.getArgument(2));
+        List<String> extractedContents = new ArrayList<>();
+        Mockito.doAnswer(invocationOnMock -> {
+            extractedContents.add(Files.readString(Paths.get("download/extracted/folder/test")));
+            return null;
+        }).when(deploymentResultOutbox).add(Mockito.any());
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.ENTRYPOINT_NOT_FOUND.toString()), startStreamedDeployment(createZip(), null));
+        Assertions.assertEquals(List.of("Test content"), extractedContents);
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+        Mockito.verify(cryptoUtility, Mockito.never()).decryptSegmentedFile(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        Assertions.assertFalse(Files.exists(Paths.get("download/extracted")));
+    }
+
+    @Test
+    void initiateDeployment_streamedInvalid() throws IOException, NoSuchAlgorithmException {
+        Mockito.when(cryptoUtility.decryptSegmentedStream(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> invocationOnMock.getArgument(2));
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.PLAINTEXT_CHECKSUM_MISMATCH.toString()), startStreamedDeployment(createZip(), "invalidChecksum"));
+        Assertions.assertFalse(Files.exists(Paths.get("download/extracted")));
+
+        Mockito.clearInvocations(deploymentResultOutbox);
+        Mockito.when(cryptoUtility.decryptSegmentedStream(Mockito.any(), Mockito.any(), Mockito.any())).thenThrow(new PackageVerificationException("Segment 0 cannot be authenticated"));
+        Assertions.assertEquals(List.of(PackageDeploymentErrorState.DECRYPTION_FAILED.toString()), startStreamedDeployment(createZip(), null));
+        Mockito.verify(downloadUtility, Mockito.never()).resumeDownload(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void initiateDeployment_streamedFallback() throws IOException, NoSuchAlgorithmException {
+        Mockito.when(downloadUtility.resumeDownload(Mockito.any(), Mockito.any())).then(invocationOnMock -> {
+            Paths.get("download-partial/file").toFile().createNewFile();
+            return true;
+        });
+        // interrupted download
+        Mockito.when(cryptoUtility.decryptSegmentedStream(Mockito.any(), Mockito.any(), Mockito.any())).thenThrow(new IOException("Connection reset"));
+        startStreamedDeployment(createZip(), null);
+        Mockito.verify(downloadUtility).resumeDownload(Mockito.any(), Mockito.any());
+
+        // streaming disabled
+        Mockito.clearInvocations(deploymentResultOutbox, downloadUtility, cryptoUtility);
+        Mockito.when(propertiesLoader.getProperty("Agent.Package-Streaming")).thenReturn("false");
+        startStreamedDeployment(createZip(), null);
+        Mockito.verify(downloadUtility).resumeDownload(Mockito.any(), Mockito.any());
+        Mockito.verify(cryptoUtility, Mockito.never()).decryptSegmentedStream(Mockito.any(), Mockito.any(), Mockito.any());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package org.codesystem.server.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates a mass reconnect: every Agent sends one update check at the same time and the score is the time until all of them are answered.
+ * A request waits for the network (reading the request, writing the response), uses the CPU and holds one of the database connections,
+ * all of it inside the {@link AgentRequestLimitFilter} like in the server.
+ * "platform" uses a pool with as many threads as Tomcat (200), "virtual" one virtual thread per request like spring.threads.virtual.enabled=true.
+ * Requests that are rejected with 503 are reported as the secondary result "rejected", they are retried by the Agents with their next update check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class AgentRequestLimitBenchmark {
+    private static final int TOMCAT_THREADS = 200;
+    // the default size of the Hikari pool
+    private static final int DATABASE_CONNECTIONS = 10;
+    private static final long QUEUE_TIMEOUT = 30;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"50", "200", "1000"})
+    public int maxConcurrentRequests;
+
+    @Param({"10000"})
+    public int agents;
+
+    @Param({"50"})
+    public int networkMillis;
+
+    @Param({"1"})
+    public int databaseMillis;
+
+    @Param({"200"})
+    public int cpuMicros;
+
+    private final AtomicInteger rejectedRequests = new AtomicInteger();
+    private ExecutorService executorService;
+    private AgentRequestLimitFilter agentRequestLimitFilter;
+    private Semaphore databaseConnections;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executorService = threads.equals("virtual") ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(TOMCAT_THREADS);
+        agentRequestLimitFilter = new AgentRequestLimitFilter(maxConcurrentRequests, QUEUE_TIMEOUT);
+        databaseConnections = new Semaphore(DATABASE_CONNECTIONS, true);
+        request = (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> null);
+        // only a rejected request sets the status
+        response = (HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+            if (method.getName().equals("setStatus")) {
+                rejectedRequests.incrementAndGet();
+            }
+            return null;
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Benchmark
+    public int reconnect(RejectedRequests rejectedRequestsCounter) throws InterruptedException {
+        rejectedRequests.set(0);
+        CountDownLatch countDownLatch = new CountDownLatch(agents);
+        FilterChain filterChain = (servletRequest, servletResponse) -> processRequest();
+        for (int i = 0; i < agents; i++) {
+            executorService.execute(() -> {
+                try {
+                    agentRequestLimitFilter.doFilterInternal(request, response, filterChain);
+                } catch (ServletException | IOException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    countDownLatch.countDown();
+                }
+            });
+        }
+        countDownLatch.await();
+        rejectedRequestsCounter.rejected += rejectedRequests.get();
+        return agentRequestLimitFilter.availablePermits();
+    }
+
+    private void processRequest() {
+        try {
+            Thread.sleep(networkMillis);
+            long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(cpuMicros);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            databaseConnections.acquireUninterruptibly();
+            try {
+                Thread.sleep(databaseMillis);
+            } finally {
+                databaseConnections.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RejectedRequests {
+        public int rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rejected = 0;
+        }
+    }
+}
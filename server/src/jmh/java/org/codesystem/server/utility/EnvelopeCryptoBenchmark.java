@@ -0,0 +1,102 @@
+package org.codesystem.server.utility;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.jce.spec.IESParameterSpec;
+import org.codesystem.server.entity.ServerEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ECC operations of one update check with the signed envelope: decrypting and verifying the request,
+ * signing and encrypting the response. With the default single thread the score is the number of update checks one core can handle,
+ * set the threads in the jmh block of the build.gradle to check the scaling.
+ * "pooled" uses the CryptoUtility with the parsed Agent key of the AgentIdentityCache,
+ * "unpooled" creates the Cipher and Signature instances and parses the Agent key for every request, like the server did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EnvelopeCryptoBenchmark {
+    private static final String ECIES_TRANSFORMATION = "ECIES/None/NoPadding";
+    private static final String SIGNATURE_ALGORITHM = "SHA512withECDSA";
+    private static final String REQUEST = "{\"agentChecksum\":\"" + "a".repeat(128) + "\",\"systemInformationFingerprint\":\"" + "b".repeat(64) + "\"}";
+    private static final String RESPONSE = "{\"updateInterval\":60,\"deploymentAvailable\":false,\"agentChecksum\":\"" + "a".repeat(128) + "\",\"systemInformationRequired\":false}";
+
+    private final IESParameterSpec iesParamSpec = new IESParameterSpec(null, null, 1024, 1024, null, false);
+    private CryptoUtility cryptoUtility;
+    private KeyFactory keyFactory;
+    private PrivateKey serverPrivateKey;
+    private PublicKey agentPublicKey;
+    private String agentPublicKeyBase64;
+    private byte[] encryptedRequest;
+    private String requestSignature;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        Security.addProvider(new BouncyCastleProvider());
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("ECDH", BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(new ECGenParameterSpec("sect571k1"));
+        KeyPair serverKeyPair = keyPairGenerator.generateKeyPair();
+        KeyPair agentKeyPair = keyPairGenerator.generateKeyPair();
+
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setPrivateKeyBase64(Base64.getEncoder().encodeToString(serverKeyPair.getPrivate().getEncoded()));
+        ServerRepository serverRepository = (ServerRepository) Proxy.newProxyInstance(ServerRepository.class.getClassLoader(), new Class<?>[]{ServerRepository.class}, (proxy, method, args) -> List.of(serverEntity));
+        cryptoUtility = new CryptoUtility(serverRepository);
+        keyFactory = KeyFactory.getInstance("EC");
+        serverPrivateKey = serverKeyPair.getPrivate();
+        agentPublicKeyBase64 = Base64.getEncoder().encodeToString(agentKeyPair.getPublic().getEncoded());
+        agentPublicKey = cryptoUtility.loadPublicKey(agentPublicKeyBase64);
+
+        // prepared like the Agent does it
+        Cipher cipher = Cipher.getInstance(ECIES_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
+        cipher.init(Cipher.ENCRYPT_MODE, serverKeyPair.getPublic(), iesParamSpec);
+        encryptedRequest = cipher.doFinal(REQUEST.getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance(SIGNATURE_ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+        signature.initSign(agentKeyPair.getPrivate());
+        signature.update(REQUEST.getBytes(StandardCharsets.UTF_8));
+        requestSignature = Base64.getEncoder().encodeToString(signature.sign());
+    }
+
+    @Benchmark
+    public int pooled() {
+        String request = cryptoUtility.decryptECC(encryptedRequest);
+        if (!cryptoUtility.verifySignatureECC(request, requestSignature, agentPublicKey)) {
+            throw new IllegalStateException("Invalid signature");
+        }
+        String responseSignature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(RESPONSE));
+        return cryptoUtility.encryptECC((RESPONSE + responseSignature).getBytes(StandardCharsets.UTF_8), agentPublicKey).length;
+    }
+
+    @Benchmark
+    public int unpooled() throws GeneralSecurityException {
+        Cipher decryptionCipher = Cipher.getInstance(ECIES_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
+        decryptionCipher.init(Cipher.DECRYPT_MODE, serverPrivateKey, iesParamSpec);
+        String request = new String(decryptionCipher.doFinal(encryptedRequest), StandardCharsets.UTF_8);
+        PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(agentPublicKeyBase64)));
+        Signature verificationSignature = Signature.getInstance(SIGNATURE_ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+        verificationSignature.initVerify(publicKey);
+        verificationSignature.update(request.getBytes(StandardCharsets.UTF_8));
+        if (!verificationSignature.verify(Base64.getDecoder().decode(requestSignature))) {
+            throw new IllegalStateException("Invalid signature");
+        }
+
+        Signature creationSignature = Signature.getInstance(SIGNATURE_ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+        creationSignature.initSign(serverPrivateKey);
+        creationSignature.update(RESPONSE.getBytes(StandardCharsets.UTF_8));
+        String responseSignature = Base64.getEncoder().encodeToString(creationSignature.sign());
+        Cipher encryptionCipher = Cipher.getInstance(ECIES_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
+        encryptionCipher.init(Cipher.ENCRYPT_MODE, publicKey, iesParamSpec);
+        return encryptionCipher.doFinal((RESPONSE + responseSignature).getBytes(StandardCharsets.UTF_8)).length;
+    }
+}
@@ -0,0 +1,120 @@
+package org.codesystem.server.utility;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.codesystem.server.entity.PackageEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the AES-GCM providers for the package encryption. The cipher benchmarks measure the providers alone,
+ * the file benchmarks the whole processing of a package (including the checksums when encrypting).
+ * Throughput in MB/s = sizeInMB * 1000 / score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SymmetricCipherBenchmark {
+    @Param({"SunJCE", "BC"})
+    public String provider;
+
+    @Param({"1", "64", "1024"})
+    public int sizeInMB;
+
+    private CryptoUtility cryptoUtility;
+    private SecretKey secretKey;
+    private byte[] segment;
+    private byte[] encryptedSegment;
+    private Path folder;
+    private File plaintextFile;
+    private File encryptedFile;
+    private PackageEntity packageEntity;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException, IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        // the server keys are not needed for the symmetric encryption
+        ServerRepository serverRepository = (ServerRepository) Proxy.newProxyInstance(ServerRepository.class.getClassLoader(), new Class<?>[]{ServerRepository.class}, (proxy, method, args) -> List.of());
+        cryptoUtility = new CryptoUtility(serverRepository, provider);
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        secretKey = keyGenerator.generateKey();
+
+        Random random = new Random(42);
+        segment = new byte[CryptoUtility.SEGMENT_SIZE];
+        random.nextBytes(segment);
+        encryptedSegment = createCipher(Cipher.ENCRYPT_MODE, 0).doFinal(segment);
+
+        folder = Files.createTempDirectory("opd-benchmark");
+        plaintextFile = folder.resolve("plaintext").toFile();
+        try (OutputStream outputStream = Files.newOutputStream(plaintextFile.toPath())) {
+            for (int i = 0; i < sizeInMB; i++) {
+                random.nextBytes(segment);
+                outputStream.write(segment);
+            }
+        }
+        encryptedFile = folder.resolve("encrypted").toFile();
+        packageEntity = new PackageEntity();
+        cryptoUtility.encryptFileWithChecksums(packageEntity, plaintextFile, encryptedFile.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> stream = Files.walk(folder)) {
+            stream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public long encryptSegments() throws GeneralSecurityException {
+        long size = 0;
+        for (int i = 0; i < sizeInMB; i++) {
+            size += createCipher(Cipher.ENCRYPT_MODE, i).doFinal(segment).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    public long decryptSegments() throws GeneralSecurityException {
+        long size = 0;
+        for (int i = 0; i < sizeInMB; i++) {
+            // every segment uses the nonce of the first one, so the prepared segment can be authenticated
+            size += createCipher(Cipher.DECRYPT_MODE, 0).doFinal(encryptedSegment).length;
+        }
+        return size;
+    }
+
+    @Benchmark
+    public CryptoUtility.EncryptedFile encryptFile() {
+        return cryptoUtility.encryptFileWithChecksums(new PackageEntity(), plaintextFile, folder.resolve("encrypted-benchmark"));
+    }
+
+    @Benchmark
+    public boolean decryptFile() {
+        return cryptoUtility.decryptFile(packageEntity, encryptedFile, folder.resolve("decrypted-benchmark"));
+    }
+
+    private Cipher createCipher(int mode, int segmentIndex) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", provider);
+        cipher.init(mode, secretKey, new GCMParameterSpec(128, ByteBuffer.allocate(12).putInt(8, segmentIndex).array()));
+        return cipher;
+    }
+}
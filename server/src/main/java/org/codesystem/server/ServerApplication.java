@@ -12,6 +12,7 @@ import java.security.Security;
 @SpringBootApplication
 public class ServerApplication {
     public static final String PACKAGE_LOCATION = File.separator + "opt" + File.separator + "OPD" + File.separator + "Packages" + File.separator;
+    public static final String AGENT_ARCHIVE_LOCATION = File.separator + "opt" + File.separator + "OPD" + File.separator + "Agents" + File.separator;
 
     public static void main(String[] args) {
         Security.addProvider(new BouncyCastleProvider());
@@ -0,0 +1,165 @@
+package org.codesystem.server.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.ServerApplication;
+import org.codesystem.server.configuration.ServerConfiguration;
+import org.codesystem.server.utility.BinaryDelta;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Extracts the embedded Agent.jar once, so the Agent downloads can be streamed from a file instead of loading the jar for every request.
+ * A gzip variant is stored next to it and picked up by the {@link org.codesystem.server.service.agent.communication.PackageServingService}.
+ * Every build is archived by its checksum, so Agents still running a previous build can update with a patch instead of the whole jar.
+ */
+@Service
+@RequiredArgsConstructor
+public class AgentBinaryCache {
+    private static final String AGENT_RESOURCE = "classpath:agent/Agent.jar";
+    private static final String AGENT_FILE_NAME = "Agent.jar";
+    // the jar is already compressed, a variant that saves less than this is not worth the decompression on the Agent
+    private static final double MAXIMUM_COMPRESSION_RATIO = 0.95;
+    // a patch close to the size of the jar is not worth applying it
+    private static final double MAXIMUM_PATCH_RATIO = 0.8;
+    private static final int MAXIMUM_ARCHIVED_BUILDS = 5;
+    private static final String ARCHIVE_SUFFIX = ".jar";
+    private static final String PATCH_SUFFIX = ".patch";
+    private static final String CHECKSUM_PATTERN = "^[0-9a-f]{128}$";
+    private final ResourceLoader resourceLoader;
+    private final ServerConfiguration serverConfiguration;
+    private Path extractionFolder;
+    private volatile Path agentFile;
+    private volatile String agentChecksum;
+
+    public Path getAgentFile() throws IOException {
+        Path extractedFile = agentFile;
+        if (extractedFile != null && Files.exists(extractedFile)) {
+            return extractedFile;
+        }
+        return extract();
+    }
+
+    private synchronized Path extract() throws IOException {
+        if (agentFile != null && Files.exists(agentFile)) {
+            return agentFile;
+        }
+        Resource resource = resourceLoader.getResource(AGENT_RESOURCE);
+        if (resource == null || !resource.exists()) {
+            throw new IOException("Agent.jar not found");
+        }
+        if (extractionFolder == null || !Files.isDirectory(extractionFolder)) {
+            extractionFolder = Files.createTempDirectory("opd-agent");
+        }
+        Path extractedFile = extractionFolder.resolve(AGENT_FILE_NAME);
+        try (InputStream inputStream = resource.getInputStream()) {
+            Files.copy(inputStream, extractedFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+        createGzipVariant(extractedFile);
+        // calculated from the same resource by the ServerInitialization, the Agent.jar cannot change while the server is running
+        agentChecksum = serverConfiguration.getServerEntity().getAgentChecksum();
+        archive(extractedFile);
+        agentFile = extractedFile;
+        return agentFile;
+    }
+
+    /**
+     * Returns a patch from the archived build with the given checksum to the current build.
+     * Returns null if the build is unknown, already current or the patch would not be noticeably smaller than the jar.
+     */
+    public Path getPatchFile(String baseChecksum) throws IOException {
+        Path currentFile = getAgentFile();
+        if (baseChecksum == null || !baseChecksum.matches(CHECKSUM_PATTERN) || baseChecksum.equals(agentChecksum)) {
+            return null;
+        }
+        Path baseFile = Paths.get(ServerApplication.AGENT_ARCHIVE_LOCATION + baseChecksum + ARCHIVE_SUFFIX);
+        if (!Files.exists(baseFile)) {
+            return null;
+        }
+        Path patchFile = createPatch(baseChecksum, baseFile, currentFile);
+        return Files.size(patchFile) > Files.size(currentFile) * MAXIMUM_PATCH_RATIO ? null : patchFile;
+    }
+
+    private synchronized Path createPatch(String baseChecksum, Path baseFile, Path currentFile) throws IOException {
+        Path patchFile = currentFile.resolveSibling(baseChecksum + PATCH_SUFFIX);
+        if (Files.exists(patchFile)) {
+            return patchFile;
+        }
+        Path temporaryFile = currentFile.resolveSibling(baseChecksum + PATCH_SUFFIX + ".tmp");
+        BinaryDelta.create(baseFile, currentFile, temporaryFile);
+        Files.move(temporaryFile, patchFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return patchFile;
+    }
+
+    private void archive(Path extractedFile) throws IOException {
+        if (agentChecksum == null || !agentChecksum.matches(CHECKSUM_PATTERN)) {
+            return;
+        }
+        Path archiveFolder = Paths.get(ServerApplication.AGENT_ARCHIVE_LOCATION);
+        Files.createDirectories(archiveFolder);
+        Path archivedFile = archiveFolder.resolve(agentChecksum + ARCHIVE_SUFFIX);
+        if (!Files.exists(archivedFile)) {
+            Files.copy(extractedFile, archivedFile);
+        }
+        Files.setLastModifiedTime(archivedFile, FileTime.from(Instant.now()));
+
+        // only the most recent builds are kept, older Agents download the whole jar
+        List<Path> archivedFiles;
+        try (Stream<Path> stream = Files.list(archiveFolder)) {
+            archivedFiles = stream.filter(path -> path.getFileName().toString().endsWith(ARCHIVE_SUFFIX))
+                    .sorted(Comparator.comparing(this::getLastModifiedTime).reversed())
+                    .toList();
+        }
+        for (Path path : archivedFiles.subList(Math.min(MAXIMUM_ARCHIVED_BUILDS, archivedFiles.size()), archivedFiles.size())) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void delete() throws IOException {
+        agentFile = null;
+        agentChecksum = null;
+        if (extractionFolder == null || !Files.exists(extractionFolder)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(extractionFolder)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        extractionFolder = null;
+    }
+
+    private void createGzipVariant(Path extractedFile) throws IOException {
+        Path gzipFile = extractedFile.resolveSibling(extractedFile.getFileName() + ".gz");
+        try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(gzipFile))) {
+            Files.copy(extractedFile, outputStream);
+        }
+        if (Files.size(gzipFile) > Files.size(extractedFile) * MAXIMUM_COMPRESSION_RATIO) {
+            Files.delete(gzipFile);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.codesystem.server.cache;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.entity.AgentEntity;
+import org.codesystem.server.repository.AgentRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the last connection time of the Agents in memory and writes them in batches,
+ * instead of updating every Agent on every poll.
+ */
+@Service
+@RequiredArgsConstructor
+public class AgentHeartbeatCache {
+    private static final int BATCH_SIZE = 1000;
+    private final AgentRepository agentRepository;
+    private final Map<String, Instant> pendingHeartbeats = new ConcurrentHashMap<>();
+
+    public void recordHeartbeat(String agentUUID) {
+        pendingHeartbeats.put(agentUUID, Instant.now());
+    }
+
+    /**
+     * Returns the last connection time of the Agent, including heartbeats that are not written yet.
+     */
+    public Instant getLastConnectionTime(AgentEntity agentEntity) {
+        Instant pendingHeartbeat = pendingHeartbeats.get(agentEntity.getUuid());
+        if (pendingHeartbeat == null || (agentEntity.getLastConnectionTime() != null && agentEntity.getLastConnectionTime().isAfter(pendingHeartbeat))) {
+            return agentEntity.getLastConnectionTime();
+        }
+        return pendingHeartbeat;
+    }
+
+    public AgentEntity applyLastConnectionTime(AgentEntity agentEntity) {
+        agentEntity.setLastConnectionTime(getLastConnectionTime(agentEntity));
+        return agentEntity;
+    }
+
+    @PreDestroy
+    public synchronized void flush() {
+        if (pendingHeartbeats.isEmpty()) {
+            return;
+        }
+        Map<String, Instant> flushedHeartbeats = new HashMap<>(pendingHeartbeats);
+        // Agents polling within the same second share one update
+        Map<Instant, List<String>> agentsByHeartbeat = new HashMap<>();
+        flushedHeartbeats.forEach((agentUUID, heartbeat) -> agentsByHeartbeat.computeIfAbsent(heartbeat.truncatedTo(ChronoUnit.SECONDS), key -> new ArrayList<>()).add(agentUUID));
+        for (Map.Entry<Instant, List<String>> entry : agentsByHeartbeat.entrySet()) {
+            List<String> agentUUIDs = entry.getValue();
+            for (int i = 0; i < agentUUIDs.size(); i += BATCH_SIZE) {
+                agentRepository.updateLastConnectionTime(agentUUIDs.subList(i, Math.min(i + BATCH_SIZE, agentUUIDs.size())), entry.getKey());
+            }
+        }
+        // heartbeats recorded during the flush stay pending
+        flushedHeartbeats.forEach(pendingHeartbeats::remove);
+    }
+
+    public int size() {
+        return pendingHeartbeats.size();
+    }
+}
@@ -0,0 +1,15 @@
+package org.codesystem.server.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.security.PublicKey;
+
+@Getter
+@AllArgsConstructor
+public class AgentIdentity {
+    private final String uuid;
+    private final boolean registrationCompleted;
+    private final PublicKey publicKey;
+    private final String systemInformationFingerprint;
+}
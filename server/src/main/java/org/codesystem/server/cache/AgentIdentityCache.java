@@ -0,0 +1,101 @@
+package org.codesystem.server.cache;
+
+import jakarta.annotation.PostConstruct;
+import org.codesystem.server.entity.AgentEntity;
+import org.codesystem.server.exception.CryptoUtilityException;
+import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.utility.CryptoUtility;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Service
+public class AgentIdentityCache {
+    private final AgentRepository agentRepository;
+    private final CryptoUtility cryptoUtility;
+    private final int maximumSize;
+    private final Map<String, AgentIdentity> agentIdentities;
+    // incremented by every invalidation, guarded by the lock of the agentIdentities
+    private long generation;
+
+    @Autowired
+    public AgentIdentityCache(AgentRepository agentRepository, CryptoUtility cryptoUtility, @Value("${opd.agent-identity-cache.size}") int maximumSize) {
+        this.agentRepository = agentRepository;
+        this.cryptoUtility = cryptoUtility;
+        this.maximumSize = maximumSize;
+        // access-ordered, so the least recently used Agent is evicted first
+        this.agentIdentities = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AgentIdentity> eldest) {
+                return size() > AgentIdentityCache.this.maximumSize;
+            }
+        });
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        for (AgentEntity agentEntity : agentRepository.findAllRegistered()) {
+            if (agentIdentities.size() >= maximumSize) {
+                break;
+            }
+            agentIdentities.put(agentEntity.getPublicKeyBase64(), createAgentIdentity(agentEntity));
+        }
+    }
+
+    public AgentIdentity getAgentIdentity(String publicKeyBase64) {
+        if (publicKeyBase64 == null || publicKeyBase64.isBlank()) {
+            return null;
+        }
+        AgentIdentity agentIdentity = agentIdentities.get(publicKeyBase64);
+        if (agentIdentity != null) {
+            return agentIdentity;
+        }
+
+        long loadGeneration;
+        synchronized (agentIdentities) {
+            loadGeneration = generation;
+        }
+        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(publicKeyBase64);
+        if (agentEntity == null) {
+            return null;
+        }
+        agentIdentity = createAgentIdentity(agentEntity);
+        synchronized (agentIdentities) {
+            // an invalidation during the load may have been missed by it, the identity is used for this request but not cached
+            if (generation == loadGeneration) {
+                agentIdentities.put(publicKeyBase64, agentIdentity);
+            }
+        }
+        return agentIdentity;
+    }
+
+    public void invalidate(String publicKeyBase64) {
+        if (publicKeyBase64 == null) {
+            return;
+        }
+        synchronized (agentIdentities) {
+            generation++;
+            agentIdentities.remove(publicKeyBase64);
+        }
+    }
+
+    public int size() {
+        return agentIdentities.size();
+    }
+
+    private AgentIdentity createAgentIdentity(AgentEntity agentEntity) {
+        PublicKey publicKey;
+        try {
+            publicKey = cryptoUtility.loadPublicKey(agentEntity.getPublicKeyBase64());
+        } catch (CryptoUtilityException e) {
+            // the signature check fails later on, the same way it did for an invalid key before
+            publicKey = null;
+        }
+        return new AgentIdentity(agentEntity.getUuid(), agentEntity.isRegistrationCompleted(), publicKey, agentEntity.getSystemInformationFingerprint());
+    }
+}
@@ -0,0 +1,39 @@
+package org.codesystem.server.cache;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+@RequiredArgsConstructor
+public class AgentSession {
+    private final String sessionId;
+    private final String publicKeyBase64;
+    private final SecretKey sessionKey;
+    private final byte[] serverNonce;
+    private final Instant expiresAt;
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong lastSequence = new AtomicLong(0);
+
+    public boolean isExpired() {
+        return !Instant.now().isBefore(expiresAt);
+    }
+
+    /**
+     * Accepts every sequence number only once and in increasing order, so replayed messages are rejected.
+     */
+    public boolean acceptSequence(long sequence) {
+        long last;
+        do {
+            last = lastSequence.get();
+            if (sequence <= last) {
+                return false;
+            }
+        } while (!lastSequence.compareAndSet(last, sequence));
+        return true;
+    }
+}
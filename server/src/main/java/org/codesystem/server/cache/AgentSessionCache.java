@@ -0,0 +1,81 @@
+package org.codesystem.server.cache;
+
+import org.codesystem.server.utility.CryptoUtility;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the symmetric sessions negotiated by the Agents, so polls can skip the ECIES envelope and the signatures.
+ */
+@Service
+public class AgentSessionCache {
+    private static final int SERVER_NONCE_LENGTH = 32;
+    // expired sessions are kept a little longer, so a response to a request accepted right before the expiry can still be encrypted
+    private static final Duration REMOVAL_GRACE_PERIOD = Duration.ofMinutes(1);
+    private final CryptoUtility cryptoUtility;
+    private final Duration sessionLifetime;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final Map<String, AgentSession> sessions = new ConcurrentHashMap<>();
+    // every Agent has at most one session, a new session replaces the previous one
+    private final Map<String, String> sessionIdsByAgent = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AgentSessionCache(CryptoUtility cryptoUtility, @Value("${opd.agent-session.lifetime}") long sessionLifetime) {
+        this.cryptoUtility = cryptoUtility;
+        this.sessionLifetime = Duration.ofSeconds(sessionLifetime);
+    }
+
+    public AgentSession createSession(String publicKeyBase64, byte[] agentSecret) {
+        byte[] serverNonce = new byte[SERVER_NONCE_LENGTH];
+        secureRandom.nextBytes(serverNonce);
+        String sessionId = UUID.randomUUID().toString();
+        AgentSession agentSession = new AgentSession(sessionId, publicKeyBase64, cryptoUtility.deriveSessionKey(agentSecret, serverNonce, sessionId), serverNonce, Instant.now().plus(sessionLifetime));
+        sessions.put(sessionId, agentSession);
+        String previousSessionId = sessionIdsByAgent.put(publicKeyBase64, sessionId);
+        if (previousSessionId != null) {
+            sessions.remove(previousSessionId);
+        }
+        return agentSession;
+    }
+
+    public AgentSession getSession(String sessionId) {
+        if (sessionId == null || sessionId.isBlank()) {
+            return null;
+        }
+        return sessions.get(sessionId);
+    }
+
+    public void invalidate(String publicKeyBase64) {
+        if (publicKeyBase64 == null) {
+            return;
+        }
+        String sessionId = sessionIdsByAgent.remove(publicKeyBase64);
+        if (sessionId != null) {
+            sessions.remove(sessionId);
+        }
+    }
+
+    public int removeExpiredSessions() {
+        Instant removalThreshold = Instant.now().minus(REMOVAL_GRACE_PERIOD);
+        int removedSessions = 0;
+        for (AgentSession agentSession : sessions.values()) {
+            if (agentSession.getExpiresAt().isBefore(removalThreshold) && sessions.remove(agentSession.getSessionId(), agentSession)) {
+                sessionIdsByAgent.remove(agentSession.getPublicKeyBase64(), agentSession.getSessionId());
+                removedSessions++;
+            }
+        }
+        return removedSessions;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,131 @@
+package org.codesystem.server.cache;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the files of the packages that are currently downloaded open, so a rollout to many Agents does not open the same file for every request.
+ * The channels are only used for positional transfers, which allows one channel to serve any number of downloads at the same time.
+ */
+@Service
+public class PackageChannelCache {
+    private final int maximumOpenChannels;
+    private final Map<Path, PackageChannel> packageChannels = new HashMap<>();
+
+    @Autowired
+    public PackageChannelCache(@Value("${opd.package-serving.open-channels}") int maximumOpenChannels) {
+        this.maximumOpenChannels = maximumOpenChannels;
+    }
+
+    /**
+     * Returns an open channel for the file, the channel has to be closed after the transfer to hand it back.
+     */
+    public synchronized PackageChannel acquire(Path path) throws IOException {
+        BasicFileAttributes fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+        PackageChannel packageChannel = packageChannels.get(path);
+        // a replaced file has to be reopened, running transfers keep the previous channel until they are done
+        if (packageChannel == null || !packageChannel.matches(fileAttributes)) {
+            if (packageChannel != null) {
+                packageChannel.stale = true;
+                closeIfUnused(packageChannel);
+            }
+            packageChannel = new PackageChannel(path, FileChannel.open(path, StandardOpenOption.READ), fileAttributes);
+            packageChannels.put(path, packageChannel);
+        }
+        packageChannel.leases++;
+        return packageChannel;
+    }
+
+    public synchronized int size() {
+        return packageChannels.size();
+    }
+
+    @PreDestroy
+    public synchronized void closeAll() {
+        packageChannels.values().forEach(packageChannel -> {
+            packageChannel.stale = true;
+            closeIfUnused(packageChannel);
+        });
+        packageChannels.clear();
+    }
+
+    private synchronized void release(PackageChannel packageChannel) {
+        packageChannel.leases--;
+        packageChannel.lastUsed = System.nanoTime();
+        if (packageChannel.stale) {
+            closeIfUnused(packageChannel);
+            return;
+        }
+        if (packageChannels.size() <= maximumOpenChannels) {
+            return;
+        }
+        List<PackageChannel> unusedChannels = packageChannels.values().stream()
+                .filter(channel -> channel.leases == 0)
+                .sorted(Comparator.comparingLong(channel -> channel.lastUsed))
+                .limit((long) packageChannels.size() - maximumOpenChannels)
+                .toList();
+        for (PackageChannel unusedChannel : unusedChannels) {
+            packageChannels.remove(unusedChannel.path);
+            unusedChannel.stale = true;
+            closeIfUnused(unusedChannel);
+        }
+    }
+
+    private void closeIfUnused(PackageChannel packageChannel) {
+        if (packageChannel.leases > 0) {
+            return;
+        }
+        try {
+            packageChannel.fileChannel.close();
+        } catch (IOException ignored) {
+            // the channel was only read from, nothing is lost
+        }
+    }
+
+    public class PackageChannel implements AutoCloseable {
+        private final Path path;
+        private final FileChannel fileChannel;
+        private final long size;
+        private final long lastModified;
+        private int leases = 0;
+        private long lastUsed = System.nanoTime();
+        private boolean stale = false;
+
+        private PackageChannel(Path path, FileChannel fileChannel, BasicFileAttributes fileAttributes) {
+            this.path = path;
+            this.fileChannel = fileChannel;
+            this.size = fileAttributes.size();
+            this.lastModified = fileAttributes.lastModifiedTime().toMillis();
+        }
+
+        public FileChannel getFileChannel() {
+            return fileChannel;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        private boolean matches(BasicFileAttributes fileAttributes) {
+            return fileChannel.isOpen() && size == fileAttributes.size() && lastModified == fileAttributes.lastModifiedTime().toMillis();
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package org.codesystem.server.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.repository.DeploymentRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the earliest deployment attempt per Agent, so polls of idle Agents can be answered without a query.
+ * Every code path that changes a deployment or the status of a package has to invalidate the affected Agents,
+ * every invalidation is published as {@link PendingDeploymentsChangedEvent} once the change is visible.
+ */
+@Service
+@RequiredArgsConstructor
+public class PendingDeploymentIndex {
+    private final DeploymentRepository deploymentRepository;
+    private final AgentRepository agentRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final Map<String, PendingState> pendingStates = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the pending deployments of all Agents at startup, later changes invalidate only the affected Agents.
+     */
+    @PostConstruct
+    public void rebuild() {
+        pendingStates.clear();
+        Map<String, Instant> earliestAttempts = new HashMap<>();
+        for (Object[] pendingDeployment : deploymentRepository.findAllPendingDeploymentTimestamps()) {
+            earliestAttempts.merge((String) pendingDeployment[0], toAttempt((Instant) pendingDeployment[1]), PendingDeploymentIndex::earliest);
+        }
+        for (String agentUUID : agentRepository.findAllUuids()) {
+            // Agents invalidated while rebuilding keep their stale state and get loaded on the next poll
+            pendingStates.putIfAbsent(agentUUID, new PendingState(earliestAttempts.get(agentUUID), false));
+        }
+        applicationEventPublisher.publishEvent(new PendingDeploymentsChangedEvent(null));
+    }
+
+    public boolean isDeploymentAvailable(String agentUUID, long agentInstallRetryInterval) {
+        PendingState pendingState = pendingStates.get(agentUUID);
+        if (pendingState == null || pendingState.stale) {
+            PendingState loadedPendingState = load(agentUUID);
+            // only store the loaded state if no invalidation happened in the meantime
+            if (pendingState == null) {
+                pendingStates.putIfAbsent(agentUUID, loadedPendingState);
+            } else {
+                pendingStates.replace(agentUUID, pendingState, loadedPendingState);
+            }
+            pendingState = loadedPendingState;
+        }
+        return pendingState.earliestAttempt != null && pendingState.earliestAttempt.isBefore(Instant.now().minus(agentInstallRetryInterval, ChronoUnit.SECONDS));
+    }
+
+    public void invalidate(String agentUUID) {
+        if (agentUUID == null) {
+            return;
+        }
+        markStale(agentUUID);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a poll before the commit still reads the old deployments, so invalidate again once they are visible
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStale(agentUUID);
+                    applicationEventPublisher.publishEvent(new PendingDeploymentsChangedEvent(agentUUID));
+                }
+            });
+        } else {
+            applicationEventPublisher.publishEvent(new PendingDeploymentsChangedEvent(agentUUID));
+        }
+    }
+
+    /**
+     * Invalidates the Agents with a deployment of the package, e.g. after its deployments were reset or its status changed.
+     */
+    public void invalidatePackage(String packageUUID) {
+        invalidate(findAgentsForPackage(packageUUID));
+    }
+
+    /**
+     * Returns the Agents with a deployment of the package, collected before the deployments are deleted.
+     */
+    public Set<String> findAgentsForPackage(String packageUUID) {
+        if (packageUUID == null) {
+            return Set.of();
+        }
+        return deploymentRepository.findDeploymentsForPackage(packageUUID).stream()
+                .map(deploymentEntity -> deploymentEntity.getAgentEntity().getUuid())
+                .collect(Collectors.toSet());
+    }
+
+    public void invalidate(Collection<String> agentUUIDs) {
+        agentUUIDs.forEach(this::invalidate);
+    }
+
+    public void remove(String agentUUID) {
+        if (agentUUID == null) {
+            return;
+        }
+        pendingStates.remove(agentUUID);
+    }
+
+    public int size() {
+        return pendingStates.size();
+    }
+
+    private void markStale(String agentUUID) {
+        pendingStates.put(agentUUID, new PendingState(null, true));
+    }
+
+    private PendingState load(String agentUUID) {
+        List<Instant> lastDeploymentTimestamps = deploymentRepository.findPendingDeploymentTimestamps(agentUUID);
+        Instant earliestAttempt = null;
+        for (Instant lastDeploymentTimestamp : lastDeploymentTimestamps) {
+            earliestAttempt = earliest(earliestAttempt, toAttempt(lastDeploymentTimestamp));
+        }
+        return new PendingState(earliestAttempt, false);
+    }
+
+    private static Instant toAttempt(Instant lastDeploymentTimestamp) {
+        // a deployment that was never attempted is available right away
+        return lastDeploymentTimestamp == null ? Instant.EPOCH : lastDeploymentTimestamp;
+    }
+
+    private static Instant earliest(Instant first, Instant second) {
+        if (first == null) {
+            return second;
+        }
+        return first.isBefore(second) ? first : second;
+    }
+
+    /**
+     * Compared by identity, so a state that got invalidated while a poll was loading it is never overwritten.
+     */
+    private static final class PendingState {
+        private final Instant earliestAttempt;
+        private final boolean stale;
+
+        private PendingState(Instant earliestAttempt, boolean stale) {
+            this.earliestAttempt = earliestAttempt;
+            this.stale = stale;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.codesystem.server.cache;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when the pending deployments of an Agent changed, without an Agent UUID if all Agents might be affected.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PendingDeploymentsChangedEvent {
+    private final String agentUUID;
+}
@@ -1,10 +1,12 @@
 package org.codesystem.server.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @Configuration
@@ -23,6 +25,15 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return createTaskSchedulerWithPoolSizeOne();
     }
 
+    @Bean(name = "processPackageWorkers")
+    public ThreadPoolTaskExecutor threadPoolTaskExecutorProcessPackage(@Value("${opd.package-processing.workers}") int workers) {
+        ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+        threadPoolTaskExecutor.setCorePoolSize(workers);
+        threadPoolTaskExecutor.setMaxPoolSize(workers);
+        threadPoolTaskExecutor.setThreadNamePrefix("Package-Processing-");
+        return threadPoolTaskExecutor;
+    }
+
     @Bean(name = "deletePackageTask")
     public ThreadPoolTaskScheduler threadPoolTaskSchedulerDeletePackage() {
         return createTaskSchedulerWithPoolSizeOne();
@@ -47,4 +58,24 @@ public class AsyncConfiguration implements AsyncConfigurer {
     public ThreadPoolTaskScheduler threadPoolTaskSchedulerValidateDeployments() {
         return createTaskSchedulerWithPoolSizeOne();
     }
+
+    @Bean(name = "writeHeartbeatsTask")
+    public ThreadPoolTaskScheduler threadPoolTaskSchedulerWriteHeartbeats() {
+        return createTaskSchedulerWithPoolSizeOne();
+    }
+
+    @Bean(name = "deleteAgentSessionsTask")
+    public ThreadPoolTaskScheduler threadPoolTaskSchedulerDeleteAgentSessions() {
+        return createTaskSchedulerWithPoolSizeOne();
+    }
+
+    @Bean(name = "notifyAgentsTask")
+    public ThreadPoolTaskScheduler threadPoolTaskSchedulerNotifyAgents() {
+        return createTaskSchedulerWithPoolSizeOne();
+    }
+
+    @Bean(name = "keepAliveAgentNotificationsTask")
+    public ThreadPoolTaskScheduler threadPoolTaskSchedulerKeepAliveAgentNotifications() {
+        return createTaskSchedulerWithPoolSizeOne();
+    }
 }
\ No newline at end of file
@@ -3,7 +3,6 @@ package org.codesystem.server.configuration;
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.configuration.keycloak.JwtAuthConverter;
 import org.codesystem.server.filter.HeaderAuthenticationFilter;
-import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.service.server.LogService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -21,7 +20,7 @@ import org.springframework.security.web.authentication.www.BasicAuthenticationFi
 public class SecurityConfiguration {
     public static final String AUTHENTICATION_ROLE = "uma_authorization";
     private final JwtAuthConverter jwtAuthConverter;
-    private final ServerRepository serverRepository;
+    private final ServerConfiguration serverConfiguration;
     private final LogService logService;
 
     @Bean
@@ -81,7 +80,7 @@ public class SecurityConfiguration {
     @Profile("!Development")
     public SecurityFilterChain securityFilterChainAgentDownload(HttpSecurity http) throws Exception {
         http.securityMatcher("/download/agent/**");
-        http.addFilterBefore(new HeaderAuthenticationFilter(serverRepository, logService), BasicAuthenticationFilter.class);
+        http.addFilterBefore(new HeaderAuthenticationFilter(serverConfiguration, logService), BasicAuthenticationFilter.class);
         http.csrf(AbstractHttpConfigurer::disable);
         return http.build();
     }
@@ -0,0 +1,73 @@
+package org.codesystem.server.configuration;
+
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.entity.ServerEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+@Component
+@RequiredArgsConstructor
+public class ServerConfiguration {
+    private final ServerRepository serverRepository;
+    private final AtomicReference<ServerEntity> serverEntity = new AtomicReference<>();
+
+    /**
+     * Returns the cached Server configuration and loads it on the first access.
+     * The returned entity is shared between all callers and must not be modified, use {@link #update(Consumer)} instead.
+     */
+    public ServerEntity getServerEntity() {
+        ServerEntity cachedServerEntity = serverEntity.get();
+        if (cachedServerEntity == null) {
+            cachedServerEntity = reload();
+        }
+        return cachedServerEntity;
+    }
+
+    public ServerEntity reload() {
+        ServerEntity loadedServerEntity = serverRepository.findAll().get(0);
+        serverEntity.set(loadedServerEntity);
+        return loadedServerEntity;
+    }
+
+    /**
+     * Applies the modification to a freshly loaded Server configuration, saves it and publishes it to all readers.
+     * Inside a transaction the configuration is only published after the commit, a rollback keeps the current one.
+     *
+     * @return Returns the saved Server configuration.
+     */
+    public synchronized ServerEntity update(Consumer<ServerEntity> modification) {
+        ServerEntity currentServerEntity = serverRepository.findAll().get(0);
+        modification.accept(currentServerEntity);
+        ServerEntity savedServerEntity = serverRepository.save(currentServerEntity);
+        publish(savedServerEntity);
+        return savedServerEntity;
+    }
+
+    /**
+     * Saves the initial Server configuration and publishes it to all readers.
+     */
+    public synchronized ServerEntity create(ServerEntity newServerEntity) {
+        ServerEntity savedServerEntity = serverRepository.save(newServerEntity);
+        publish(savedServerEntity);
+        return savedServerEntity;
+    }
+
+    private void publish(ServerEntity savedServerEntity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // readers outside the transaction must not see a configuration that is not committed yet
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    serverEntity.set(savedServerEntity);
+                }
+            });
+        } else {
+            serverEntity.set(savedServerEntity);
+        }
+    }
+}
@@ -23,13 +23,15 @@ import java.util.UUID;
 @Component
 public class ServerInitialization {
     private final ServerRepository serverRepository;
+    private final ServerConfiguration serverConfiguration;
     private final ResourceLoader resourceLoader;
     private final CryptoUtility cryptoUtility;
     private final SystemExitUtility systemExitUtility;
     private final LogService logService;
 
-    public ServerInitialization(ServerRepository serverRepository, ResourceLoader resourceLoader, SystemExitUtility systemExitUtility, LogService logService) {
+    public ServerInitialization(ServerRepository serverRepository, ServerConfiguration serverConfiguration, ResourceLoader resourceLoader, SystemExitUtility systemExitUtility, LogService logService) {
         this.serverRepository = serverRepository;
+        this.serverConfiguration = serverConfiguration;
         this.resourceLoader = resourceLoader;
         this.cryptoUtility = new CryptoUtility(serverRepository);
         this.systemExitUtility = systemExitUtility;
@@ -65,9 +67,8 @@ public class ServerInitialization {
             systemExitUtility.exit(-101);
             return;
         }
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
-        serverEntity.setAgentChecksum(checksum);
-        serverRepository.save(serverEntity);
+        // saved through the cached configuration, readers that loaded it earlier would keep the previous checksum otherwise
+        serverConfiguration.update(serverEntity -> serverEntity.setAgentChecksum(checksum));
         logService.addEntry(Severity.INFO, "Agent checksum calculated: " + checksum);
     }
 
@@ -123,6 +124,6 @@ public class ServerInitialization {
         serverEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()));
         serverEntity.setPrivateKeyBase64(Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded()));
         serverEntity.setAgentChecksum("");
-        serverRepository.save(serverEntity);
+        serverConfiguration.create(serverEntity);
     }
 }
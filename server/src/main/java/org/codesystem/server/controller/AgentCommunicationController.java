@@ -1,14 +1,19 @@
 package org.codesystem.server.controller;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.request.agent.AgentEncryptedRequest;
 import org.codesystem.server.response.general.ApiResponse;
 import org.codesystem.server.service.agent.communication.AgentCommunicationService;
-import org.springframework.core.io.FileSystemResource;
+import org.codesystem.server.service.agent.communication.PackageServingService;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
 
 @Tag(name = "Agent Communication")
 @RestController
@@ -16,25 +21,51 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class AgentCommunicationController {
     private final AgentCommunicationService agentCommunicationService;
+    private final PackageServingService packageServingService;
 
     @PostMapping("checkForUpdates")
     public ResponseEntity<ApiResponse> addNewAgent(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
         return agentCommunicationService.checkForUpdates(agentEncryptedRequest);
     }
 
+    @PostMapping("session")
+    public ResponseEntity<ApiResponse> createSession(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
+        return agentCommunicationService.createSession(agentEncryptedRequest);
+    }
+
+    @PostMapping(value = "notifications", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeNotifications(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
+        return agentCommunicationService.subscribeNotifications(agentEncryptedRequest);
+    }
+
     @PostMapping("package")
     public ResponseEntity<ApiResponse> getPackageDetails(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
         return agentCommunicationService.getPackageDetails(agentEncryptedRequest);
     }
 
+    @PostMapping("deploymentManifest")
+    public ResponseEntity<ApiResponse> getDeploymentManifest(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
+        return agentCommunicationService.getDeploymentManifest(agentEncryptedRequest);
+    }
+
     @PostMapping(value = "agent", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<byte[]> getAgent(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
-        return agentCommunicationService.getAgent(agentEncryptedRequest);
+    public void getAgent(@RequestBody AgentEncryptedRequest agentEncryptedRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        packageServingService.serve(agentCommunicationService.getAgent(agentEncryptedRequest), request, response);
+    }
+
+    @PostMapping(value = "agentPatch", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void getAgentPatch(@RequestBody AgentEncryptedRequest agentEncryptedRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        packageServingService.serve(agentCommunicationService.getAgentPatch(agentEncryptedRequest), request, response);
     }
 
     @PostMapping(value = "package/{deploymentUUID}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<FileSystemResource> getPackage(@RequestBody AgentEncryptedRequest agentEncryptedRequest, @PathVariable String deploymentUUID) {
-        return agentCommunicationService.getPackage(agentEncryptedRequest, deploymentUUID);
+    public void getPackage(@RequestBody AgentEncryptedRequest agentEncryptedRequest, @PathVariable String deploymentUUID, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        packageServingService.serve(agentCommunicationService.getPackage(agentEncryptedRequest, deploymentUUID), request, response);
+    }
+
+    @PostMapping(value = "chunks/{deploymentUUID}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public void getChunks(@RequestBody AgentEncryptedRequest agentEncryptedRequest, @PathVariable String deploymentUUID, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        packageServingService.serveAll(agentCommunicationService.getChunks(agentEncryptedRequest, deploymentUUID), request, response);
     }
 
 
@@ -42,4 +73,9 @@ public class AgentCommunicationController {
     public ResponseEntity<ApiResponse> sendDeploymentResult(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
         return agentCommunicationService.sendDeploymentResult(agentEncryptedRequest);
     }
+
+    @PostMapping("deploymentResults")
+    public ResponseEntity<ApiResponse> sendDeploymentResults(@RequestBody AgentEncryptedRequest agentEncryptedRequest) {
+        return agentCommunicationService.sendDeploymentResults(agentEncryptedRequest);
+    }
 }
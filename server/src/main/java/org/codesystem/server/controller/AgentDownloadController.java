@@ -1,22 +1,27 @@
 package org.codesystem.server.controller;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.codesystem.server.service.agent.communication.PackageServingService;
 import org.codesystem.server.service.agent.download.AgentDownloadService;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+
 @Tag(name = "Agent Download")
 @RestController
 @RequestMapping("/download/agent")
 @RequiredArgsConstructor
 public class AgentDownloadController {
     private final AgentDownloadService agentDownloadService;
+    private final PackageServingService packageServingService;
 
     @GetMapping()
-    public ResponseEntity<byte[]> downloadAgent() {
-        return agentDownloadService.download();
+    public void downloadAgent(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        packageServingService.serve(agentDownloadService.download(), request, response);
     }
 }
@@ -6,6 +6,8 @@ import org.codesystem.server.request.server.ServerAgentInstallRetryRequest;
 import org.codesystem.server.request.server.ServerAgentUpdateIntervalRequest;
 import org.codesystem.server.request.server.ServerDeploymentValidationRequest;
 import org.codesystem.server.response.general.ApiResponse;
+import org.codesystem.server.service.agent.communication.PackageServingService;
+import org.codesystem.server.service.scheduled.PackageEncryptor;
 import org.codesystem.server.service.server.LogService;
 import org.codesystem.server.service.server.ManagementServerService;
 import org.codesystem.server.service.server.SystemUsageService;
@@ -20,6 +22,8 @@ public class ManagementServerController {
     private final ManagementServerService managementServerService;
     private final LogService logService;
     private final SystemUsageService systemUsageService;
+    private final PackageServingService packageServingService;
+    private final PackageEncryptor packageEncryptor;
 
     @GetMapping("registrationToken")
     public ResponseEntity<ApiResponse> getRegistrationToken() {
@@ -76,6 +80,16 @@ public class ManagementServerController {
         return systemUsageService.getStorageInformation();
     }
 
+    @GetMapping("packageServing")
+    public ResponseEntity<ApiResponse> getPackageServingStatistics() {
+        return packageServingService.getStatistics();
+    }
+
+    @GetMapping("packageProcessing")
+    public ResponseEntity<ApiResponse> getPackageProcessingStatistics() {
+        return packageEncryptor.getStatistics();
+    }
+
     @GetMapping("deploymentValidationInterval")
     public ResponseEntity<ApiResponse> getDeploymentValidationInterval() {
         return managementServerService.getDeploymentValidationInterval();
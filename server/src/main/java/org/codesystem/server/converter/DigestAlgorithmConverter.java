@@ -0,0 +1,26 @@
+package org.codesystem.server.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+
+@Converter
+public class DigestAlgorithmConverter implements AttributeConverter<DigestAlgorithm, String> {
+    @Override
+    public String convertToDatabaseColumn(DigestAlgorithm digestAlgorithm) {
+        if (digestAlgorithm == null) {
+            return null;
+        }
+        return digestAlgorithm.name();
+    }
+
+    @Override
+    public DigestAlgorithm convertToEntityAttribute(String s) {
+        try {
+            return Enum.valueOf(DigestAlgorithm.class, s);
+        } catch (Exception e) {
+            // packages uploaded before the digest algorithm was stored
+            return DigestAlgorithm.SHA3_512;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.codesystem.server.converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.codesystem.server.enums.packages.EncryptionFormat;
+
+@Converter
+public class EncryptionFormatConverter implements AttributeConverter<EncryptionFormat, String> {
+    @Override
+    public String convertToDatabaseColumn(EncryptionFormat encryptionFormat) {
+        if (encryptionFormat == null) {
+            return null;
+        }
+        return encryptionFormat.name();
+    }
+
+    @Override
+    public EncryptionFormat convertToEntityAttribute(String s) {
+        try {
+            return Enum.valueOf(EncryptionFormat.class, s);
+        } catch (Exception e) {
+            // packages encrypted before the segmented format was introduced
+            return EncryptionFormat.MONOLITHIC;
+        }
+    }
+}
@@ -63,4 +63,7 @@ public class AgentEntity {
     private String cpuSockets = null;
     @Column(name = "memory")
     private String memory = null;
+    @Column(name = "system_information_fingerprint")
+    @JsonIgnore
+    private String systemInformationFingerprint = null;
 }
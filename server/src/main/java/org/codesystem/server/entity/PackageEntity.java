@@ -5,9 +5,13 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.codesystem.server.converter.DigestAlgorithmConverter;
+import org.codesystem.server.converter.EncryptionFormatConverter;
 import org.codesystem.server.converter.OperatingSystemConverter;
 import org.codesystem.server.converter.PackageStatusInternalConverter;
 import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+import org.codesystem.server.enums.packages.EncryptionFormat;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 
 import javax.crypto.SecretKey;
@@ -40,9 +44,16 @@ public class PackageEntity {
     private String checksumPlaintext;
     @Column(name = "checksum_encrypted")
     private String checksumEncrypted;
+    // algorithm of both checksums
+    @Column(name = "digest_algorithm")
+    @Convert(converter = DigestAlgorithmConverter.class)
+    private DigestAlgorithm digestAlgorithm = DigestAlgorithm.SHA3_512;
     @Column(name = "initialization_vector")
     @JsonIgnore
     private byte[] initializationVector;
+    @Column(name = "encryption_format")
+    @Convert(converter = EncryptionFormatConverter.class)
+    private EncryptionFormat encryptionFormat = EncryptionFormat.MONOLITHIC;
     @Column(name = "target_operating_system", nullable = false)
     @Convert(converter = OperatingSystemConverter.class)
     private OperatingSystem targetOperatingSystem;
@@ -50,4 +61,14 @@ public class PackageEntity {
     private Long plaintextSize = 0L;
     @Column(name = "encrypted_size", nullable = false)
     private Long encryptedSize = 0L;
+    // milliseconds
+    @Column(name = "processing_time")
+    private Long processingTime = null;
+    // kept for all revisions of the package, so unchanged chunks stay identical
+    @Column(name = "chunk_encryption_token")
+    @JsonIgnore
+    private SecretKey chunkEncryptionToken = null;
+    @Column(name = "chunk_manifest", columnDefinition = "LONGTEXT")
+    @JsonIgnore
+    private String chunkManifest = null;
 }
@@ -0,0 +1,8 @@
+package org.codesystem.server.enums.packages;
+
+public enum DigestAlgorithm {
+    // single-threaded, the checksum of all packages uploaded before the tree hash was introduced
+    SHA3_512,
+    // SHA-256 Merkle tree over 1 MiB leaves, hashed in parallel, see PackageDigest
+    SHA256_TREE
+}
@@ -0,0 +1,8 @@
+package org.codesystem.server.enums.packages;
+
+public enum EncryptionFormat {
+    // one AES-GCM stream, authenticated at the end of the file
+    MONOLITHIC,
+    // independently authenticated segments behind a header, see CryptoUtility
+    SEGMENTED
+}
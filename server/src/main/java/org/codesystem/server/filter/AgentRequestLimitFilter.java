@@ -0,0 +1,69 @@
+package org.codesystem.server.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of Agent requests that are processed at the same time, so a mass reconnect queues in front of the database pool instead of inside it.
+ * Without this limit, running the requests on virtual threads would let every polling Agent compete for a database connection.
+ */
+@Component
+public class AgentRequestLimitFilter extends OncePerRequestFilter {
+    private static final String AGENT_API_PREFIX = "/api/agent/";
+    private static final String PACKAGE_DOWNLOAD_PREFIX = "/api/agent/communication/package/";
+    private static final String CHUNK_DOWNLOAD_PREFIX = "/api/agent/communication/chunks/";
+    private static final String AGENT_DOWNLOAD_PATH = "/api/agent/communication/agent";
+    private static final String AGENT_PATCH_PATH = "/api/agent/communication/agentPatch";
+    private final Semaphore requestPermits;
+    private final long queueTimeout;
+
+    @Autowired
+    public AgentRequestLimitFilter(@Value("${opd.agent-communication.max-concurrent-requests}") int maxConcurrentRequests, @Value("${opd.agent-communication.queue-timeout}") long queueTimeout) {
+        this.requestPermits = new Semaphore(maxConcurrentRequests, true);
+        this.queueTimeout = queueTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        // downloads are bound by the network and would hold a permit for the whole transfer
+        return !path.startsWith(AGENT_API_PREFIX) || path.startsWith(PACKAGE_DOWNLOAD_PREFIX) || path.startsWith(CHUNK_DOWNLOAD_PREFIX) || path.equals(AGENT_DOWNLOAD_PATH) || path.equals(AGENT_PATCH_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = requestPermits.tryAcquire(queueTimeout, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            // the Agent treats this like an unavailable server and retries with the next update check
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(queueTimeout));
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    public int availablePermits() {
+        return requestPermits.availablePermits();
+    }
+}
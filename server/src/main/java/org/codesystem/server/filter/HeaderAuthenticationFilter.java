@@ -5,9 +5,9 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.enums.log.Severity;
-import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.service.server.LogService;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -15,13 +15,13 @@ import java.io.IOException;
 
 @RequiredArgsConstructor
 public class HeaderAuthenticationFilter extends OncePerRequestFilter {
-    private final ServerRepository serverRepository;
+    private final ServerConfiguration serverConfiguration;
     private final LogService logService;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String auth = request.getHeader("Authentication");
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
         if (auth != null && auth.equals(serverEntity.getAgentRegistrationToken())) {
             filterChain.doFilter(request, response);
         } else {
@@ -2,9 +2,13 @@ package org.codesystem.server.repository;
 
 import org.codesystem.server.entity.AgentEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,5 +20,13 @@ public interface AgentRepository extends JpaRepository<AgentEntity, String> {
     @Query("select a from AgentEntity a where a.registrationCompleted = true")
     List<AgentEntity> findAllRegistered();
 
+    @Query("select a.uuid from AgentEntity a")
+    List<String> findAllUuids();
+
+    @Transactional
+    @Modifying
+    @Query("update AgentEntity a set a.lastConnectionTime = ?2 where a.uuid in ?1")
+    int updateLastConnectionTime(Collection<String> agentUUIDs, Instant lastConnectionTime);
+
 
 }
@@ -21,6 +21,16 @@ public interface DeploymentRepository extends JpaRepository<DeploymentEntity, St
             where d.agentEntity.uuid = ?1 and d.packageEntity.packageStatusInternal = "PROCESSED" and d.deployed = false and (d.lastDeploymentTimestamp < ?2 or d.lastDeploymentTimestamp is null)""")
     List<DeploymentEntity> findAvailableDeployments(String uuid, Instant lastDeploymentTimestamp);
 
+    @Query("""
+            select d.lastDeploymentTimestamp from DeploymentEntity d
+            where d.agentEntity.uuid = ?1 and d.packageEntity.packageStatusInternal = "PROCESSED" and d.deployed = false""")
+    List<Instant> findPendingDeploymentTimestamps(String agentUUID);
+
+    @Query("""
+            select d.agentEntity.uuid, d.lastDeploymentTimestamp from DeploymentEntity d
+            where d.packageEntity.packageStatusInternal = "PROCESSED" and d.deployed = false""")
+    List<Object[]> findAllPendingDeploymentTimestamps();
+
     @Transactional
     @Modifying
     @Query("update DeploymentEntity d set d.deployed = false, d.lastDeploymentTimestamp = null where d.uuid = ?1")
@@ -3,7 +3,10 @@ package org.codesystem.server.repository;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface PackageRepository extends JpaRepository<PackageEntity, String> {
@@ -12,4 +15,16 @@ public interface PackageRepository extends JpaRepository<PackageEntity, String>
     PackageEntity findFirstByPackageStatusInternal(PackageStatusInternal packageStatusInternal);
 
     PackageEntity findFirstByUuid(String packageUUID);
+
+    long countByPackageStatusInternal(PackageStatusInternal packageStatusInternal);
+
+    /**
+     * Changes the status only if it was not changed by another worker or server in the meantime.
+     *
+     * @return Returns 1 if the package was claimed.
+     */
+    @Transactional
+    @Modifying
+    @Query("update PackageEntity p set p.packageStatusInternal = ?3 where p.uuid = ?1 and p.packageStatusInternal = ?2")
+    int updatePackageStatusInternal(String packageUUID, PackageStatusInternal expectedPackageStatusInternal, PackageStatusInternal packageStatusInternal);
 }
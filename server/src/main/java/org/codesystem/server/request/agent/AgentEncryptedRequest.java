@@ -12,5 +12,9 @@ import lombok.Setter;
 public class AgentEncryptedRequest {
     private String publicKeyBase64;
     private String message;
-}
+    private String sessionId;
 
+    public AgentEncryptedRequest(String publicKeyBase64, String message) {
+        this(publicKeyBase64, message, null);
+    }
+}
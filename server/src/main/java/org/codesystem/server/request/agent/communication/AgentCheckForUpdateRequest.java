@@ -7,6 +7,7 @@ import org.json.JSONObject;
 public class AgentCheckForUpdateRequest {
     private final SystemInformationRequest systemInformationRequest;
     private final String agentChecksum;
+    private final String systemInformationFingerprint;
 
     public AgentCheckForUpdateRequest(JSONObject jsonObject) {
         if (!jsonObject.isNull("systemInformation")) {
@@ -19,5 +20,10 @@ public class AgentCheckForUpdateRequest {
         } else {
             this.agentChecksum = null;
         }
+        if (!jsonObject.isNull("systemInformationFingerprint")) {
+            this.systemInformationFingerprint = jsonObject.getString("systemInformationFingerprint");
+        } else {
+            this.systemInformationFingerprint = null;
+        }
     }
 }
@@ -0,0 +1,24 @@
+package org.codesystem.server.request.agent.communication;
+
+import lombok.Getter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class AgentChunkRequest {
+    private final List<String> chunkIds = new ArrayList<>();
+
+    public AgentChunkRequest(JSONObject jsonObject) {
+        if (jsonObject.isNull("chunks") || !(jsonObject.get("chunks") instanceof JSONArray jsonArray)) {
+            return;
+        }
+        for (int i = 0; i < jsonArray.length(); i++) {
+            if (jsonArray.get(i) instanceof String chunkId) {
+                chunkIds.add(chunkId);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.codesystem.server.request.agent.communication;
+
+import lombok.Getter;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+public class AgentDeploymentResultsRequest {
+    private final List<AgentDeploymentResultRequest> deploymentResults = new ArrayList<>();
+
+    public AgentDeploymentResultsRequest(JSONObject jsonObject) {
+        if (jsonObject.isNull("deploymentResults") || !(jsonObject.get("deploymentResults") instanceof JSONArray jsonArray)) {
+            return;
+        }
+        for (int i = 0; i < jsonArray.length(); i++) {
+            if (jsonArray.get(i) instanceof JSONObject deploymentResult) {
+                deploymentResults.add(new AgentDeploymentResultRequest(deploymentResult));
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package org.codesystem.server.request.agent.communication;
+
+import lombok.Getter;
+import org.json.JSONObject;
+
+@Getter
+public class AgentPatchRequest {
+    private final String agentChecksum;
+
+    public AgentPatchRequest(JSONObject jsonObject) {
+        if (!jsonObject.isNull("agentChecksum")) {
+            this.agentChecksum = jsonObject.getString("agentChecksum");
+        } else {
+            this.agentChecksum = null;
+        }
+    }
+}
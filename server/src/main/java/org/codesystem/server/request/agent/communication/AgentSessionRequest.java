@@ -0,0 +1,23 @@
+package org.codesystem.server.request.agent.communication;
+
+import lombok.Getter;
+import org.json.JSONObject;
+
+import java.util.Base64;
+
+@Getter
+public class AgentSessionRequest {
+    private final byte[] agentSecret;
+
+    public AgentSessionRequest(JSONObject jsonObject) {
+        byte[] decodedAgentSecret = null;
+        if (!jsonObject.isNull("agentSecret")) {
+            try {
+                decodedAgentSecret = Base64.getDecoder().decode(jsonObject.getString("agentSecret"));
+            } catch (IllegalArgumentException e) {
+                decodedAgentSecret = null;
+            }
+        }
+        this.agentSecret = decodedAgentSecret;
+    }
+}
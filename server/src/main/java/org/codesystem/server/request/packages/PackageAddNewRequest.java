@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
 
 @Getter
 @AllArgsConstructor
@@ -13,4 +14,6 @@ public class PackageAddNewRequest {
     private String packageChecksum;
     private OperatingSystem operatingSystem;
     private String expectedReturnValue;
+    // algorithm of the package checksum, SHA3_512 if not set
+    private DigestAlgorithm checksumAlgorithm;
 }
@@ -3,10 +3,13 @@ package org.codesystem.server.request.packages;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
 
 @Getter
 @AllArgsConstructor
 @NoArgsConstructor
 public class PackageUpdateContentRequest {
     private String packageChecksum;
+    // algorithm of the package checksum, SHA3_512 if not set
+    private DigestAlgorithm checksumAlgorithm;
 }
@@ -8,11 +8,13 @@ public class AgentCheckForUpdateResponse {
     private int updateInterval;
     private boolean deploymentAvailable;
     private String agentChecksum;
+    private boolean systemInformationRequired;
 
     public JSONObject toJsonObject() {
         return new JSONObject()
                 .put("updateInterval", this.updateInterval)
                 .put("deploymentAvailable", this.deploymentAvailable)
-                .put("agentChecksum", this.agentChecksum);
+                .put("agentChecksum", this.agentChecksum)
+                .put("systemInformationRequired", this.systemInformationRequired);
     }
 }
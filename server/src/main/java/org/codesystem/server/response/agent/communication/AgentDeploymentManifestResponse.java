@@ -0,0 +1,22 @@
+package org.codesystem.server.response.agent.communication;
+
+import org.codesystem.server.entity.DeploymentEntity;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.List;
+
+public class AgentDeploymentManifestResponse {
+    private final List<AgentPackageDetailResponse> deployments;
+
+    public AgentDeploymentManifestResponse(List<DeploymentEntity> deploymentEntities) {
+        this.deployments = deploymentEntities.stream().map(AgentPackageDetailResponse::new).toList();
+    }
+
+    public JSONObject toJsonObject() {
+        JSONArray jsonArray = new JSONArray();
+        deployments.forEach(agentPackageDetailResponse -> jsonArray.put(agentPackageDetailResponse.toJsonObject()));
+        return new JSONObject()
+                .put("deployments", jsonArray);
+    }
+}
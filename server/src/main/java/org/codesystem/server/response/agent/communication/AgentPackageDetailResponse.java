@@ -1,6 +1,9 @@
 package org.codesystem.server.response.agent.communication;
 
 import org.codesystem.server.entity.DeploymentEntity;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+import org.codesystem.server.enums.packages.EncryptionFormat;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.Base64;
@@ -9,15 +12,28 @@ public class AgentPackageDetailResponse {
     private final String deploymentUUID;
     private final String encryptionToken;
     private final String initializationVector;
+    private final String encryptionFormat;
     private final String checksumPlaintext;
     private final String checksumEncrypted;
+    private final String digestAlgorithm;
+    private final String chunkEncryptionToken;
+    private final JSONArray chunks;
 
     public AgentPackageDetailResponse(DeploymentEntity deploymentEntity) {
         this.deploymentUUID = deploymentEntity.getUuid();
         this.encryptionToken = Base64.getEncoder().encodeToString(deploymentEntity.getPackageEntity().getEncryptionToken().getEncoded());
         this.initializationVector = Base64.getEncoder().encodeToString(deploymentEntity.getPackageEntity().getInitializationVector());
+        this.encryptionFormat = deploymentEntity.getPackageEntity().getEncryptionFormat() == null ? EncryptionFormat.MONOLITHIC.name() : deploymentEntity.getPackageEntity().getEncryptionFormat().name();
         this.checksumPlaintext = deploymentEntity.getPackageEntity().getChecksumPlaintext();
         this.checksumEncrypted = deploymentEntity.getPackageEntity().getChecksumEncrypted();
+        this.digestAlgorithm = deploymentEntity.getPackageEntity().getDigestAlgorithm() == null ? DigestAlgorithm.SHA3_512.name() : deploymentEntity.getPackageEntity().getDigestAlgorithm().name();
+        if (deploymentEntity.getPackageEntity().getChunkManifest() == null || deploymentEntity.getPackageEntity().getChunkEncryptionToken() == null) {
+            this.chunkEncryptionToken = null;
+            this.chunks = new JSONArray();
+        } else {
+            this.chunkEncryptionToken = Base64.getEncoder().encodeToString(deploymentEntity.getPackageEntity().getChunkEncryptionToken().getEncoded());
+            this.chunks = new JSONArray(deploymentEntity.getPackageEntity().getChunkManifest());
+        }
     }
 
     public JSONObject toJsonObject() {
@@ -25,7 +41,11 @@ public class AgentPackageDetailResponse {
                 .put("deploymentUUID", this.deploymentUUID)
                 .put("encryptionToken", this.encryptionToken)
                 .put("initializationVector", this.initializationVector)
+                .put("encryptionFormat", this.encryptionFormat)
                 .put("checksumPlaintext", this.checksumPlaintext)
-                .put("checksumEncrypted", this.checksumEncrypted);
+                .put("checksumEncrypted", this.checksumEncrypted)
+                .put("digestAlgorithm", this.digestAlgorithm)
+                .put("chunkEncryptionToken", this.chunkEncryptionToken)
+                .put("chunks", this.chunks);
     }
 }
@@ -0,0 +1,25 @@
+package org.codesystem.server.response.agent.communication;
+
+import org.codesystem.server.cache.AgentSession;
+import org.json.JSONObject;
+
+import java.util.Base64;
+
+public class AgentSessionResponse {
+    private final String sessionId;
+    private final String serverNonce;
+    private final String expiresAt;
+
+    public AgentSessionResponse(AgentSession agentSession) {
+        this.sessionId = agentSession.getSessionId();
+        this.serverNonce = Base64.getEncoder().encodeToString(agentSession.getServerNonce());
+        this.expiresAt = agentSession.getExpiresAt().toString();
+    }
+
+    public JSONObject toJsonObject() {
+        return new JSONObject()
+                .put("sessionId", this.sessionId)
+                .put("serverNonce", this.serverNonce)
+                .put("expiresAt", this.expiresAt);
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.response.general.ApiResponse;
 
@@ -18,9 +19,11 @@ public class PackageInfoResponse implements ApiResponse {
     private PackageStatusInternal packageStatusInternal;
     private String checksumPlaintext;
     private String checksumEncrypted;
+    private DigestAlgorithm digestAlgorithm;
     private OperatingSystem targetOperatingSystem;
     private Long plaintextSize;
     private Long encryptedSize;
+    private Long processingTime;
 
     public PackageInfoResponse(PackageEntity packageEntity) {
         this.uuid = packageEntity.getUuid();
@@ -29,8 +32,10 @@ public class PackageInfoResponse implements ApiResponse {
         this.packageStatusInternal = packageEntity.getPackageStatusInternal();
         this.checksumPlaintext = packageEntity.getChecksumPlaintext();
         this.checksumEncrypted = packageEntity.getChecksumEncrypted();
+        this.digestAlgorithm = packageEntity.getDigestAlgorithm();
         this.targetOperatingSystem = packageEntity.getTargetOperatingSystem();
         this.plaintextSize = packageEntity.getPlaintextSize();
         this.encryptedSize = packageEntity.getEncryptedSize();
+        this.processingTime = packageEntity.getProcessingTime();
     }
 }
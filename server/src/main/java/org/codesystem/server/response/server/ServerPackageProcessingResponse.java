@@ -0,0 +1,17 @@
+package org.codesystem.server.response.server;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.codesystem.server.response.general.ApiResponse;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ServerPackageProcessingResponse implements ApiResponse {
+    private long queuedPackages;
+    private int activeWorkers;
+    private int workers;
+    private long processedPackages;
+    private long averageProcessingTime;
+}
@@ -0,0 +1,15 @@
+package org.codesystem.server.response.server;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.codesystem.server.response.general.ApiResponse;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ServerPackageServingResponse implements ApiResponse {
+    private long bytesServed;
+    private int activeStreams;
+    private int openChannels;
+}
@@ -3,6 +3,14 @@ package org.codesystem.server.service.agent.communication;
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.ServerApplication;
 import org.codesystem.server.Variables;
+import org.codesystem.server.cache.AgentBinaryCache;
+import org.codesystem.server.cache.AgentHeartbeatCache;
+import org.codesystem.server.cache.AgentIdentity;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSession;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.cache.PendingDeploymentIndex;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.DeploymentEntity;
 import org.codesystem.server.entity.ServerEntity;
@@ -11,39 +19,59 @@ import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.AgentRepository;
 import org.codesystem.server.repository.DeploymentRepository;
-import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.request.agent.AgentEncryptedRequest;
 import org.codesystem.server.request.agent.communication.AgentCheckForUpdateRequest;
+import org.codesystem.server.request.agent.communication.AgentChunkRequest;
 import org.codesystem.server.request.agent.communication.AgentDeploymentResultRequest;
+import org.codesystem.server.request.agent.communication.AgentDeploymentResultsRequest;
+import org.codesystem.server.request.agent.communication.AgentPatchRequest;
+import org.codesystem.server.request.agent.communication.AgentSessionRequest;
+import org.codesystem.server.request.agent.communication.SystemInformationRequest;
 import org.codesystem.server.response.agent.communication.AgentCheckForUpdateResponse;
+import org.codesystem.server.response.agent.communication.AgentDeploymentManifestResponse;
 import org.codesystem.server.response.agent.communication.AgentPackageDetailResponse;
+import org.codesystem.server.response.agent.communication.AgentSessionResponse;
 import org.codesystem.server.response.general.ApiError;
 import org.codesystem.server.response.general.ApiResponse;
+import org.codesystem.server.service.packages.PackageChunkService;
 import org.codesystem.server.service.server.LogService;
 import org.codesystem.server.utility.RequestUtility;
 import org.json.JSONObject;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 public class AgentCommunicationService {
+    private static final int AGENT_SECRET_MINIMUM_LENGTH = 32;
+    private static final int MAXIMUM_DEPLOYMENT_RESULTS = 1000;
+    private static final int MAXIMUM_CHUNKS_PER_REQUEST = 64;
     private final AgentRepository agentRepository;
     private final DeploymentRepository deploymentRepository;
     private final RequestUtility requestUtility;
-    private final ServerRepository serverRepository;
-    private final ResourceLoader resourceLoader;
+    private final AgentIdentityCache agentIdentityCache;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
+    private final AgentHeartbeatCache agentHeartbeatCache;
+    private final AgentSessionCache agentSessionCache;
+    private final AgentNotificationService agentNotificationService;
+    private final ServerConfiguration serverConfiguration;
+    private final AgentBinaryCache agentBinaryCache;
+    private final PackageChunkService packageChunkService;
     private final LogService logService;
 
 
@@ -52,22 +80,62 @@ public class AgentCommunicationService {
         if (request == null || request.isEmpty()) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
         }
 
         AgentCheckForUpdateRequest agentCheckForUpdateRequest = new AgentCheckForUpdateRequest(request);
+        boolean systemInformationRequired = false;
         if (agentCheckForUpdateRequest.getSystemInformationRequest() != null) {
+            AgentEntity agentEntity = agentRepository.findFirstByUuid(agentIdentity.getUuid());
+            if (agentEntity == null) {
+                agentIdentityCache.invalidate(agentEncryptedRequest.getPublicKeyBase64());
+                return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
+            }
             String updateAgentResponse = updateAgent(agentEntity, agentCheckForUpdateRequest);
             if (updateAgentResponse != null) {
                 return ResponseEntity.badRequest().body(new ApiError(updateAgentResponse));
             }
+        } else if (agentCheckForUpdateRequest.getSystemInformationFingerprint() != null) {
+            // the Agent only sends its system information when it changed, ask for it if the stored one is outdated
+            systemInformationRequired = !agentCheckForUpdateRequest.getSystemInformationFingerprint().equals(agentIdentity.getSystemInformationFingerprint());
+        }
+        agentHeartbeatCache.recordHeartbeat(agentIdentity.getUuid());
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        boolean deploymentAvailable = pendingDeploymentIndex.isDeploymentAvailable(agentIdentity.getUuid(), serverEntity.getAgentInstallRetryInterval());
+        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentCheckForUpdateResponse(serverEntity.getAgentUpdateInterval(), deploymentAvailable, serverEntity.getAgentChecksum(), systemInformationRequired).toJsonObject(), agentIdentity, agentEncryptedRequest));
+    }
+
+    public ResponseEntity<ApiResponse> createSession(AgentEncryptedRequest agentEncryptedRequest) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        // the key agreement itself has to use the signed envelope
+        if (request == null || request.isEmpty() || agentEncryptedRequest.getSessionId() != null) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
+        }
+
+        AgentSessionRequest agentSessionRequest = new AgentSessionRequest(request);
+        if (agentSessionRequest.getAgentSecret() == null || agentSessionRequest.getAgentSecret().length < AGENT_SECRET_MINIMUM_LENGTH) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
         }
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
-        List<DeploymentEntity> deploymentEntities = deploymentRepository.findAvailableDeployments(agentEntity.getUuid(), Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS));
-        boolean deploymentAvailable = !deploymentEntities.isEmpty();
-        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentCheckForUpdateResponse(serverEntity.getAgentUpdateInterval(), deploymentAvailable, serverEntity.getAgentChecksum()).toJsonObject(), agentEntity));
+        AgentSession agentSession = agentSessionCache.createSession(agentEncryptedRequest.getPublicKeyBase64(), agentSessionRequest.getAgentSecret());
+        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentSessionResponse(agentSession).toJsonObject(), agentIdentity, agentEncryptedRequest));
+    }
+
+    public ResponseEntity<SseEmitter> subscribeNotifications(AgentEncryptedRequest agentEncryptedRequest) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok().body(agentNotificationService.subscribe(agentIdentity.getUuid()));
     }
 
     private String updateAgent(AgentEntity agentEntity, AgentCheckForUpdateRequest agentCheckForUpdateRequest) {
@@ -81,63 +149,147 @@ public class AgentCommunicationService {
             return Variables.AGENT_ERROR_CHANGING_OS;
         }
 
-        agentEntity.setAgentChecksum(agentCheckForUpdateRequest.getAgentChecksum());
+        SystemInformationRequest systemInformationRequest = agentCheckForUpdateRequest.getSystemInformationRequest();
+        boolean changed = updateField(agentEntity.getAgentChecksum(), agentCheckForUpdateRequest.getAgentChecksum(), agentEntity::setAgentChecksum);
 
-        agentEntity.setOperatingSystem(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystem());
-        agentEntity.setOperatingSystemFamily(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystemFamily());
-        agentEntity.setOperatingSystemArchitecture(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystemArchitecture());
-        agentEntity.setOperatingSystemVersion(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystemVersion());
-        agentEntity.setOperatingSystemCodeName(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystemCodeName());
-        agentEntity.setOperatingSystemBuildNumber(agentCheckForUpdateRequest.getSystemInformationRequest().getOperatingSystemBuildNumber());
-        agentEntity.setCpuName(agentCheckForUpdateRequest.getSystemInformationRequest().getCpuName());
-        agentEntity.setCpuArchitecture(agentCheckForUpdateRequest.getSystemInformationRequest().getCpuArchitecture());
-        agentEntity.setCpuLogicalCores(agentCheckForUpdateRequest.getSystemInformationRequest().getCpuLogicalCores());
-        agentEntity.setCpuPhysicalCores(agentCheckForUpdateRequest.getSystemInformationRequest().getCpuPhysicalCores());
-        agentEntity.setCpuSockets(agentCheckForUpdateRequest.getSystemInformationRequest().getCpuSockets());
-        agentEntity.setMemory(agentCheckForUpdateRequest.getSystemInformationRequest().getMemory());
+        changed |= updateField(agentEntity.getOperatingSystem(), systemInformationRequest.getOperatingSystem(), agentEntity::setOperatingSystem);
+        changed |= updateField(agentEntity.getOperatingSystemFamily(), systemInformationRequest.getOperatingSystemFamily(), agentEntity::setOperatingSystemFamily);
+        changed |= updateField(agentEntity.getOperatingSystemArchitecture(), systemInformationRequest.getOperatingSystemArchitecture(), agentEntity::setOperatingSystemArchitecture);
+        changed |= updateField(agentEntity.getOperatingSystemVersion(), systemInformationRequest.getOperatingSystemVersion(), agentEntity::setOperatingSystemVersion);
+        changed |= updateField(agentEntity.getOperatingSystemCodeName(), systemInformationRequest.getOperatingSystemCodeName(), agentEntity::setOperatingSystemCodeName);
+        changed |= updateField(agentEntity.getOperatingSystemBuildNumber(), systemInformationRequest.getOperatingSystemBuildNumber(), agentEntity::setOperatingSystemBuildNumber);
+        changed |= updateField(agentEntity.getCpuName(), systemInformationRequest.getCpuName(), agentEntity::setCpuName);
+        changed |= updateField(agentEntity.getCpuArchitecture(), systemInformationRequest.getCpuArchitecture(), agentEntity::setCpuArchitecture);
+        changed |= updateField(agentEntity.getCpuLogicalCores(), systemInformationRequest.getCpuLogicalCores(), agentEntity::setCpuLogicalCores);
+        changed |= updateField(agentEntity.getCpuPhysicalCores(), systemInformationRequest.getCpuPhysicalCores(), agentEntity::setCpuPhysicalCores);
+        changed |= updateField(agentEntity.getCpuSockets(), systemInformationRequest.getCpuSockets(), agentEntity::setCpuSockets);
+        changed |= updateField(agentEntity.getMemory(), systemInformationRequest.getMemory(), agentEntity::setMemory);
+        changed |= updateField(agentEntity.getSystemInformationFingerprint(), agentCheckForUpdateRequest.getSystemInformationFingerprint(), agentEntity::setSystemInformationFingerprint);
 
-        agentEntity.setLastConnectionTime(Instant.now());
-        agentRepository.save(agentEntity);
+        if (changed) {
+            agentRepository.save(agentEntity);
+            agentIdentityCache.invalidate(agentEntity.getPublicKeyBase64());
+        }
         return null;
     }
 
-    public ResponseEntity<byte[]> getAgent(AgentEncryptedRequest agentEncryptedRequest) {
+    private <T> boolean updateField(T currentValue, T newValue, Consumer<T> setter) {
+        if (Objects.equals(currentValue, newValue)) {
+            return false;
+        }
+        setter.accept(newValue);
+        return true;
+    }
+
+    public ResponseEntity<FileSystemResource> getAgent(AgentEncryptedRequest agentEncryptedRequest) {
         JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
         if (request == null || request.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
             return ResponseEntity.badRequest().build();
         }
 
-        Resource resource = resourceLoader.getResource("classpath:agent/Agent.jar");
         try {
-            return ResponseEntity.ok().body(resource.getContentAsByteArray());
+            // the checksum calculated at startup doubles as ETag, the Agent.jar cannot change while the server is running
+            FileSystemResource agentFile = new FileSystemResource(agentBinaryCache.getAgentFile());
+            return ResponseEntity.ok().eTag(serverConfiguration.getServerEntity().getAgentChecksum()).body(agentFile);
         } catch (Exception e) {
             logService.addEntry(Severity.ERROR, "Failed to serve Agent-Update: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Returns a patch from the Agent build with the reported checksum to the current build.
+     * Not found is returned if no patch is available, the Agent downloads the whole jar instead.
+     */
+    public ResponseEntity<FileSystemResource> getAgentPatch(AgentEncryptedRequest agentEncryptedRequest) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        AgentPatchRequest agentPatchRequest = new AgentPatchRequest(request);
+        try {
+            Path patchFile = agentBinaryCache.getPatchFile(agentPatchRequest.getAgentChecksum());
+            if (patchFile == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok().body(new FileSystemResource(patchFile));
+        } catch (Exception e) {
+            logService.addEntry(Severity.ERROR, "Failed to serve Agent-Patch: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     public ResponseEntity<FileSystemResource> getPackage(AgentEncryptedRequest agentEncryptedRequest, String deploymentUUID) {
         JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
         if (request == null || request.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
             return ResponseEntity.badRequest().build();
         }
 
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
         DeploymentEntity deploymentEntity = deploymentRepository.findFirstByUuid(deploymentUUID);
         if (deploymentEntity == null || deploymentEntity.isDeployed() || deploymentEntity.getPackageEntity().getPackageStatusInternal() != PackageStatusInternal.PROCESSED
                 || (deploymentEntity.getLastDeploymentTimestamp() != null && !deploymentEntity.getLastDeploymentTimestamp().isBefore(Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS)))) {
             return ResponseEntity.badRequest().build();
         }
         Path path = Paths.get(ServerApplication.PACKAGE_LOCATION + deploymentEntity.getPackageEntity().getUuid());
-        return ResponseEntity.ok().body(new FileSystemResource(new File(String.valueOf(path))));
+        // the ETag lets the Agent detect a changed package before it resumes a download
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (deploymentEntity.getPackageEntity().getChecksumEncrypted() != null) {
+            responseBuilder.eTag(deploymentEntity.getPackageEntity().getChecksumEncrypted());
+        }
+        return responseBuilder.body(new FileSystemResource(new File(String.valueOf(path))));
+    }
+
+    /**
+     * Returns the requested chunks of the package in the requested order. The Agent splits the response with the sizes from the chunk manifest.
+     */
+    public ResponseEntity<List<Path>> getChunks(AgentEncryptedRequest agentEncryptedRequest, String deploymentUUID) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        DeploymentEntity deploymentEntity = deploymentRepository.findFirstByUuid(deploymentUUID);
+        if (deploymentEntity == null || deploymentEntity.isDeployed() || !deploymentEntity.getAgentEntity().getUuid().equals(agentIdentity.getUuid())
+                || deploymentEntity.getPackageEntity().getPackageStatusInternal() != PackageStatusInternal.PROCESSED) {
+            return ResponseEntity.badRequest().build();
+        }
+        AgentChunkRequest agentChunkRequest = new AgentChunkRequest(request);
+        if (agentChunkRequest.getChunkIds().isEmpty() || agentChunkRequest.getChunkIds().size() > MAXIMUM_CHUNKS_PER_REQUEST) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Path> chunkFiles = new ArrayList<>();
+        for (String chunkId : agentChunkRequest.getChunkIds()) {
+            Path chunkFile = packageChunkService.getChunkFile(deploymentEntity.getPackageEntity(), chunkId);
+            if (chunkFile == null) {
+                return ResponseEntity.badRequest().build();
+            }
+            chunkFiles.add(chunkFile);
+        }
+        // a relay caches the batch under the ETag, the Agents of a site usually request the same chunks
+        ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok();
+        String batchChecksum = packageChunkService.getBatchChecksum(agentChunkRequest.getChunkIds());
+        if (batchChecksum != null) {
+            responseBuilder.eTag(batchChecksum);
+        }
+        return responseBuilder.body(chunkFiles);
     }
 
     public ResponseEntity<ApiResponse> getPackageDetails(AgentEncryptedRequest agentEncryptedRequest) {
@@ -145,19 +297,34 @@ public class AgentCommunicationService {
         if (request == null || request.isEmpty()) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
         }
 
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
-        List<DeploymentEntity> deploymentEntities = deploymentRepository.findAvailableDeployments(agentEntity.getUuid(), Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS));
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        List<DeploymentEntity> deploymentEntities = deploymentRepository.findAvailableDeployments(agentIdentity.getUuid(), Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS));
         if (deploymentEntities.isEmpty()) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_NO_DEPLOYMENT_AVAILABLE));
         }
 
         DeploymentEntity deploymentEntity = deploymentEntities.get(0);
-        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentPackageDetailResponse(deploymentEntity).toJsonObject(), agentEntity));
+        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentPackageDetailResponse(deploymentEntity).toJsonObject(), agentIdentity, agentEncryptedRequest));
+    }
+
+    public ResponseEntity<ApiResponse> getDeploymentManifest(AgentEncryptedRequest agentEncryptedRequest) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
+        }
+
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        List<DeploymentEntity> deploymentEntities = deploymentRepository.findAvailableDeployments(agentIdentity.getUuid(), Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS));
+        return ResponseEntity.ok().body(requestUtility.generateAgentEncryptedResponse(new AgentDeploymentManifestResponse(deploymentEntities).toJsonObject(), agentIdentity, agentEncryptedRequest));
     }
 
     public ResponseEntity<ApiResponse> sendDeploymentResult(AgentEncryptedRequest agentEncryptedRequest) {
@@ -165,18 +332,57 @@ public class AgentCommunicationService {
         if (request == null || request.isEmpty()) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
         }
 
-        AgentDeploymentResultRequest agentDeploymentResultRequest = new AgentDeploymentResultRequest(request);
+        if (!applyDeploymentResult(agentIdentity, new AgentDeploymentResultRequest(request))) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_DEPLOYMENT));
+        }
+        pendingDeploymentIndex.invalidate(agentIdentity.getUuid());
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Applies the results an Agent collected while it was working through its deployments, or while the server was not reachable.
+     * Results for deployments that cannot be updated anymore are skipped, so the Agent can discard the whole batch.
+     */
+    @Transactional
+    public ResponseEntity<ApiResponse> sendDeploymentResults(AgentEncryptedRequest agentEncryptedRequest) {
+        JSONObject request = requestUtility.validateRequest(agentEncryptedRequest);
+        if (request == null || request.isEmpty()) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
+        }
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_KEY));
+        }
+
+        AgentDeploymentResultsRequest agentDeploymentResultsRequest = new AgentDeploymentResultsRequest(request);
+        if (agentDeploymentResultsRequest.getDeploymentResults().isEmpty() || agentDeploymentResultsRequest.getDeploymentResults().size() > MAXIMUM_DEPLOYMENT_RESULTS) {
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
+        }
+        int appliedResults = 0;
+        for (AgentDeploymentResultRequest agentDeploymentResultRequest : agentDeploymentResultsRequest.getDeploymentResults()) {
+            if (applyDeploymentResult(agentIdentity, agentDeploymentResultRequest)) {
+                appliedResults++;
+            }
+        }
+        if (appliedResults != agentDeploymentResultsRequest.getDeploymentResults().size()) {
+            logService.addEntry(Severity.WARNING, "Skipped " + (agentDeploymentResultsRequest.getDeploymentResults().size() - appliedResults) + " invalid deployment results of Agent: " + agentIdentity.getUuid());
+        }
+        pendingDeploymentIndex.invalidate(agentIdentity.getUuid());
+        return ResponseEntity.ok().build();
+    }
+
+    private boolean applyDeploymentResult(AgentIdentity agentIdentity, AgentDeploymentResultRequest agentDeploymentResultRequest) {
         DeploymentEntity deploymentEntity = deploymentRepository.findFirstByUuid(agentDeploymentResultRequest.getDeploymentUUID());
 
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
-        if (deploymentEntity == null || deploymentEntity.isDeployed() || deploymentEntity.getPackageEntity().getPackageStatusInternal() != PackageStatusInternal.PROCESSED
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        if (deploymentEntity == null || !deploymentEntity.getAgentEntity().getUuid().equals(agentIdentity.getUuid()) || deploymentEntity.isDeployed() || deploymentEntity.getPackageEntity().getPackageStatusInternal() != PackageStatusInternal.PROCESSED
                 || (deploymentEntity.getLastDeploymentTimestamp() != null && !deploymentEntity.getLastDeploymentTimestamp().isBefore(Instant.now().minus(serverEntity.getAgentInstallRetryInterval(), ChronoUnit.SECONDS)))) {
-            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_DEPLOYMENT));
+            return false;
         }
 
         if (agentDeploymentResultRequest.getResultCode() == null || agentDeploymentResultRequest.getResultCode().startsWith(Variables.PACKAGE_AGENT_ERROR_BEGINNING)) {
@@ -189,6 +395,6 @@ public class AgentCommunicationService {
         deploymentEntity.setLastDeploymentTimestamp(Instant.now());
         deploymentEntity.setReturnValue(agentDeploymentResultRequest.getResultCode());
         deploymentRepository.save(deploymentEntity);
-        return ResponseEntity.ok().build();
+        return true;
     }
 }
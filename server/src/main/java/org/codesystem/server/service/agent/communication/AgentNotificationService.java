@@ -0,0 +1,109 @@
+package org.codesystem.server.service.agent.communication;
+
+import org.codesystem.server.cache.PendingDeploymentIndex;
+import org.codesystem.server.cache.PendingDeploymentsChangedEvent;
+import org.codesystem.server.configuration.ServerConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the notification streams of the connected Agents and wakes them up when a deployment becomes available or the configuration changed.
+ * The events carry no data, the Agents fetch everything through the regular update check.
+ */
+@Service
+public class AgentNotificationService {
+    public static final String EVENT_DEPLOYMENT = "deployment";
+    public static final String EVENT_CONFIGURATION = "configuration";
+    private final PendingDeploymentIndex pendingDeploymentIndex;
+    private final ServerConfiguration serverConfiguration;
+    private final long streamTimeout;
+    private final Map<String, SseEmitter> sseEmitters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AgentNotificationService(PendingDeploymentIndex pendingDeploymentIndex, ServerConfiguration serverConfiguration, @Value("${opd.agent-notification.timeout}") long streamTimeout) {
+        this.pendingDeploymentIndex = pendingDeploymentIndex;
+        this.serverConfiguration = serverConfiguration;
+        this.streamTimeout = Duration.ofSeconds(streamTimeout).toMillis();
+    }
+
+    public SseEmitter subscribe(String agentUUID) {
+        SseEmitter sseEmitter = new SseEmitter(streamTimeout);
+        sseEmitter.onCompletion(() -> sseEmitters.remove(agentUUID, sseEmitter));
+        sseEmitter.onTimeout(sseEmitter::complete);
+        sseEmitter.onError(throwable -> sseEmitters.remove(agentUUID, sseEmitter));
+        // every Agent has at most one stream, a reconnect replaces the previous one
+        SseEmitter previousSseEmitter = sseEmitters.put(agentUUID, sseEmitter);
+        if (previousSseEmitter != null) {
+            previousSseEmitter.complete();
+        }
+        return sseEmitter;
+    }
+
+    public void disconnect(String agentUUID) {
+        if (agentUUID == null) {
+            return;
+        }
+        SseEmitter sseEmitter = sseEmitters.remove(agentUUID);
+        if (sseEmitter != null) {
+            sseEmitter.complete();
+        }
+    }
+
+    @Async("notifyAgentsTask")
+    @EventListener
+    public void onPendingDeploymentsChanged(PendingDeploymentsChangedEvent pendingDeploymentsChangedEvent) {
+        if (sseEmitters.isEmpty()) {
+            return;
+        }
+        long agentInstallRetryInterval = serverConfiguration.getServerEntity().getAgentInstallRetryInterval();
+        if (pendingDeploymentsChangedEvent.getAgentUUID() != null) {
+            notifyIfDeploymentAvailable(pendingDeploymentsChangedEvent.getAgentUUID(), agentInstallRetryInterval);
+            return;
+        }
+        for (String agentUUID : sseEmitters.keySet()) {
+            notifyIfDeploymentAvailable(agentUUID, agentInstallRetryInterval);
+        }
+    }
+
+    @Async("notifyAgentsTask")
+    public void notifyConfigurationChanged() {
+        sseEmitters.forEach((agentUUID, sseEmitter) -> send(agentUUID, sseEmitter, SseEmitter.event().name(EVENT_CONFIGURATION).data(EVENT_CONFIGURATION)));
+    }
+
+    /**
+     * Keeps idle streams open through proxies and detects Agents that disappeared without closing the connection.
+     */
+    public void sendKeepAlive() {
+        sseEmitters.forEach((agentUUID, sseEmitter) -> send(agentUUID, sseEmitter, SseEmitter.event().comment("keep-alive")));
+    }
+
+    public int size() {
+        return sseEmitters.size();
+    }
+
+    private void notifyIfDeploymentAvailable(String agentUUID, long agentInstallRetryInterval) {
+        SseEmitter sseEmitter = sseEmitters.get(agentUUID);
+        if (sseEmitter != null && pendingDeploymentIndex.isDeploymentAvailable(agentUUID, agentInstallRetryInterval)) {
+            send(agentUUID, sseEmitter, SseEmitter.event().name(EVENT_DEPLOYMENT).data(EVENT_DEPLOYMENT));
+        }
+    }
+
+    private void send(String agentUUID, SseEmitter sseEmitter, SseEmitter.SseEventBuilder sseEventBuilder) {
+        try {
+            sseEmitter.send(sseEventBuilder);
+        } catch (IOException | IllegalStateException e) {
+            // the Agent reconnects on its own and keeps polling in the meantime
+            sseEmitters.remove(agentUUID, sseEmitter);
+            sseEmitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package org.codesystem.server.service.agent.communication;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.cache.PackageChannelCache;
+import org.codesystem.server.response.general.ApiResponse;
+import org.codesystem.server.response.server.ServerPackageServingResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the package files and the Agent binary without copying them through the application.
+ * Tomcat sends the file directly from the page cache to the socket if sendfile is available (not with TLS), otherwise the file channel transfers the bytes.
+ */
+@Service
+@RequiredArgsConstructor
+public class PackageServingService {
+    // request attributes of the Tomcat sendfile support
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // small transfers are cheaper without handing them to the poller thread
+    private static final long SENDFILE_THRESHOLD = 48L * 1024;
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+    private final PackageChannelCache packageChannelCache;
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    /**
+     * Writes the file of a validated response. Error responses are passed on without a body.
+     * A pre-compressed variant next to the file (file name + ".gz") is sent to clients accepting gzip, as long as no range was requested.
+     */
+    public void serve(ResponseEntity<FileSystemResource> responseEntity, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (responseEntity.getStatusCode() != HttpStatus.OK || responseEntity.getBody() == null) {
+            response.setStatus(responseEntity.getStatusCode().value());
+            return;
+        }
+        responseEntity.getHeaders().forEach((headerName, headerValues) -> headerValues.forEach(headerValue -> response.addHeader(headerName, headerValue)));
+        Path path = responseEntity.getBody().getFile().toPath();
+        String eTag = responseEntity.getHeaders().getETag();
+
+        Path gzipPath = path.resolveSibling(path.getFileName() + GZIP_SUFFIX);
+        boolean gzipAvailable = Files.exists(gzipPath);
+        if (gzipAvailable) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (request.getHeader(HttpHeaders.RANGE) == null && acceptsGzip(request)) {
+                path = gzipPath;
+                eTag = eTag == null ? null : eTag.substring(0, eTag.length() - 1) + GZIP_ETAG_SUFFIX + "\"";
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+        }
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.ETAG, eTag);
+            if (matchesETag(eTag, request)) {
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                return;
+            }
+        }
+
+        try (PackageChannelCache.PackageChannel packageChannel = packageChannelCache.acquire(path)) {
+            long size = packageChannel.getSize();
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+            long start = 0;
+            long end = size;
+            HttpRange httpRange = parseRange(request.getHeader(HttpHeaders.RANGE));
+            if (httpRange != null) {
+                start = httpRange.getRangeStart(size);
+                end = Math.min(httpRange.getRangeEnd(size), size - 1) + 1;
+                if (start >= size || start >= end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + size);
+            }
+            long length = end - start;
+            response.setContentLengthLong(length);
+
+            if (length >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end);
+                bytesServed.addAndGet(length);
+                return;
+            }
+            transfer(packageChannel.getFileChannel(), start, length, response.getOutputStream());
+        }
+    }
+
+    /**
+     * Writes the files of a validated response one after another in a single response.
+     */
+    public void serveAll(ResponseEntity<List<Path>> responseEntity, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (responseEntity.getStatusCode() != HttpStatus.OK || responseEntity.getBody() == null) {
+            response.setStatus(responseEntity.getStatusCode().value());
+            return;
+        }
+        String eTag = responseEntity.getHeaders().getETag();
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.ETAG, eTag);
+            if (matchesETag(eTag, request)) {
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                return;
+            }
+        }
+        List<PackageChannelCache.PackageChannel> packageChannels = new ArrayList<>();
+        try {
+            long length = 0;
+            for (Path path : responseEntity.getBody()) {
+                PackageChannelCache.PackageChannel packageChannel = packageChannelCache.acquire(path);
+                packageChannels.add(packageChannel);
+                length += packageChannel.getSize();
+            }
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(length);
+            OutputStream outputStream = response.getOutputStream();
+            for (PackageChannelCache.PackageChannel packageChannel : packageChannels) {
+                transfer(packageChannel.getFileChannel(), 0, packageChannel.getSize(), outputStream);
+            }
+        } finally {
+            for (PackageChannelCache.PackageChannel packageChannel : packageChannels) {
+                packageChannel.close();
+            }
+        }
+    }
+
+    public ResponseEntity<ApiResponse> getStatistics() {
+        return ResponseEntity.ok().body(new ServerPackageServingResponse(bytesServed.get(), activeStreams.get(), packageChannelCache.size()));
+    }
+
+    /**
+     * "If-None-Match: *" matches every file, a relay uses it to validate the request and to learn the ETag without receiving the file.
+     */
+    private boolean matchesETag(String eTag, HttpServletRequest request) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String value : ifNoneMatch.split(",")) {
+            if (value.trim().equals("*") || value.trim().equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private HttpRange parseRange(String rangeHeader) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> httpRanges = HttpRange.parseRanges(rangeHeader);
+            // the Agents only request a single range, for anything else the whole file is sent
+            return httpRanges.size() == 1 ? httpRanges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void transfer(FileChannel fileChannel, long start, long length, OutputStream outputStream) throws IOException {
+        WritableByteChannel targetChannel = Channels.newChannel(outputStream);
+        activeStreams.incrementAndGet();
+        try {
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = fileChannel.transferTo(position, remaining, targetChannel);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+                bytesServed.addAndGet(transferred);
+            }
+        } finally {
+            activeStreams.decrementAndGet();
+        }
+    }
+}
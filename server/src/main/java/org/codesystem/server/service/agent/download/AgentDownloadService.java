@@ -1,29 +1,29 @@
 package org.codesystem.server.service.agent.download;
 
 import lombok.RequiredArgsConstructor;
+import org.codesystem.server.cache.AgentBinaryCache;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.service.server.LogService;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
 public class AgentDownloadService {
-    private final ResourceLoader resourceLoader;
+    private final AgentBinaryCache agentBinaryCache;
+    private final ServerConfiguration serverConfiguration;
     private final LogService logService;
 
-    public ResponseEntity<byte[]> download() {
-        Resource resource = resourceLoader.getResource("classpath:agent/Agent.jar");
-
+    public ResponseEntity<FileSystemResource> download() {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=Agent.jar");
         try {
-            return ResponseEntity.ok().headers(httpHeaders).contentType(MediaType.APPLICATION_OCTET_STREAM).body(resource.getContentAsByteArray());
+            FileSystemResource agentFile = new FileSystemResource(agentBinaryCache.getAgentFile());
+            return ResponseEntity.ok().headers(httpHeaders).eTag(serverConfiguration.getServerEntity().getAgentChecksum()).body(agentFile);
         } catch (Exception e) {
             logService.addEntry(Severity.ERROR, "Failed to serve Agent-Download: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
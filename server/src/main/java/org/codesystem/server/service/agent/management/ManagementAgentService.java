@@ -2,6 +2,10 @@ package org.codesystem.server.service.agent.management;
 
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.Variables;
+import org.codesystem.server.cache.AgentHeartbeatCache;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.GroupEntity;
 import org.codesystem.server.enums.log.Severity;
@@ -13,6 +17,7 @@ import org.codesystem.server.response.agent.management.AgentInfoListResponse;
 import org.codesystem.server.response.agent.management.AgentInfoResponse;
 import org.codesystem.server.response.general.ApiError;
 import org.codesystem.server.response.general.ApiResponse;
+import org.codesystem.server.service.agent.communication.AgentNotificationService;
 import org.codesystem.server.service.server.LogService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
@@ -24,9 +29,14 @@ public class ManagementAgentService {
     private final DeploymentRepository deploymentRepository;
     private final GroupRepository groupRepository;
     private final LogService logService;
+    private final AgentIdentityCache agentIdentityCache;
+    private final AgentSessionCache agentSessionCache;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
+    private final AgentHeartbeatCache agentHeartbeatCache;
+    private final AgentNotificationService agentNotificationService;
 
     public ResponseEntity<ApiResponse> getAllAgents() {
-        return ResponseEntity.ok().body(new AgentInfoListResponse(agentRepository.findAll()));
+        return ResponseEntity.ok().body(new AgentInfoListResponse(agentRepository.findAll().stream().map(agentHeartbeatCache::applyLastConnectionTime).toList()));
     }
 
     public ResponseEntity<ApiResponse> getAgent(String agentUUID) {
@@ -34,7 +44,7 @@ public class ManagementAgentService {
         if (agentEntity == null) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_NO_AGENT));
         }
-        return ResponseEntity.ok().body(new AgentInfoResponse(agentEntity));
+        return ResponseEntity.ok().body(new AgentInfoResponse(agentHeartbeatCache.applyLastConnectionTime(agentEntity)));
     }
 
     public ResponseEntity<ApiResponse> updateAgent(String agentUUID, AgentUpdateRequest agentUpdateRequest) {
@@ -48,6 +58,7 @@ public class ManagementAgentService {
 
         agentEntity.setName(agentUpdateRequest.getName().trim());
         agentRepository.save(agentEntity);
+        agentIdentityCache.invalidate(agentEntity.getPublicKeyBase64());
         return ResponseEntity.ok().build();
 
     }
@@ -63,6 +74,10 @@ public class ManagementAgentService {
         }
         deploymentRepository.deleteAll(deploymentRepository.findDeploymentsForAgent(agentEntity.getUuid()));
         agentRepository.delete(agentEntity);
+        agentIdentityCache.invalidate(agentEntity.getPublicKeyBase64());
+        agentSessionCache.invalidate(agentEntity.getPublicKeyBase64());
+        pendingDeploymentIndex.remove(agentEntity.getUuid());
+        agentNotificationService.disconnect(agentEntity.getUuid());
         logService.addEntry(Severity.INFO, "Successfully deleted Agent: " + agentEntity.getName() + " | " + agentEntity.getUuid());
         return ResponseEntity.ok().build();
 
@@ -4,11 +4,13 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.apache.tomcat.util.codec.binary.Base64;
 import org.codesystem.server.Variables;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.repository.AgentRepository;
-import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.request.agent.registration.AgentRegistrationRequest;
 import org.codesystem.server.request.agent.registration.AgentVerificationRequest;
 import org.codesystem.server.response.agent.registration.AgentRegistrationResponse;
@@ -25,9 +27,11 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class AgentRegistrationService {
     private final AgentRepository agentRepository;
-    private final ServerRepository serverRepository;
+    private final ServerConfiguration serverConfiguration;
     private final CryptoUtility cryptoUtility;
     private final LogService logService;
+    private final AgentIdentityCache agentIdentityCache;
+    private final AgentSessionCache agentSessionCache;
 
     public ResponseEntity<ApiResponse> addNewAgent(AgentRegistrationRequest agentRegistrationRequest, HttpServletRequest httpServletRequest) {
         if (agentRegistrationRequest.getPublicKeyBase64() == null || agentRegistrationRequest.getPublicKeyBase64().isBlank() ||
@@ -36,7 +40,7 @@ public class AgentRegistrationService {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_INVALID_REQUEST));
         }
 
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
         if (agentRegistrationRequest.getAuthenticationToken().equals(serverEntity.getAgentRegistrationToken())) {
             AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentRegistrationRequest.getPublicKeyBase64());
             if (agentEntity == null) {
@@ -49,9 +53,11 @@ public class AgentRegistrationService {
             agentEntity.setValidationToken(UUID.randomUUID().toString());
             agentEntity.setName(agentRegistrationRequest.getName().trim());
             agentEntity = agentRepository.save(agentEntity);
+            agentIdentityCache.invalidate(agentEntity.getPublicKeyBase64());
+            agentSessionCache.invalidate(agentEntity.getPublicKeyBase64());
 
 
-            String encryptedMessage = Base64.encodeBase64String(cryptoUtility.encryptECC(agentEntity.getValidationToken().getBytes(), agentEntity));
+            String encryptedMessage = Base64.encodeBase64String(cryptoUtility.encryptECC(agentEntity.getValidationToken().getBytes(), cryptoUtility.loadPublicKey(agentEntity.getPublicKeyBase64())));
             logService.addEntry(Severity.INFO, "New Agent added: " + agentEntity.getName() + " | " + agentEntity.getUuid());
             return ResponseEntity.ok().body(new AgentRegistrationResponse(serverEntity.getPublicKeyBase64(), encryptedMessage));
         }
@@ -76,6 +82,8 @@ public class AgentRegistrationService {
         if (decryptedToken.equals(agentEntity.getValidationToken())) {
             agentEntity.setRegistrationCompleted(true);
             agentRepository.save(agentEntity);
+            agentIdentityCache.invalidate(agentEntity.getPublicKeyBase64());
+            agentSessionCache.invalidate(agentEntity.getPublicKeyBase64());
             logService.addEntry(Severity.INFO, "Successfully verified new Agent: " + agentEntity.getName() + " | " + agentEntity.getUuid());
             return ResponseEntity.ok().build();
         }
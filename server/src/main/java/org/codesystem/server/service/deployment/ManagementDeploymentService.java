@@ -2,6 +2,7 @@ package org.codesystem.server.service.deployment;
 
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.Variables;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.DeploymentEntity;
 import org.codesystem.server.entity.PackageEntity;
@@ -30,6 +31,7 @@ public class ManagementDeploymentService {
     private final AgentRepository agentRepository;
     private final PackageRepository packageRepository;
     private final GroupRepository groupRepository;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
 
     public ResponseEntity<ApiResponse> getAllDeployments() {
         return ResponseEntity.ok().body(new DeploymentInfoListResponse(deploymentRepository.findAll()));
@@ -74,6 +76,7 @@ public class ManagementDeploymentService {
         DeploymentEntity deploymentEntity = new DeploymentEntity(agentEntity, packageEntity);
         deploymentEntity.setDirectDeployment(true);
         deploymentEntity = deploymentRepository.save(deploymentEntity);
+        pendingDeploymentIndex.invalidate(agentEntity.getUuid());
         return ResponseEntity.ok().body(new DeploymentCreateResponse(deploymentEntity.getUuid()));
     }
 
@@ -91,6 +94,7 @@ public class ManagementDeploymentService {
             return ResponseEntity.ok().build();
         }
         deploymentRepository.delete(deploymentEntity);
+        pendingDeploymentIndex.invalidate(deploymentEntity.getAgentEntity().getUuid());
         return ResponseEntity.ok().build();
     }
 
@@ -118,6 +122,7 @@ public class ManagementDeploymentService {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_NO_DEPLOYMENT));
         }
         deploymentRepository.resetDeployment(deploymentUUID);
+        pendingDeploymentIndex.invalidate(deploymentEntity.getAgentEntity().getUuid());
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 
@@ -127,6 +132,7 @@ public class ManagementDeploymentService {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_NO_AGENT));
         }
         deploymentRepository.resetDeploymentsForAgent(agentEntity);
+        pendingDeploymentIndex.invalidate(agentEntity.getUuid());
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 
@@ -136,6 +142,7 @@ public class ManagementDeploymentService {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_NO_PACKAGE));
         }
         deploymentRepository.resetDeploymentsForPackage(packageEntity);
+        pendingDeploymentIndex.invalidatePackage(packageEntity.getUuid());
         return ResponseEntity.status(HttpStatus.OK).build();
     }
 }
@@ -3,10 +3,12 @@ package org.codesystem.server.service.packages;
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.ServerApplication;
 import org.codesystem.server.Variables;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.entity.GroupEntity;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.agent.OperatingSystem;
 import org.codesystem.server.enums.log.Severity;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.DeploymentRepository;
 import org.codesystem.server.repository.GroupRepository;
@@ -20,23 +22,32 @@ import org.codesystem.server.response.packages.PackageInfoListResponse;
 import org.codesystem.server.response.packages.PackageInfoResponse;
 import org.codesystem.server.service.server.LogService;
 import org.codesystem.server.utility.CryptoUtility;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class ManagementPackageService {
+    private static final String UPLOAD_SUFFIX = "_upload";
     private final PackageRepository packageRepository;
     private final CryptoUtility cryptoUtility;
     private final DeploymentRepository deploymentRepository;
     private final GroupRepository groupRepository;
     private final LogService logService;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     public ResponseEntity<ApiResponse> getAllPackages() {
         return ResponseEntity.ok().body(new PackageInfoListResponse(packageRepository.findAll()));
@@ -65,24 +76,22 @@ public class ManagementPackageService {
             }
         }
 
-        String calculatedChecksum;
-        try {
-            calculatedChecksum = cryptoUtility.calculateChecksum(multipartFile.getInputStream());
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_ZIP_FILE_CHECKSUM));
-        }
-        if (!calculatedChecksum.equals(packageAddNewRequest.getPackageChecksum())) {
-            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_CHECKSUM_MISMATCH));
+        Path uploadFile = getUploadFile();
+        DigestAlgorithm digestAlgorithm = packageAddNewRequest.getChecksumAlgorithm() == null ? DigestAlgorithm.SHA3_512 : packageAddNewRequest.getChecksumAlgorithm();
+        ResponseEntity<ApiResponse> uploadError = receiveUpload(multipartFile, uploadFile, packageAddNewRequest.getPackageChecksum(), digestAlgorithm);
+        if (uploadError != null) {
+            return uploadError;
         }
 
         PackageEntity packageEntity = new PackageEntity();
         packageEntity.setName(packageAddNewRequest.getPackageName().trim());
-        packageEntity.setChecksumPlaintext(calculatedChecksum);
+        packageEntity.setChecksumPlaintext(packageAddNewRequest.getPackageChecksum());
+        packageEntity.setDigestAlgorithm(digestAlgorithm);
         packageEntity.setTargetOperatingSystem(packageAddNewRequest.getOperatingSystem());
         packageEntity.setExpectedReturnValue(packageAddNewRequest.getExpectedReturnValue());
         packageEntity = packageRepository.save(packageEntity);
 
-        if (!savePackage(multipartFile, packageEntity)) {
+        if (!savePackage(uploadFile, packageEntity)) {
             packageRepository.delete(packageEntity);
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_CANNOT_STORE_FILE));
         }
@@ -90,6 +99,7 @@ public class ManagementPackageService {
         packageEntity.setPackageStatusInternal(PackageStatusInternal.UPLOADED);
         packageRepository.save(packageEntity);
         logService.addEntry(Severity.INFO, "New Package for " + packageEntity.getTargetOperatingSystem() + " added and awaiting processing: " + packageEntity.getName() + " | " + packageEntity.getUuid());
+        applicationEventPublisher.publishEvent(new PackageUploadedEvent(packageEntity.getUuid()));
         return ResponseEntity.ok().build();
     }
 
@@ -126,8 +136,10 @@ public class ManagementPackageService {
             group.removePackage(packageEntity);
             groupRepository.save(group);
         }
+        Set<String> affectedAgents = pendingDeploymentIndex.findAgentsForPackage(packageEntity.getUuid());
         deploymentRepository.deleteDeploymentsForPackage(packageEntity);
         packageRepository.save(packageEntity);
+        pendingDeploymentIndex.invalidate(affectedAgents);
         logService.addEntry(Severity.INFO, "Marked Package for deletion: " + packageEntity.getName() + " | " + packageEntity.getUuid());
         return ResponseEntity.ok().build();
     }
@@ -147,40 +159,76 @@ public class ManagementPackageService {
             }
         }
 
-        String calculatedChecksum;
-        try {
-            calculatedChecksum = cryptoUtility.calculateChecksum(multipartFile.getInputStream());
-        } catch (IOException e) {
-            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_ZIP_FILE_CHECKSUM));
-        }
-        if (!calculatedChecksum.equals(packageUpdateContentRequest.getPackageChecksum())) {
-            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_CHECKSUM_MISMATCH));
+        Path uploadFile = getUploadFile();
+        DigestAlgorithm digestAlgorithm = packageUpdateContentRequest.getChecksumAlgorithm() == null ? DigestAlgorithm.SHA3_512 : packageUpdateContentRequest.getChecksumAlgorithm();
+        ResponseEntity<ApiResponse> uploadError = receiveUpload(multipartFile, uploadFile, packageUpdateContentRequest.getPackageChecksum(), digestAlgorithm);
+        if (uploadError != null) {
+            return uploadError;
         }
 
-        if (!savePackage(multipartFile, packageEntity)) {
+        if (!savePackage(uploadFile, packageEntity)) {
             return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_CANNOT_STORE_FILE));
         }
 
         packageEntity.setPackageStatusInternal(PackageStatusInternal.UPLOADED);
         packageEntity.setChecksumPlaintext(packageUpdateContentRequest.getPackageChecksum());
+        packageEntity.setDigestAlgorithm(digestAlgorithm);
         packageRepository.save(packageEntity);
         deploymentRepository.resetDeploymentsForPackage(packageEntity);
+        pendingDeploymentIndex.invalidatePackage(packageEntity.getUuid());
         logService.addEntry(Severity.INFO, "Package content updated and awaiting processing: " + packageEntity.getName() + " | " + packageEntity.getUuid());
+        applicationEventPublisher.publishEvent(new PackageUploadedEvent(packageEntity.getUuid()));
         return ResponseEntity.ok().build();
     }
 
-    private boolean savePackage(MultipartFile multipartFile, PackageEntity packageEntity) {
-        new File(ServerApplication.PACKAGE_LOCATION).mkdirs();
-        try (FileOutputStream fileOutputStream = new FileOutputStream(ServerApplication.PACKAGE_LOCATION + packageEntity.getUuid() + "_plaintext")) {
-            InputStream inputStream = multipartFile.getInputStream();
-            byte[] inputStreamByte = inputStream.readNBytes(1024);
-            while (inputStreamByte.length != 0) {
-                fileOutputStream.write(inputStreamByte);
-                inputStreamByte = inputStream.readNBytes(1024);
+    private Path getUploadFile() {
+        return Paths.get(ServerApplication.PACKAGE_LOCATION + UUID.randomUUID() + UPLOAD_SUFFIX);
+    }
+
+    /**
+     * Moves the upload into the package folder and calculates the checksum of the stored file.
+     * Returns the error response if the upload cannot be stored or the checksum does not match, the stored file is removed in that case.
+     */
+    private ResponseEntity<ApiResponse> receiveUpload(MultipartFile multipartFile, Path uploadFile, String expectedChecksum, DigestAlgorithm digestAlgorithm) {
+        String calculatedChecksum;
+        try {
+            Files.createDirectories(uploadFile.getParent());
+            // the servlet container renames its temporary file if it is on the same file system, otherwise it is copied once
+            multipartFile.transferTo(uploadFile.toAbsolutePath().toFile());
+            try (InputStream inputStream = Files.newInputStream(uploadFile)) {
+                calculatedChecksum = cryptoUtility.calculateChecksum(inputStream, OutputStream.nullOutputStream(), digestAlgorithm);
             }
-        } catch (Exception e) {
+        } catch (IOException e) {
+            deleteUpload(uploadFile);
+            return ResponseEntity.badRequest().body(new ApiError(Variables.ERROR_RESPONSE_CANNOT_STORE_FILE));
+        }
+        if (calculatedChecksum == null) {
+            deleteUpload(uploadFile);
+            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_ZIP_FILE_CHECKSUM));
+        }
+        if (!calculatedChecksum.equals(expectedChecksum)) {
+            deleteUpload(uploadFile);
+            return ResponseEntity.badRequest().body(new ApiError(Variables.PACKAGE_ERROR_CHECKSUM_MISMATCH));
+        }
+        return null;
+    }
+
+    private boolean savePackage(Path uploadFile, PackageEntity packageEntity) {
+        try {
+            // the upload is in the same folder, so the verified file is only renamed
+            Files.move(uploadFile, Paths.get(ServerApplication.PACKAGE_LOCATION + packageEntity.getUuid() + "_plaintext"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteUpload(uploadFile);
             return false;
         }
         return true;
     }
+
+    private void deleteUpload(Path uploadFile) {
+        try {
+            Files.deleteIfExists(uploadFile);
+        } catch (IOException e) {
+            logService.addEntry(Severity.WARNING, "Could not delete the upload: " + uploadFile + ". Error: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package org.codesystem.server.service.packages;
+
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.ServerApplication;
+import org.codesystem.server.entity.PackageEntity;
+import org.codesystem.server.utility.ContentDefinedChunker;
+import org.codesystem.server.utility.CryptoUtility;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Stores the packages as content-defined chunks that are encrypted one by one and named after the checksum of the encrypted chunk.
+ * The Agents keep the chunks and only download the ones that are missing for a new revision of a package.
+ */
+@Service
+@RequiredArgsConstructor
+public class PackageChunkService {
+    private static final String CHUNK_FOLDER_SUFFIX = "_chunks";
+    private static final Pattern CHUNK_ID_PATTERN = Pattern.compile("^[0-9a-f]{128}$");
+    private final CryptoUtility cryptoUtility;
+
+    /**
+     * Splits the plaintext file into encrypted chunks and removes the chunks that are no longer part of the package.
+     *
+     * @return Returns the manifest of the chunks in the order of the plaintext file.
+     */
+    public ChunkManifest createChunks(PackageEntity packageEntity, File plaintextFile) throws IOException {
+        if (packageEntity.getChunkEncryptionToken() == null) {
+            packageEntity.setChunkEncryptionToken(cryptoUtility.generateChunkEncryptionToken());
+        }
+        Path chunkFolder = getChunkFolder(packageEntity);
+        Files.createDirectories(chunkFolder);
+
+        ChunkManifest chunkManifest = new ChunkManifest();
+        try (InputStream inputStream = Files.newInputStream(plaintextFile.toPath())) {
+            ContentDefinedChunker.split(inputStream, chunk -> {
+                byte[] encryptedChunk = cryptoUtility.encryptChunk(chunk, packageEntity.getChunkEncryptionToken());
+                String chunkId = cryptoUtility.calculateChecksum(new ByteArrayInputStream(encryptedChunk));
+                Path chunkFile = chunkFolder.resolve(chunkId);
+                boolean reused = Files.exists(chunkFile);
+                if (!reused) {
+                    Path temporaryFile = chunkFolder.resolve(chunkId + ".tmp");
+                    Files.write(temporaryFile, encryptedChunk);
+                    Files.move(temporaryFile, chunkFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                chunkManifest.add(chunkId, encryptedChunk.length, reused);
+            });
+        }
+
+        Set<String> referencedChunks = new HashSet<>(chunkManifest.getChunkIds());
+        try (Stream<Path> stream = Files.list(chunkFolder)) {
+            for (Path path : stream.filter(path -> !referencedChunks.contains(path.getFileName().toString())).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        return chunkManifest;
+    }
+
+    /**
+     * Returns null if the chunk id is invalid or the chunk is not part of the package.
+     */
+    public Path getChunkFile(PackageEntity packageEntity, String chunkId) {
+        if (chunkId == null || !CHUNK_ID_PATTERN.matcher(chunkId).matches()
+                || packageEntity.getChunkManifest() == null || !packageEntity.getChunkManifest().contains(chunkId)) {
+            return null;
+        }
+        Path chunkFile = getChunkFolder(packageEntity).resolve(chunkId);
+        return Files.isRegularFile(chunkFile) ? chunkFile : null;
+    }
+
+    /**
+     * Identifies a batch of chunks, the chunk ids are checksums of the content, so the same batch always has the same content.
+     */
+    public String getBatchChecksum(List<String> chunkIds) {
+        return cryptoUtility.calculateChecksum(new ByteArrayInputStream(String.join(",", chunkIds).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public void deleteChunks(PackageEntity packageEntity) throws IOException {
+        Path chunkFolder = getChunkFolder(packageEntity);
+        if (!Files.exists(chunkFolder)) {
+            return;
+        }
+        try (Stream<Path> stream = Files.walk(chunkFolder)) {
+            for (Path path : stream.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path getChunkFolder(PackageEntity packageEntity) {
+        return Paths.get(ServerApplication.PACKAGE_LOCATION + packageEntity.getUuid() + CHUNK_FOLDER_SUFFIX);
+    }
+
+    public static class ChunkManifest {
+        private final JSONArray chunks = new JSONArray();
+        private final List<String> chunkIds = new ArrayList<>();
+        private long reusedBytes = 0;
+        private long totalBytes = 0;
+
+        private void add(String chunkId, long size, boolean reused) {
+            chunks.put(new JSONObject().put("id", chunkId).put("size", size));
+            chunkIds.add(chunkId);
+            totalBytes += size;
+            if (reused) {
+                reusedBytes += size;
+            }
+        }
+
+        public List<String> getChunkIds() {
+            return chunkIds;
+        }
+
+        public long getReusedBytes() {
+            return reusedBytes;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        @Override
+        public String toString() {
+            return chunks.toString();
+        }
+    }
+}
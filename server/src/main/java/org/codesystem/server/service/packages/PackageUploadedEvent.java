@@ -0,0 +1,13 @@
+package org.codesystem.server.service.packages;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published when the content of a package was stored and is waiting for processing.
+ */
+@Getter
+@RequiredArgsConstructor
+public class PackageUploadedEvent {
+    private final String packageUUID;
+}
@@ -0,0 +1,21 @@
+package org.codesystem.server.service.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.service.agent.communication.AgentNotificationService;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+public class AgentNotificationKeepAlive {
+    private final AgentNotificationService agentNotificationService;
+
+    @Scheduled(timeUnit = TimeUnit.SECONDS, fixedDelay = 30)
+    @Async("keepAliveAgentNotificationsTask")
+    public void sendKeepAlive() {
+        agentNotificationService.sendKeepAlive();
+    }
+}
@@ -0,0 +1,21 @@
+package org.codesystem.server.service.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+public class AgentSessionDeleter {
+    private final AgentSessionCache agentSessionCache;
+
+    @Scheduled(timeUnit = TimeUnit.MINUTES, fixedDelay = 1)
+    @Async("deleteAgentSessionsTask")
+    public void deleteExpiredSessions() {
+        agentSessionCache.removeExpiredSessions();
+    }
+}
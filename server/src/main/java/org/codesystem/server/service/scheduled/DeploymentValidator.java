@@ -1,6 +1,8 @@
 package org.codesystem.server.service.scheduled;
 
 import lombok.RequiredArgsConstructor;
+import org.codesystem.server.cache.PendingDeploymentIndex;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.DeploymentEntity;
 import org.codesystem.server.entity.PackageEntity;
@@ -22,12 +24,13 @@ import java.util.concurrent.TimeUnit;
 @Service
 @RequiredArgsConstructor
 public class DeploymentValidator {
-    private final ServerRepository serverRepository;
+    private final ServerConfiguration serverConfiguration;
     private final DeploymentRepository deploymentRepository;
     private final AgentRepository agentRepository;
     private final PackageRepository packageRepository;
     private final GroupRepository groupRepository;
     private final LogService logService;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
 
     private long deletedDuplicateDeployments = 0;
     private long createdGroupDeployments = 0;
@@ -40,7 +43,7 @@ public class DeploymentValidator {
         deletedDuplicateDeployments = 0;
         createdGroupDeployments = 0;
         deletedUnreferencedDeployments = 0;
-        ServerEntity serverEntity = serverRepository.findAll().get(0);
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
         if (serverEntity.getLastDeploymentValidation() == null || Instant.now().isAfter(serverEntity.getLastDeploymentValidation().plus(serverEntity.getDeploymentValidationInterval(), ChronoUnit.SECONDS))) {
             logService.addEntry(Severity.INFO, "Deployment Validation started");
             Instant startTimestamp = Instant.now();
@@ -53,8 +56,7 @@ public class DeploymentValidator {
                     validate(agentEntity, packageEntity);
                 }
             }
-            serverEntity.setLastDeploymentValidation(Instant.now());
-            serverRepository.save(serverEntity);
+            serverConfiguration.update(entity -> entity.setLastDeploymentValidation(Instant.now()));
             logService.addEntry(Severity.INFO, "Deployment validation finished in: " +
                     Duration.between(startTimestamp, Instant.now()).getSeconds() +
                     " seconds. Deleted Duplicate Deployments: " +
@@ -100,6 +102,7 @@ public class DeploymentValidator {
         deploymentEntity.setAgentEntity(agentEntity);
         deploymentEntity.setDirectDeployment(isOneDeploymentDirect);
         deploymentRepository.save(deploymentEntity);
+        pendingDeploymentIndex.invalidate(agentEntity.getUuid());
         return deploymentEntities.size() - 1;
     }
 
@@ -115,6 +118,7 @@ public class DeploymentValidator {
             deploymentEntity.setAgentEntity(agentEntity);
             deploymentEntity.setDirectDeployment(false);
             deploymentRepository.save(deploymentEntity);
+            pendingDeploymentIndex.invalidate(agentEntity.getUuid());
             return true;
         }
         return false;
@@ -133,6 +137,7 @@ public class DeploymentValidator {
         DeploymentEntity deploymentEntity = deploymentEntities.get(0);
         if (!deploymentEntity.isDirectDeployment() && !groupRepository.isPackageAvailableThroughGroup(agentEntity.getUuid(), packageEntity.getUuid())) {
             deploymentRepository.delete(deploymentEntity);
+            pendingDeploymentIndex.invalidate(agentEntity.getUuid());
             return true;
         }
         return false;
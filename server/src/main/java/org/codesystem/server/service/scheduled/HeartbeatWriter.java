@@ -0,0 +1,21 @@
+package org.codesystem.server.service.scheduled;
+
+import lombok.RequiredArgsConstructor;
+import org.codesystem.server.cache.AgentHeartbeatCache;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+public class HeartbeatWriter {
+    private final AgentHeartbeatCache agentHeartbeatCache;
+
+    @Scheduled(timeUnit = TimeUnit.SECONDS, fixedDelay = 10)
+    @Async("writeHeartbeatsTask")
+    public void writeHeartbeats() {
+        agentHeartbeatCache.flush();
+    }
+}
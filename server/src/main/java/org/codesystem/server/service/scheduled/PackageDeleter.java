@@ -6,6 +6,7 @@ import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.PackageRepository;
+import org.codesystem.server.service.packages.PackageChunkService;
 import org.codesystem.server.service.server.LogService;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -23,6 +24,7 @@ import java.util.concurrent.TimeUnit;
 public class PackageDeleter {
     private final PackageRepository packageRepository;
     private final LogService logService;
+    private final PackageChunkService packageChunkService;
 
 
     @Scheduled(timeUnit = TimeUnit.SECONDS, fixedDelay = 1)
@@ -45,6 +47,11 @@ public class PackageDeleter {
             logService.addEntry(Severity.INFO, "Could not delete the file for deleted Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + ". Error: " + e.getMessage());
 
         }
+        try {
+            packageChunkService.deleteChunks(packageEntity);
+        } catch (IOException e) {
+            logService.addEntry(Severity.INFO, "Could not delete the chunks for deleted Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + ". Error: " + e.getMessage());
+        }
         logService.addEntry(Severity.INFO, "Deleted Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
         packageRepository.delete(packageEntity);
     }
@@ -1,48 +1,143 @@
 package org.codesystem.server.service.scheduled;
 
-import lombok.RequiredArgsConstructor;
 import org.codesystem.server.ServerApplication;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.PackageRepository;
+import org.codesystem.server.response.general.ApiResponse;
+import org.codesystem.server.response.server.ServerPackageProcessingResponse;
+import org.codesystem.server.service.packages.PackageChunkService;
+import org.codesystem.server.service.packages.PackageUploadedEvent;
 import org.codesystem.server.service.server.LogService;
 import org.codesystem.server.utility.CryptoUtility;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encrypts the uploaded packages with a pool of workers. A worker is started as soon as a package was uploaded and
+ * keeps processing until no package is waiting anymore. Every package is claimed with a conditional status update,
+ * so several workers or servers sharing the database never process the same package.
+ */
 @Service
-@RequiredArgsConstructor
 public class PackageEncryptor {
     private static final String WITH_ERROR = " with Error: ";
     private final PackageRepository packageRepository;
     private final CryptoUtility cryptoUtility;
     private final LogService logService;
+    private final PendingDeploymentIndex pendingDeploymentIndex;
+    private final PackageChunkService packageChunkService;
+    private final TaskExecutor taskExecutor;
+    private final int workers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicLong processedPackages = new AtomicLong();
+    private final AtomicLong totalProcessingTime = new AtomicLong();
+
+    public PackageEncryptor(PackageRepository packageRepository, CryptoUtility cryptoUtility, LogService logService, PendingDeploymentIndex pendingDeploymentIndex, PackageChunkService packageChunkService,
+                            @Qualifier("processPackageWorkers") TaskExecutor taskExecutor, @Value("${opd.package-processing.workers}") int workers) {
+        this.packageRepository = packageRepository;
+        this.cryptoUtility = cryptoUtility;
+        this.logService = logService;
+        this.pendingDeploymentIndex = pendingDeploymentIndex;
+        this.packageChunkService = packageChunkService;
+        this.taskExecutor = taskExecutor;
+        this.workers = workers;
+    }
+
+    @EventListener
+    public void onPackageUploaded(PackageUploadedEvent packageUploadedEvent) {
+        startWorkers(1);
+    }
 
+    /**
+     * Picks up packages uploaded on another server and packages whose event was missed by busy workers.
+     */
     @Scheduled(timeUnit = TimeUnit.SECONDS, fixedDelay = 1)
     @Async("encryptPackageTask")
-    public void encryptPackage() {
+    public void pollUploadedPackages() {
+        long queuedPackages = packageRepository.countByPackageStatusInternal(PackageStatusInternal.UPLOADED);
+        if (queuedPackages > 0) {
+            startWorkers((int) Math.min(queuedPackages, workers));
+        }
+    }
+
+    /**
+     * Claims the next uploaded package and processes it.
+     *
+     * @return Returns false if no package is waiting for processing.
+     */
+    public boolean encryptPackage() {
         PackageEntity packageEntity = packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED);
-        if (packageEntity != null) {
-            encryptPackage(packageEntity);
+        while (packageEntity != null) {
+            if (packageRepository.updatePackageStatusInternal(packageEntity.getUuid(), PackageStatusInternal.UPLOADED, PackageStatusInternal.PROCESSING) == 1) {
+                encryptPackage(packageRepository.findFirstByUuid(packageEntity.getUuid()));
+                return true;
+            }
+            // claimed by another worker in the meantime
+            packageEntity = packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED);
+        }
+        return false;
+    }
+
+    public ResponseEntity<ApiResponse> getStatistics() {
+        long processed = processedPackages.get();
+        long averageProcessingTime = processed == 0 ? 0 : totalProcessingTime.get() / processed;
+        return ResponseEntity.ok().body(new ServerPackageProcessingResponse(packageRepository.countByPackageStatusInternal(PackageStatusInternal.UPLOADED), activeWorkers.get(), workers, processed, averageProcessingTime));
+    }
+
+    private void startWorkers(int count) {
+        for (int i = 0; i < count; i++) {
+            int active = activeWorkers.get();
+            if (active >= workers) {
+                return;
+            }
+            if (!activeWorkers.compareAndSet(active, active + 1)) {
+                continue;
+            }
+            try {
+                taskExecutor.execute(this::processPackages);
+            } catch (TaskRejectedException e) {
+                activeWorkers.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    private void processPackages() {
+        try {
+            boolean processed = true;
+            while (processed) {
+                processed = encryptPackage();
+            }
+        } catch (Exception e) {
+            logService.addEntry(Severity.ERROR, "Package processing worker stopped" + WITH_ERROR + e.getMessage());
+        } finally {
+            activeWorkers.decrementAndGet();
         }
     }
 
     private void encryptPackage(PackageEntity packageEntity) {
+        long startTime = System.nanoTime();
         // check if file exists
         Path basePath = Paths.get(ServerApplication.PACKAGE_LOCATION);
         File plaintextFile = new File(basePath + File.separator + packageEntity.getUuid() + "_plaintext");
-        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSING);
-        packageEntity = packageRepository.save(packageEntity);
+        packageEntity.setProcessingTime(null);
         if (!plaintextFile.exists() || !plaintextFile.isFile()) {
             packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_FILE_NOT_FOUND);
             logService.addEntry(Severity.ERROR, "Failed to locate uploaded file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
@@ -51,85 +146,83 @@ public class PackageEncryptor {
         }
 
 
-        // compare checksum of plaintext file
-        try (FileInputStream fileInputStream = new FileInputStream(plaintextFile)) {
-            if (!cryptoUtility.calculateChecksum(fileInputStream).equals(packageEntity.getChecksumPlaintext())) {
-                packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH);
-                logService.addEntry(Severity.ERROR, "Detected checksum mismatch for uploaded file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
-                finish(packageEntity, plaintextFile, null);
-                return;
-            }
-        } catch (Exception e) {
-            packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH);
-            logService.addEntry(Severity.ERROR, "Detected checksum mismatch for uploaded file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
-            finish(packageEntity, plaintextFile, null);
-            return;
-        }
-
         Path encryptedFilePath = Paths.get(basePath + File.separator + packageEntity.getUuid());
-        Path decryptedTestFilePath = Paths.get(basePath + File.separator + packageEntity.getUuid() + "_temp-encrypted-test");
 
-        // encrypt file
-        if (!cryptoUtility.encryptFile(packageEntity, plaintextFile, encryptedFilePath)) {
+        // encrypt file, the checksums of the plaintext and the encrypted file are calculated in the same pass
+        CryptoUtility.EncryptedFile encryptedFile = cryptoUtility.encryptFileWithChecksums(packageEntity, plaintextFile, encryptedFilePath);
+        if (encryptedFile == null) {
             packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_ENCRYPTION);
             logService.addEntry(Severity.ERROR, "Failed to encrypt file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
-            finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
+            finish(packageEntity, plaintextFile, encryptedFilePath.toFile());
             return;
         }
 
-        //calculate checksum of encrypted file
-        String checksumEncryptedFile;
-        try {
-            checksumEncryptedFile = cryptoUtility.calculateChecksum(new FileInputStream(encryptedFilePath.toString()));
-        } catch (Exception e) {
-            packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR);
-            logService.addEntry(Severity.ERROR, "Failed to calculate checksum of the encrypted file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
-            finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
+        // compare checksum of plaintext file
+        if (!encryptedFile.getPlaintextChecksum().equals(packageEntity.getChecksumPlaintext())) {
+            packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH);
+            logService.addEntry(Severity.ERROR, "Detected checksum mismatch for uploaded file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
+            finish(packageEntity, plaintextFile, encryptedFilePath.toFile());
             return;
         }
 
-        //decrypt file
-        if (!cryptoUtility.decryptFile(packageEntity, new File(encryptedFilePath.toString()), decryptedTestFilePath)) {
+        // decrypt file, only the checksum of the decrypted content is needed
+        String checksumDecryptedFile = cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFilePath.toFile());
+        if (checksumDecryptedFile == null) {
             packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_DECRYPTION);
             logService.addEntry(Severity.ERROR, "Failed to decrypt file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
-            finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
+            finish(packageEntity, plaintextFile, encryptedFilePath.toFile());
             return;
         }
 
         //compare checksum of decrypted file
-        try {
-            if (!cryptoUtility.calculateChecksum(new FileInputStream(decryptedTestFilePath.toString())).equals(packageEntity.getChecksumPlaintext())) {
-                packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH);
-                logService.addEntry(Severity.ERROR, "Failed to calculate checksum of the decrypted file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
-                finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
-                return;
-            }
-        } catch (FileNotFoundException e) {
+        if (!checksumDecryptedFile.equals(packageEntity.getChecksumPlaintext())) {
             packageEntity.setPackageStatusInternal(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH);
-            logService.addEntry(Severity.ERROR, "Failed to calculate checksum of the encrypted file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
-            finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
+            logService.addEntry(Severity.ERROR, "Detected checksum mismatch for the decrypted file while processing Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
+            finish(packageEntity, plaintextFile, encryptedFilePath.toFile());
             return;
         }
+        double seconds = Math.max(System.nanoTime() - startTime, 1) / 1_000_000_000.0;
+        double megabytes = encryptedFile.getPlaintextSize() / (1024.0 * 1024.0);
 
-        packageEntity.setChecksumEncrypted(checksumEncryptedFile);
+        // the Agents fall back to the complete encrypted file if the package has no chunks
+        packageEntity.setChunkManifest(null);
+        try {
+            PackageChunkService.ChunkManifest chunkManifest = packageChunkService.createChunks(packageEntity, plaintextFile);
+            packageEntity.setChunkManifest(chunkManifest.toString());
+            logService.addEntry(Severity.INFO, "Created " + chunkManifest.getChunkIds().size() + " chunks for Package: " + packageEntity.getName() + " | " + packageEntity.getUuid()
+                    + ". Reused " + chunkManifest.getReusedBytes() + " of " + chunkManifest.getTotalBytes() + " bytes");
+        } catch (Exception e) {
+            logService.addEntry(Severity.WARNING, "Failed to create the chunks for Package: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
+        }
+
+        packageEntity.setChecksumEncrypted(encryptedFile.getEncryptedChecksum());
         packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
 
-        packageEntity.setPlaintextSize(plaintextFile.length());
-        packageEntity.setEncryptedSize(encryptedFilePath.toFile().length());
+        packageEntity.setPlaintextSize(encryptedFile.getPlaintextSize());
+        packageEntity.setEncryptedSize(encryptedFile.getEncryptedSize());
 
-        finish(packageEntity, plaintextFile, decryptedTestFilePath.toFile());
-        logService.addEntry(Severity.INFO, "Successfully processed Package: " + packageEntity.getName() + " | " + packageEntity.getUuid());
+        long processingTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        packageEntity.setProcessingTime(processingTime);
+        processedPackages.incrementAndGet();
+        totalProcessingTime.addAndGet(processingTime);
+
+        finish(packageEntity, plaintextFile, null);
+        pendingDeploymentIndex.invalidatePackage(packageEntity.getUuid());
+        logService.addEntry(Severity.INFO, "Successfully processed Package: " + packageEntity.getName() + " | " + packageEntity.getUuid()
+                + String.format(". Encrypted and verified %.1f MB with %.1f MB/s, processing took %d ms", megabytes, megabytes / seconds, processingTime));
     }
 
-    private void finish(PackageEntity packageEntity, File plaintextFile, File decryptedTestFile) {
+    /**
+     * The encrypted file is removed if the processing failed, it cannot be used by the Agents.
+     */
+    private void finish(PackageEntity packageEntity, File plaintextFile, File failedEncryptedFile) {
         packageRepository.save(packageEntity);
         try {
-            if (decryptedTestFile != null && !Files.deleteIfExists(decryptedTestFile.toPath())) {
-                logService.addEntry(Severity.INFO, "Could not delete the decrypted test file for: " + packageEntity.getName() + " | " + packageEntity.getUuid());
-
+            if (failedEncryptedFile != null) {
+                Files.deleteIfExists(failedEncryptedFile.toPath());
             }
         } catch (Exception e) {
-            logService.addEntry(Severity.INFO, "Could not delete the decrypted test file for: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
+            logService.addEntry(Severity.INFO, "Could not delete the encrypted file for: " + packageEntity.getName() + " | " + packageEntity.getUuid() + WITH_ERROR + e.getMessage());
         }
         try {
             if (!Files.deleteIfExists(plaintextFile.toPath())) {
@@ -0,0 +1,109 @@
+package org.codesystem.server.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Creates a patch that rebuilds the target file from the base file (applied by the AutoUpdateUtility of the Agent).
+ * The base is indexed in blocks, matching blocks of the target are found with a rolling hash and extended in both directions.
+ * The patch is gzip compressed and consists of copy instructions (offset and length in the base) and inserted bytes.
+ * Unchanged entries of a jar are stored identically, so a new build mostly consists of copies.
+ */
+public class BinaryDelta {
+    public static final int MAGIC = 0x4F504444;
+    public static final int END = 0;
+    public static final int COPY = 1;
+    public static final int INSERT = 2;
+    private static final int BLOCK_SIZE = 64;
+    private static final long HASH_BASE = 0x100000001B3L;
+    private static final long HASH_POWER = power(HASH_BASE, BLOCK_SIZE - 1);
+
+    private BinaryDelta() {
+    }
+
+    public static void create(Path baseFile, Path targetFile, Path patchFile) throws IOException {
+        byte[] base = Files.readAllBytes(baseFile);
+        byte[] target = Files.readAllBytes(targetFile);
+        try (DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(patchFile))))) {
+            dataOutputStream.writeInt(MAGIC);
+            dataOutputStream.writeLong(target.length);
+            writeInstructions(base, target, dataOutputStream);
+            dataOutputStream.writeByte(END);
+        }
+    }
+
+    private static void writeInstructions(byte[] base, byte[] target, DataOutputStream dataOutputStream) throws IOException {
+        Map<Long, Integer> blockIndex = new HashMap<>();
+        for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+            blockIndex.putIfAbsent(hash(base, offset), offset);
+        }
+
+        int insertStart = 0;
+        int position = 0;
+        long hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+        while (position + BLOCK_SIZE <= target.length) {
+            Integer baseOffset = blockIndex.get(hash);
+            if (baseOffset != null && Arrays.equals(base, baseOffset, baseOffset + BLOCK_SIZE, target, position, position + BLOCK_SIZE)) {
+                int copyStart = position;
+                int copyOffset = baseOffset;
+                int copyLength = BLOCK_SIZE;
+                while (copyOffset + copyLength < base.length && copyStart + copyLength < target.length && base[copyOffset + copyLength] == target[copyStart + copyLength]) {
+                    copyLength++;
+                }
+                // the bytes in front of the block might match as well
+                while (copyStart > insertStart && copyOffset > 0 && base[copyOffset - 1] == target[copyStart - 1]) {
+                    copyStart--;
+                    copyOffset--;
+                    copyLength++;
+                }
+                writeInsert(target, insertStart, copyStart, dataOutputStream);
+                dataOutputStream.writeByte(COPY);
+                dataOutputStream.writeLong(copyOffset);
+                dataOutputStream.writeInt(copyLength);
+                position = copyStart + copyLength;
+                insertStart = position;
+                if (position + BLOCK_SIZE <= target.length) {
+                    hash = hash(target, position);
+                }
+                continue;
+            }
+            if (position + BLOCK_SIZE < target.length) {
+                hash = (hash - (target[position] & 0xFF) * HASH_POWER) * HASH_BASE + (target[position + BLOCK_SIZE] & 0xFF);
+            }
+            position++;
+        }
+        writeInsert(target, insertStart, target.length, dataOutputStream);
+    }
+
+    private static void writeInsert(byte[] target, int start, int end, DataOutputStream dataOutputStream) throws IOException {
+        if (end <= start) {
+            return;
+        }
+        dataOutputStream.writeByte(INSERT);
+        dataOutputStream.writeInt(end - start);
+        dataOutputStream.write(target, start, end - start);
+    }
+
+    private static long hash(byte[] data, int offset) {
+        long hash = 0;
+        for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+            hash = hash * HASH_BASE + (data[i] & 0xFF);
+        }
+        return hash;
+    }
+
+    private static long power(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package org.codesystem.server.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Splits a stream into chunks at content-defined boundaries (gear rolling hash), so an insertion or a change only affects the surrounding chunks
+ * and the remaining chunks are identical between two revisions of a package.
+ */
+public class ContentDefinedChunker {
+    public static final int MINIMUM_CHUNK_SIZE = 128 * 1024;
+    public static final int MAXIMUM_CHUNK_SIZE = 2 * 1024 * 1024;
+    // 19 bits result in an average chunk size of 512 KiB after the minimum size, the upper bits depend on the last 64 bytes
+    private static final long BOUNDARY_MASK = ((1L << 19) - 1) << 45;
+    // the table has to stay the same for all revisions, otherwise no boundaries match
+    private static final long[] GEAR_TABLE = new SplittableRandom(0x4F5044L).longs(256).toArray();
+
+    private ContentDefinedChunker() {
+    }
+
+    public static void split(InputStream inputStream, ChunkConsumer chunkConsumer) throws IOException {
+        byte[] buffer = new byte[MAXIMUM_CHUNK_SIZE];
+        int length = 0;
+        int bytesRead;
+        while ((bytesRead = inputStream.readNBytes(buffer, length, buffer.length - length)) > 0 || length > 0) {
+            length += bytesRead;
+            int boundary = findBoundary(buffer, length);
+            chunkConsumer.accept(Arrays.copyOf(buffer, boundary));
+            System.arraycopy(buffer, boundary, buffer, 0, length - boundary);
+            length -= boundary;
+        }
+    }
+
+    private static int findBoundary(byte[] buffer, int length) {
+        if (length <= MINIMUM_CHUNK_SIZE) {
+            return length;
+        }
+        long hash = 0;
+        for (int i = MINIMUM_CHUNK_SIZE; i < length; i++) {
+            hash = (hash << 1) + GEAR_TABLE[buffer[i] & 0xFF];
+            if ((hash & BOUNDARY_MASK) == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void accept(byte[] chunk) throws IOException;
+    }
+}
@@ -1,33 +1,71 @@
 package org.codesystem.server.utility;
 
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.IESParameterSpec;
-import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.entity.ServerEntity;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+import org.codesystem.server.enums.packages.EncryptionFormat;
 import org.codesystem.server.exception.CryptoUtilityException;
 import org.codesystem.server.repository.ServerRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.CipherInputStream;
-import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.*;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 @Service
 public class CryptoUtility {
+    private static final int SESSION_KEY_LENGTH = 32;
+    private static final String SESSION_KEY_INFO = "OPD-Agent-Session:";
+    private static final String CHUNK_VECTOR_KEY_INFO = "OPD-Chunk-Vector";
+    private static final int CHUNK_INITIALIZATION_VECTOR_LENGTH = 12;
+    // large reads keep the number of system calls low for uploads of several GB
+    private static final int CHECKSUM_BUFFER_SIZE = 128 * 1024;
+    static final int FILE_BUFFER_SIZE = 1024 * 1024;
+    // segmented package format: header (magic, version, segment size, nonce prefix) followed by the AES-GCM encrypted segments
+    static final int SEGMENT_SIZE = 1024 * 1024;
+    static final int SEGMENT_HEADER_LENGTH = 16;
+    private static final int SEGMENT_MAGIC = 0x4F504453;
+    private static final byte SEGMENT_FORMAT_VERSION = 1;
+    private static final int SEGMENT_NONCE_PREFIX_LENGTH = 7;
+    private static final int MAXIMUM_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int GCM_TAG_LENGTH = 16;
+    // segments processed in parallel, this limits the memory usage to a few segments per processor
+    private static final int SEGMENT_BATCH_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+    static final String SYMMETRIC_PROVIDER_AUTO = "auto";
+    private static final String AES_GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    // all providers produce the same AES-GCM output, SunJCE is preferred as it uses the AES and carry-less multiplication instructions of the CPU
+    private static final List<String> PREFERRED_SYMMETRIC_PROVIDERS = List.of("SunJCE", BouncyCastleProvider.PROVIDER_NAME);
+    private final String symmetricProvider;
     private final KeyFactory keyFactory;
     private final KeyGenerator keyGeneratorAES;
+    private final SecureRandom secureRandom = new SecureRandom();
     private final PrivateKey privateKeyServer;
     private final IESParameterSpec iesParamSpec = new IESParameterSpec(
             /* derivation = */ null,
@@ -36,10 +74,22 @@ public class CryptoUtility {
             /* cipherKeySize = */ 1024,
             /* nonce = */ null,
             /* usePointCompression = */ false);
+    // the ECC operations are CPU-bound, with virtual threads there would otherwise be as many running operations (and pooled instances) as requests
+    private final Semaphore operationPermitsECC = new Semaphore(Runtime.getRuntime().availableProcessors());
+    // Cipher and Signature are not thread-safe, instances are borrowed from a pool and only returned after a successful use
+    private final Queue<Cipher> decryptionCipherPoolECC = new ConcurrentLinkedQueue<>();
+    private final Queue<Cipher> encryptionCipherPoolECC = new ConcurrentLinkedQueue<>();
+    private final Queue<Signature> creationSignaturePoolECC = new ConcurrentLinkedQueue<>();
+    private final Queue<Signature> verificationSignaturePoolECC = new ConcurrentLinkedQueue<>();
 
-    @Autowired
     public CryptoUtility(ServerRepository serverRepository) {
+        this(serverRepository, SYMMETRIC_PROVIDER_AUTO);
+    }
+
+    @Autowired
+    public CryptoUtility(ServerRepository serverRepository, @Value("${opd.crypto.symmetric-provider}") String symmetricProvider) {
         List<ServerEntity> serverEntityList = serverRepository.findAll();
+        this.symmetricProvider = resolveSymmetricProvider(symmetricProvider);
 
         try {
             this.keyFactory = KeyFactory.getInstance("EC");
@@ -55,83 +105,200 @@ public class CryptoUtility {
         }
     }
 
+    /**
+     * Uses the configured provider or, with "auto", the fastest available one.
+     */
+    private String resolveSymmetricProvider(String configuredProvider) {
+        if (configuredProvider == null || configuredProvider.isBlank() || configuredProvider.trim().equalsIgnoreCase(SYMMETRIC_PROVIDER_AUTO)) {
+            for (String provider : PREFERRED_SYMMETRIC_PROVIDERS) {
+                try {
+                    Cipher.getInstance(AES_GCM_TRANSFORMATION, provider);
+                    return provider;
+                } catch (GeneralSecurityException e) {
+                    // try the next provider
+                }
+            }
+            throw new CryptoUtilityException("No symmetric cipher provider is available");
+        }
+        try {
+            Cipher.getInstance(AES_GCM_TRANSFORMATION, configuredProvider.trim());
+        } catch (GeneralSecurityException e) {
+            throw new CryptoUtilityException("The symmetric cipher provider is not available: '" + configuredProvider + "'");
+        }
+        return configuredProvider.trim();
+    }
+
+    public String getSymmetricProvider() {
+        return symmetricProvider;
+    }
+
+    private Cipher createCipherAES() throws GeneralSecurityException {
+        return Cipher.getInstance(AES_GCM_TRANSFORMATION, symmetricProvider);
+    }
+
     public String decryptECC(byte[] message) {
         byte[] decryptedMessage;
+        operationPermitsECC.acquireUninterruptibly();
         try {
-            Cipher cipher = Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
-            cipher.init(Cipher.DECRYPT_MODE, this.privateKeyServer, iesParamSpec);
+            Cipher cipher = borrow(decryptionCipherPoolECC, this::createDecryptionCipherECC);
             decryptedMessage = cipher.doFinal(message);
+            decryptionCipherPoolECC.offer(cipher);
         } catch (Exception e) {
             throw new CryptoUtilityException("Unable to decrypt the message: " + e.getMessage());
+        } finally {
+            operationPermitsECC.release();
         }
         return new String(decryptedMessage, StandardCharsets.UTF_8);
     }
 
-    public byte[] encryptECC(byte[] message, AgentEntity agentEntity) {
+    public byte[] encryptECC(byte[] message, PublicKey publicKey) {
         byte[] encryptedMessage;
+        operationPermitsECC.acquireUninterruptibly();
         try {
-            Cipher cipher = Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
-            cipher.init(Cipher.ENCRYPT_MODE, loadPublicKeyFromAgentEntity(agentEntity), iesParamSpec);
+            Cipher cipher = borrow(encryptionCipherPoolECC, this::createEncryptionCipherECC);
+            cipher.init(Cipher.ENCRYPT_MODE, publicKey, iesParamSpec);
             encryptedMessage = cipher.doFinal(message);
+            encryptionCipherPoolECC.offer(cipher);
         } catch (Exception e) {
             throw new CryptoUtilityException("Unable to load the Public-Key: " + e.getMessage());
+        } finally {
+            operationPermitsECC.release();
         }
         return encryptedMessage;
     }
 
     public byte[] createSignatureECC(String message) {
         byte[] signatureForMessage;
+        operationPermitsECC.acquireUninterruptibly();
         try {
-            Signature signature = Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
-            signature.initSign(privateKeyServer);
+            Signature signature = borrow(creationSignaturePoolECC, this::createCreationSignatureECC);
             signature.update(message.getBytes(StandardCharsets.UTF_8));
             signatureForMessage = signature.sign();
+            creationSignaturePoolECC.offer(signature);
         } catch (Exception e) {
             throw new CryptoUtilityException("Unable to create the signature: " + e.getMessage());
+        } finally {
+            operationPermitsECC.release();
         }
         return signatureForMessage;
     }
 
-    public boolean verifySignatureECC(String message, String base64Signature, AgentEntity agentEntity) {
+    public boolean verifySignatureECC(String message, String base64Signature, PublicKey publicKey) {
+        operationPermitsECC.acquireUninterruptibly();
         try {
-            Signature signature = Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
-            signature.initVerify(loadPublicKeyFromAgentEntity(agentEntity));
+            Signature signature = borrow(verificationSignaturePoolECC, this::createVerificationSignatureECC);
+            signature.initVerify(publicKey);
             signature.update(message.getBytes(StandardCharsets.UTF_8));
-            return signature.verify(Base64.getDecoder().decode(base64Signature));
+            boolean signatureValid = signature.verify(Base64.getDecoder().decode(base64Signature));
+            verificationSignaturePoolECC.offer(signature);
+            return signatureValid;
         } catch (Exception e) {
             throw new CryptoUtilityException("Unable to verify the signature: " + e.getMessage());
+        } finally {
+            operationPermitsECC.release();
         }
     }
 
-    public boolean encryptFile(PackageEntity packageEntity, File plaintextFile, Path targetFilePath) {
-        packageEntity.setEncryptionToken(keyGeneratorAES.generateKey());
-        Cipher cipher;
+    public SecretKey deriveSessionKey(byte[] agentSecret, byte[] serverNonce, String sessionId) {
+        HKDFBytesGenerator hkdfBytesGenerator = new HKDFBytesGenerator(new SHA256Digest());
+        hkdfBytesGenerator.init(new HKDFParameters(agentSecret, serverNonce, (SESSION_KEY_INFO + sessionId).getBytes(StandardCharsets.UTF_8)));
+        byte[] sessionKey = new byte[SESSION_KEY_LENGTH];
+        hkdfBytesGenerator.generateBytes(sessionKey, 0, sessionKey.length);
+        return new SecretKeySpec(sessionKey, "AES");
+    }
+
+    public byte[] encryptSession(byte[] message, SecretKey sessionKey, byte[] initializationVector, byte[] associatedData) {
         try {
-            cipher = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
-            cipher.init(Cipher.ENCRYPT_MODE, packageEntity.getEncryptionToken());
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.ENCRYPT_MODE, sessionKey, new GCMParameterSpec(128, initializationVector));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(message);
         } catch (Exception e) {
-            return false;
+            throw new CryptoUtilityException("Unable to encrypt the session message: " + e.getMessage());
         }
-        packageEntity.setInitializationVector(cipher.getIV());
-        try (FileOutputStream fileOutputStream = new FileOutputStream(targetFilePath.toString());
-             FileInputStream fileInputStream = new FileInputStream(plaintextFile);
-             CipherOutputStream cipherOut = new CipherOutputStream(fileOutputStream, cipher)) {
+    }
 
-            byte[] inputStreamByte = fileInputStream.readNBytes(1024);
-            while (inputStreamByte.length != 0) {
-                cipherOut.write(inputStreamByte);
-                inputStreamByte = fileInputStream.readNBytes(1024);
+    public byte[] decryptSession(byte[] message, SecretKey sessionKey, byte[] initializationVector, byte[] associatedData) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, sessionKey, new GCMParameterSpec(128, initializationVector));
+            cipher.updateAAD(associatedData);
+            return cipher.doFinal(message);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to decrypt the session message: " + e.getMessage());
+        }
+    }
+
+    public boolean encryptFile(PackageEntity packageEntity, File plaintextFile, Path targetFilePath) {
+        return encryptFileWithChecksums(packageEntity, plaintextFile, targetFilePath) != null;
+    }
+
+    /**
+     * Encrypts the file in the segmented format and calculates the checksums of the plaintext and of the encrypted file in the same pass.
+     * Returns null if the file cannot be encrypted.
+     */
+    public EncryptedFile encryptFileWithChecksums(PackageEntity packageEntity, File plaintextFile, Path targetFilePath) {
+        packageEntity.setEncryptionToken(keyGeneratorAES.generateKey());
+        byte[] noncePrefix = new byte[SEGMENT_NONCE_PREFIX_LENGTH];
+        secureRandom.nextBytes(noncePrefix);
+        packageEntity.setInitializationVector(noncePrefix);
+        packageEntity.setEncryptionFormat(EncryptionFormat.SEGMENTED);
+        byte[] header = createSegmentHeader(noncePrefix);
+        try (InputStream inputStream = Files.newInputStream(plaintextFile.toPath());
+             OutputStream outputStream = Files.newOutputStream(targetFilePath)) {
+            PackageDigest plaintextDigest = PackageDigest.create(packageEntity.getDigestAlgorithm());
+            PackageDigest encryptedDigest = PackageDigest.create(packageEntity.getDigestAlgorithm());
+            // an empty file still results in one (empty) segment, otherwise a truncated file could not be detected
+            long segmentCount = Math.max(1, (Files.size(plaintextFile.toPath()) + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            int maximumBatchSize = (int) Math.min(SEGMENT_BATCH_SIZE, segmentCount);
+            byte[][] segments = new byte[maximumBatchSize][SEGMENT_SIZE];
+            int[] segmentLengths = new int[maximumBatchSize];
+            outputStream.write(header);
+            encryptedDigest.update(header);
+            long plaintextSize = 0;
+            long encryptedSize = header.length;
+            for (long firstSegment = 0; firstSegment < segmentCount; firstSegment += maximumBatchSize) {
+                int batchSize = (int) Math.min(maximumBatchSize, segmentCount - firstSegment);
+                for (int i = 0; i < batchSize; i++) {
+                    segmentLengths[i] = inputStream.readNBytes(segments[i], 0, SEGMENT_SIZE);
+                    if (segmentLengths[i] != SEGMENT_SIZE && firstSegment + i != segmentCount - 1) {
+                        throw new IOException("The file changed during the encryption");
+                    }
+                    plaintextDigest.update(segments[i], 0, segmentLengths[i]);
+                    plaintextSize += segmentLengths[i];
+                }
+                long batchStart = firstSegment;
+                byte[][] encryptedSegments = new byte[batchSize][];
+                IntStream.range(0, batchSize).parallel().forEach(i -> encryptedSegments[i] = encryptSegment(packageEntity.getEncryptionToken(), header,
+                        batchStart + i, batchStart + i == segmentCount - 1, segments[i], segmentLengths[i]));
+                for (byte[] encryptedSegment : encryptedSegments) {
+                    encryptedDigest.update(encryptedSegment);
+                    outputStream.write(encryptedSegment);
+                    encryptedSize += encryptedSegment.length;
+                }
             }
+            if (inputStream.read() != -1) {
+                throw new IOException("The file changed during the encryption");
+            }
+            return new EncryptedFile(plaintextDigest.digestHex(), encryptedDigest.digestHex(), plaintextSize, encryptedSize);
         } catch (Exception e) {
-            return false;
+            return null;
         }
-        return true;
     }
 
     public boolean decryptFile(PackageEntity packageEntity, File encryptedFile, Path targetPath) {
+        if (packageEntity.getEncryptionFormat() == EncryptionFormat.SEGMENTED) {
+            try (OutputStream outputStream = Files.newOutputStream(targetPath)) {
+                decryptSegments(packageEntity, encryptedFile, outputStream);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+        // the monolithic format is decrypted as a stream, which SunJCE only supports by buffering the whole file
         Cipher cipher;
         try {
-            cipher = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+            cipher = Cipher.getInstance(AES_GCM_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
         } catch (Exception e) {
             return false;
         }
@@ -142,55 +309,304 @@ public class CryptoUtility {
         ) {
             GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, packageEntity.getInitializationVector());
             cipher.init(Cipher.DECRYPT_MODE, packageEntity.getEncryptionToken(), gcmParameterSpec);
-            byte[] inputStreamByte = cipherInputStream.readNBytes(1024);
-            while (inputStreamByte.length != 0) {
-                fileOutputStream.write(inputStreamByte);
-                inputStreamByte = cipherInputStream.readNBytes(1024);
-            }
+            cipherInputStream.transferTo(fileOutputStream);
         } catch (Exception e) {
             return false;
         }
         return true;
     }
 
-
-    public String calculateChecksum(InputStream inputStream) {
-        if (inputStream == null) {
+    /**
+     * Decrypts the file without writing the plaintext and returns the checksum of the plaintext.
+     * Returns null if the file cannot be decrypted or authenticated.
+     */
+    public String calculateDecryptedChecksum(PackageEntity packageEntity, File encryptedFile) {
+        if (packageEntity.getEncryptionFormat() == EncryptionFormat.SEGMENTED) {
+            try {
+                PackageDigest packageDigest = PackageDigest.create(packageEntity.getDigestAlgorithm());
+                decryptSegments(packageEntity, encryptedFile, packageDigest.asOutputStream());
+                return packageDigest.digestHex();
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        Cipher cipher;
+        PackageDigest packageDigest;
+        try {
+            // see decryptFile, the monolithic format stays with the streaming provider
+            cipher = Cipher.getInstance(AES_GCM_TRANSFORMATION, BouncyCastleProvider.PROVIDER_NAME);
+            cipher.init(Cipher.DECRYPT_MODE, packageEntity.getEncryptionToken(), new GCMParameterSpec(128, packageEntity.getInitializationVector()));
+            packageDigest = PackageDigest.create(packageEntity.getDigestAlgorithm());
+        } catch (Exception e) {
+            return null;
+        }
+        try (InputStream inputStream = Files.newInputStream(encryptedFile.toPath())) {
+            byte[] buffer = new byte[FILE_BUFFER_SIZE];
+            byte[] decryptedBuffer = new byte[cipher.getOutputSize(FILE_BUFFER_SIZE)];
+            int bytesRead;
+            while ((bytesRead = inputStream.readNBytes(buffer, 0, buffer.length)) > 0) {
+                decryptedBuffer = ensureOutputSize(cipher, decryptedBuffer, bytesRead);
+                packageDigest.update(decryptedBuffer, 0, cipher.update(buffer, 0, bytesRead, decryptedBuffer));
+            }
+            decryptedBuffer = ensureOutputSize(cipher, decryptedBuffer, 0);
+            packageDigest.update(decryptedBuffer, 0, cipher.doFinal(decryptedBuffer, 0));
+        } catch (Exception e) {
             return null;
         }
-        MessageDigest messageDigest;
+        return packageDigest.digestHex();
+    }
+
+    private byte[] ensureOutputSize(Cipher cipher, byte[] outputBuffer, int inputLength) {
+        int outputSize = cipher.getOutputSize(inputLength);
+        return outputBuffer.length >= outputSize ? outputBuffer : new byte[outputSize];
+    }
+
+    /**
+     * The segments are decrypted in parallel batches, only authenticated plaintext is written and the decryption stops at the first invalid segment.
+     */
+    private void decryptSegments(PackageEntity packageEntity, File encryptedFile, OutputStream outputStream) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(encryptedFile.toPath())) {
+            byte[] header = inputStream.readNBytes(SEGMENT_HEADER_LENGTH);
+            int encryptedSegmentSize = readSegmentHeader(header, packageEntity.getInitializationVector()) + GCM_TAG_LENGTH;
+            long remainingSize = Files.size(encryptedFile.toPath()) - SEGMENT_HEADER_LENGTH;
+            long segmentCount = (remainingSize + encryptedSegmentSize - 1) / encryptedSegmentSize;
+            // even an empty package has one segment with its tag, a file with only the header is truncated
+            if (segmentCount < 1 || remainingSize - (segmentCount - 1) * encryptedSegmentSize < GCM_TAG_LENGTH) {
+                throw new CryptoUtilityException("The encrypted file is truncated");
+            }
+            int maximumBatchSize = (int) Math.min(SEGMENT_BATCH_SIZE, segmentCount);
+            for (long firstSegment = 0; firstSegment < segmentCount; firstSegment += maximumBatchSize) {
+                int batchSize = (int) Math.min(maximumBatchSize, segmentCount - firstSegment);
+                byte[][] encryptedSegments = new byte[batchSize][];
+                for (int i = 0; i < batchSize; i++) {
+                    encryptedSegments[i] = inputStream.readNBytes(encryptedSegmentSize);
+                }
+                long batchStart = firstSegment;
+                byte[][] segments = new byte[batchSize][];
+                IntStream.range(0, batchSize).parallel().forEach(i -> segments[i] = decryptSegment(packageEntity.getEncryptionToken(), header,
+                        batchStart + i, batchStart + i == segmentCount - 1, encryptedSegments[i]));
+                for (byte[] segment : segments) {
+                    outputStream.write(segment);
+                }
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * The header is authenticated as associated data of every segment, the nonce prefix has to match the signed initialization vector.
+     * Returns the size of the plaintext segments.
+     */
+    private int readSegmentHeader(byte[] header, byte[] expectedNoncePrefix) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(header);
+        if (header.length != SEGMENT_HEADER_LENGTH || byteBuffer.getInt() != SEGMENT_MAGIC || byteBuffer.get() != SEGMENT_FORMAT_VERSION) {
+            throw new CryptoUtilityException("Unknown segment header");
+        }
+        int segmentSize = byteBuffer.getInt();
+        byte[] noncePrefix = new byte[SEGMENT_NONCE_PREFIX_LENGTH];
+        byteBuffer.get(noncePrefix);
+        if (segmentSize <= 0 || segmentSize > MAXIMUM_SEGMENT_SIZE || !MessageDigest.isEqual(noncePrefix, expectedNoncePrefix)) {
+            throw new CryptoUtilityException("Invalid segment header");
+        }
+        return segmentSize;
+    }
+
+    private byte[] createSegmentHeader(byte[] noncePrefix) {
+        return ByteBuffer.allocate(SEGMENT_HEADER_LENGTH).putInt(SEGMENT_MAGIC).put(SEGMENT_FORMAT_VERSION).putInt(SEGMENT_SIZE).put(noncePrefix).array();
+    }
+
+    /**
+     * The nonce contains the index of the segment and marks the last segment, so reordered, removed or appended segments fail the authentication.
+     */
+    private GCMParameterSpec createSegmentNonce(byte[] header, long segmentIndex, boolean lastSegment) {
+        return new GCMParameterSpec(GCM_TAG_LENGTH * 8, ByteBuffer.allocate(12)
+                .put(header, SEGMENT_HEADER_LENGTH - SEGMENT_NONCE_PREFIX_LENGTH, SEGMENT_NONCE_PREFIX_LENGTH)
+                .putInt((int) segmentIndex)
+                .put(lastSegment ? (byte) 1 : (byte) 0)
+                .array());
+    }
+
+    private byte[] encryptSegment(SecretKey secretKey, byte[] header, long segmentIndex, boolean lastSegment, byte[] segment, int length) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.ENCRYPT_MODE, secretKey, createSegmentNonce(header, segmentIndex, lastSegment));
+            cipher.updateAAD(header);
+            return cipher.doFinal(segment, 0, length);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to encrypt segment " + segmentIndex + ": " + e.getMessage());
+        }
+    }
+
+    private byte[] decryptSegment(SecretKey secretKey, byte[] header, long segmentIndex, boolean lastSegment, byte[] encryptedSegment) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, createSegmentNonce(header, segmentIndex, lastSegment));
+            cipher.updateAAD(header);
+            return cipher.doFinal(encryptedSegment);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to decrypt segment " + segmentIndex + ": " + e.getMessage());
+        }
+    }
+
+    public SecretKey generateChunkEncryptionToken() {
+        return keyGeneratorAES.generateKey();
+    }
+
+    /**
+     * Encrypts a package chunk with an initialization vector derived from the chunk content, so an unchanged chunk results in the same encrypted chunk
+     * and is not downloaded again by the Agents. This only reveals that two chunks of the same package are equal.
+     * The initialization vector is prepended to the encrypted chunk.
+     */
+    public byte[] encryptChunk(byte[] chunk, SecretKey chunkEncryptionToken) {
         try {
-            messageDigest = MessageDigest.getInstance("SHA3-512");
-        } catch (NoSuchAlgorithmException e) {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(deriveChunkVectorKey(chunkEncryptionToken));
+            byte[] initializationVector = Arrays.copyOf(mac.doFinal(chunk), CHUNK_INITIALIZATION_VECTOR_LENGTH);
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.ENCRYPT_MODE, chunkEncryptionToken, new GCMParameterSpec(128, initializationVector));
+            byte[] encryptedChunk = new byte[CHUNK_INITIALIZATION_VECTOR_LENGTH + cipher.getOutputSize(chunk.length)];
+            System.arraycopy(initializationVector, 0, encryptedChunk, 0, CHUNK_INITIALIZATION_VECTOR_LENGTH);
+            cipher.doFinal(chunk, 0, chunk.length, encryptedChunk, CHUNK_INITIALIZATION_VECTOR_LENGTH);
+            return encryptedChunk;
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to encrypt the chunk: " + e.getMessage());
+        }
+    }
+
+    public byte[] decryptChunk(byte[] encryptedChunk, SecretKey chunkEncryptionToken) {
+        try {
+            Cipher cipher = createCipherAES();
+            cipher.init(Cipher.DECRYPT_MODE, chunkEncryptionToken, new GCMParameterSpec(128, encryptedChunk, 0, CHUNK_INITIALIZATION_VECTOR_LENGTH));
+            return cipher.doFinal(encryptedChunk, CHUNK_INITIALIZATION_VECTOR_LENGTH, encryptedChunk.length - CHUNK_INITIALIZATION_VECTOR_LENGTH);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to decrypt the chunk: " + e.getMessage());
+        }
+    }
+
+    private SecretKey deriveChunkVectorKey(SecretKey chunkEncryptionToken) {
+        HKDFBytesGenerator hkdfBytesGenerator = new HKDFBytesGenerator(new SHA256Digest());
+        hkdfBytesGenerator.init(new HKDFParameters(chunkEncryptionToken.getEncoded(), null, CHUNK_VECTOR_KEY_INFO.getBytes(StandardCharsets.UTF_8)));
+        byte[] vectorKey = new byte[SESSION_KEY_LENGTH];
+        hkdfBytesGenerator.generateBytes(vectorKey, 0, vectorKey.length);
+        return new SecretKeySpec(vectorKey, "HmacSHA256");
+    }
+
+    public String calculateChecksum(InputStream inputStream) {
+        return calculateChecksum(inputStream, OutputStream.nullOutputStream());
+    }
+
+    public String calculateChecksum(InputStream inputStream, OutputStream outputStream) {
+        return calculateChecksum(inputStream, outputStream, DigestAlgorithm.SHA3_512);
+    }
+
+    /**
+     * Writes the stream to the output stream and calculates the checksum in the same pass.
+     * Returns null if the stream cannot be read or written.
+     */
+    public String calculateChecksum(InputStream inputStream, OutputStream outputStream, DigestAlgorithm digestAlgorithm) {
+        if (inputStream == null || outputStream == null) {
             return null;
         }
+        PackageDigest packageDigest = PackageDigest.create(digestAlgorithm);
 
-        byte[] buffer = new byte[4096];
+        byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
         int bytesRead;
 
         while (true) {
             try {
                 if ((bytesRead = inputStream.read(buffer)) == -1) break;
+                outputStream.write(buffer, 0, bytesRead);
             } catch (IOException e) {
                 return null;
             }
-            messageDigest.update(buffer, 0, bytesRead);
+            packageDigest.update(buffer, 0, bytesRead);
         }
 
-        byte[] checkSum = messageDigest.digest();
+        return packageDigest.digestHex();
+    }
 
-        StringBuilder stringBuilder = new StringBuilder(checkSum.length * 2);
-        for (byte b : checkSum) {
-            stringBuilder.append(String.format("%02x", b));
+    /**
+     * Parses the key on every call, the parsed keys of the Agents are kept by the {@link org.codesystem.server.cache.AgentIdentityCache}.
+     */
+    public PublicKey loadPublicKey(String publicKeyBase64) {
+        try {
+            return keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(publicKeyBase64)));
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to load the Agent-PublicKey: " + e.getMessage());
         }
-        return stringBuilder.toString();
     }
 
-    private PublicKey loadPublicKeyFromAgentEntity(AgentEntity agentEntity) {
+    private <T> T borrow(Queue<T> pool, Supplier<T> factory) {
+        T instance = pool.poll();
+        if (instance == null) {
+            instance = factory.get();
+        }
+        return instance;
+    }
+
+    private Cipher createDecryptionCipherECC() {
         try {
-            return keyFactory.generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(agentEntity.getPublicKeyBase64())));
+            Cipher cipher = Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+            cipher.init(Cipher.DECRYPT_MODE, this.privateKeyServer, iesParamSpec);
+            return cipher;
         } catch (Exception e) {
-            throw new CryptoUtilityException("Unable to load the Agent-PublicKey: " + e.getMessage());
+            throw new CryptoUtilityException("Unable to create the decryption Cipher: " + e.getMessage());
+        }
+    }
+
+    private Cipher createEncryptionCipherECC() {
+        try {
+            return Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to create the encryption Cipher: " + e.getMessage());
+        }
+    }
+
+    private Signature createCreationSignatureECC() {
+        try {
+            Signature signature = Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
+            signature.initSign(this.privateKeyServer);
+            return signature;
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to create the Signature: " + e.getMessage());
+        }
+    }
+
+    private Signature createVerificationSignatureECC() {
+        try {
+            return Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
+        } catch (Exception e) {
+            throw new CryptoUtilityException("Unable to create the Signature: " + e.getMessage());
+        }
+    }
+
+    public static class EncryptedFile {
+        private final String plaintextChecksum;
+        private final String encryptedChecksum;
+        private final long plaintextSize;
+        private final long encryptedSize;
+
+        public EncryptedFile(String plaintextChecksum, String encryptedChecksum, long plaintextSize, long encryptedSize) {
+            this.plaintextChecksum = plaintextChecksum;
+            this.encryptedChecksum = encryptedChecksum;
+            this.plaintextSize = plaintextSize;
+            this.encryptedSize = encryptedSize;
+        }
+
+        public String getPlaintextChecksum() {
+            return plaintextChecksum;
+        }
+
+        public String getEncryptedChecksum() {
+            return encryptedChecksum;
+        }
+
+        public long getPlaintextSize() {
+            return plaintextSize;
+        }
+
+        public long getEncryptedSize() {
+            return encryptedSize;
         }
     }
 }
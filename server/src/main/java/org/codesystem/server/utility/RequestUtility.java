@@ -2,33 +2,46 @@ package org.codesystem.server.utility;
 
 import lombok.RequiredArgsConstructor;
 import org.codesystem.server.Variables;
-import org.codesystem.server.entity.AgentEntity;
-import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.cache.AgentIdentity;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSession;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.exception.CryptoUtilityException;
 import org.codesystem.server.request.agent.AgentEncryptedRequest;
 import org.codesystem.server.response.agent.AgentEncryptedResponse;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.stereotype.Service;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Base64;
 
 @Service
 @RequiredArgsConstructor
 public class RequestUtility {
-    private final AgentRepository agentRepository;
+    // the direction is part of the initialization vector, so request and response never share one
+    private static final int SESSION_DIRECTION_AGENT = 0;
+    private static final int SESSION_DIRECTION_SERVER = 1;
+    private final AgentIdentityCache agentIdentityCache;
     private final CryptoUtility cryptoUtility;
+    private final AgentSessionCache agentSessionCache;
 
     public JSONObject validateRequest(AgentEncryptedRequest agentEncryptedRequest) {
         if (agentEncryptedRequest.getPublicKeyBase64() == null || agentEncryptedRequest.getPublicKeyBase64().isBlank()
                 || agentEncryptedRequest.getMessage() == null || agentEncryptedRequest.getMessage().isBlank()) {
             return null;
         }
-        AgentEntity agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEncryptedRequest.getPublicKeyBase64());
-        if (agentEntity == null || !agentEntity.isRegistrationCompleted()) {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity(agentEncryptedRequest.getPublicKeyBase64());
+        if (agentIdentity == null || !agentIdentity.isRegistrationCompleted()) {
             return null;
         }
+        if (agentEncryptedRequest.getSessionId() != null) {
+            return validateSessionRequest(agentEncryptedRequest);
+        }
         JSONObject decryptedMessage;
         try {
             decryptedMessage = new JSONObject(cryptoUtility.decryptECC(Base64.getDecoder().decode(agentEncryptedRequest.getMessage())));
@@ -53,20 +66,70 @@ public class RequestUtility {
             return null;
         }
 
-        if (cryptoUtility.verifySignatureECC(decryptedMessage.toString(), messageSignature, agentEntity)) {
+        if (cryptoUtility.verifySignatureECC(decryptedMessage.toString(), messageSignature, agentIdentity.getPublicKey())) {
             return decryptedMessage;
         }
         return null;
     }
 
-    public AgentEncryptedResponse generateAgentEncryptedResponse(JSONObject jsonObject, AgentEntity agentEntity) {
-        if (jsonObject == null || jsonObject.isEmpty() || agentEntity == null) {
+    public AgentEncryptedResponse generateAgentEncryptedResponse(JSONObject jsonObject, AgentIdentity agentIdentity, AgentEncryptedRequest agentEncryptedRequest) {
+        if (jsonObject == null || jsonObject.isEmpty() || agentIdentity == null) {
             return null;
         }
         jsonObject.put(Variables.JSON_FIELD_TIMESTAMP, Instant.now());
+        if (agentEncryptedRequest != null && agentEncryptedRequest.getSessionId() != null) {
+            return generateAgentSessionResponse(jsonObject, agentEncryptedRequest);
+        }
         String signature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(jsonObject.toString()));
         jsonObject.put(Variables.JSON_FIELD_SIGNATURE, signature);
-        String decryptedMessage = Base64.getEncoder().encodeToString(cryptoUtility.encryptECC(jsonObject.toString().getBytes(StandardCharsets.UTF_8), agentEntity));
+        String decryptedMessage = Base64.getEncoder().encodeToString(cryptoUtility.encryptECC(jsonObject.toString().getBytes(StandardCharsets.UTF_8), agentIdentity.getPublicKey()));
         return new AgentEncryptedResponse(decryptedMessage);
     }
+
+    private JSONObject validateSessionRequest(AgentEncryptedRequest agentEncryptedRequest) {
+        AgentSession agentSession = agentSessionCache.getSession(agentEncryptedRequest.getSessionId());
+        if (agentSession == null || agentSession.isExpired() || !agentSession.getPublicKeyBase64().equals(agentEncryptedRequest.getPublicKeyBase64())) {
+            return null;
+        }
+        byte[] message;
+        try {
+            message = Base64.getDecoder().decode(agentEncryptedRequest.getMessage());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (message.length <= Long.BYTES) {
+            return null;
+        }
+        long sequence = ByteBuffer.wrap(message).getLong();
+        JSONObject decryptedMessage;
+        try {
+            byte[] plaintext = cryptoUtility.decryptSession(Arrays.copyOfRange(message, Long.BYTES, message.length), agentSession.getSessionKey(),
+                    createSessionInitializationVector(SESSION_DIRECTION_AGENT, sequence), agentSession.getSessionId().getBytes(StandardCharsets.UTF_8));
+            decryptedMessage = new JSONObject(new String(plaintext, StandardCharsets.UTF_8));
+        } catch (CryptoUtilityException | JSONException e) {
+            return null;
+        }
+        // the sequence number is only consumed by authenticated messages
+        if (decryptedMessage.isEmpty() || !agentSession.acceptSequence(sequence)) {
+            return null;
+        }
+        return decryptedMessage;
+    }
+
+    private AgentEncryptedResponse generateAgentSessionResponse(JSONObject jsonObject, AgentEncryptedRequest agentEncryptedRequest) {
+        AgentSession agentSession = agentSessionCache.getSession(agentEncryptedRequest.getSessionId());
+        if (agentSession == null) {
+            return null;
+        }
+        // the response reuses the sequence number of the request, which binds it to the request
+        long sequence = ByteBuffer.wrap(Base64.getDecoder().decode(agentEncryptedRequest.getMessage())).getLong();
+        byte[] encryptedMessage = cryptoUtility.encryptSession(jsonObject.toString().getBytes(StandardCharsets.UTF_8), agentSession.getSessionKey(),
+                createSessionInitializationVector(SESSION_DIRECTION_SERVER, sequence), agentSession.getSessionId().getBytes(StandardCharsets.UTF_8));
+        byte[] message = ByteBuffer.allocate(Long.BYTES + encryptedMessage.length).putLong(sequence).put(encryptedMessage).array();
+        return new AgentEncryptedResponse(Base64.getEncoder().encodeToString(message));
+    }
+
+    private byte[] createSessionInitializationVector(int direction, long sequence) {
+        return ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(direction).putLong(sequence).array();
+    }
 }
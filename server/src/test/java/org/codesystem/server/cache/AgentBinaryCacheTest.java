@@ -0,0 +1,163 @@
+package org.codesystem.server.cache;
+
+import org.codesystem.server.ServerApplication;
+import org.codesystem.server.configuration.ServerConfiguration;
+import org.codesystem.server.entity.ServerEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.codesystem.server.utility.CryptoUtility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class AgentBinaryCacheTest {
+    final Path archiveFolder = Paths.get(ServerApplication.AGENT_ARCHIVE_LOCATION);
+    ResourceLoader resourceLoader;
+    CryptoUtility cryptoUtility;
+    ServerEntity serverEntity;
+    AgentBinaryCache agentBinaryCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        resourceLoader = Mockito.mock(ResourceLoader.class);
+        cryptoUtility = new CryptoUtility(Mockito.mock(ServerRepository.class));
+        serverEntity = new ServerEntity();
+        ServerConfiguration serverConfiguration = Mockito.mock(ServerConfiguration.class);
+        Mockito.when(serverConfiguration.getServerEntity()).thenReturn(serverEntity);
+        agentBinaryCache = new AgentBinaryCache(resourceLoader, serverConfiguration);
+        deleteArchive();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        agentBinaryCache.delete();
+        deleteArchive();
+    }
+
+    private void deleteArchive() throws IOException {
+        if (Files.exists(archiveFolder)) {
+            try (Stream<Path> pathStream = Files.walk(archiveFolder)) {
+                pathStream.sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
+                        .forEach(File::delete);
+            }
+        }
+    }
+
+    /**
+     * The ServerInitialization calculates the checksum of the embedded build.
+     */
+    private void serveBuild(byte[] build) {
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ByteArrayResource(build));
+        serverEntity.setAgentChecksum(cryptoUtility.calculateChecksum(new ByteArrayInputStream(build)));
+    }
+
+    @Test
+    void getAgentFile_missingResource() {
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(null);
+        Assertions.assertThrows(IOException.class, () -> agentBinaryCache.getAgentFile());
+        Resource resource = Mockito.mock(Resource.class);
+        Mockito.when(resource.exists()).thenReturn(false);
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(resource);
+        Assertions.assertThrows(IOException.class, () -> agentBinaryCache.getAgentFile());
+    }
+
+    @Test
+    void getAgentFile_extractedOnce() throws IOException {
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ByteArrayResource("Agent Content".repeat(100).getBytes()));
+        Path agentFile = agentBinaryCache.getAgentFile();
+        Assertions.assertEquals("Agent Content".repeat(100), Files.readString(agentFile));
+        Assertions.assertSame(agentFile, agentBinaryCache.getAgentFile());
+        Mockito.verify(resourceLoader, Mockito.times(1)).getResource(Mockito.any());
+
+        // compressible content gets a gzip variant
+        Assertions.assertTrue(Files.exists(agentFile.resolveSibling("Agent.jar.gz")));
+
+        agentBinaryCache.delete();
+        Assertions.assertFalse(Files.exists(agentFile));
+        Assertions.assertFalse(Files.exists(agentFile.getParent()));
+    }
+
+    @Test
+    void getAgentFile_incompressible() throws IOException {
+        byte[] content = new byte[4096];
+        new Random(1).nextBytes(content);
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ByteArrayResource(content));
+        Path agentFile = agentBinaryCache.getAgentFile();
+        Assertions.assertArrayEquals(content, Files.readAllBytes(agentFile));
+        Assertions.assertFalse(Files.exists(agentFile.resolveSibling("Agent.jar.gz")));
+    }
+
+    @Test
+    void getAgentFile_configuredChecksum() throws IOException {
+        // the build is archived under the checksum of the server configuration, it is not calculated again
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ByteArrayResource("Agent Content".getBytes()));
+        serverEntity.setAgentChecksum("a".repeat(128));
+        agentBinaryCache.getAgentFile();
+        Assertions.assertTrue(Files.exists(archiveFolder.resolve("a".repeat(128) + ".jar")));
+        Assertions.assertNull(agentBinaryCache.getPatchFile("a".repeat(128)));
+
+        // no valid checksum, nothing is archived
+        agentBinaryCache.delete();
+        deleteArchive();
+        serverEntity.setAgentChecksum("");
+        agentBinaryCache.getAgentFile();
+        Assertions.assertFalse(Files.exists(archiveFolder));
+    }
+
+    @Test
+    void getPatchFile() throws IOException {
+        byte[] previousBuild = new byte[256 * 1024];
+        new Random(1).nextBytes(previousBuild);
+        byte[] currentBuild = previousBuild.clone();
+        currentBuild[1000] ^= 1;
+        String previousChecksum = cryptoUtility.calculateChecksum(new ByteArrayInputStream(previousBuild));
+
+        // the previous build is archived when it is served
+        serveBuild(previousBuild);
+        agentBinaryCache.getAgentFile();
+        Assertions.assertTrue(Files.exists(archiveFolder.resolve(previousChecksum + ".jar")));
+        Assertions.assertNull(agentBinaryCache.getPatchFile(previousChecksum));
+        agentBinaryCache.delete();
+
+        serveBuild(currentBuild);
+        Path patchFile = agentBinaryCache.getPatchFile(previousChecksum);
+        Assertions.assertNotNull(patchFile);
+        Assertions.assertTrue(Files.size(patchFile) < 4096);
+        Assertions.assertEquals(patchFile, agentBinaryCache.getPatchFile(previousChecksum));
+
+        // unknown or invalid builds
+        Assertions.assertNull(agentBinaryCache.getPatchFile(null));
+        Assertions.assertNull(agentBinaryCache.getPatchFile("0".repeat(128)));
+        Assertions.assertNull(agentBinaryCache.getPatchFile("../" + previousChecksum));
+    }
+
+    @Test
+    void getPatchFile_archiveLimit() throws IOException {
+        for (int i = 0; i < 7; i++) {
+            serveBuild(("Agent Build " + i).getBytes());
+            agentBinaryCache.getAgentFile();
+            Files.setLastModifiedTime(archiveFolder.resolve(cryptoUtility.calculateChecksum(new ByteArrayInputStream(("Agent Build " + i).getBytes())) + ".jar"), FileTime.fromMillis(1000L * (i + 1)));
+            agentBinaryCache.delete();
+        }
+        try (Stream<Path> stream = Files.list(archiveFolder)) {
+            Assertions.assertEquals(5, stream.count());
+        }
+        Assertions.assertFalse(Files.exists(archiveFolder.resolve(cryptoUtility.calculateChecksum(new ByteArrayInputStream("Agent Build 0".getBytes())) + ".jar")));
+    }
+}
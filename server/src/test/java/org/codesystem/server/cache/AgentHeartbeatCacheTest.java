@@ -0,0 +1,101 @@
+package org.codesystem.server.cache;
+
+import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerInitialization;
+import org.codesystem.server.entity.AgentEntity;
+import org.codesystem.server.repository.AgentRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class AgentHeartbeatCacheTest {
+    private static MariaDB4jSpringService DB;
+    @MockBean
+    ServerInitialization serverInitialization;
+    @MockBean
+    SecurityConfiguration securityConfiguration;
+    @Autowired
+    AgentRepository agentRepository;
+    AgentHeartbeatCache agentHeartbeatCache;
+    AgentEntity agentEntityOne;
+    AgentEntity agentEntityTwo;
+
+    @BeforeAll
+    public static void init() {
+        DB = new MariaDB4jSpringService();
+        DB.setDefaultPort(3307);
+        DB.setDefaultOsUser("root");
+        DB.start();
+    }
+
+    @AfterAll
+    public static void cleanupDB() {
+        DB.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        agentEntityOne = new AgentEntity();
+        agentEntityOne.setName("Agent One");
+        agentEntityOne.setPublicKeyBase64("Agent One Public Key");
+        agentEntityOne = agentRepository.save(agentEntityOne);
+        agentEntityTwo = new AgentEntity();
+        agentEntityTwo.setName("Agent Two");
+        agentEntityTwo.setPublicKeyBase64("Agent Two Public Key");
+        agentEntityTwo = agentRepository.save(agentEntityTwo);
+        agentHeartbeatCache = new AgentHeartbeatCache(agentRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agentRepository.deleteAll();
+    }
+
+    @Test
+    void recordHeartbeat() {
+        Assertions.assertNull(agentHeartbeatCache.getLastConnectionTime(agentEntityOne));
+        agentHeartbeatCache.recordHeartbeat(agentEntityOne.getUuid());
+        Assertions.assertEquals(1, agentHeartbeatCache.size());
+        Assertions.assertNotNull(agentHeartbeatCache.getLastConnectionTime(agentEntityOne));
+        Assertions.assertNull(agentHeartbeatCache.getLastConnectionTime(agentEntityTwo));
+        Assertions.assertNull(agentRepository.findFirstByUuid(agentEntityOne.getUuid()).getLastConnectionTime());
+    }
+
+    @Test
+    void getLastConnectionTime_persistedIsNewer() {
+        agentHeartbeatCache.recordHeartbeat(agentEntityOne.getUuid());
+        Instant persistedLastConnectionTime = Instant.now().plus(1, ChronoUnit.HOURS);
+        agentEntityOne.setLastConnectionTime(persistedLastConnectionTime);
+        Assertions.assertEquals(persistedLastConnectionTime, agentHeartbeatCache.getLastConnectionTime(agentEntityOne));
+    }
+
+    @Test
+    void applyLastConnectionTime() {
+        agentHeartbeatCache.recordHeartbeat(agentEntityOne.getUuid());
+        AgentEntity agentEntity = agentHeartbeatCache.applyLastConnectionTime(agentRepository.findFirstByUuid(agentEntityOne.getUuid()));
+        Assertions.assertNotNull(agentEntity.getLastConnectionTime());
+    }
+
+    @Test
+    void flush() {
+        agentHeartbeatCache.flush();
+        agentHeartbeatCache.recordHeartbeat(agentEntityOne.getUuid());
+        agentHeartbeatCache.recordHeartbeat(agentEntityTwo.getUuid());
+        agentHeartbeatCache.recordHeartbeat("Deleted Agent");
+        agentHeartbeatCache.flush();
+        Assertions.assertEquals(0, agentHeartbeatCache.size());
+        Instant lastConnectionTimeOne = agentRepository.findFirstByUuid(agentEntityOne.getUuid()).getLastConnectionTime();
+        Assertions.assertNotNull(lastConnectionTimeOne);
+        Assertions.assertNotNull(agentRepository.findFirstByUuid(agentEntityTwo.getUuid()).getLastConnectionTime());
+        Assertions.assertEquals("Agent One", agentRepository.findFirstByUuid(agentEntityOne.getUuid()).getName());
+        Assertions.assertFalse(lastConnectionTimeOne.isAfter(Instant.now()));
+    }
+}
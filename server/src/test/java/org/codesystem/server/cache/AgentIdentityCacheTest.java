@@ -0,0 +1,160 @@
+package org.codesystem.server.cache;
+
+import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerInitialization;
+import org.codesystem.server.entity.AgentEntity;
+import org.codesystem.server.exception.CryptoUtilityException;
+import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.utility.CryptoUtility;
+import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.security.PublicKey;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class AgentIdentityCacheTest {
+    private static MariaDB4jSpringService DB;
+    @MockBean
+    ServerInitialization serverInitialization;
+    @MockBean
+    SecurityConfiguration securityConfiguration;
+    @Autowired
+    AgentRepository agentRepository;
+    CryptoUtility cryptoUtility;
+    PublicKey publicKey;
+    AgentIdentityCache agentIdentityCache;
+    AgentEntity agentEntityOne;
+    AgentEntity agentEntityTwo;
+
+    @BeforeAll
+    public static void init() {
+        DB = new MariaDB4jSpringService();
+        DB.setDefaultPort(3307);
+        DB.setDefaultOsUser("root");
+        DB.start();
+    }
+
+    @AfterAll
+    public static void cleanupDB() {
+        DB.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        agentEntityOne = new AgentEntity();
+        agentEntityOne.setName("Agent One");
+        agentEntityOne.setPublicKeyBase64("Agent One Public Key");
+        agentEntityOne.setRegistrationCompleted(true);
+        agentEntityOne = agentRepository.save(agentEntityOne);
+        agentEntityTwo = new AgentEntity();
+        agentEntityTwo.setName("Agent Two");
+        agentEntityTwo.setPublicKeyBase64("Agent Two Public Key");
+        agentEntityTwo = agentRepository.save(agentEntityTwo);
+
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        publicKey = Mockito.mock(PublicKey.class);
+        Mockito.when(cryptoUtility.loadPublicKey(Mockito.any())).thenReturn(publicKey);
+        agentIdentityCache = new AgentIdentityCache(agentRepository, cryptoUtility, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        agentRepository.deleteAll();
+    }
+
+    @Test
+    void getAgentIdentity_invalid() {
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity(null));
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity(""));
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity("   "));
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity("Invalid Public Key"));
+        Assertions.assertEquals(0, agentIdentityCache.size());
+    }
+
+    @Test
+    void getAgentIdentity_valid() {
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity("Agent One Public Key");
+        Assertions.assertEquals(agentEntityOne.getUuid(), agentIdentity.getUuid());
+        Assertions.assertTrue(agentIdentity.isRegistrationCompleted());
+        Assertions.assertEquals(publicKey, agentIdentity.getPublicKey());
+
+        agentIdentity = agentIdentityCache.getAgentIdentity("Agent Two Public Key");
+        Assertions.assertEquals(agentEntityTwo.getUuid(), agentIdentity.getUuid());
+        Assertions.assertFalse(agentIdentity.isRegistrationCompleted());
+        Assertions.assertEquals(2, agentIdentityCache.size());
+    }
+
+    @Test
+    void getAgentIdentity_cached() {
+        agentIdentityCache.getAgentIdentity("Agent One Public Key");
+        agentRepository.deleteAll();
+        Assertions.assertEquals(agentEntityOne.getUuid(), agentIdentityCache.getAgentIdentity("Agent One Public Key").getUuid());
+        Mockito.verify(cryptoUtility, Mockito.times(1)).loadPublicKey("Agent One Public Key");
+    }
+
+    @Test
+    void getAgentIdentity_invalidPublicKey() {
+        Mockito.when(cryptoUtility.loadPublicKey(Mockito.any())).thenThrow(CryptoUtilityException.class);
+        AgentIdentity agentIdentity = agentIdentityCache.getAgentIdentity("Agent One Public Key");
+        Assertions.assertEquals(agentEntityOne.getUuid(), agentIdentity.getUuid());
+        Assertions.assertNull(agentIdentity.getPublicKey());
+    }
+
+    @Test
+    void invalidate() {
+        agentIdentityCache.invalidate(null);
+        agentIdentityCache.getAgentIdentity("Agent Two Public Key");
+        agentEntityTwo.setRegistrationCompleted(true);
+        agentRepository.save(agentEntityTwo);
+        Assertions.assertFalse(agentIdentityCache.getAgentIdentity("Agent Two Public Key").isRegistrationCompleted());
+        agentIdentityCache.invalidate("Agent Two Public Key");
+        Assertions.assertTrue(agentIdentityCache.getAgentIdentity("Agent Two Public Key").isRegistrationCompleted());
+
+        agentRepository.delete(agentEntityTwo);
+        agentIdentityCache.invalidate("Agent Two Public Key");
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity("Agent Two Public Key"));
+    }
+
+    @Test
+    void invalidate_duringLoad() {
+        // the registration is completed while the identity is loaded, the outdated identity must not be cached
+        Mockito.when(cryptoUtility.loadPublicKey("Agent Two Public Key")).thenAnswer(invocation -> {
+            agentEntityTwo.setRegistrationCompleted(true);
+            agentRepository.save(agentEntityTwo);
+            agentIdentityCache.invalidate("Agent Two Public Key");
+            return publicKey;
+        });
+        Assertions.assertFalse(agentIdentityCache.getAgentIdentity("Agent Two Public Key").isRegistrationCompleted());
+        Assertions.assertEquals(0, agentIdentityCache.size());
+
+        Mockito.doReturn(publicKey).when(cryptoUtility).loadPublicKey("Agent Two Public Key");
+        Assertions.assertTrue(agentIdentityCache.getAgentIdentity("Agent Two Public Key").isRegistrationCompleted());
+        Assertions.assertEquals(1, agentIdentityCache.size());
+    }
+
+    @Test
+    void eviction() {
+        agentIdentityCache = new AgentIdentityCache(agentRepository, cryptoUtility, 1);
+        agentIdentityCache.getAgentIdentity("Agent One Public Key");
+        agentIdentityCache.getAgentIdentity("Agent Two Public Key");
+        Assertions.assertEquals(1, agentIdentityCache.size());
+        agentRepository.delete(agentEntityOne);
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity("Agent One Public Key"));
+        Assertions.assertEquals(agentEntityTwo.getUuid(), agentIdentityCache.getAgentIdentity("Agent Two Public Key").getUuid());
+    }
+
+    @Test
+    void warmUp() {
+        agentIdentityCache.warmUp();
+        Assertions.assertEquals(1, agentIdentityCache.size());
+        agentRepository.deleteAll();
+        Assertions.assertEquals(agentEntityOne.getUuid(), agentIdentityCache.getAgentIdentity("Agent One Public Key").getUuid());
+        Assertions.assertNull(agentIdentityCache.getAgentIdentity("Agent Two Public Key"));
+    }
+}
@@ -0,0 +1,84 @@
+package org.codesystem.server.cache;
+
+import org.codesystem.server.utility.CryptoUtility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+class AgentSessionCacheTest {
+    CryptoUtility cryptoUtility;
+    AgentSessionCache agentSessionCache;
+    byte[] agentSecret = "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8);
+
+    @BeforeEach
+    void setUp() {
+        cryptoUtility = Mockito.mock(CryptoUtility.class);
+        Mockito.when(cryptoUtility.deriveSessionKey(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new SecretKeySpec(new byte[32], "AES"));
+        agentSessionCache = new AgentSessionCache(cryptoUtility, 900);
+    }
+
+    @Test
+    void createSession() {
+        AgentSession agentSession = agentSessionCache.createSession("Agent One", agentSecret);
+        Assertions.assertEquals("Agent One", agentSession.getPublicKeyBase64());
+        Assertions.assertEquals(32, agentSession.getServerNonce().length);
+        Assertions.assertNotNull(agentSession.getSessionKey());
+        Assertions.assertFalse(agentSession.isExpired());
+        Assertions.assertTrue(agentSession.getExpiresAt().isAfter(Instant.now().plusSeconds(800)));
+        Assertions.assertSame(agentSession, agentSessionCache.getSession(agentSession.getSessionId()));
+        Mockito.verify(cryptoUtility).deriveSessionKey(agentSecret, agentSession.getServerNonce(), agentSession.getSessionId());
+
+        AgentSession newAgentSession = agentSessionCache.createSession("Agent One", agentSecret);
+        Assertions.assertNotEquals(agentSession.getSessionId(), newAgentSession.getSessionId());
+        Assertions.assertNull(agentSessionCache.getSession(agentSession.getSessionId()));
+        agentSessionCache.createSession("Agent Two", agentSecret);
+        Assertions.assertEquals(2, agentSessionCache.size());
+    }
+
+    @Test
+    void getSession_invalid() {
+        Assertions.assertNull(agentSessionCache.getSession(null));
+        Assertions.assertNull(agentSessionCache.getSession(""));
+        Assertions.assertNull(agentSessionCache.getSession("Invalid Session"));
+    }
+
+    @Test
+    void invalidate() {
+        AgentSession agentSession = agentSessionCache.createSession("Agent One", agentSecret);
+        agentSessionCache.invalidate(null);
+        agentSessionCache.invalidate("Agent Two");
+        Assertions.assertEquals(1, agentSessionCache.size());
+        agentSessionCache.invalidate("Agent One");
+        Assertions.assertNull(agentSessionCache.getSession(agentSession.getSessionId()));
+        Assertions.assertEquals(0, agentSessionCache.size());
+    }
+
+    @Test
+    void removeExpiredSessions() {
+        agentSessionCache.createSession("Agent One", agentSecret);
+        Assertions.assertEquals(0, agentSessionCache.removeExpiredSessions());
+        agentSessionCache = new AgentSessionCache(cryptoUtility, -120);
+        AgentSession agentSession = agentSessionCache.createSession("Agent One", agentSecret);
+        Assertions.assertTrue(agentSession.isExpired());
+        Assertions.assertEquals(1, agentSessionCache.removeExpiredSessions());
+        Assertions.assertEquals(0, agentSessionCache.size());
+        // the Agent can negotiate a new session afterwards
+        Assertions.assertNotNull(agentSessionCache.getSession(agentSessionCache.createSession("Agent One", agentSecret).getSessionId()));
+    }
+
+    @Test
+    void acceptSequence() {
+        AgentSession agentSession = agentSessionCache.createSession("Agent One", agentSecret);
+        Assertions.assertFalse(agentSession.acceptSequence(0));
+        Assertions.assertTrue(agentSession.acceptSequence(1));
+        Assertions.assertFalse(agentSession.acceptSequence(1));
+        Assertions.assertTrue(agentSession.acceptSequence(5));
+        Assertions.assertFalse(agentSession.acceptSequence(4));
+        Assertions.assertTrue(agentSession.acceptSequence(6));
+    }
+}
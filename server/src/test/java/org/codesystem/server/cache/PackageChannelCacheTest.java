@@ -0,0 +1,89 @@
+package org.codesystem.server.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+class PackageChannelCacheTest {
+    final Path packageOne = Paths.get("package-channel-one");
+    final Path packageTwo = Paths.get("package-channel-two");
+    PackageChannelCache packageChannelCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        packageChannelCache = new PackageChannelCache(1);
+        Files.writeString(packageOne, "Package One");
+        Files.writeString(packageTwo, "Package Two");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        packageChannelCache.closeAll();
+        Files.deleteIfExists(packageOne);
+        Files.deleteIfExists(packageTwo);
+    }
+
+    @Test
+    void acquire_missingFile() {
+        Assertions.assertThrows(IOException.class, () -> packageChannelCache.acquire(Paths.get("package-channel-missing")));
+        Assertions.assertEquals(0, packageChannelCache.size());
+    }
+
+    @Test
+    void acquire_sharedChannel() throws IOException {
+        PackageChannelCache.PackageChannel first = packageChannelCache.acquire(packageOne);
+        PackageChannelCache.PackageChannel second = packageChannelCache.acquire(packageOne);
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals(11, first.getSize());
+        first.close();
+        second.close();
+        Assertions.assertTrue(first.getFileChannel().isOpen());
+        Assertions.assertEquals(1, packageChannelCache.size());
+    }
+
+    @Test
+    void release_evictUnused() throws IOException {
+        PackageChannelCache.PackageChannel channelOne = packageChannelCache.acquire(packageOne);
+        PackageChannelCache.PackageChannel channelTwo = packageChannelCache.acquire(packageTwo);
+        Assertions.assertEquals(2, packageChannelCache.size());
+
+        // channels in use are never closed
+        channelTwo.close();
+        Assertions.assertEquals(1, packageChannelCache.size());
+        Assertions.assertTrue(channelOne.getFileChannel().isOpen());
+        Assertions.assertFalse(channelTwo.getFileChannel().isOpen());
+        channelOne.close();
+        Assertions.assertTrue(channelOne.getFileChannel().isOpen());
+    }
+
+    @Test
+    void acquire_replacedFile() throws IOException {
+        PackageChannelCache.PackageChannel previousChannel = packageChannelCache.acquire(packageOne);
+        Files.writeString(packageOne, "Replaced Package One");
+        Files.setLastModifiedTime(packageOne, FileTime.from(Instant.now().plusSeconds(10)));
+
+        PackageChannelCache.PackageChannel packageChannel = packageChannelCache.acquire(packageOne);
+        Assertions.assertNotSame(previousChannel, packageChannel);
+        Assertions.assertEquals(20, packageChannel.getSize());
+        Assertions.assertTrue(previousChannel.getFileChannel().isOpen());
+        previousChannel.close();
+        Assertions.assertFalse(previousChannel.getFileChannel().isOpen());
+
+        ByteBuffer byteBuffer = ByteBuffer.allocate(20);
+        FileChannel fileChannel = packageChannel.getFileChannel();
+        fileChannel.read(byteBuffer, 0);
+        Assertions.assertEquals("Replaced Package One", new String(byteBuffer.array(), StandardCharsets.UTF_8));
+        packageChannel.close();
+    }
+}
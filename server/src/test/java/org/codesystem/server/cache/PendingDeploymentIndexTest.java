@@ -0,0 +1,200 @@
+package org.codesystem.server.cache;
+
+import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerInitialization;
+import org.codesystem.server.entity.AgentEntity;
+import org.codesystem.server.entity.DeploymentEntity;
+import org.codesystem.server.entity.PackageEntity;
+import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.packages.PackageStatusInternal;
+import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.repository.DeploymentRepository;
+import org.codesystem.server.repository.PackageRepository;
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class PendingDeploymentIndexTest {
+    private static MariaDB4jSpringService DB;
+    @MockBean
+    ServerInitialization serverInitialization;
+    @MockBean
+    SecurityConfiguration securityConfiguration;
+    @Autowired
+    AgentRepository agentRepository;
+    @Autowired
+    DeploymentRepository deploymentRepository;
+    @Autowired
+    PackageRepository packageRepository;
+    ApplicationEventPublisher applicationEventPublisher;
+    PendingDeploymentIndex pendingDeploymentIndex;
+    AgentEntity agentEntityOne;
+    AgentEntity agentEntityTwo;
+    PackageEntity packageEntity;
+    DeploymentEntity deploymentEntity;
+
+    @BeforeAll
+    public static void init() {
+        DB = new MariaDB4jSpringService();
+        DB.setDefaultPort(3307);
+        DB.setDefaultOsUser("root");
+        DB.start();
+    }
+
+    @AfterAll
+    public static void cleanupDB() {
+        DB.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        agentEntityOne = new AgentEntity();
+        agentEntityOne.setName("Agent One");
+        agentEntityOne.setPublicKeyBase64("Agent One Public Key");
+        agentEntityOne = agentRepository.save(agentEntityOne);
+        agentEntityTwo = new AgentEntity();
+        agentEntityTwo.setName("Agent Two");
+        agentEntityTwo.setPublicKeyBase64("Agent Two Public Key");
+        agentEntityTwo = agentRepository.save(agentEntityTwo);
+        packageEntity = new PackageEntity();
+        packageEntity.setName("Package");
+        packageEntity.setChecksumPlaintext("Checksum");
+        packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        packageEntity = packageRepository.save(packageEntity);
+        deploymentEntity = deploymentRepository.save(new DeploymentEntity(agentEntityOne, packageEntity));
+
+        applicationEventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+        pendingDeploymentIndex = new PendingDeploymentIndex(deploymentRepository, agentRepository, applicationEventPublisher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deploymentRepository.deleteAll();
+        packageRepository.deleteAll();
+        agentRepository.deleteAll();
+    }
+
+    @Test
+    void isDeploymentAvailable() {
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable("Invalid Agent", 60));
+        Assertions.assertEquals(3, pendingDeploymentIndex.size());
+    }
+
+    @Test
+    void isDeploymentAvailable_notPending() {
+        deploymentEntity.setDeployed(true);
+        deploymentRepository.save(deploymentEntity);
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+
+        deploymentEntity.setDeployed(false);
+        deploymentRepository.save(deploymentEntity);
+        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSING);
+        packageRepository.save(packageEntity);
+        pendingDeploymentIndex.invalidate(agentEntityOne.getUuid());
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+    }
+
+    @Test
+    void isDeploymentAvailable_retryInterval() {
+        deploymentEntity.setLastDeploymentTimestamp(Instant.now().minus(100, ChronoUnit.SECONDS));
+        deploymentRepository.save(deploymentEntity);
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 50));
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 200));
+    }
+
+    @Test
+    void invalidate() {
+        pendingDeploymentIndex.invalidate(null);
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+        deploymentRepository.save(new DeploymentEntity(agentEntityTwo, packageEntity));
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+        pendingDeploymentIndex.invalidate(agentEntityTwo.getUuid());
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+    }
+
+    @Test
+    void invalidate_publishesEvent() {
+        pendingDeploymentIndex.invalidate(null);
+        Mockito.verify(applicationEventPublisher, Mockito.never()).publishEvent(ArgumentMatchers.any(Object.class));
+        pendingDeploymentIndex.invalidate(agentEntityTwo.getUuid());
+        Mockito.verify(applicationEventPublisher).publishEvent(ArgumentMatchers.<Object>argThat(event -> event instanceof PendingDeploymentsChangedEvent pendingDeploymentsChangedEvent && agentEntityTwo.getUuid().equals(pendingDeploymentsChangedEvent.getAgentUUID())));
+        pendingDeploymentIndex.rebuild();
+        Mockito.verify(applicationEventPublisher).publishEvent(ArgumentMatchers.<Object>argThat(event -> event instanceof PendingDeploymentsChangedEvent pendingDeploymentsChangedEvent && pendingDeploymentsChangedEvent.getAgentUUID() == null));
+    }
+
+    @Test
+    void invalidatePackage() {
+        pendingDeploymentIndex.rebuild();
+        deploymentRepository.save(new DeploymentEntity(agentEntityTwo, packageEntity));
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+        pendingDeploymentIndex.invalidatePackage(null);
+        pendingDeploymentIndex.invalidatePackage(packageEntity.getUuid());
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityTwo.getUuid(), 60));
+        Mockito.verify(applicationEventPublisher).publishEvent(ArgumentMatchers.<Object>argThat(event -> event instanceof PendingDeploymentsChangedEvent pendingDeploymentsChangedEvent && agentEntityOne.getUuid().equals(pendingDeploymentsChangedEvent.getAgentUUID())));
+    }
+
+    @Test
+    void invalidatePackage_otherAgents() {
+        PackageEntity otherPackageEntity = new PackageEntity();
+        otherPackageEntity.setName("Other Package");
+        otherPackageEntity.setChecksumPlaintext("Checksum");
+        otherPackageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        otherPackageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        otherPackageEntity = packageRepository.save(otherPackageEntity);
+        deploymentRepository.save(new DeploymentEntity(agentEntityTwo, otherPackageEntity));
+        pendingDeploymentIndex.rebuild();
+        Mockito.clearInvocations(applicationEventPublisher);
+
+        // only the Agents with a deployment of the package are invalidated
+        pendingDeploymentIndex.invalidatePackage(packageEntity.getUuid());
+        Mockito.verify(applicationEventPublisher).publishEvent(ArgumentMatchers.<Object>argThat(event -> event instanceof PendingDeploymentsChangedEvent pendingDeploymentsChangedEvent && agentEntityOne.getUuid().equals(pendingDeploymentsChangedEvent.getAgentUUID())));
+        Mockito.verify(applicationEventPublisher, Mockito.times(1)).publishEvent(ArgumentMatchers.any(Object.class));
+    }
+
+    @Test
+    void findAgentsForPackage() {
+        Assertions.assertTrue(pendingDeploymentIndex.findAgentsForPackage(null).isEmpty());
+        Assertions.assertEquals(Set.of(agentEntityOne.getUuid()), pendingDeploymentIndex.findAgentsForPackage(packageEntity.getUuid()));
+
+        // the Agents are collected before their deployments are deleted
+        pendingDeploymentIndex.rebuild();
+        Set<String> affectedAgents = pendingDeploymentIndex.findAgentsForPackage(packageEntity.getUuid());
+        deploymentRepository.deleteAll();
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+        pendingDeploymentIndex.invalidate(affectedAgents);
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+    }
+
+    @Test
+    void rebuild() {
+        pendingDeploymentIndex.rebuild();
+        Assertions.assertEquals(2, pendingDeploymentIndex.size());
+        deploymentRepository.deleteAll();
+        Assertions.assertTrue(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+        pendingDeploymentIndex.rebuild();
+        Assertions.assertFalse(pendingDeploymentIndex.isDeploymentAvailable(agentEntityOne.getUuid(), 60));
+    }
+
+    @Test
+    void remove() {
+        pendingDeploymentIndex.rebuild();
+        pendingDeploymentIndex.remove(null);
+        pendingDeploymentIndex.remove(agentEntityOne.getUuid());
+        Assertions.assertEquals(1, pendingDeploymentIndex.size());
+    }
+}
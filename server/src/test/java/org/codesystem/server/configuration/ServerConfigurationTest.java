@@ -0,0 +1,121 @@
+package org.codesystem.server.configuration;
+
+import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.entity.ServerEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ServerConfigurationTest {
+    private static MariaDB4jSpringService DB;
+    @MockBean
+    ServerInitialization serverInitialization;
+    @MockBean
+    SecurityConfiguration securityConfiguration;
+    @Autowired
+    ServerRepository serverRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    ServerConfiguration serverConfiguration;
+
+    @BeforeAll
+    public static void init() {
+        DB = new MariaDB4jSpringService();
+        DB.setDefaultPort(3307);
+        DB.setDefaultOsUser("root");
+        DB.start();
+    }
+
+    @AfterAll
+    public static void cleanupDB() {
+        DB.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("Agent Checksum");
+        serverEntity.setPrivateKeyBase64("Server Private Key");
+        serverEntity.setPublicKeyBase64("Server Public Key");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverRepository.save(serverEntity);
+        serverConfiguration = new ServerConfiguration(serverRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        serverRepository.deleteAll();
+    }
+
+    @Test
+    void getServerEntity() {
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        Assertions.assertEquals("Registration Token", serverEntity.getAgentRegistrationToken());
+        Assertions.assertEquals(60, serverEntity.getAgentUpdateInterval());
+
+        // changes that bypass the configuration are not visible until a reload
+        ServerEntity serverEntityRepository = serverRepository.findAll().get(0);
+        serverEntityRepository.setAgentUpdateInterval(120);
+        serverRepository.save(serverEntityRepository);
+        Assertions.assertSame(serverEntity, serverConfiguration.getServerEntity());
+        Assertions.assertEquals(60, serverConfiguration.getServerEntity().getAgentUpdateInterval());
+        Assertions.assertEquals(120, serverConfiguration.reload().getAgentUpdateInterval());
+        Assertions.assertEquals(120, serverConfiguration.getServerEntity().getAgentUpdateInterval());
+    }
+
+    @Test
+    void getServerEntity_noConfiguration() {
+        serverRepository.deleteAll();
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> serverConfiguration.getServerEntity());
+    }
+
+    @Test
+    void update() {
+        ServerEntity serverEntity = serverConfiguration.getServerEntity();
+        ServerEntity updatedServerEntity = serverConfiguration.update(entity -> entity.setAgentInstallRetryInterval(500));
+        Assertions.assertEquals(500, updatedServerEntity.getAgentInstallRetryInterval());
+        Assertions.assertEquals(500, serverConfiguration.getServerEntity().getAgentInstallRetryInterval());
+        Assertions.assertEquals(500, serverRepository.findAll().get(0).getAgentInstallRetryInterval());
+        // the previously published entity is never modified
+        Assertions.assertEquals(21600, serverEntity.getAgentInstallRetryInterval());
+    }
+
+    @Test
+    void update_transaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            serverConfiguration.update(entity -> entity.setAgentInstallRetryInterval(500));
+            // not published before the commit
+            Assertions.assertEquals(21600, serverConfiguration.getServerEntity().getAgentInstallRetryInterval());
+        });
+        Assertions.assertEquals(500, serverConfiguration.getServerEntity().getAgentInstallRetryInterval());
+
+        // a rollback keeps the current configuration
+        transactionTemplate.executeWithoutResult(status -> {
+            serverConfiguration.update(entity -> entity.setAgentInstallRetryInterval(700));
+            status.setRollbackOnly();
+        });
+        Assertions.assertEquals(500, serverConfiguration.getServerEntity().getAgentInstallRetryInterval());
+        Assertions.assertEquals(500, serverRepository.findAll().get(0).getAgentInstallRetryInterval());
+    }
+
+    @Test
+    void create() {
+        serverRepository.deleteAll();
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("");
+        serverEntity.setPrivateKeyBase64("New Private Key");
+        serverEntity.setPublicKeyBase64("New Public Key");
+        serverEntity.setAgentRegistrationToken("New Registration Token");
+        ServerEntity createdServerEntity = serverConfiguration.create(serverEntity);
+        Assertions.assertSame(createdServerEntity, serverConfiguration.getServerEntity());
+        Assertions.assertEquals("New Registration Token", serverRepository.findAll().get(0).getAgentRegistrationToken());
+    }
+}
@@ -5,15 +5,18 @@ import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.exception.TestSystemExitException;
 import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.service.server.LogService;
+import org.codesystem.server.utility.CryptoUtility;
 import org.codesystem.server.utility.SystemExitUtility;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.spec.ECGenParameterSpec;
@@ -26,6 +29,7 @@ class ServerInitializationTest {
     PublicKey serverPublicKey;
     private ServerInitialization serverInitialization;
     private ServerRepository serverRepository;
+    private ServerConfiguration serverConfiguration;
     private ResourceLoader resourceLoader;
     private LogService logService;
 
@@ -44,7 +48,8 @@ class ServerInitializationTest {
         SystemExitUtility systemExitUtility = Mockito.mock(SystemExitUtility.class);
         Mockito.doThrow(TestSystemExitException.class).when(systemExitUtility).exit(Mockito.anyInt());
         resourceLoader = Mockito.mock(ResourceLoader.class);
-        serverInitialization = new ServerInitialization(serverRepository, resourceLoader, systemExitUtility, logService);
+        serverConfiguration = new ServerConfiguration(serverRepository);
+        serverInitialization = new ServerInitialization(serverRepository, serverConfiguration, resourceLoader, systemExitUtility, logService);
     }
 
     @Test
@@ -85,6 +90,27 @@ class ServerInitializationTest {
         Assertions.assertThrows(RuntimeException.class, () -> serverInitialization.initializeServer());
     }
 
+    private ServerEntity createServerEntity() {
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(serverPublicKey.getEncoded()));
+        serverEntity.setPrivateKeyBase64(Base64.getEncoder().encodeToString(serverPrivateKey.getEncoded()));
+        return serverEntity;
+    }
+
+    @Test
+    void initializeServer_agentChecksumCached() throws IOException {
+        // every call loads a new entity, like the database does
+        Mockito.when(serverRepository.findAll()).thenAnswer(invocationOnMock -> List.of(createServerEntity()));
+        Mockito.when(serverRepository.save(Mockito.any())).then(AdditionalAnswers.returnsFirstArg());
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ClassPathResource("Test-File"));
+        // read before the initialization, e.g. by another bean
+        Assertions.assertNull(serverConfiguration.getServerEntity().getAgentChecksum());
+
+        Assertions.assertDoesNotThrow(() -> serverInitialization.initializeServer());
+        String checksum = new CryptoUtility(serverRepository).calculateChecksum(new ClassPathResource("Test-File").getInputStream());
+        Assertions.assertEquals(checksum, serverConfiguration.getServerEntity().getAgentChecksum());
+    }
+
     @Test
     void initializeServer_serverExisting() {
         ServerEntity serverEntity = new ServerEntity();
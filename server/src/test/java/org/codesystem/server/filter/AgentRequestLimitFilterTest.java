@@ -0,0 +1,65 @@
+package org.codesystem.server.filter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+class AgentRequestLimitFilterTest {
+    AgentRequestLimitFilter agentRequestLimitFilter;
+
+    @BeforeEach
+    void setUp() {
+        agentRequestLimitFilter = new AgentRequestLimitFilter(1, 0);
+    }
+
+    @Test
+    void shouldNotFilter() {
+        Assertions.assertTrue(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("GET", "/api/deployment")));
+        Assertions.assertTrue(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("GET", "/download/agent")));
+        Assertions.assertTrue(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/agent/communication/package/deploymentUUID")));
+        Assertions.assertTrue(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/agent/communication/agent")));
+        Assertions.assertTrue(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/agent/communication/agentPatch")));
+        Assertions.assertFalse(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/agent/communication/checkForUpdates")));
+        Assertions.assertFalse(agentRequestLimitFilter.shouldNotFilter(new MockHttpServletRequest("POST", "/api/agent/registration")));
+    }
+
+    @Test
+    void doFilter_valid() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        agentRequestLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/agent/communication/checkForUpdates"), response, new MockFilterChain());
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(1, agentRequestLimitFilter.availablePermits());
+    }
+
+    @Test
+    void doFilter_limitReached() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockHttpServletResponse queuedResponse = new MockHttpServletResponse();
+        agentRequestLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/agent/communication/checkForUpdates"), response, (servletRequest, servletResponse) -> {
+            Assertions.assertEquals(0, agentRequestLimitFilter.availablePermits());
+            try {
+                agentRequestLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/agent/communication/checkForUpdates"), queuedResponse, new MockFilterChain());
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+        });
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(503, queuedResponse.getStatus());
+        Assertions.assertEquals("0", queuedResponse.getHeader("Retry-After"));
+        Assertions.assertEquals(1, agentRequestLimitFilter.availablePermits());
+    }
+
+    @Test
+    void doFilter_failedRequest() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Assertions.assertThrows(IOException.class, () -> agentRequestLimitFilter.doFilter(new MockHttpServletRequest("POST", "/api/agent/communication/checkForUpdates"), response, (servletRequest, servletResponse) -> {
+            throw new IOException("Connection reset");
+        }));
+        Assertions.assertEquals(1, agentRequestLimitFilter.availablePermits());
+    }
+}
@@ -1,7 +1,13 @@
 package org.codesystem.server.service.agent.communication;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.AgentBinaryCache;
+import org.codesystem.server.cache.AgentHeartbeatCache;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.DeploymentEntity;
@@ -15,20 +21,25 @@ import org.codesystem.server.repository.PackageRepository;
 import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.request.agent.AgentEncryptedRequest;
 import org.codesystem.server.response.agent.AgentEncryptedResponse;
+import org.codesystem.server.service.packages.PackageChunkService;
 import org.codesystem.server.service.server.LogService;
+import org.codesystem.server.utility.CryptoUtility;
 import org.codesystem.server.utility.RequestUtility;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.crypto.KeyGenerator;
 import java.io.File;
@@ -42,7 +53,11 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 @SpringBootTest
@@ -62,7 +77,12 @@ class AgentCommunicationServiceTest {
     @Autowired
     PackageRepository packageRepository;
     RequestUtility requestUtility;
+    AgentIdentityCache agentIdentityCache;
+    AgentHeartbeatCache agentHeartbeatCache;
+    AgentSessionCache agentSessionCache;
+    AgentNotificationService agentNotificationService;
     ResourceLoader resourceLoader;
+    AgentBinaryCache agentBinaryCache;
     AgentCommunicationService agentCommunicationService;
     LogService logService;
     Path packageFolder = Paths.get("/opt/OPD/Packages");
@@ -85,8 +105,14 @@ class AgentCommunicationServiceTest {
     void setUp() throws IOException {
         requestUtility = Mockito.mock(RequestUtility.class);
         resourceLoader = Mockito.mock(ResourceLoader.class);
+        ServerConfiguration serverConfiguration = new ServerConfiguration(serverRepository);
+        agentBinaryCache = new AgentBinaryCache(resourceLoader, serverConfiguration);
         logService = Mockito.mock(LogService.class);
-        agentCommunicationService = new AgentCommunicationService(agentRepository, deploymentRepository, requestUtility, serverRepository, resourceLoader, logService);
+        agentIdentityCache = new AgentIdentityCache(agentRepository, Mockito.mock(CryptoUtility.class), 1000);
+        agentHeartbeatCache = new AgentHeartbeatCache(agentRepository);
+        agentSessionCache = new AgentSessionCache(Mockito.mock(CryptoUtility.class), 900);
+        agentNotificationService = Mockito.mock(AgentNotificationService.class);
+        agentCommunicationService = new AgentCommunicationService(agentRepository, deploymentRepository, requestUtility, agentIdentityCache, new PendingDeploymentIndex(deploymentRepository, agentRepository, Mockito.mock(ApplicationEventPublisher.class)), agentHeartbeatCache, agentSessionCache, agentNotificationService, serverConfiguration, agentBinaryCache, new PackageChunkService(Mockito.mock(CryptoUtility.class)), logService);
         deleteFolderWithContent();
     }
 
@@ -96,6 +122,7 @@ class AgentCommunicationServiceTest {
         packageRepository.deleteAll();
         serverRepository.deleteAll();
         agentRepository.deleteAll();
+        agentBinaryCache.delete();
         deleteFolderWithContent();
     }
 
@@ -149,7 +176,7 @@ class AgentCommunicationServiceTest {
         serverRepository.save(serverEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -184,7 +211,7 @@ class AgentCommunicationServiceTest {
         serverRepository.save(serverEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -219,7 +246,7 @@ class AgentCommunicationServiceTest {
         serverRepository.save(serverEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -270,7 +297,7 @@ class AgentCommunicationServiceTest {
         serverRepository.save(serverEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -306,7 +333,7 @@ class AgentCommunicationServiceTest {
         deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -346,7 +373,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -354,6 +381,9 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals(100, jsonResponse.getInt("updateInterval"));
         Assertions.assertFalse(jsonResponse.getBoolean("deploymentAvailable"));
         Assertions.assertEquals("AgentChecksum", jsonResponse.getString("agentChecksum"));
+        Assertions.assertNull(agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getLastConnectionTime());
+        Assertions.assertNotNull(agentHeartbeatCache.getLastConnectionTime(agentEntity));
+        agentHeartbeatCache.flush();
         Assertions.assertNotNull(agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getLastConnectionTime());
         Assertions.assertEquals(OperatingSystem.LINUX, agentEntity.getOperatingSystem());
         Assertions.assertEquals("Family", agentEntity.getOperatingSystemFamily());
@@ -411,7 +441,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -419,6 +449,9 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals(100, jsonResponse.getInt("updateInterval"));
         Assertions.assertFalse(jsonResponse.getBoolean("deploymentAvailable"));
         Assertions.assertEquals("AgentChecksum", jsonResponse.getString("agentChecksum"));
+        Assertions.assertNull(agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getLastConnectionTime());
+        Assertions.assertNotNull(agentHeartbeatCache.getLastConnectionTime(agentEntity));
+        agentHeartbeatCache.flush();
         Assertions.assertNotNull(agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getLastConnectionTime());
         Assertions.assertEquals(OperatingSystem.LINUX, agentEntity.getOperatingSystem());
         Assertions.assertEquals("Family", agentEntity.getOperatingSystemFamily());
@@ -434,6 +467,52 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals("32 GB", agentEntity.getMemory());
     }
 
+    @Test
+    void checkForUpdates_systemInformationFingerprint() {
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentEntity.setOperatingSystem(OperatingSystem.LINUX);
+        agentRepository.save(agentEntity);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverRepository.save(serverEntity);
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+
+        // unknown fingerprint
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("systemInformationFingerprint", "Fingerprint").put("agentChecksum", "agentReportedChecksum"));
+        ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertTrue(jsonResponse.getBoolean("systemInformationRequired"));
+
+        // system information with fingerprint
+        JSONObject hardwareInfo = new JSONObject().put("operatingSystem", "LINUX").put("cpuName", "Intel Core i7");
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("systemInformation", hardwareInfo).put("systemInformationFingerprint", "Fingerprint").put("agentChecksum", "agentReportedChecksum"));
+        responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertFalse(jsonResponse.getBoolean("systemInformationRequired"));
+        Assertions.assertEquals("Fingerprint", agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getSystemInformationFingerprint());
+        Assertions.assertEquals("Intel Core i7", agentRepository.findFirstByPublicKeyBase64("agentPublicKey").getCpuName());
+
+        // known fingerprint
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("systemInformationFingerprint", "Fingerprint").put("agentChecksum", "agentReportedChecksum"));
+        responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
+        jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertFalse(jsonResponse.getBoolean("systemInformationRequired"));
+        Assertions.assertNotNull(agentHeartbeatCache.getLastConnectionTime(agentRepository.findFirstByPublicKeyBase64("agentPublicKey")));
+
+        // changed fingerprint
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("systemInformationFingerprint", "Changed Fingerprint").put("agentChecksum", "agentReportedChecksum"));
+        responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
+        jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertTrue(jsonResponse.getBoolean("systemInformationRequired"));
+    }
+
     @Test
     void checkForUpdates_updateFromUnknownToLinux() {
         AgentEntity agentEntity = new AgentEntity();
@@ -454,7 +533,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         agentEntity = agentRepository.findFirstByPublicKeyBase64("agentPublicKey");
@@ -481,7 +560,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot set 'UNKNOWN' OperatingSystem", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -509,7 +588,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot set 'UNKNOWN' OperatingSystem", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -537,7 +616,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -565,7 +644,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -593,7 +672,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -621,7 +700,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -649,7 +728,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -677,7 +756,7 @@ class AgentCommunicationServiceTest {
                 }""");
         JSONObject jsonObject = new JSONObject().put("systemInformation", hardwareInfo).put("agentChecksum", "agentReportedChecksum");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.checkForUpdates(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Cannot change Operating System", new JSONObject(responseEntity.getBody()).getString("message"));
@@ -685,6 +764,98 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals(OperatingSystem.MACOS, agentEntity.getOperatingSystem());
     }
 
+    @Test
+    void createSession_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.createSession(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject());
+        responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        // a session cannot be negotiated through another session
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("agentSecret", Base64.getEncoder().encodeToString(new byte[32])));
+        responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", "", "Session"));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertEquals(0, agentSessionCache.size());
+    }
+
+    @Test
+    void createSession_invalidAgent() {
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("agentSecret", Base64.getEncoder().encodeToString(new byte[32])));
+        ResponseEntity responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Key", new JSONObject(responseEntity.getBody()).getString("message"));
+    }
+
+    @Test
+    void createSession_invalidAgentSecret() {
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentRepository.save(agentEntity);
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("timestamp", Instant.now()));
+        ResponseEntity responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("agentSecret", "Invalid Secret"));
+        responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("agentSecret", Base64.getEncoder().encodeToString(new byte[16])));
+        responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertEquals(0, agentSessionCache.size());
+    }
+
+    @Test
+    void createSession_valid() {
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentRepository.save(agentEntity);
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("agentSecret", Base64.getEncoder().encodeToString(new byte[32])));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        ResponseEntity responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
+        Assertions.assertNotNull(agentSessionCache.getSession(jsonResponse.getString("sessionId")));
+        Assertions.assertEquals(32, Base64.getDecoder().decode(jsonResponse.getString("serverNonce")).length);
+        Assertions.assertTrue(Instant.parse(jsonResponse.getString("expiresAt")).isAfter(Instant.now()));
+
+        // a new session replaces the previous one
+        responseEntity = agentCommunicationService.createSession(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertNull(agentSessionCache.getSession(jsonResponse.getString("sessionId")));
+        Assertions.assertEquals(1, agentSessionCache.size());
+    }
+
+    @Test
+    void subscribeNotifications_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.subscribeNotifications(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("timestamp", Instant.now()));
+        responseEntity = agentCommunicationService.subscribeNotifications(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.verify(agentNotificationService, Mockito.never()).subscribe(Mockito.any());
+    }
+
+    @Test
+    void subscribeNotifications_valid() {
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentEntity = agentRepository.save(agentEntity);
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("timestamp", Instant.now()));
+        Mockito.when(agentNotificationService.subscribe(Mockito.any())).thenReturn(new SseEmitter());
+        ResponseEntity responseEntity = agentCommunicationService.subscribeNotifications(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertNotNull(responseEntity.getBody());
+        Mockito.verify(agentNotificationService).subscribe(agentEntity.getUuid());
+    }
+
     @Test
     void getAgent_invalidRequest() {
         ResponseEntity responseEntity = agentCommunicationService.getAgent(null);
@@ -714,25 +885,71 @@ class AgentCommunicationServiceTest {
         agentRepository.save(agentEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.getAgent(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, responseEntity.getStatusCode());
     }
 
     @Test
-    void getAgent_valid() {
+    void getAgent_valid() throws IOException {
         AgentEntity agentEntity = new AgentEntity();
         agentEntity.setName("Test-Agent");
         agentEntity.setPublicKeyBase64("agentPublicKey");
         agentRepository.save(agentEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ClassPathResource("Test-File"));
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverRepository.save(serverEntity);
         ResponseEntity responseEntity = agentCommunicationService.getAgent(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        byte[] response = (byte[]) responseEntity.getBody();
-        Assertions.assertArrayEquals("Test File Content".getBytes(StandardCharsets.UTF_8), response);
+        FileSystemResource response = (FileSystemResource) responseEntity.getBody();
+        Assertions.assertArrayEquals("Test File Content".getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
+        Assertions.assertEquals("\"AgentChecksum\"", responseEntity.getHeaders().getETag());
+    }
+
+    @Test
+    void getAgentPatch_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.getAgentPatch(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject());
+        responseEntity = agentCommunicationService.getAgentPatch(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "agentPublicKey"));
+        responseEntity = agentCommunicationService.getAgentPatch(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
+
+    @Test
+    void getAgentPatch_notAvailable() throws IOException {
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentRepository.save(agentEntity);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverRepository.save(serverEntity);
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ClassPathResource("Test-File"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "agentPublicKey"));
+        ResponseEntity responseEntity = agentCommunicationService.getAgentPatch(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "agentPublicKey").put("agentChecksum", "0".repeat(128)));
+        responseEntity = agentCommunicationService.getAgentPatch(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.NOT_FOUND, responseEntity.getStatusCode());
+
+        // the Agent.jar is missing
+        Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(null);
+        agentBinaryCache.delete();
+        responseEntity = agentCommunicationService.getAgentPatch(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, responseEntity.getStatusCode());
     }
 
     @Test
@@ -886,6 +1103,7 @@ class AgentCommunicationServiceTest {
     void getPackage_deploymentTimestampNull() throws IOException {
         PackageEntity packageEntity = new PackageEntity();
         packageEntity.setChecksumPlaintext("CheckSum");
+        packageEntity.setChecksumEncrypted("EncryptedCheckSum");
         packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
         packageEntity.setName("Package");
         packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
@@ -915,6 +1133,8 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         FileSystemResource response = (FileSystemResource) responseEntity.getBody();
         Assertions.assertArrayEquals("Test Content".getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
+        Assertions.assertEquals("\"EncryptedCheckSum\"", responseEntity.getHeaders().getETag());
+        Assertions.assertEquals("bytes", responseEntity.getHeaders().getFirst("Accept-Ranges"));
     }
 
     @Test
@@ -952,6 +1172,82 @@ class AgentCommunicationServiceTest {
         Assertions.assertArrayEquals("Test Content".getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
     }
 
+    @Test
+    void getChunks_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.getChunks(null, null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject());
+        responseEntity = agentCommunicationService.getChunks(null, null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "agentPublicKey"));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
+
+    @Test
+    void getChunks() throws IOException {
+        String chunkId = "a".repeat(128);
+        PackageEntity packageEntity = new PackageEntity();
+        packageEntity.setChecksumPlaintext("CheckSum");
+        packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        packageEntity.setName("Package");
+        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        packageEntity.setChunkManifest(new JSONArray().put(new JSONObject().put("id", chunkId).put("size", 10)).toString());
+        packageEntity = packageRepository.save(packageEntity);
+        Path chunkFile = Paths.get(packageFolder.toString(), packageEntity.getUuid() + "_chunks", chunkId);
+        Files.createDirectories(chunkFile.getParent());
+        Files.writeString(chunkFile, "Test Chunk");
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentEntity = agentRepository.save(agentEntity);
+        AgentEntity otherAgentEntity = new AgentEntity();
+        otherAgentEntity.setName("Other-Agent");
+        otherAgentEntity.setPublicKeyBase64("otherAgentPublicKey");
+        agentRepository.save(otherAgentEntity);
+        DeploymentEntity deploymentEntity = new DeploymentEntity();
+        deploymentEntity.setAgentEntity(agentEntity);
+        deploymentEntity.setPackageEntity(packageEntity);
+        deploymentEntity = deploymentRepository.save(deploymentEntity);
+
+        // valid
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", new JSONArray().put(chunkId).put(chunkId)));
+        ResponseEntity<List<Path>> responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertEquals(List.of(chunkFile, chunkFile), responseEntity.getBody());
+
+        // deployment of another Agent
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("otherAgentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+
+        // unknown and invalid chunks
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", new JSONArray().put(chunkId).put("b".repeat(128))));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", new JSONArray().put("../" + packageEntity.getUuid())));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+
+        // no chunks or too many chunks requested
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", new JSONArray()));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        JSONArray chunks = new JSONArray();
+        for (int i = 0; i < 65; i++) {
+            chunks.put(chunkId);
+        }
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", chunks));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+
+        // deployment already completed
+        deploymentEntity.setDeployed(true);
+        deploymentRepository.save(deploymentEntity);
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("chunks", new JSONArray().put(chunkId)));
+        responseEntity = agentCommunicationService.getChunks(new AgentEncryptedRequest("agentPublicKey", ""), deploymentEntity.getUuid());
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+    }
+
     @Test
     void getPackageDetails_invalidRequest() {
         ResponseEntity responseEntity = agentCommunicationService.getPackageDetails(null);
@@ -1142,7 +1438,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.getPackageDetails(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -1182,7 +1478,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.getPackageDetails(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         JSONObject jsonResponse = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message"));
@@ -1190,6 +1486,74 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals("CheckSum", jsonResponse.getString("checksumPlaintext"));
     }
 
+    @Test
+    void getDeploymentManifest_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.getDeploymentManifest(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject());
+        responseEntity = agentCommunicationService.getDeploymentManifest(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("publicKeyBase64", "agentPublicKey"));
+        responseEntity = agentCommunicationService.getDeploymentManifest(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Key", new JSONObject(responseEntity.getBody()).getString("message"));
+    }
+
+    @Test
+    void getDeploymentManifest_valid() throws NoSuchAlgorithmException {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256, new SecureRandom());
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentEntity = agentRepository.save(agentEntity);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverEntity.setAgentUpdateInterval(100);
+        serverRepository.save(serverEntity);
+        JSONObject jsonObject = new JSONObject().put("publicKeyBase64", "agentPublicKey");
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+
+        // no deployment
+        ResponseEntity responseEntity = agentCommunicationService.getDeploymentManifest(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertTrue(new JSONObject(new JSONObject(responseEntity.getBody()).getString("message")).getJSONArray("deployments").isEmpty());
+
+        // two available deployments, one completed and one recently attempted deployment
+        String[] deploymentUUIDs = new String[4];
+        for (int i = 0; i < deploymentUUIDs.length; i++) {
+            PackageEntity packageEntity = new PackageEntity();
+            packageEntity.setChecksumPlaintext("CheckSum " + i);
+            packageEntity.setChecksumEncrypted("CheckSum " + i);
+            packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+            packageEntity.setName("Package " + i);
+            packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+            packageEntity.setEncryptionToken(keyGenerator.generateKey());
+            packageEntity.setInitializationVector("IV".getBytes(StandardCharsets.UTF_8));
+            packageEntity = packageRepository.save(packageEntity);
+            DeploymentEntity deploymentEntity = new DeploymentEntity(agentEntity, packageEntity);
+            deploymentEntity.setDeployed(i == 2);
+            deploymentEntity.setLastDeploymentTimestamp(i == 3 ? Instant.now() : null);
+            deploymentUUIDs[i] = deploymentRepository.save(deploymentEntity).getUuid();
+        }
+        responseEntity = agentCommunicationService.getDeploymentManifest(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        JSONArray deployments = new JSONObject(new JSONObject(responseEntity.getBody()).getString("message")).getJSONArray("deployments");
+        Assertions.assertEquals(2, deployments.length());
+        Set<String> manifestDeploymentUUIDs = new HashSet<>();
+        for (int i = 0; i < deployments.length(); i++) {
+            manifestDeploymentUUIDs.add(deployments.getJSONObject(i).getString("deploymentUUID"));
+            Assertions.assertFalse(deployments.getJSONObject(i).getString("encryptionToken").isBlank());
+        }
+        Assertions.assertEquals(Set.of(deploymentUUIDs[0], deploymentUUIDs[1]), manifestDeploymentUUIDs);
+    }
+
     @Test
     void sendDeploymentResult_invalidRequest() {
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(null);
@@ -1395,7 +1759,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid());
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1430,7 +1794,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid());
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1465,7 +1829,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "AGENT-DEPLOYMENT-ERROR: Error");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1500,7 +1864,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "code");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1536,7 +1900,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "code");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1572,7 +1936,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "code");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1608,7 +1972,7 @@ class AgentCommunicationServiceTest {
         deploymentEntity = deploymentRepository.save(deploymentEntity);
         JSONObject jsonObject = new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "expected Value");
         Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(jsonObject);
-        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
+        Mockito.when(requestUtility.generateAgentEncryptedResponse(Mockito.any(), Mockito.any(), Mockito.any())).then(invocationOnMock -> new AgentEncryptedResponse(invocationOnMock.getArgument(0).toString()));
         ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
@@ -1616,4 +1980,104 @@ class AgentCommunicationServiceTest {
         Assertions.assertEquals("expected Value", deploymentEntity.getReturnValue());
     }
 
-}
\ No newline at end of file
+    @Test
+    void sendDeploymentResult_otherAgent() {
+        PackageEntity packageEntity = new PackageEntity();
+        packageEntity.setChecksumPlaintext("CheckSum");
+        packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        packageEntity.setName("Package");
+        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        packageEntity = packageRepository.save(packageEntity);
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentRepository.save(agentEntity);
+        AgentEntity otherAgentEntity = new AgentEntity();
+        otherAgentEntity.setName("Other-Agent");
+        otherAgentEntity.setPublicKeyBase64("otherAgentPublicKey");
+        otherAgentEntity = agentRepository.save(otherAgentEntity);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverEntity.setAgentUpdateInterval(100);
+        serverRepository.save(serverEntity);
+        DeploymentEntity deploymentEntity = deploymentRepository.save(new DeploymentEntity(otherAgentEntity, packageEntity));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "0"));
+        ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResult(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertFalse(deploymentRepository.findFirstByUuid(deploymentEntity.getUuid()).isDeployed());
+    }
+
+    @Test
+    void sendDeploymentResults_invalidRequest() {
+        ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResults(null);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("deploymentResults", new JSONArray()));
+        responseEntity = agentCommunicationService.sendDeploymentResults(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Key", new JSONObject(responseEntity.getBody()).getString("message"));
+
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentRepository.save(agentEntity);
+        responseEntity = agentCommunicationService.sendDeploymentResults(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("deploymentResults", "Invalid"));
+        responseEntity = agentCommunicationService.sendDeploymentResults(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Invalid Request", new JSONObject(responseEntity.getBody()).getString("message"));
+    }
+
+    @Test
+    void sendDeploymentResults_valid() {
+        PackageEntity packageEntity = new PackageEntity();
+        packageEntity.setChecksumPlaintext("CheckSum");
+        packageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        packageEntity.setName("Package");
+        packageEntity.setExpectedReturnValue("expected Value");
+        packageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        packageEntity = packageRepository.save(packageEntity);
+        PackageEntity otherPackageEntity = new PackageEntity();
+        otherPackageEntity.setChecksumPlaintext("CheckSum");
+        otherPackageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        otherPackageEntity.setName("Other Package");
+        otherPackageEntity.setPackageStatusInternal(PackageStatusInternal.PROCESSED);
+        otherPackageEntity = packageRepository.save(otherPackageEntity);
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Test-Agent");
+        agentEntity.setPublicKeyBase64("agentPublicKey");
+        agentEntity = agentRepository.save(agentEntity);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        serverEntity.setAgentRegistrationToken("Registration Token");
+        serverEntity.setPrivateKeyBase64("Private Key");
+        serverEntity.setPublicKeyBase64("Public Key");
+        serverEntity.setAgentUpdateInterval(100);
+        serverRepository.save(serverEntity);
+        DeploymentEntity deploymentEntity = deploymentRepository.save(new DeploymentEntity(agentEntity, packageEntity));
+        DeploymentEntity otherDeploymentEntity = deploymentRepository.save(new DeploymentEntity(agentEntity, otherPackageEntity));
+        JSONArray deploymentResults = new JSONArray()
+                .put(new JSONObject().put("deploymentUUID", deploymentEntity.getUuid()).put("resultCode", "expected Value"))
+                .put(new JSONObject().put("deploymentUUID", otherDeploymentEntity.getUuid()).put("resultCode", "AGENT-DEPLOYMENT-ERROR: ENTRYPOINT_NOT_FOUND"))
+                .put(new JSONObject().put("deploymentUUID", "Deleted Deployment").put("resultCode", "0"));
+        Mockito.when(requestUtility.validateRequest(Mockito.any())).thenReturn(new JSONObject().put("deploymentResults", deploymentResults));
+        ResponseEntity responseEntity = agentCommunicationService.sendDeploymentResults(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        deploymentEntity = deploymentRepository.findFirstByUuid(deploymentEntity.getUuid());
+        Assertions.assertTrue(deploymentEntity.isDeployed());
+        Assertions.assertEquals("expected Value", deploymentEntity.getReturnValue());
+        otherDeploymentEntity = deploymentRepository.findFirstByUuid(otherDeploymentEntity.getUuid());
+        Assertions.assertFalse(otherDeploymentEntity.isDeployed());
+        Assertions.assertNotNull(otherDeploymentEntity.getLastDeploymentTimestamp());
+
+        // a result that was already applied is skipped
+        responseEntity = agentCommunicationService.sendDeploymentResults(new AgentEncryptedRequest("agentPublicKey", ""));
+        Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
+        Assertions.assertEquals(otherDeploymentEntity.getLastDeploymentTimestamp(), deploymentRepository.findFirstByUuid(otherDeploymentEntity.getUuid()).getLastDeploymentTimestamp());
+    }
+}
@@ -0,0 +1,83 @@
+package org.codesystem.server.service.agent.communication;
+
+import org.codesystem.server.cache.PendingDeploymentIndex;
+import org.codesystem.server.cache.PendingDeploymentsChangedEvent;
+import org.codesystem.server.configuration.ServerConfiguration;
+import org.codesystem.server.entity.ServerEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class AgentNotificationServiceTest {
+    PendingDeploymentIndex pendingDeploymentIndex;
+    ServerConfiguration serverConfiguration;
+    AgentNotificationService agentNotificationService;
+
+    @BeforeEach
+    void setUp() {
+        pendingDeploymentIndex = Mockito.mock(PendingDeploymentIndex.class);
+        serverConfiguration = Mockito.mock(ServerConfiguration.class);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentInstallRetryInterval(100);
+        Mockito.when(serverConfiguration.getServerEntity()).thenReturn(serverEntity);
+        agentNotificationService = new AgentNotificationService(pendingDeploymentIndex, serverConfiguration, 3600);
+    }
+
+    @Test
+    void subscribe() {
+        Assertions.assertNotNull(agentNotificationService.subscribe("Agent One"));
+        Assertions.assertNotNull(agentNotificationService.subscribe("Agent Two"));
+        Assertions.assertEquals(2, agentNotificationService.size());
+
+        // a reconnect replaces the previous stream
+        agentNotificationService.subscribe("Agent One");
+        Assertions.assertEquals(2, agentNotificationService.size());
+    }
+
+    @Test
+    void disconnect() {
+        agentNotificationService.subscribe("Agent One");
+        agentNotificationService.disconnect(null);
+        agentNotificationService.disconnect("Agent Two");
+        Assertions.assertEquals(1, agentNotificationService.size());
+        agentNotificationService.disconnect("Agent One");
+        Assertions.assertEquals(0, agentNotificationService.size());
+    }
+
+    @Test
+    void onPendingDeploymentsChanged() {
+        agentNotificationService.onPendingDeploymentsChanged(new PendingDeploymentsChangedEvent("Agent One"));
+        Mockito.verify(pendingDeploymentIndex, Mockito.never()).isDeploymentAvailable(Mockito.any(), Mockito.anyLong());
+
+        agentNotificationService.subscribe("Agent One");
+        agentNotificationService.onPendingDeploymentsChanged(new PendingDeploymentsChangedEvent("Agent Two"));
+        Mockito.verify(pendingDeploymentIndex, Mockito.never()).isDeploymentAvailable(Mockito.any(), Mockito.anyLong());
+        agentNotificationService.onPendingDeploymentsChanged(new PendingDeploymentsChangedEvent("Agent One"));
+        Mockito.verify(pendingDeploymentIndex).isDeploymentAvailable("Agent One", 100);
+    }
+
+    @Test
+    void onPendingDeploymentsChanged_allAgents() {
+        agentNotificationService.subscribe("Agent One");
+        agentNotificationService.subscribe("Agent Two");
+        Mockito.when(pendingDeploymentIndex.isDeploymentAvailable(Mockito.any(), Mockito.anyLong())).thenReturn(true);
+        agentNotificationService.onPendingDeploymentsChanged(new PendingDeploymentsChangedEvent(null));
+        Mockito.verify(pendingDeploymentIndex).isDeploymentAvailable("Agent One", 100);
+        Mockito.verify(pendingDeploymentIndex).isDeploymentAvailable("Agent Two", 100);
+        Assertions.assertEquals(2, agentNotificationService.size());
+    }
+
+    @Test
+    void send_closedStream() {
+        SseEmitter sseEmitter = agentNotificationService.subscribe("Agent One");
+        agentNotificationService.subscribe("Agent Two");
+        agentNotificationService.sendKeepAlive();
+        Assertions.assertEquals(2, agentNotificationService.size());
+
+        sseEmitter.complete();
+        agentNotificationService.notifyConfigurationChanged();
+        Assertions.assertEquals(1, agentNotificationService.size());
+    }
+}
@@ -0,0 +1,208 @@
+package org.codesystem.server.service.agent.communication;
+
+import org.codesystem.server.cache.PackageChannelCache;
+import org.codesystem.server.response.server.ServerPackageServingResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+class PackageServingServiceTest {
+    final Path packageFile = Paths.get("package-serving-test");
+    final Path gzipFile = Paths.get("package-serving-test.gz");
+    ResponseEntity<FileSystemResource> packageResponse;
+    PackageChannelCache packageChannelCache;
+    PackageServingService packageServingService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.writeString(packageFile, "Test Content");
+        packageChannelCache = new PackageChannelCache(16);
+        packageServingService = new PackageServingService(packageChannelCache);
+        packageResponse = ResponseEntity.ok().eTag("EncryptedCheckSum").body(new FileSystemResource(packageFile));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        packageChannelCache.closeAll();
+        Files.deleteIfExists(packageFile);
+        Files.deleteIfExists(gzipFile);
+    }
+
+    @Test
+    void serve_invalidRequest() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(ResponseEntity.badRequest().build(), new MockHttpServletRequest(), response);
+        Assertions.assertEquals(400, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void serve_complete() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, new MockHttpServletRequest(), response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("Test Content", response.getContentAsString());
+        Assertions.assertEquals(12, response.getContentLengthLong());
+        Assertions.assertEquals("\"EncryptedCheckSum\"", response.getHeader("ETag"));
+        Assertions.assertEquals("bytes", response.getHeader("Accept-Ranges"));
+
+        ServerPackageServingResponse statistics = (ServerPackageServingResponse) packageServingService.getStatistics().getBody();
+        Assertions.assertEquals(12, statistics.getBytesServed());
+        Assertions.assertEquals(0, statistics.getActiveStreams());
+        Assertions.assertEquals(1, statistics.getOpenChannels());
+    }
+
+    @Test
+    void serve_range() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=5-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertEquals("Content", response.getContentAsString());
+        Assertions.assertEquals("bytes 5-11/12", response.getHeader("Content-Range"));
+
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-3");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertEquals("Test", response.getContentAsString());
+
+        // multiple and invalid ranges are ignored
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-3,5-7");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("Test Content", response.getContentAsString());
+        request = new MockHttpServletRequest();
+        request.addHeader("Range", "invalid");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("Test Content", response.getContentAsString());
+    }
+
+    @Test
+    void serve_rangeNotSatisfiable() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=12-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(416, response.getStatus());
+        Assertions.assertEquals("bytes */12", response.getHeader("Content-Range"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void serve_sendfile() throws IOException {
+        byte[] content = new byte[64 * 1024];
+        Files.write(packageFile, content);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=1024-");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+        Assertions.assertEquals(content.length - 1024, response.getContentLengthLong());
+        Assertions.assertEquals(packageFile.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        Assertions.assertEquals(1024L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        Assertions.assertEquals((long) content.length, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    void serve_notModified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"EncryptedCheckSum\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void serve_notModifiedWildcard() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "*");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals("\"EncryptedCheckSum\"", response.getHeader("ETag"));
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"Other\", \"EncryptedCheckSum\"");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(304, response.getStatus());
+
+        request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "\"Other\"");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void serve_gzipVariant() throws IOException {
+        Files.writeString(gzipFile, "Compressed");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "deflate, gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("Compressed", response.getContentAsString());
+        Assertions.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        Assertions.assertEquals("\"EncryptedCheckSum-gzip\"", response.getHeader("ETag"));
+        Assertions.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+        // ranges always refer to the uncompressed file
+        request.addHeader("Range", "bytes=5-");
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, request, response);
+        Assertions.assertEquals(206, response.getStatus());
+        Assertions.assertEquals("Content", response.getContentAsString());
+        Assertions.assertNull(response.getHeader("Content-Encoding"));
+
+        response = new MockHttpServletResponse();
+        packageServingService.serve(packageResponse, new MockHttpServletRequest(), response);
+        Assertions.assertEquals("Test Content", response.getContentAsString());
+        Assertions.assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    }
+
+    @Test
+    void serveAll() throws IOException {
+        Files.writeString(gzipFile, "Second");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        packageServingService.serveAll(ResponseEntity.ok().body(List.of(packageFile, gzipFile, packageFile)), new MockHttpServletRequest(), response);
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals("Test ContentSecondTest Content", response.getContentAsString());
+        Assertions.assertEquals(30, response.getContentLengthLong());
+
+        // a batch with ETag can be validated without the content
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", "*");
+        response = new MockHttpServletResponse();
+        packageServingService.serveAll(ResponseEntity.ok().eTag("BatchCheckSum").body(List.of(packageFile, gzipFile)), request, response);
+        Assertions.assertEquals(304, response.getStatus());
+        Assertions.assertEquals("\"BatchCheckSum\"", response.getHeader("ETag"));
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+
+        response = new MockHttpServletResponse();
+        packageServingService.serveAll(ResponseEntity.badRequest().build(), new MockHttpServletRequest(), response);
+        Assertions.assertEquals(400, response.getStatus());
+        Assertions.assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
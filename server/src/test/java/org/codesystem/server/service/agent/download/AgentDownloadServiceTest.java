@@ -1,29 +1,47 @@
 package org.codesystem.server.service.agent.download;
 
+import org.codesystem.server.cache.AgentBinaryCache;
+import org.codesystem.server.configuration.ServerConfiguration;
+import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.service.server.LogService;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
 class AgentDownloadServiceTest {
     AgentDownloadService agentDownloadService;
+    AgentBinaryCache agentBinaryCache;
     ResourceLoader resourceLoader;
+    ServerConfiguration serverConfiguration;
     LogService logService;
 
     @BeforeEach
     void setUp() {
         resourceLoader = Mockito.mock(ResourceLoader.class);
+        serverConfiguration = Mockito.mock(ServerConfiguration.class);
+        ServerEntity serverEntity = new ServerEntity();
+        serverEntity.setAgentChecksum("AgentChecksum");
+        Mockito.when(serverConfiguration.getServerEntity()).thenReturn(serverEntity);
+        agentBinaryCache = new AgentBinaryCache(resourceLoader, serverConfiguration);
         logService = Mockito.mock(LogService.class);
-        agentDownloadService = new AgentDownloadService(resourceLoader, logService);
+        agentDownloadService = new AgentDownloadService(agentBinaryCache, serverConfiguration, logService);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        agentBinaryCache.delete();
     }
 
     @Test
@@ -33,11 +51,13 @@ class AgentDownloadServiceTest {
     }
 
     @Test
-    void download_valid() {
+    void download_valid() throws IOException {
         Mockito.when(resourceLoader.getResource(Mockito.any())).thenReturn(new ClassPathResource("Test-File"));
         ResponseEntity responseEntity = agentDownloadService.download();
-        byte[] response = (byte[]) responseEntity.getBody();
+        FileSystemResource response = (FileSystemResource) responseEntity.getBody();
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
-        Assertions.assertArrayEquals("Test File Content".getBytes(StandardCharsets.UTF_8), response);
+        Assertions.assertArrayEquals("Test File Content".getBytes(StandardCharsets.UTF_8), response.getContentAsByteArray());
+        Assertions.assertEquals("\"AgentChecksum\"", responseEntity.getHeaders().getETag());
+        Assertions.assertEquals("attachment; filename=Agent.jar", responseEntity.getHeaders().getFirst("Content-Disposition"));
     }
-}
\ No newline at end of file
+}
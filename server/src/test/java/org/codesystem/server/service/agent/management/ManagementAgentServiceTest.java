@@ -1,6 +1,10 @@
 package org.codesystem.server.service.agent.management;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.AgentHeartbeatCache;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSessionCache;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
@@ -13,6 +17,7 @@ import org.codesystem.server.repository.DeploymentRepository;
 import org.codesystem.server.repository.GroupRepository;
 import org.codesystem.server.repository.PackageRepository;
 import org.codesystem.server.request.agent.management.AgentUpdateRequest;
+import org.codesystem.server.service.agent.communication.AgentNotificationService;
 import org.codesystem.server.service.server.LogService;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
@@ -42,6 +47,8 @@ class ManagementAgentServiceTest {
     GroupRepository groupRepository;
     ManagementAgentService managementAgentService;
     LogService logService;
+    AgentIdentityCache agentIdentityCache;
+    AgentSessionCache agentSessionCache;
     AgentEntity agentEntityOne;
     AgentEntity agentEntityTwo;
     GroupEntity groupEntityOne;
@@ -79,8 +86,10 @@ class ManagementAgentServiceTest {
         groupEntityOne = groupRepository.save(groupEntityOne);
 
         logService = Mockito.mock(LogService.class);
+        agentIdentityCache = Mockito.mock(AgentIdentityCache.class);
+        agentSessionCache = Mockito.mock(AgentSessionCache.class);
 
-        managementAgentService = new ManagementAgentService(agentRepository, deploymentRepository, groupRepository, logService);
+        managementAgentService = new ManagementAgentService(agentRepository, deploymentRepository, groupRepository, logService, agentIdentityCache, agentSessionCache, Mockito.mock(PendingDeploymentIndex.class), new AgentHeartbeatCache(agentRepository), Mockito.mock(AgentNotificationService.class));
     }
 
     @AfterEach
@@ -135,6 +144,7 @@ class ManagementAgentServiceTest {
         ResponseEntity responseEntity = managementAgentService.updateAgent(agentEntityOne.getUuid(), new AgentUpdateRequest(" New Agent Name "));
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         Assertions.assertEquals("New Agent Name", agentRepository.findFirstByPublicKeyBase64(agentEntityOne.getPublicKeyBase64()).getName());
+        Mockito.verify(agentIdentityCache).invalidate(agentEntityOne.getPublicKeyBase64());
     }
 
     @Test
@@ -146,6 +156,8 @@ class ManagementAgentServiceTest {
         responseEntity = managementAgentService.deleteAgent(agentEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         Assertions.assertNull(agentRepository.findFirstByPublicKeyBase64(agentEntityOne.getPublicKeyBase64()));
+        Mockito.verify(agentIdentityCache).invalidate(agentEntityOne.getPublicKeyBase64());
+        Mockito.verify(agentSessionCache).invalidate(agentEntityOne.getPublicKeyBase64());
 
         PackageEntity packageEntity = new PackageEntity();
         packageEntity.setName("Package");
@@ -1,7 +1,10 @@
 package org.codesystem.server.service.agent.registration;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSessionCache;
 import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.ServerEntity;
@@ -41,6 +44,8 @@ class AgentRegistrationServiceTest {
     AgentRepository agentRepository;
     AgentRegistrationService agentRegistrationService;
     CryptoUtility cryptoUtility;
+    AgentIdentityCache agentIdentityCache;
+    AgentSessionCache agentSessionCache;
     MockHttpServletRequest mockHttpServletRequest = new MockHttpServletRequest();
 
     @BeforeAll
@@ -65,7 +70,9 @@ class AgentRegistrationServiceTest {
         serverEntity.setPublicKeyBase64("Public Key");
         serverRepository.save(serverEntity);
         cryptoUtility = Mockito.mock(CryptoUtility.class);
-        agentRegistrationService = new AgentRegistrationService(agentRepository, serverRepository, cryptoUtility, logService);
+        agentIdentityCache = Mockito.mock(AgentIdentityCache.class);
+        agentSessionCache = Mockito.mock(AgentSessionCache.class);
+        agentRegistrationService = new AgentRegistrationService(agentRepository, new ServerConfiguration(serverRepository), cryptoUtility, logService, agentIdentityCache, agentSessionCache);
     }
 
     @AfterEach
@@ -140,6 +147,7 @@ class AgentRegistrationServiceTest {
         agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEntity.getPublicKeyBase64());
         Assertions.assertEquals("Agent Name", agentEntity.getName());
         Assertions.assertNotNull(agentEntity.getValidationToken());
+        Mockito.verify(agentSessionCache).invalidate(agentEntity.getPublicKeyBase64());
     }
 
     @Test
@@ -216,6 +224,8 @@ class AgentRegistrationServiceTest {
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         agentEntity = agentRepository.findFirstByPublicKeyBase64(agentEntity.getPublicKeyBase64());
         Assertions.assertTrue(agentEntity.isRegistrationCompleted());
+        Mockito.verify(agentIdentityCache).invalidate(agentEntity.getPublicKeyBase64());
+        Mockito.verify(agentSessionCache).invalidate(agentEntity.getPublicKeyBase64());
     }
 
 
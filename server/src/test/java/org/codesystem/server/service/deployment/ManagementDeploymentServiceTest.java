@@ -1,6 +1,7 @@
 package org.codesystem.server.service.deployment;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
@@ -16,6 +17,7 @@ import org.codesystem.server.repository.PackageRepository;
 import org.codesystem.server.request.deployment.DeploymentCreateRequest;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -43,6 +45,7 @@ class ManagementDeploymentServiceTest {
     @Autowired
     GroupRepository groupRepository;
     ManagementDeploymentService managementDeploymentService;
+    PendingDeploymentIndex pendingDeploymentIndex;
     PackageEntity packageEntityOne;
     PackageEntity packageEntityTwo;
     AgentEntity agentEntityOne;
@@ -104,7 +107,8 @@ class ManagementDeploymentServiceTest {
         groupEntityOne.addPackage(packageEntityOne);
         groupEntityOne = groupRepository.save(groupEntityOne);
 
-        managementDeploymentService = new ManagementDeploymentService(deploymentRepository, agentRepository, packageRepository, groupRepository);
+        pendingDeploymentIndex = Mockito.mock(PendingDeploymentIndex.class);
+        managementDeploymentService = new ManagementDeploymentService(deploymentRepository, agentRepository, packageRepository, groupRepository, pendingDeploymentIndex);
     }
 
     @AfterEach
@@ -312,6 +316,7 @@ class ManagementDeploymentServiceTest {
         deploymentEntityOne = deploymentRepository.findFirstByUuid(deploymentEntityOne.getUuid());
         Assertions.assertFalse(deploymentEntityOne.isDeployed());
         Assertions.assertNull(deploymentEntityOne.getLastDeploymentTimestamp());
+        Mockito.verify(pendingDeploymentIndex).invalidate(agentEntityOne.getUuid());
     }
 
     @Test
@@ -332,6 +337,7 @@ class ManagementDeploymentServiceTest {
         deploymentEntityOne = deploymentRepository.findFirstByUuid(deploymentEntityOne.getUuid());
         Assertions.assertFalse(deploymentEntityOne.isDeployed());
         Assertions.assertNull(deploymentEntityOne.getLastDeploymentTimestamp());
+        Mockito.verify(pendingDeploymentIndex).invalidate(agentEntityOne.getUuid());
     }
 
     @Test
@@ -352,6 +358,7 @@ class ManagementDeploymentServiceTest {
         deploymentEntityOne = deploymentRepository.findFirstByUuid(deploymentEntityOne.getUuid());
         Assertions.assertFalse(deploymentEntityOne.isDeployed());
         Assertions.assertNull(deploymentEntityOne.getLastDeploymentTimestamp());
+        Mockito.verify(pendingDeploymentIndex).invalidatePackage(packageEntityOne.getUuid());
     }
 
 
@@ -1,6 +1,7 @@
 package org.codesystem.server.service.packages;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
@@ -8,6 +9,7 @@ import org.codesystem.server.entity.DeploymentEntity;
 import org.codesystem.server.entity.GroupEntity;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.AgentRepository;
 import org.codesystem.server.repository.DeploymentRepository;
@@ -24,6 +26,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
@@ -32,6 +35,8 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -60,6 +65,7 @@ class ManagementPackageServiceTest {
     GroupRepository groupRepository;
     CryptoUtility cryptoUtility;
     LogService logService;
+    ApplicationEventPublisher applicationEventPublisher;
     PackageEntity packageEntityOne;
     PackageEntity packageEntityTwo;
     GroupEntity groupEntityOne;
@@ -104,11 +110,19 @@ class ManagementPackageServiceTest {
 
         cryptoUtility = Mockito.mock(CryptoUtility.class);
         logService = Mockito.mock(LogService.class);
+        applicationEventPublisher = Mockito.mock(ApplicationEventPublisher.class);
 
-        managementPackageService = new ManagementPackageService(packageRepository, cryptoUtility, deploymentRepository, groupRepository, logService);
+        managementPackageService = new ManagementPackageService(packageRepository, cryptoUtility, deploymentRepository, groupRepository, logService, Mockito.mock(PendingDeploymentIndex.class), applicationEventPublisher);
         deleteFolderWithContent();
     }
 
+    private void mockChecksum(String checksum) {
+        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any(), Mockito.any(), Mockito.any())).thenAnswer(invocation -> {
+            invocation.getArgument(0, InputStream.class).transferTo(invocation.getArgument(1, OutputStream.class));
+            return checksum;
+        });
+    }
+
     @AfterEach
     void tearDown() throws IOException {
         groupRepository.deleteAll();
@@ -151,42 +165,42 @@ class ManagementPackageServiceTest {
 
     @Test
     void addNewPackage_invalidRequest() {
-        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(null, null, OperatingSystem.UNKNOWN, null), null);
+        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(null, null, OperatingSystem.UNKNOWN, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid Request", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("", null, OperatingSystem.UNKNOWN, null), null);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("", null, OperatingSystem.UNKNOWN, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid Request", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("   ", null, OperatingSystem.UNKNOWN, null), null);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("   ", null, OperatingSystem.UNKNOWN, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid Request", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, null, null), null);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, null, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid Request", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.UNKNOWN, null), null);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.UNKNOWN, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid Request", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
     }
 
     @Test
     void addNewPackage_invalidMultiPartFile() {
-        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null), null);
+        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null, null), null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
 
         byte[] multiPartFileContent = null;
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", null, multiPartFileContent);
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null), multipartFile);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", null, multiPartFileContent);
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null), multipartFile);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", "wrong content-type", multiPartFileContent);
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null), multipartFile);
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
     }
@@ -195,44 +209,81 @@ class ManagementPackageServiceTest {
     void addNewPackage_invalidChecksum() {
         byte[] multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null), multipartFile);
+        mockChecksum("Test CheckSum");
+        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", null, OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Checksum mismatch", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", "invalid CheckSum", OperatingSystem.LINUX, null), multipartFile);
+        mockChecksum("Test CheckSum");
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", "invalid CheckSum", OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Checksum mismatch", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
+        Mockito.verifyNoInteractions(applicationEventPublisher);
+        // the rejected upload is removed and no package is created
+        Assertions.assertNull(packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED));
+        try (Stream<Path> stream = Files.list(packageFolder)) {
+            Assertions.assertEquals(0, stream.count());
+        }
+    }
+
+    @Test
+    void addNewPackage_unreadableUpload() throws IOException {
+        MultipartFile multipartFile = Mockito.mock(MultipartFile.class);
+        Mockito.when(multipartFile.getContentType()).thenReturn("application/zip");
+        Mockito.doAnswer(invocation -> Files.writeString(invocation.getArgument(0, File.class).toPath(), "Test Content")).when(multipartFile).transferTo(Mockito.any(File.class));
+        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", "Test CheckSum", OperatingSystem.LINUX, null, null), multipartFile);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Error when reading zip-file and creating checksum", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
+        try (Stream<Path> stream = Files.list(packageFolder)) {
+            Assertions.assertEquals(0, stream.count());
+        }
+
+        // the upload cannot be moved into the package folder
+        Mockito.doThrow(IOException.class).when(multipartFile).transferTo(Mockito.any(File.class));
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest("New Package", "Test CheckSum", OperatingSystem.LINUX, null, null), multipartFile);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+        Assertions.assertEquals("Error when storing file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
+        try (Stream<Path> stream = Files.list(packageFolder)) {
+            Assertions.assertEquals(0, stream.count());
+        }
     }
 
     @Test
-    void addNewPackage_valid() {
+    void addNewPackage_valid() throws IOException {
         byte[] multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(" New Package ", "Test CheckSum", OperatingSystem.LINUX, null), multipartFile);
+        mockChecksum("Test CheckSum");
+        ResponseEntity responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(" New Package ", "Test CheckSum", OperatingSystem.LINUX, null, null), multipartFile);
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         PackageEntity packageEntity = packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED);
         Assertions.assertEquals("New Package", packageEntity.getName());
         Assertions.assertNull(packageEntity.getExpectedReturnValue());
         Assertions.assertEquals("Test CheckSum", packageEntity.getChecksumPlaintext());
         Assertions.assertNull(packageEntity.getChecksumEncrypted());
+        Assertions.assertEquals(DigestAlgorithm.SHA3_512, packageEntity.getDigestAlgorithm());
         Assertions.assertEquals(OperatingSystem.LINUX, packageEntity.getTargetOperatingSystem());
+        Assertions.assertEquals("Test Content", Files.readString(packageFolder.resolve(packageEntity.getUuid() + "_plaintext")));
+        try (Stream<Path> stream = Files.list(packageFolder)) {
+            Assertions.assertEquals(1, stream.count());
+        }
+        String packageUUID = packageEntity.getUuid();
+        Mockito.verify(applicationEventPublisher).publishEvent(Mockito.argThat((Object event) -> event instanceof PackageUploadedEvent packageUploadedEvent && packageUploadedEvent.getPackageUUID().equals(packageUUID)));
 
         groupRepository.deleteAll();
         packageRepository.deleteAll();
 
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(" New Package ", "Test CheckSum", OperatingSystem.LINUX, "Return Value"), multipartFile);
+        mockChecksum("Test CheckSum");
+        responseEntity = managementPackageService.addNewNewPackage(new PackageAddNewRequest(" New Package ", "Test CheckSum", OperatingSystem.LINUX, "Return Value", DigestAlgorithm.SHA256_TREE), multipartFile);
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         packageEntity = packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED);
         Assertions.assertEquals("New Package", packageEntity.getName());
         Assertions.assertEquals("Return Value", packageEntity.getExpectedReturnValue());
         Assertions.assertEquals("Test CheckSum", packageEntity.getChecksumPlaintext());
+        Assertions.assertEquals(DigestAlgorithm.SHA256_TREE, packageEntity.getDigestAlgorithm());
+        Mockito.verify(cryptoUtility).calculateChecksum(Mockito.any(), Mockito.any(), Mockito.eq(DigestAlgorithm.SHA256_TREE));
         Assertions.assertNull(packageEntity.getChecksumEncrypted());
         Assertions.assertEquals(OperatingSystem.LINUX, packageEntity.getTargetOperatingSystem());
     }
@@ -325,30 +376,30 @@ class ManagementPackageServiceTest {
         ResponseEntity responseEntity = managementPackageService.updatePackageContent(null, null, null);
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Package not found", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
-        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(""), null, "Invalid UUID");
+        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("", null), null, "Invalid UUID");
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Package not found", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
     }
 
     @Test
     void updatePackageContent_invalidMultiPartFile() {
-        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(""), null, packageEntityOne.getUuid());
+        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("", null), null, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
 
         byte[] multiPartFileContent = null;
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", null, multiPartFileContent);
-        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(""), multipartFile, packageEntityOne.getUuid());
+        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("", null), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", null, multiPartFileContent);
-        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(""), multipartFile, packageEntityOne.getUuid());
+        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("", null), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", "wrong content-type", multiPartFileContent);
-        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(""), multipartFile, packageEntityOne.getUuid());
+        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("", null), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Invalid zip-file", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
     }
@@ -357,14 +408,14 @@ class ManagementPackageServiceTest {
     void updatePackageContent_invalidChecksum() {
         byte[] multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(null), multipartFile, packageEntityOne.getUuid());
+        mockChecksum("Test CheckSum");
+        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest(null, null), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Checksum mismatch", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
         multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Test CheckSum");
-        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("Invalid Checksum"), multipartFile, packageEntityOne.getUuid());
+        mockChecksum("Test CheckSum");
+        responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("Invalid Checksum", null), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
         Assertions.assertEquals("Checksum mismatch", new JSONObject(Objects.requireNonNull(responseEntity.getBody())).getString("message"));
     }
@@ -385,14 +436,16 @@ class ManagementPackageServiceTest {
 
         byte[] multiPartFileContent = "Test Content".getBytes(StandardCharsets.UTF_8);
         MultipartFile multipartFile = new MockMultipartFile("FileName", "FileName", "application/zip", multiPartFileContent);
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("New CheckSum");
-        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("New CheckSum"), multipartFile, packageEntityOne.getUuid());
+        mockChecksum("New CheckSum");
+        ResponseEntity responseEntity = managementPackageService.updatePackageContent(new PackageUpdateContentRequest("New CheckSum", DigestAlgorithm.SHA256_TREE), multipartFile, packageEntityOne.getUuid());
         Assertions.assertEquals(HttpStatus.OK, responseEntity.getStatusCode());
         PackageEntity packageEntity = packageRepository.findFirstByPackageStatusInternal(PackageStatusInternal.UPLOADED);
         deploymentEntityOne = deploymentRepository.findFirstByUuid(deploymentEntityOne.getUuid());
         Assertions.assertFalse(deploymentEntityOne.isDeployed());
         Assertions.assertNull(deploymentEntityOne.getLastDeploymentTimestamp());
         Assertions.assertEquals("New CheckSum", packageEntity.getChecksumPlaintext());
+        Assertions.assertEquals(DigestAlgorithm.SHA256_TREE, packageEntity.getDigestAlgorithm());
+        Mockito.verify(applicationEventPublisher).publishEvent(Mockito.any(PackageUploadedEvent.class));
     }
 
 }
\ No newline at end of file
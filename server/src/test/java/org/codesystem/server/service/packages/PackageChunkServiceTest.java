@@ -0,0 +1,135 @@
+package org.codesystem.server.service.packages;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.codesystem.server.entity.PackageEntity;
+import org.codesystem.server.repository.ServerRepository;
+import org.codesystem.server.utility.CryptoUtility;
+import org.json.JSONArray;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.crypto.SecretKey;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+class PackageChunkServiceTest {
+    final Path packageFolder = Paths.get("/opt/OPD/Packages");
+    final Path plaintextFile = Paths.get("package-chunk-test");
+    CryptoUtility cryptoUtility;
+    PackageChunkService packageChunkService;
+    PackageEntity packageEntity;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Security.addProvider(new BouncyCastleProvider());
+        cryptoUtility = new CryptoUtility(Mockito.mock(ServerRepository.class));
+        packageChunkService = new PackageChunkService(cryptoUtility);
+        packageEntity = new PackageEntity();
+        packageEntity.setUuid("package-chunk-test");
+        deleteFolderWithContent();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(plaintextFile);
+        deleteFolderWithContent();
+    }
+
+    private void deleteFolderWithContent() throws IOException {
+        if (Files.exists(packageFolder)) {
+            try (Stream<Path> pathStream = Files.walk(packageFolder)) {
+                pathStream.sorted(Comparator.reverseOrder())
+                        .map(Path::toFile)
+                        .forEach(File::delete);
+            }
+        }
+    }
+
+    @Test
+    void createChunks() throws IOException {
+        byte[] content = new byte[8 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        Files.write(plaintextFile, content);
+
+        PackageChunkService.ChunkManifest chunkManifest = packageChunkService.createChunks(packageEntity, plaintextFile.toFile());
+        SecretKey chunkEncryptionToken = packageEntity.getChunkEncryptionToken();
+        Assertions.assertNotNull(chunkEncryptionToken);
+        Assertions.assertEquals(0, chunkManifest.getReusedBytes());
+        packageEntity.setChunkManifest(chunkManifest.toString());
+
+        // the chunks are decrypted in the order of the manifest
+        JSONArray chunks = new JSONArray(packageEntity.getChunkManifest());
+        Assertions.assertEquals(chunkManifest.getChunkIds().size(), chunks.length());
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.length(); i++) {
+            Path chunkFile = packageChunkService.getChunkFile(packageEntity, chunks.getJSONObject(i).getString("id"));
+            Assertions.assertNotNull(chunkFile);
+            Assertions.assertEquals(chunks.getJSONObject(i).getLong("size"), Files.size(chunkFile));
+            byteArrayOutputStream.write(cryptoUtility.decryptChunk(Files.readAllBytes(chunkFile), chunkEncryptionToken));
+        }
+        Assertions.assertArrayEquals(content, byteArrayOutputStream.toByteArray());
+
+        // a new revision keeps the key and reuses the unchanged chunks
+        content[content.length - 10] ^= 1;
+        Files.write(plaintextFile, content);
+        PackageChunkService.ChunkManifest updatedManifest = packageChunkService.createChunks(packageEntity, plaintextFile.toFile());
+        packageEntity.setChunkManifest(updatedManifest.toString());
+        Assertions.assertSame(chunkEncryptionToken, packageEntity.getChunkEncryptionToken());
+        Assertions.assertTrue(updatedManifest.getReusedBytes() > 0);
+        Assertions.assertTrue(updatedManifest.getTotalBytes() - updatedManifest.getReusedBytes() <= 2L * 1024 * 1024 + 28);
+
+        // the replaced chunk is removed
+        String replacedChunk = chunkManifest.getChunkIds().get(chunkManifest.getChunkIds().size() - 1);
+        Assertions.assertFalse(updatedManifest.getChunkIds().contains(replacedChunk));
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, replacedChunk));
+        try (Stream<Path> stream = Files.list(packageFolder.resolve("package-chunk-test_chunks"))) {
+            Assertions.assertEquals(updatedManifest.getChunkIds().stream().distinct().count(), stream.count());
+        }
+    }
+
+    @Test
+    void getChunkFile_invalid() throws IOException {
+        Files.writeString(plaintextFile, "Test Content");
+        PackageChunkService.ChunkManifest chunkManifest = packageChunkService.createChunks(packageEntity, plaintextFile.toFile());
+        String chunkId = chunkManifest.getChunkIds().get(0);
+
+        // no manifest stored yet
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, chunkId));
+        packageEntity.setChunkManifest(chunkManifest.toString());
+        Assertions.assertNotNull(packageChunkService.getChunkFile(packageEntity, chunkId));
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, null));
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, "../package-chunk-test"));
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, chunkId.toUpperCase()));
+        Assertions.assertNull(packageChunkService.getChunkFile(packageEntity, "0".repeat(128)));
+    }
+
+    @Test
+    void getBatchChecksum() {
+        String batchChecksum = packageChunkService.getBatchChecksum(List.of("a".repeat(128), "b".repeat(128)));
+        Assertions.assertTrue(batchChecksum.matches("^[0-9a-f]{128}$"));
+        Assertions.assertEquals(batchChecksum, packageChunkService.getBatchChecksum(List.of("a".repeat(128), "b".repeat(128))));
+        Assertions.assertNotEquals(batchChecksum, packageChunkService.getBatchChecksum(List.of("b".repeat(128), "a".repeat(128))));
+    }
+
+    @Test
+    void deleteChunks() throws IOException {
+        Files.writeString(plaintextFile, "Test Content");
+        packageChunkService.createChunks(packageEntity, plaintextFile.toFile());
+        Assertions.assertTrue(Files.exists(packageFolder.resolve("package-chunk-test_chunks")));
+        packageChunkService.deleteChunks(packageEntity);
+        Assertions.assertFalse(Files.exists(packageFolder.resolve("package-chunk-test_chunks")));
+        packageChunkService.deleteChunks(packageEntity);
+    }
+}
@@ -1,13 +1,16 @@
 package org.codesystem.server.service.scheduled;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.*;
 import org.codesystem.server.enums.agent.OperatingSystem;
 import org.codesystem.server.repository.*;
 import org.codesystem.server.service.server.LogService;
 import org.junit.jupiter.api.*;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -35,6 +38,7 @@ class DeploymentValidatorTest {
     GroupRepository groupRepository;
     @Autowired
     LogService logService;
+    ServerConfiguration serverConfiguration;
     DeploymentValidator deploymentValidator;
     PackageEntity packageEntityOne;
     PackageEntity packageEntityTwo;
@@ -104,7 +108,8 @@ class DeploymentValidatorTest {
         groupEntityTwo.setOperatingSystem(OperatingSystem.WINDOWS);
         groupEntityTwo = groupRepository.save(groupEntityTwo);
 
-        deploymentValidator = new DeploymentValidator(serverRepository, deploymentRepository, agentRepository, packageRepository, groupRepository, logService);
+        serverConfiguration = new ServerConfiguration(serverRepository);
+        deploymentValidator = new DeploymentValidator(serverConfiguration, deploymentRepository, agentRepository, packageRepository, groupRepository, logService, Mockito.mock(PendingDeploymentIndex.class));
     }
 
     @AfterEach
@@ -131,9 +136,7 @@ class DeploymentValidatorTest {
         Assertions.assertEquals(timestamp, serverEntity.getLastDeploymentValidation());
 
         // update
-        serverEntity = serverRepository.findAll().get(0);
-        serverEntity.setDeploymentValidationInterval(0);
-        serverRepository.save(serverEntity);
+        serverConfiguration.update(entity -> entity.setDeploymentValidationInterval(0));
         deploymentValidator.validateDeployments();
         serverEntity = serverRepository.findAll().get(0);
         Assertions.assertNotEquals(timestamp, serverEntity.getLastDeploymentValidation());
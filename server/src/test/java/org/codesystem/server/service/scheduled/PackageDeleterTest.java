@@ -7,7 +7,9 @@ import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.agent.OperatingSystem;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.PackageRepository;
+import org.codesystem.server.service.packages.PackageChunkService;
 import org.codesystem.server.service.server.LogService;
+import org.codesystem.server.utility.CryptoUtility;
 import org.junit.jupiter.api.*;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -65,7 +67,7 @@ class PackageDeleterTest {
 
         logService = Mockito.mock(LogService.class);
 
-        packageDeleter = new PackageDeleter(packageRepository, logService);
+        packageDeleter = new PackageDeleter(packageRepository, logService, new PackageChunkService(Mockito.mock(CryptoUtility.class)));
         deleteFolderWithContent();
     }
 
@@ -90,6 +92,9 @@ class PackageDeleterTest {
         Files.createDirectory(packageFolder);
         Path filePath = Paths.get(packageFolder.toString() + File.separator + packageEntity.getUuid());
         new FileOutputStream(filePath.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
+        Path chunkPath = Paths.get(packageFolder.toString() + File.separator + packageEntity.getUuid() + "_chunks" + File.separator + "chunk");
+        Files.createDirectories(chunkPath.getParent());
+        Files.writeString(chunkPath, "Test Chunk");
 
         packageDeleter.deletePackage();
 
@@ -103,5 +108,6 @@ class PackageDeleterTest {
 
         Assertions.assertNull(packageRepository.findFirstByUuid(packageEntity.getUuid()));
         Assertions.assertFalse(filePath.toFile().exists());
+        Assertions.assertFalse(chunkPath.getParent().toFile().exists());
     }
 }
\ No newline at end of file
@@ -1,12 +1,17 @@
 package org.codesystem.server.service.scheduled;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.PendingDeploymentIndex;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.PackageEntity;
 import org.codesystem.server.enums.agent.OperatingSystem;
+import org.codesystem.server.enums.log.Severity;
 import org.codesystem.server.enums.packages.PackageStatusInternal;
 import org.codesystem.server.repository.PackageRepository;
+import org.codesystem.server.response.server.ServerPackageProcessingResponse;
+import org.codesystem.server.service.packages.PackageChunkService;
+import org.codesystem.server.service.packages.PackageUploadedEvent;
 import org.codesystem.server.service.server.LogService;
 import org.codesystem.server.utility.CryptoUtility;
 import org.junit.jupiter.api.*;
@@ -14,6 +19,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.test.annotation.DirtiesContext;
 
 import java.io.File;
@@ -39,6 +45,7 @@ class PackageEncryptorTest {
     PackageEncryptor packageEncryptor;
     CryptoUtility cryptoUtility;
     LogService logService;
+    PackageChunkService packageChunkService;
     PackageEntity packageEntity;
     Path packageFolder = Paths.get("/opt/OPD/Packages");
 
@@ -68,7 +75,8 @@ class PackageEncryptorTest {
         logService = Mockito.mock(LogService.class);
 
         cryptoUtility = Mockito.mock(CryptoUtility.class);
-        packageEncryptor = new PackageEncryptor(packageRepository, cryptoUtility, logService);
+        packageChunkService = Mockito.mock(PackageChunkService.class);
+        packageEncryptor = new PackageEncryptor(packageRepository, cryptoUtility, logService, Mockito.mock(PendingDeploymentIndex.class), packageChunkService, new SyncTaskExecutor(), 2);
         deleteFolderWithContent();
     }
 
@@ -107,101 +115,153 @@ class PackageEncryptorTest {
 
     @Test
     void encryptPackage_invalidPlaintextChecksum() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("Wrong Checksum");
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("Wrong Checksum", "Encrypted Checksum", 12, 28));
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
+        Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
+        new FileOutputStream(encryptedFile.toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
         Assertions.assertEquals(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH, packageEntity.getPackageStatusInternal());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
+        Assertions.assertFalse(encryptedFile.toFile().exists());
+        Mockito.verify(cryptoUtility, Mockito.never()).calculateDecryptedChecksum(Mockito.any(), Mockito.any());
     }
 
     @Test
     void encryptPackage_failureEncryption() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("PlainText Checksum");
-        Mockito.when(cryptoUtility.encryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(false);
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(null);
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
+        Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
+        new FileOutputStream(encryptedFile.toFile()).write("Partial".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
         Assertions.assertEquals(PackageStatusInternal.ERROR_ENCRYPTION, packageEntity.getPackageStatusInternal());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
+        Assertions.assertFalse(encryptedFile.toFile().exists());
     }
 
     @Test
-    void encryptPackage_encryptedChecksumCalculationException() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("PlainText Checksum");
-        Mockito.when(cryptoUtility.encryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
+    void encryptPackage_failureDecryption() throws IOException {
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("PlainText Checksum", "Encrypted Checksum", 12, 28));
+        Mockito.when(cryptoUtility.calculateDecryptedChecksum(Mockito.any(), Mockito.any())).thenReturn(null);
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
+        Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
+        new FileOutputStream(encryptedFile.toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
-        Assertions.assertEquals(PackageStatusInternal.ERROR, packageEntity.getPackageStatusInternal());
+        Assertions.assertEquals(PackageStatusInternal.ERROR_DECRYPTION, packageEntity.getPackageStatusInternal());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
+        Assertions.assertFalse(encryptedFile.toFile().exists());
     }
 
     @Test
-    void encryptPackage_failureDecryption() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("PlainText Checksum");
-        Mockito.when(cryptoUtility.encryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
-        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(false);
+    void encryptPackage_invalidDecryptedChecksum() throws IOException {
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("PlainText Checksum", "Encrypted Checksum", 12, 28));
+        Mockito.when(cryptoUtility.calculateDecryptedChecksum(Mockito.any(), Mockito.any())).thenReturn("Wrong Checksum");
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
         Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
         new FileOutputStream(encryptedFile.toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
-        Assertions.assertEquals(PackageStatusInternal.ERROR_DECRYPTION, packageEntity.getPackageStatusInternal());
+        Assertions.assertEquals(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH, packageEntity.getPackageStatusInternal());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
+        Assertions.assertFalse(encryptedFile.toFile().exists());
     }
 
     @Test
-    void encryptPackage_compareChecksumFailureException() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("PlainText Checksum");
-        Mockito.when(cryptoUtility.encryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
-        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
+    void encryptPackage_valid() throws IOException {
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("PlainText Checksum", "Encrypted Checksum", 12, 28));
+        Mockito.when(cryptoUtility.calculateDecryptedChecksum(Mockito.any(), Mockito.any())).thenReturn("PlainText Checksum");
+        Mockito.when(packageChunkService.createChunks(Mockito.any(), Mockito.any())).thenReturn(new PackageChunkService.ChunkManifest());
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
         Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
         new FileOutputStream(encryptedFile.toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
-        Assertions.assertEquals(PackageStatusInternal.ERROR_CHECKSUM_MISMATCH, packageEntity.getPackageStatusInternal());
+        Assertions.assertEquals(PackageStatusInternal.PROCESSED, packageEntity.getPackageStatusInternal());
+        Assertions.assertEquals("[]", packageEntity.getChunkManifest());
+        Assertions.assertEquals("Encrypted Checksum", packageEntity.getChecksumEncrypted());
+        Assertions.assertEquals(12L, packageEntity.getPlaintextSize());
+        Assertions.assertEquals(28L, packageEntity.getEncryptedSize());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
+        Assertions.assertTrue(encryptedFile.toFile().exists());
+        Mockito.verify(logService).addEntry(Mockito.eq(Severity.INFO), Mockito.contains("MB/s"));
     }
 
     @Test
-    void encryptPackage_valid() throws IOException {
-        Mockito.when(cryptoUtility.calculateChecksum(Mockito.any())).thenReturn("PlainText Checksum");
-        Mockito.when(cryptoUtility.encryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
-        Mockito.when(cryptoUtility.decryptFile(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(true);
+    void encryptPackage_chunkFailure() throws IOException {
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("PlainText Checksum", "Encrypted Checksum", 12, 28));
+        Mockito.when(cryptoUtility.calculateDecryptedChecksum(Mockito.any(), Mockito.any())).thenReturn("PlainText Checksum");
+        Mockito.when(packageChunkService.createChunks(Mockito.any(), Mockito.any())).thenThrow(new IOException("Disk full"));
+        packageEntity.setChunkManifest("[]");
+        packageRepository.save(packageEntity);
         Files.createDirectory(packageFolder);
         Path plaintextFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_plaintext");
-        Path encryptedFile = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid());
-        Path decryptedFileTest = Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid() + "_temp-encrypted-test");
         new FileOutputStream(plaintextFile.toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
-        new FileOutputStream(encryptedFile.toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
-        new FileOutputStream(decryptedFileTest.toFile()).write("Test Content Decrypted".getBytes(StandardCharsets.UTF_8));
+        new FileOutputStream(Paths.get(packageFolder.toString() + "/" + packageEntity.getUuid()).toFile()).write("Test Content Encrypted".getBytes(StandardCharsets.UTF_8));
         packageEncryptor.encryptPackage();
         packageEntity = packageRepository.findFirstByUuid(packageEntity.getUuid());
+        // the Agents download the complete file instead
         Assertions.assertEquals(PackageStatusInternal.PROCESSED, packageEntity.getPackageStatusInternal());
+        Assertions.assertNull(packageEntity.getChunkManifest());
         Assertions.assertFalse(plaintextFile.toFile().exists());
-        Assertions.assertFalse(decryptedFileTest.toFile().exists());
     }
 
-}
\ No newline at end of file
+    @Test
+    void encryptPackage_alreadyClaimed() {
+        // another worker or server changed the status in the meantime
+        Assertions.assertEquals(1, packageRepository.updatePackageStatusInternal(packageEntity.getUuid(), PackageStatusInternal.UPLOADED, PackageStatusInternal.PROCESSING));
+        Assertions.assertEquals(0, packageRepository.updatePackageStatusInternal(packageEntity.getUuid(), PackageStatusInternal.UPLOADED, PackageStatusInternal.PROCESSING));
+        Assertions.assertFalse(packageEncryptor.encryptPackage());
+        Assertions.assertEquals(PackageStatusInternal.PROCESSING, packageRepository.findFirstByUuid(packageEntity.getUuid()).getPackageStatusInternal());
+        Mockito.verifyNoInteractions(cryptoUtility);
+    }
+
+    @Test
+    void onPackageUploaded() throws IOException {
+        Mockito.when(cryptoUtility.encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(new CryptoUtility.EncryptedFile("PlainText Checksum", "Encrypted Checksum", 12, 28));
+        Mockito.when(cryptoUtility.calculateDecryptedChecksum(Mockito.any(), Mockito.any())).thenReturn("PlainText Checksum");
+        Mockito.when(packageChunkService.createChunks(Mockito.any(), Mockito.any())).thenReturn(new PackageChunkService.ChunkManifest());
+        PackageEntity secondPackageEntity = new PackageEntity();
+        secondPackageEntity.setName("Second Package");
+        secondPackageEntity.setTargetOperatingSystem(OperatingSystem.LINUX);
+        secondPackageEntity.setChecksumPlaintext("PlainText Checksum");
+        secondPackageEntity.setPackageStatusInternal(PackageStatusInternal.UPLOADED);
+        secondPackageEntity = packageRepository.save(secondPackageEntity);
+        Files.createDirectory(packageFolder);
+        for (PackageEntity entity : new PackageEntity[]{packageEntity, secondPackageEntity}) {
+            new FileOutputStream(Paths.get(packageFolder.toString() + "/" + entity.getUuid() + "_plaintext").toFile()).write("Test Content".getBytes(StandardCharsets.UTF_8));
+        }
+        ServerPackageProcessingResponse statistics = (ServerPackageProcessingResponse) packageEncryptor.getStatistics().getBody();
+        Assertions.assertEquals(2, statistics.getQueuedPackages());
+        Assertions.assertEquals(0, statistics.getProcessedPackages());
+
+        // the worker keeps processing until no package is waiting
+        packageEncryptor.onPackageUploaded(new PackageUploadedEvent(secondPackageEntity.getUuid()));
+        Assertions.assertEquals(PackageStatusInternal.PROCESSED, packageRepository.findFirstByUuid(packageEntity.getUuid()).getPackageStatusInternal());
+        Assertions.assertEquals(PackageStatusInternal.PROCESSED, packageRepository.findFirstByUuid(secondPackageEntity.getUuid()).getPackageStatusInternal());
+        Assertions.assertNotNull(packageRepository.findFirstByUuid(packageEntity.getUuid()).getProcessingTime());
+        Mockito.verify(cryptoUtility, Mockito.times(2)).encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any());
+
+        statistics = (ServerPackageProcessingResponse) packageEncryptor.getStatistics().getBody();
+        Assertions.assertEquals(0, statistics.getQueuedPackages());
+        Assertions.assertEquals(0, statistics.getActiveWorkers());
+        Assertions.assertEquals(2, statistics.getWorkers());
+        Assertions.assertEquals(2, statistics.getProcessedPackages());
+
+        // nothing left to process
+        packageEncryptor.pollUploadedPackages();
+        Mockito.verify(cryptoUtility, Mockito.times(2)).encryptFileWithChecksums(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+}
@@ -2,12 +2,14 @@ package org.codesystem.server.service.server;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
 import org.codesystem.server.configuration.SecurityConfiguration;
+import org.codesystem.server.configuration.ServerConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.request.server.ServerAgentInstallRetryRequest;
 import org.codesystem.server.request.server.ServerAgentUpdateIntervalRequest;
 import org.codesystem.server.request.server.ServerDeploymentValidationRequest;
+import org.codesystem.server.service.agent.communication.AgentNotificationService;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
 import org.mockito.Mockito;
@@ -58,7 +60,7 @@ class ManagementServerServiceTest {
 
         logService = Mockito.mock(LogService.class);
 
-        managementServerService = new ManagementServerService(serverRepository, logService);
+        managementServerService = new ManagementServerService(new ServerConfiguration(serverRepository), logService, Mockito.mock(AgentNotificationService.class));
     }
 
     @AfterEach
@@ -0,0 +1,79 @@
+package org.codesystem.server.utility;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+class BinaryDeltaTest {
+    final Path baseFile = Paths.get("binary-delta-base");
+    final Path targetFile = Paths.get("binary-delta-target");
+    final Path patchFile = Paths.get("binary-delta-patch");
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(baseFile);
+        Files.deleteIfExists(targetFile);
+        Files.deleteIfExists(patchFile);
+    }
+
+    private byte[] createAndApply(byte[] base, byte[] target) throws IOException {
+        Files.write(baseFile, base);
+        Files.write(targetFile, target);
+        BinaryDelta.create(baseFile, targetFile, patchFile);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (DataInputStream dataInputStream = new DataInputStream(new GZIPInputStream(Files.newInputStream(patchFile)))) {
+            Assertions.assertEquals(BinaryDelta.MAGIC, dataInputStream.readInt());
+            long length = dataInputStream.readLong();
+            int instruction;
+            while ((instruction = dataInputStream.readByte()) != BinaryDelta.END) {
+                if (instruction == BinaryDelta.COPY) {
+                    int offset = (int) dataInputStream.readLong();
+                    byteArrayOutputStream.write(base, offset, dataInputStream.readInt());
+                } else {
+                    Assertions.assertEquals(BinaryDelta.INSERT, instruction);
+                    byteArrayOutputStream.write(dataInputStream.readNBytes(dataInputStream.readInt()));
+                }
+            }
+            Assertions.assertEquals(length, byteArrayOutputStream.size());
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Test
+    void create_emptyAndSmall() throws IOException {
+        Assertions.assertArrayEquals(new byte[0], createAndApply(new byte[0], new byte[0]));
+        Assertions.assertArrayEquals("Test Content".getBytes(), createAndApply(new byte[0], "Test Content".getBytes()));
+        Assertions.assertArrayEquals(new byte[0], createAndApply("Test Content".getBytes(), new byte[0]));
+    }
+
+    @Test
+    void create_changedContent() throws IOException {
+        byte[] base = new byte[1024 * 1024];
+        new Random(1).nextBytes(base);
+        // an insertion, a changed byte and a moved block
+        byte[] target = new byte[base.length + 100];
+        System.arraycopy(base, 0, target, 0, 500_000);
+        System.arraycopy(base, 500_000, target, 500_100, base.length - 500_000);
+        target[800_000] ^= 1;
+        System.arraycopy(base, 0, target, 900_000, 10_000);
+
+        Assertions.assertArrayEquals(target, createAndApply(base, target));
+        Assertions.assertTrue(Files.size(patchFile) < 4096);
+
+        // unrelated content is inserted completely
+        byte[] unrelated = new byte[64 * 1024];
+        new Random(2).nextBytes(unrelated);
+        Assertions.assertArrayEquals(unrelated, createAndApply(base, unrelated));
+        Assertions.assertTrue(Files.size(patchFile) > unrelated.length);
+    }
+}
@@ -0,0 +1,67 @@
+package org.codesystem.server.utility;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+class ContentDefinedChunkerTest {
+
+    private List<byte[]> split(byte[] content) throws IOException {
+        List<byte[]> chunks = new ArrayList<>();
+        ContentDefinedChunker.split(new ByteArrayInputStream(content), chunks::add);
+        return chunks;
+    }
+
+    @Test
+    void split_smallAndEmpty() throws IOException {
+        Assertions.assertTrue(split(new byte[0]).isEmpty());
+        List<byte[]> chunks = split("Test Content".getBytes());
+        Assertions.assertEquals(1, chunks.size());
+        Assertions.assertArrayEquals("Test Content".getBytes(), chunks.get(0));
+    }
+
+    @Test
+    void split_chunkSizes() throws IOException {
+        byte[] content = new byte[16 * 1024 * 1024];
+        new Random(1).nextBytes(content);
+        List<byte[]> chunks = split(content);
+        Assertions.assertTrue(chunks.size() > 8);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        for (int i = 0; i < chunks.size(); i++) {
+            Assertions.assertTrue(chunks.get(i).length <= ContentDefinedChunker.MAXIMUM_CHUNK_SIZE);
+            if (i < chunks.size() - 1) {
+                Assertions.assertTrue(chunks.get(i).length >= ContentDefinedChunker.MINIMUM_CHUNK_SIZE);
+            }
+            byteArrayOutputStream.write(chunks.get(i));
+        }
+        Assertions.assertArrayEquals(content, byteArrayOutputStream.toByteArray());
+
+        // content without boundaries is cut at the maximum size
+        chunks = split(new byte[5 * 1024 * 1024]);
+        Assertions.assertEquals(3, chunks.size());
+        Assertions.assertEquals(ContentDefinedChunker.MAXIMUM_CHUNK_SIZE, chunks.get(0).length);
+    }
+
+    @Test
+    void split_insertionOnlyChangesNearbyChunks() throws IOException {
+        byte[] content = new byte[16 * 1024 * 1024];
+        new Random(2).nextBytes(content);
+        byte[] changedContent = new byte[content.length + 100];
+        int insertionOffset = 8 * 1024 * 1024;
+        System.arraycopy(content, 0, changedContent, 0, insertionOffset);
+        System.arraycopy(content, insertionOffset, changedContent, insertionOffset + 100, content.length - insertionOffset);
+
+        List<byte[]> chunks = split(content);
+        List<byte[]> changedChunks = split(changedContent);
+        long unchangedChunks = changedChunks.stream().filter(changedChunk -> chunks.stream().anyMatch(chunk -> Arrays.equals(chunk, changedChunk))).count();
+        Assertions.assertTrue(unchangedChunks >= changedChunks.size() - 3);
+    }
+}
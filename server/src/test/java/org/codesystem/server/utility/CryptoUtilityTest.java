@@ -5,8 +5,9 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.IESParameterSpec;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
-import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.entity.PackageEntity;
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+import org.codesystem.server.enums.packages.EncryptionFormat;
 import org.codesystem.server.entity.ServerEntity;
 import org.codesystem.server.exception.CryptoUtilityException;
 import org.codesystem.server.exception.TestSystemExitException;
@@ -19,17 +20,27 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.annotation.DirtiesContext;
 
 import javax.crypto.*;
-import javax.crypto.spec.GCMParameterSpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.*;
 import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @SpringBootTest
 @DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
@@ -126,6 +137,26 @@ class CryptoUtilityTest {
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility = new CryptoUtility(serverRepository));
     }
 
+    @Test
+    void constructor_symmetricProvider() throws IOException {
+        Assertions.assertEquals("SunJCE", cryptoUtility.getSymmetricProvider());
+        Assertions.assertEquals("SunJCE", new CryptoUtility(serverRepository, "auto").getSymmetricProvider());
+        Assertions.assertThrows(CryptoUtilityException.class, () -> new CryptoUtility(serverRepository, "Invalid"));
+
+        // the providers produce the same format, a package encrypted with one can be decrypted with the other
+        CryptoUtility cryptoUtilityBC = new CryptoUtility(serverRepository, " BC ");
+        Assertions.assertEquals("BC", cryptoUtilityBC.getSymmetricProvider());
+        PackageEntity packageEntity = new PackageEntity();
+        byte[] content = new byte[CryptoUtility.SEGMENT_SIZE + 10];
+        new Random(1).nextBytes(content);
+        Files.write(plaintextFile.toPath(), content);
+        Assertions.assertTrue(cryptoUtilityBC.encryptFile(packageEntity, plaintextFile, encryptedFile.toPath()));
+        Assertions.assertTrue(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(pathForDecryptedFile));
+        SecretKey chunkEncryptionToken = cryptoUtility.generateChunkEncryptionToken();
+        Assertions.assertArrayEquals(cryptoUtility.encryptChunk(content, chunkEncryptionToken), cryptoUtilityBC.encryptChunk(content, chunkEncryptionToken));
+    }
+
     @Test
     void decryptECC_invalid() {
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptECC(null));
@@ -142,19 +173,14 @@ class CryptoUtilityTest {
 
     @Test
     void encryptECC_invalid() {
-        AgentEntity agentEntity = new AgentEntity();
-        agentEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded()));
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptECC(null, null));
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptECC("Test Message".getBytes(StandardCharsets.UTF_8), null));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptECC("Test Message".getBytes(StandardCharsets.UTF_8), new AgentEntity()));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptECC(null, agentEntity));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptECC(null, agentPublicKey));
     }
 
     @Test
     void encryptECC_valid() throws NoSuchPaddingException, NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
-        AgentEntity agentEntity = new AgentEntity();
-        agentEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded()));
-        byte[] encryptedMessage = cryptoUtility.encryptECC("Test Message".getBytes(StandardCharsets.UTF_8), agentEntity);
+        byte[] encryptedMessage = cryptoUtility.encryptECC("Test Message".getBytes(StandardCharsets.UTF_8), cryptoUtility.loadPublicKey(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded())));
         Cipher cipher = Cipher.getInstance("ECIES/None/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
         cipher.init(Cipher.DECRYPT_MODE, agentPrivateKey, iesParamSpec);
         Assertions.assertArrayEquals("Test Message".getBytes(StandardCharsets.UTF_8), cipher.doFinal(encryptedMessage));
@@ -178,26 +204,102 @@ class CryptoUtilityTest {
 
     @Test
     void verifySignatureECC_invalid() {
-        AgentEntity agentEntity = new AgentEntity();
-        agentEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded()));
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC(null, null, null));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("", "", new AgentEntity()));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("Message", "Signature", agentEntity));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC(null, "Signature", agentEntity));
-        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("Message", null, agentEntity));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("", "", null));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("Message", "Signature", agentPublicKey));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC(null, "Signature", agentPublicKey));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("Message", null, agentPublicKey));
         Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.verifySignatureECC("Message", "Signature", null));
     }
 
     @Test
     void verifySignatureECC_valid() throws NoSuchAlgorithmException, NoSuchProviderException, SignatureException, InvalidKeyException {
-        AgentEntity agentEntity = new AgentEntity();
-        agentEntity.setPublicKeyBase64(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded()));
+        PublicKey agentPublicKeyLoaded = cryptoUtility.loadPublicKey(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded()));
         Signature signature = Signature.getInstance("SHA512withECDSA", BouncyCastleProvider.PROVIDER_NAME);
         signature.initSign(agentPrivateKey);
         signature.update("Test Message".getBytes(StandardCharsets.UTF_8));
         byte[] messageSignature = signature.sign();
-        Assertions.assertTrue(cryptoUtility.verifySignatureECC("Test Message", Base64.getEncoder().encodeToString(messageSignature), agentEntity));
-        Assertions.assertFalse(cryptoUtility.verifySignatureECC("Wrong Test Message", Base64.getEncoder().encodeToString(messageSignature), agentEntity));
+        Assertions.assertTrue(cryptoUtility.verifySignatureECC("Test Message", Base64.getEncoder().encodeToString(messageSignature), agentPublicKeyLoaded));
+        Assertions.assertFalse(cryptoUtility.verifySignatureECC("Wrong Test Message", Base64.getEncoder().encodeToString(messageSignature), agentPublicKeyLoaded));
+    }
+
+    @Test
+    void loadPublicKey_invalid() {
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.loadPublicKey(null));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.loadPublicKey(""));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.loadPublicKey(Base64.getEncoder().encodeToString("Invalid Key".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void loadPublicKey_valid() {
+        Assertions.assertArrayEquals(agentPublicKey.getEncoded(), cryptoUtility.loadPublicKey(Base64.getEncoder().encodeToString(agentPublicKey.getEncoded())).getEncoded());
+    }
+
+    @Test
+    void eccOperations_concurrent() throws InterruptedException, ExecutionException {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String message = "Test Message " + i;
+            futures.add(executorService.submit(() -> {
+                boolean roundTripValid = message.equals(cryptoUtility.decryptECC(cryptoUtility.encryptECC(message.getBytes(StandardCharsets.UTF_8), serverPublicKey)));
+                String signature = Base64.getEncoder().encodeToString(cryptoUtility.createSignatureECC(message));
+                return roundTripValid && cryptoUtility.verifySignatureECC(message, signature, serverPublicKey)
+                        && !cryptoUtility.verifySignatureECC("Wrong " + message, signature, serverPublicKey);
+            }));
+        }
+        for (Future<Boolean> future : futures) {
+            Assertions.assertTrue(future.get());
+        }
+        executorService.shutdown();
+        // a failed operation must not leave a broken instance behind
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptECC("".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("Test Message", cryptoUtility.decryptECC(cryptoUtility.encryptECC("Test Message".getBytes(StandardCharsets.UTF_8), serverPublicKey)));
+    }
+
+    @Test
+    void deriveSessionKey() {
+        byte[] agentSecret = "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8);
+        byte[] serverNonce = "Server Nonce".getBytes(StandardCharsets.UTF_8);
+        SecretKey sessionKey = cryptoUtility.deriveSessionKey(agentSecret, serverNonce, "Session");
+        Assertions.assertEquals(32, sessionKey.getEncoded().length);
+        Assertions.assertArrayEquals(sessionKey.getEncoded(), cryptoUtility.deriveSessionKey(agentSecret, serverNonce, "Session").getEncoded());
+        Assertions.assertFalse(Arrays.equals(sessionKey.getEncoded(), cryptoUtility.deriveSessionKey(agentSecret, serverNonce, "Other Session").getEncoded()));
+        Assertions.assertFalse(Arrays.equals(sessionKey.getEncoded(), cryptoUtility.deriveSessionKey(agentSecret, "Other Nonce".getBytes(StandardCharsets.UTF_8), "Session").getEncoded()));
+    }
+
+    @Test
+    void encryptSession_decryptSession() {
+        SecretKey sessionKey = cryptoUtility.deriveSessionKey("Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8), "Server Nonce".getBytes(StandardCharsets.UTF_8), "Session");
+        byte[] initializationVector = new byte[12];
+        byte[] associatedData = "Session".getBytes(StandardCharsets.UTF_8);
+        byte[] encryptedMessage = cryptoUtility.encryptSession("Test Message".getBytes(StandardCharsets.UTF_8), sessionKey, initializationVector, associatedData);
+        Assertions.assertEquals("Test Message", new String(cryptoUtility.decryptSession(encryptedMessage, sessionKey, initializationVector, associatedData), StandardCharsets.UTF_8));
+
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptSession(encryptedMessage, sessionKey, initializationVector, "Other Session".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptSession(encryptedMessage, sessionKey, new byte[]{1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, associatedData));
+        encryptedMessage[0] ^= 1;
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptSession(encryptedMessage, sessionKey, initializationVector, associatedData));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptSession("Test Message".getBytes(StandardCharsets.UTF_8), null, initializationVector, associatedData));
+    }
+
+    @Test
+    void encryptChunk_decryptChunk() {
+        SecretKey chunkEncryptionToken = cryptoUtility.generateChunkEncryptionToken();
+        byte[] chunk = "Test Chunk".getBytes(StandardCharsets.UTF_8);
+        byte[] encryptedChunk = cryptoUtility.encryptChunk(chunk, chunkEncryptionToken);
+        Assertions.assertEquals(12 + chunk.length + 16, encryptedChunk.length);
+        Assertions.assertArrayEquals(chunk, cryptoUtility.decryptChunk(encryptedChunk, chunkEncryptionToken));
+
+        // the same content results in the same encrypted chunk, other content or another key do not
+        Assertions.assertArrayEquals(encryptedChunk, cryptoUtility.encryptChunk(chunk, chunkEncryptionToken));
+        Assertions.assertFalse(Arrays.equals(encryptedChunk, cryptoUtility.encryptChunk("Other Chunk".getBytes(StandardCharsets.UTF_8), chunkEncryptionToken)));
+        Assertions.assertFalse(Arrays.equals(encryptedChunk, cryptoUtility.encryptChunk(chunk, cryptoUtility.generateChunkEncryptionToken())));
+
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptChunk(encryptedChunk, cryptoUtility.generateChunkEncryptionToken()));
+        encryptedChunk[encryptedChunk.length - 1] ^= 1;
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.decryptChunk(encryptedChunk, chunkEncryptionToken));
+        Assertions.assertThrows(CryptoUtilityException.class, () -> cryptoUtility.encryptChunk(chunk, null));
     }
 
     @Test
@@ -209,28 +311,116 @@ class CryptoUtilityTest {
     }
 
     @Test
-    void encryptFile_valid() throws IOException, NoSuchPaddingException, NoSuchAlgorithmException, NoSuchProviderException, InvalidAlgorithmParameterException, InvalidKeyException {
+    void encryptFile_valid() throws IOException {
         PackageEntity packageEntity = new PackageEntity();
         new FileOutputStream(plaintextFile).write("Test Content".getBytes(StandardCharsets.UTF_8));
         Assertions.assertTrue(cryptoUtility.encryptFile(packageEntity, plaintextFile, encryptedFile.toPath()));
         Assertions.assertTrue(encryptedFile.exists());
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding", BouncyCastleProvider.PROVIDER_NAME);
-        try (
-                FileInputStream fileInputStream = new FileInputStream(encryptedFile);
-                CipherInputStream cipherInputStream = new CipherInputStream(fileInputStream, cipher);
-                FileOutputStream fileOutputStream = new FileOutputStream(pathForDecryptedFile.toString())
-        ) {
-            GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, packageEntity.getInitializationVector());
-            cipher.init(Cipher.DECRYPT_MODE, packageEntity.getEncryptionToken(), gcmParameterSpec);
-            byte[] inputStreamByte = cipherInputStream.readNBytes(1024);
-            while (inputStreamByte.length != 0) {
-                fileOutputStream.write(inputStreamByte);
-                inputStreamByte = cipherInputStream.readNBytes(1024);
-            }
-        }
-        Assertions.assertArrayEquals("Test Content".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(pathForDecryptedFile));
+        Assertions.assertEquals(EncryptionFormat.SEGMENTED, packageEntity.getEncryptionFormat());
         Assertions.assertNotNull(packageEntity.getEncryptionToken());
         Assertions.assertNotNull(packageEntity.getInitializationVector());
+        // header and one segment with its authentication tag
+        byte[] encryptedContent = Files.readAllBytes(encryptedFile.toPath());
+        Assertions.assertEquals(CryptoUtility.SEGMENT_HEADER_LENGTH + "Test Content".length() + 16, encryptedContent.length);
+        Assertions.assertEquals("OPDS", new String(encryptedContent, 0, 4, StandardCharsets.US_ASCII));
+        Assertions.assertTrue(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertArrayEquals("Test Content".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(pathForDecryptedFile));
+    }
+
+    @Test
+    void encryptFile_emptyFile() throws IOException {
+        PackageEntity packageEntity = new PackageEntity();
+        plaintextFile.createNewFile();
+        Assertions.assertTrue(cryptoUtility.encryptFile(packageEntity, plaintextFile, encryptedFile.toPath()));
+        Assertions.assertEquals(CryptoUtility.SEGMENT_HEADER_LENGTH + 16, encryptedFile.length());
+        Assertions.assertTrue(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertEquals(0, Files.size(pathForDecryptedFile));
+    }
+
+    @Test
+    void decryptFile_segmentedInvalid() throws IOException {
+        PackageEntity packageEntity = new PackageEntity();
+        byte[] content = new byte[CryptoUtility.SEGMENT_SIZE * 3];
+        new Random(1).nextBytes(content);
+        Files.write(plaintextFile.toPath(), content);
+        Assertions.assertTrue(cryptoUtility.encryptFile(packageEntity, plaintextFile, encryptedFile.toPath()));
+        byte[] encryptedContent = Files.readAllBytes(encryptedFile.toPath());
+        int encryptedSegmentSize = CryptoUtility.SEGMENT_SIZE + 16;
+
+        // missing last segment
+        Files.write(encryptedFile.toPath(), Arrays.copyOf(encryptedContent, encryptedContent.length - encryptedSegmentSize));
+        Assertions.assertFalse(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+
+        // only the header, no segment is left to authenticate
+        Files.write(encryptedFile.toPath(), Arrays.copyOf(encryptedContent, CryptoUtility.SEGMENT_HEADER_LENGTH));
+        Assertions.assertFalse(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertNull(cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFile));
+
+        // swapped segments
+        byte[] swappedContent = encryptedContent.clone();
+        System.arraycopy(encryptedContent, CryptoUtility.SEGMENT_HEADER_LENGTH, swappedContent, CryptoUtility.SEGMENT_HEADER_LENGTH + encryptedSegmentSize, encryptedSegmentSize);
+        System.arraycopy(encryptedContent, CryptoUtility.SEGMENT_HEADER_LENGTH + encryptedSegmentSize, swappedContent, CryptoUtility.SEGMENT_HEADER_LENGTH, encryptedSegmentSize);
+        Files.write(encryptedFile.toPath(), swappedContent);
+        Assertions.assertFalse(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+
+        // modified header
+        byte[] modifiedHeader = encryptedContent.clone();
+        modifiedHeader[CryptoUtility.SEGMENT_HEADER_LENGTH - 1] ^= 1;
+        Files.write(encryptedFile.toPath(), modifiedHeader);
+        Assertions.assertFalse(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertNull(cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFile));
+
+        Files.write(encryptedFile.toPath(), encryptedContent);
+        Assertions.assertTrue(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(pathForDecryptedFile));
+    }
+
+    @Test
+    void encryptFileWithChecksums_invalid() {
+        PackageEntity packageEntity = new PackageEntity();
+        Assertions.assertNull(cryptoUtility.encryptFileWithChecksums(packageEntity, plaintextFile, encryptedFile.toPath()));
+        Assertions.assertNull(cryptoUtility.encryptFileWithChecksums(packageEntity, null, encryptedFile.toPath()));
+    }
+
+    @Test
+    void encryptFileWithChecksums_calculateDecryptedChecksum() throws IOException {
+        PackageEntity packageEntity = new PackageEntity();
+        // several segments, the last one is not complete
+        byte[] content = new byte[CryptoUtility.SEGMENT_SIZE * 2 + 17];
+        new Random(1).nextBytes(content);
+        Files.write(plaintextFile.toPath(), content);
+        CryptoUtility.EncryptedFile result = cryptoUtility.encryptFileWithChecksums(packageEntity, plaintextFile, encryptedFile.toPath());
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(cryptoUtility.calculateChecksum(new FileInputStream(plaintextFile)), result.getPlaintextChecksum());
+        Assertions.assertEquals(cryptoUtility.calculateChecksum(new FileInputStream(encryptedFile)), result.getEncryptedChecksum());
+        Assertions.assertEquals(content.length, result.getPlaintextSize());
+        Assertions.assertEquals(encryptedFile.length(), result.getEncryptedSize());
+        Assertions.assertEquals(result.getPlaintextChecksum(), cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFile));
+        Assertions.assertTrue(cryptoUtility.decryptFile(packageEntity, encryptedFile, pathForDecryptedFile));
+        Assertions.assertArrayEquals(content, Files.readAllBytes(pathForDecryptedFile));
+
+        // a modified file fails the authentication
+        byte[] encryptedContent = Files.readAllBytes(encryptedFile.toPath());
+        encryptedContent[100] ^= 1;
+        Files.write(encryptedFile.toPath(), encryptedContent);
+        Assertions.assertNull(cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFile));
+        Assertions.assertNull(cryptoUtility.calculateDecryptedChecksum(new PackageEntity(), encryptedFile));
+    }
+
+    @Test
+    void encryptFileWithChecksums_treeDigest() throws IOException {
+        PackageEntity packageEntity = new PackageEntity();
+        packageEntity.setDigestAlgorithm(DigestAlgorithm.SHA256_TREE);
+        byte[] content = new byte[CryptoUtility.SEGMENT_SIZE * 2 + 17];
+        new Random(2).nextBytes(content);
+        Files.write(plaintextFile.toPath(), content);
+        CryptoUtility.EncryptedFile result = cryptoUtility.encryptFileWithChecksums(packageEntity, plaintextFile, encryptedFile.toPath());
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(64, result.getPlaintextChecksum().length());
+        Assertions.assertEquals(cryptoUtility.calculateChecksum(new FileInputStream(plaintextFile), OutputStream.nullOutputStream(), DigestAlgorithm.SHA256_TREE), result.getPlaintextChecksum());
+        Assertions.assertEquals(cryptoUtility.calculateChecksum(new FileInputStream(encryptedFile), OutputStream.nullOutputStream(), DigestAlgorithm.SHA256_TREE), result.getEncryptedChecksum());
+        Assertions.assertNotEquals(cryptoUtility.calculateChecksum(new FileInputStream(plaintextFile)), result.getPlaintextChecksum());
+        Assertions.assertEquals(result.getPlaintextChecksum(), cryptoUtility.calculateDecryptedChecksum(packageEntity, encryptedFile));
     }
 
 
@@ -273,6 +463,22 @@ class CryptoUtilityTest {
         Assertions.assertNull(cryptoUtility.calculateChecksum(null));
     }
 
+    @Test
+    void calculateChecksum_copy() {
+        byte[] content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Assertions.assertEquals(cryptoUtility.calculateChecksum(new ByteArrayInputStream(content)), cryptoUtility.calculateChecksum(new ByteArrayInputStream(content), byteArrayOutputStream));
+        Assertions.assertArrayEquals(content, byteArrayOutputStream.toByteArray());
+        Assertions.assertNull(cryptoUtility.calculateChecksum(new ByteArrayInputStream(content), null));
+        Assertions.assertNull(cryptoUtility.calculateChecksum(new ByteArrayInputStream(content), new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        }));
+    }
+
     @Test
     void calculateChecksum_valid() throws IOException, NoSuchAlgorithmException {
         new FileOutputStream(plaintextFile).write("Test Content".getBytes(StandardCharsets.UTF_8));
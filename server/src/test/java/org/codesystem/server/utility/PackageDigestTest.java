@@ -0,0 +1,92 @@
+package org.codesystem.server.utility;
+
+import org.codesystem.server.enums.packages.DigestAlgorithm;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+class PackageDigestTest {
+
+    private String digest(DigestAlgorithm digestAlgorithm, byte[] content, int updateSize) {
+        PackageDigest packageDigest = PackageDigest.create(digestAlgorithm);
+        for (int offset = 0; offset < content.length; offset += updateSize) {
+            packageDigest.update(content, offset, Math.min(updateSize, content.length - offset));
+        }
+        return packageDigest.digestHex();
+    }
+
+    private byte[] sha256(byte prefix, byte[]... parts) throws NoSuchAlgorithmException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        messageDigest.update(prefix);
+        for (byte[] part : parts) {
+            messageDigest.update(part);
+        }
+        return messageDigest.digest();
+    }
+
+    private String treeHash(byte[] content) throws NoSuchAlgorithmException {
+        List<byte[]> level = new ArrayList<>();
+        int offset = 0;
+        do {
+            level.add(sha256((byte) 0, Arrays.copyOfRange(content, offset, Math.min(content.length, offset + PackageDigest.LEAF_SIZE))));
+            offset += PackageDigest.LEAF_SIZE;
+        } while (offset < content.length);
+        while (level.size() > 1) {
+            List<byte[]> parents = new ArrayList<>();
+            for (int i = 0; i < level.size(); i += 2) {
+                parents.add(i + 1 < level.size() ? sha256((byte) 1, level.get(i), level.get(i + 1)) : level.get(i));
+            }
+            level = parents;
+        }
+        return HexFormat.of().formatHex(level.get(0));
+    }
+
+    @Test
+    void sha3() throws NoSuchAlgorithmException {
+        byte[] content = "Test Content".getBytes();
+        String expected = HexFormat.of().formatHex(MessageDigest.getInstance("SHA3-512").digest(content));
+        Assertions.assertEquals(expected, digest(DigestAlgorithm.SHA3_512, content, 5));
+        Assertions.assertEquals(expected, digest(null, content, 5));
+    }
+
+    @Test
+    void tree_smallAndEmpty() throws NoSuchAlgorithmException {
+        Assertions.assertEquals(HexFormat.of().formatHex(sha256((byte) 0)), digest(DigestAlgorithm.SHA256_TREE, new byte[0], 1));
+        Assertions.assertEquals(treeHash("Test Content".getBytes()), digest(DigestAlgorithm.SHA256_TREE, "Test Content".getBytes(), 5));
+        // the leaf prefix separates the tree hash from plain SHA-256
+        Assertions.assertNotEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest("Test Content".getBytes())), digest(DigestAlgorithm.SHA256_TREE, "Test Content".getBytes(), 5));
+    }
+
+    @Test
+    void tree_severalLeaves() throws NoSuchAlgorithmException {
+        // more leaves than processed in one batch, with an odd number of leaves and an incomplete last leaf
+        byte[] content = new byte[PackageDigest.LEAF_SIZE * (Runtime.getRuntime().availableProcessors() * 2 + 3) + 7];
+        new Random(1).nextBytes(content);
+        String expected = treeHash(content);
+        Assertions.assertEquals(expected, digest(DigestAlgorithm.SHA256_TREE, content, content.length));
+        Assertions.assertEquals(expected, digest(DigestAlgorithm.SHA256_TREE, content, 100000));
+        Assertions.assertEquals(treeHash(Arrays.copyOf(content, PackageDigest.LEAF_SIZE * 2)), digest(DigestAlgorithm.SHA256_TREE, Arrays.copyOf(content, PackageDigest.LEAF_SIZE * 2), PackageDigest.LEAF_SIZE));
+
+        content[content.length / 2] ^= 1;
+        Assertions.assertNotEquals(expected, digest(DigestAlgorithm.SHA256_TREE, content, 100000));
+    }
+
+    @Test
+    void asOutputStream() throws IOException {
+        PackageDigest packageDigest = PackageDigest.create(DigestAlgorithm.SHA256_TREE);
+        try (OutputStream outputStream = packageDigest.asOutputStream()) {
+            outputStream.write('T');
+            outputStream.write("est Content".getBytes());
+        }
+        Assertions.assertEquals(digest(DigestAlgorithm.SHA256_TREE, "Test Content".getBytes(), 12), packageDigest.digestHex());
+    }
+}
@@ -1,10 +1,15 @@
 package org.codesystem.server.utility;
 
 import ch.vorburger.mariadb4j.springframework.MariaDB4jSpringService;
+import org.codesystem.server.cache.AgentIdentity;
+import org.codesystem.server.cache.AgentIdentityCache;
+import org.codesystem.server.cache.AgentSession;
+import org.codesystem.server.cache.AgentSessionCache;
 import org.codesystem.server.configuration.SecurityConfiguration;
 import org.codesystem.server.configuration.ServerInitialization;
 import org.codesystem.server.entity.AgentEntity;
 import org.codesystem.server.repository.AgentRepository;
+import org.codesystem.server.repository.ServerRepository;
 import org.codesystem.server.request.agent.AgentEncryptedRequest;
 import org.json.JSONObject;
 import org.junit.jupiter.api.*;
@@ -14,9 +19,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.Base64;
 
 @SpringBootTest
@@ -29,6 +36,8 @@ class RequestUtilityTest {
     SecurityConfiguration securityConfiguration;
     @Autowired
     AgentRepository agentRepository;
+    @Autowired
+    ServerRepository serverRepository;
     CryptoUtility cryptoUtility;
     RequestUtility requestUtility;
 
@@ -48,7 +57,7 @@ class RequestUtilityTest {
     @BeforeEach
     void setUp() {
         cryptoUtility = Mockito.mock(CryptoUtility.class);
-        requestUtility = new RequestUtility(agentRepository, cryptoUtility);
+        requestUtility = new RequestUtility(new AgentIdentityCache(agentRepository, cryptoUtility, 1000), cryptoUtility, new AgentSessionCache(cryptoUtility, 900));
     }
 
     @AfterEach
@@ -159,16 +168,16 @@ class RequestUtilityTest {
     @Test
     void generateAgentEncryptedResponse_invalid() {
         JSONObject jsonObject = new JSONObject();
-        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(null, null));
-        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(jsonObject, null));
+        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(null, null, null));
+        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(jsonObject, null, null));
         jsonObject.put("key", "value");
-        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(jsonObject, null));
+        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(jsonObject, null, null));
     }
 
     @Test
     void generateAgentEncryptedResponse_valid() {
         JSONObject jsonObject = new JSONObject().put("key", "value");
-        AgentEntity agentEntity = new AgentEntity();
+        AgentIdentity agentIdentity = new AgentIdentity("Agent UUID", true, null, null);
         // checks if timestamp is present
         Mockito.when(cryptoUtility.createSignatureECC(Mockito.any())).then(invocationOnMock -> {
             JSONObject jsonObjectMock = new JSONObject((String) invocationOnMock.getArgument(0));
@@ -188,7 +197,74 @@ class RequestUtilityTest {
                 return "Decrypted Message".getBytes(StandardCharsets.UTF_8);
             }
         });
-        Assertions.assertEquals(Base64.getEncoder().encodeToString("Decrypted Message".getBytes(StandardCharsets.UTF_8)), requestUtility.generateAgentEncryptedResponse(jsonObject, agentEntity).getMessage());
+        Assertions.assertEquals(Base64.getEncoder().encodeToString("Decrypted Message".getBytes(StandardCharsets.UTF_8)), requestUtility.generateAgentEncryptedResponse(jsonObject, agentIdentity, new AgentEncryptedRequest()).getMessage());
     }
 
-}
\ No newline at end of file
+    @Test
+    void validateRequest_session() {
+        String publicKeyBase64 = Base64.getEncoder().encodeToString("AgentPublicKey".getBytes(StandardCharsets.UTF_8));
+        AgentEntity agentEntity = new AgentEntity();
+        agentEntity.setName("Agent");
+        agentEntity.setRegistrationCompleted(true);
+        agentEntity.setPublicKeyBase64(publicKeyBase64);
+        agentRepository.save(agentEntity);
+        CryptoUtility sessionCryptoUtility = new CryptoUtility(serverRepository);
+        AgentSessionCache agentSessionCache = new AgentSessionCache(sessionCryptoUtility, 900);
+        requestUtility = new RequestUtility(new AgentIdentityCache(agentRepository, cryptoUtility, 1000), sessionCryptoUtility, agentSessionCache);
+        AgentSession agentSession = agentSessionCache.createSession(publicKeyBase64, "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8));
+        JSONObject jsonObject = new JSONObject().put("key", "value");
+
+        Assertions.assertEquals(jsonObject.toString(), requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 1, 0, jsonObject), agentSession.getSessionId())).toString());
+        // replayed and outdated sequence numbers
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 1, 0, jsonObject), agentSession.getSessionId())));
+        Assertions.assertNotNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 3, 0, jsonObject), agentSession.getSessionId())));
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 2, 0, jsonObject), agentSession.getSessionId())));
+        // wrong direction, session or Agent
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 4, 1, jsonObject), agentSession.getSessionId())));
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 5, 0, jsonObject), "Invalid Session")));
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(Base64.getEncoder().encodeToString("OtherPublicKey".getBytes(StandardCharsets.UTF_8)), createSessionMessage(sessionCryptoUtility, agentSession, 6, 0, jsonObject), agentSession.getSessionId())));
+        // invalid messages
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, "Invalid Message", agentSession.getSessionId())));
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, Base64.getEncoder().encodeToString(new byte[8]), agentSession.getSessionId())));
+        byte[] tamperedMessage = Base64.getDecoder().decode(createSessionMessage(sessionCryptoUtility, agentSession, 7, 0, jsonObject));
+        tamperedMessage[tamperedMessage.length - 1] ^= 1;
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, Base64.getEncoder().encodeToString(tamperedMessage), agentSession.getSessionId())));
+        // a rejected message does not consume the sequence number
+        Assertions.assertNotNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 7, 0, jsonObject), agentSession.getSessionId())));
+
+        // expired session
+        agentSessionCache = new AgentSessionCache(sessionCryptoUtility, 0);
+        requestUtility = new RequestUtility(new AgentIdentityCache(agentRepository, cryptoUtility, 1000), sessionCryptoUtility, agentSessionCache);
+        AgentSession expiredAgentSession = agentSessionCache.createSession(publicKeyBase64, "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertNull(requestUtility.validateRequest(new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, expiredAgentSession, 1, 0, jsonObject), expiredAgentSession.getSessionId())));
+    }
+
+    @Test
+    void generateAgentEncryptedResponse_session() {
+        String publicKeyBase64 = Base64.getEncoder().encodeToString("AgentPublicKey".getBytes(StandardCharsets.UTF_8));
+        CryptoUtility sessionCryptoUtility = new CryptoUtility(serverRepository);
+        AgentSessionCache agentSessionCache = new AgentSessionCache(sessionCryptoUtility, 900);
+        requestUtility = new RequestUtility(new AgentIdentityCache(agentRepository, cryptoUtility, 1000), sessionCryptoUtility, agentSessionCache);
+        AgentSession agentSession = agentSessionCache.createSession(publicKeyBase64, "Agent Secret with at least 32 bytes".getBytes(StandardCharsets.UTF_8));
+        AgentIdentity agentIdentity = new AgentIdentity("Agent UUID", true, null, null);
+        AgentEncryptedRequest agentEncryptedRequest = new AgentEncryptedRequest(publicKeyBase64, createSessionMessage(sessionCryptoUtility, agentSession, 42, 0, new JSONObject().put("key", "value")), agentSession.getSessionId());
+
+        byte[] message = Base64.getDecoder().decode(requestUtility.generateAgentEncryptedResponse(new JSONObject().put("key", "value"), agentIdentity, agentEncryptedRequest).getMessage());
+        Assertions.assertEquals(42, ByteBuffer.wrap(message).getLong());
+        JSONObject jsonResponse = new JSONObject(new String(sessionCryptoUtility.decryptSession(Arrays.copyOfRange(message, Long.BYTES, message.length), agentSession.getSessionKey(),
+                ByteBuffer.allocate(12).putInt(1).putLong(42).array(), agentSession.getSessionId().getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+        Assertions.assertEquals("value", jsonResponse.getString("key"));
+        Assertions.assertFalse(jsonResponse.isNull("timestamp"));
+        Assertions.assertTrue(jsonResponse.isNull("signature"));
+        Mockito.verifyNoInteractions(cryptoUtility);
+
+        agentSessionCache.invalidate(publicKeyBase64);
+        Assertions.assertNull(requestUtility.generateAgentEncryptedResponse(new JSONObject().put("key", "value"), agentIdentity, agentEncryptedRequest));
+    }
+
+    private String createSessionMessage(CryptoUtility sessionCryptoUtility, AgentSession agentSession, long sequence, int direction, JSONObject jsonObject) {
+        byte[] encryptedMessage = sessionCryptoUtility.encryptSession(jsonObject.toString().getBytes(StandardCharsets.UTF_8), agentSession.getSessionKey(),
+                ByteBuffer.allocate(12).putInt(direction).putLong(sequence).array(), agentSession.getSessionId().getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(Long.BYTES + encryptedMessage.length).putLong(sequence).put(encryptedMessage).array());
+    }
+}